@@ -0,0 +1,79 @@
+/*  AcousticBenchmark.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.benchmark;
+
+import edu.cuny.qc.speech.AuToBI.IntensityExtractor;
+import edu.cuny.qc.speech.AuToBI.PitchExtractor;
+import edu.cuny.qc.speech.AuToBI.RAPTPitchExtractor;
+import edu.cuny.qc.speech.AuToBI.SpectrumExtractor;
+import edu.cuny.qc.speech.AuToBI.core.Contour;
+import edu.cuny.qc.speech.AuToBI.core.Spectrum;
+import edu.cuny.qc.speech.AuToBI.core.WavData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the acoustic contour extractors on synthetic audio.
+ * <p/>
+ * Each benchmark processes the whole signal, so the score is the time taken to analyze the given duration of audio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AcousticBenchmark {
+
+  @Param({"10", "60"})
+  public double seconds;
+
+  private WavData wav;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    wav = SyntheticSpeech.generateWavData(seconds, 1L);
+  }
+
+  @Benchmark
+  public Contour raptGetPitch() throws Exception {
+    return new RAPTPitchExtractor().getPitch(wav);
+  }
+
+  @Benchmark
+  public Contour soundToPitch() throws Exception {
+    return new PitchExtractor(wav).soundToPitch();
+  }
+
+  @Benchmark
+  public Contour getIntensity() {
+    return new IntensityExtractor(wav).getIntensity(0.01, 0.04, true, 0);
+  }
+
+  @Benchmark
+  public Spectrum getSpectrum() {
+    return new SpectrumExtractor(wav).getSpectrum(0.01, 0.02);
+  }
+}
@@ -0,0 +1,109 @@
+/*  ContourBenchmark.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.benchmark;
+
+import edu.cuny.qc.speech.AuToBI.core.Contour;
+import edu.cuny.qc.speech.AuToBI.core.ContextFrame;
+import edu.cuny.qc.speech.AuToBI.core.Region;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.util.ContourUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures per-word contour operations: extracting sub contours and sliding a ContextFrame across words.
+ * <p/>
+ * Contours are sampled every 10ms, as the pitch and intensity extractors generate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContourBenchmark {
+
+  @Param({"100", "1000"})
+  public int num_words;
+
+  private Contour contour;
+  private List<Region> words;
+  private List<Region> number_words;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Random rng = new Random(1L);
+    double period = SyntheticSpeech.WORD_DURATION + SyntheticSpeech.PAUSE_DURATION;
+
+    double[] values = new double[(int) Math.ceil(num_words * period / 0.01)];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = 150 + 30 * Math.sin(i * 0.05) + rng.nextGaussian();
+    }
+    contour = new Contour(0.0, 0.01, values);
+
+    words = new ArrayList<Region>();
+    number_words = new ArrayList<Region>();
+    for (int i = 0; i < num_words; ++i) {
+      Word w = new Word(i * period, i * period + SyntheticSpeech.WORD_DURATION, "w" + i);
+      w.setAttribute("f0", ContourUtils.getSubContour(contour, w.getStart(), w.getEnd()));
+      words.add(w);
+
+      Word n = new Word(i * period, i * period + SyntheticSpeech.WORD_DURATION, "w" + i);
+      n.setAttribute("max_f0", values[(int) (i * period / 0.01)]);
+      number_words.add(n);
+    }
+  }
+
+  @Benchmark
+  public void getSubContour(Blackhole bh) throws Exception {
+    for (Region r : words) {
+      bh.consume(ContourUtils.getSubContour(contour, r.getStart(), r.getEnd()));
+    }
+  }
+
+  @Benchmark
+  public void slideContourContextFrame(Blackhole bh) {
+    ContextFrame frame = new ContextFrame(words, "f0", 2, 2);
+    for (int i = 0; i < words.size(); ++i) {
+      bh.consume(frame.getMean());
+      bh.consume(frame.getStdev());
+      frame.increment();
+    }
+  }
+
+  @Benchmark
+  public void slideNumberContextFrame(Blackhole bh) {
+    ContextFrame frame = new ContextFrame(number_words, "max_f0", 2, 2);
+    for (int i = 0; i < number_words.size(); ++i) {
+      bh.consume(frame.getMean());
+      bh.consume(frame.getStdev());
+      frame.increment();
+    }
+  }
+}
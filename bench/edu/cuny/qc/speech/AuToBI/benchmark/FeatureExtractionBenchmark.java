@@ -0,0 +1,85 @@
+/*  FeatureExtractionBenchmark.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.benchmark;
+
+import edu.cuny.qc.speech.AuToBI.AuToBI;
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.WavData;
+import edu.cuny.qc.speech.AuToBI.featureextractor.FeatureExtractorException;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An end-to-end benchmark of AuToBI.extractFeatures on synthetic audio.
+ * <p/>
+ * Each invocation extracts pitch, intensity and spectral contours from the audio and aggregates them over every word,
+ * exercising feature registry construction, the extractors and reference counting together.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FeatureExtractionBenchmark {
+
+  @Param({"30"})
+  public double seconds;
+
+  private WavData wav;
+  private AuToBI autobi;
+  private FeatureSet fs;
+
+  @Setup(Level.Trial)
+  public void setUpAudio() throws Exception {
+    wav = SyntheticSpeech.generateWavData(seconds, 1L);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUp() throws Exception {
+    autobi = new AuToBI();
+    autobi.registerDefaultFeatureExtractorMonikers();
+
+    fs = new FeatureSet();
+    for (String acoustic : new String[]{"f0", "log[f0]", "I", "spectralTilt[2,20]", "spectrumBand[2,20]"}) {
+      for (String slope : new String[]{"", "delta"}) {
+        for (String agg : new String[]{"max", "mean", "stdev", "zMax"}) {
+          fs.insertRequiredFeature(AuToBIUtils.makeFeatureName(agg, AuToBIUtils.makeFeatureName(slope, acoustic)));
+        }
+      }
+    }
+    fs.setDataPoints(SyntheticSpeech.generateWords(wav));
+
+    autobi.initializeFeatureRegistry(fs);
+  }
+
+  @Benchmark
+  public FeatureSet extractFeatures() throws FeatureExtractorException, AuToBIException {
+    autobi.extractFeatures(fs);
+    return fs;
+  }
+}
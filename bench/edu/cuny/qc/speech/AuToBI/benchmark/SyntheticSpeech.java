@@ -0,0 +1,167 @@
+/*  SyntheticSpeech.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.benchmark;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.WavData;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.io.WavReader;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SyntheticSpeech generates deterministic speech-like audio for benchmarks.
+ * <p/>
+ * The signal alternates between voiced "words" -- a harmonic series with a gliding fundamental frequency and a
+ * syllabic amplitude envelope -- and low level noise pauses.  Audio is generated when a benchmark is set up so that no
+ * recordings need to be distributed with the benchmarks.
+ */
+public class SyntheticSpeech {
+  public static final float SAMPLE_RATE = 16000f;
+  public static final double WORD_DURATION = 0.3;   // the duration of each voiced word (in seconds)
+  public static final double PAUSE_DURATION = 0.1;  // the duration of the pause after each word (in seconds)
+
+  private SyntheticSpeech() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Generates 16 bit, mono PCM samples.
+   *
+   * @param seconds the duration of the audio
+   * @param seed    the random seed
+   * @return the samples
+   */
+  public static short[] generateSamples(double seconds, long seed) {
+    Random rng = new Random(seed);
+    int n = (int) (seconds * SAMPLE_RATE);
+    short[] samples = new short[n];
+
+    double period = WORD_DURATION + PAUSE_DURATION;
+    double phase = 0.0;
+    for (int i = 0; i < n; ++i) {
+      double t = i / SAMPLE_RATE;
+      int word = (int) (t / period);
+      double offset = t - word * period;
+
+      double value = 0.002 * rng.nextGaussian();
+      if (offset < WORD_DURATION) {
+        // Each word has its own pitch range, with a rise-fall contour.
+        double base_f0 = 100 + 20 * (word % 5);
+        double f0 = base_f0 + 40 * Math.sin(Math.PI * offset / WORD_DURATION);
+        phase += 2 * Math.PI * f0 / SAMPLE_RATE;
+
+        double envelope = Math.sin(Math.PI * offset / WORD_DURATION);
+        double voiced = 0.0;
+        for (int h = 1; h <= 8; ++h) {
+          voiced += Math.sin(h * phase) / h;
+        }
+        value += 0.3 * envelope * voiced;
+      }
+      samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value * Short.MAX_VALUE));
+    }
+    return samples;
+  }
+
+  /**
+   * Generates a complete wav file in memory.
+   *
+   * @param seconds the duration of the audio
+   * @param seed    the random seed
+   * @return the contents of the wav file
+   * @throws IOException if the file cannot be written
+   */
+  public static byte[] generateWavFile(double seconds, long seed) throws IOException {
+    short[] samples = generateSamples(seconds, seed);
+    byte[] pcm = new byte[samples.length * 2];
+    for (int i = 0; i < samples.length; ++i) {
+      pcm[2 * i] = (byte) (samples[i] & 0xff);
+      pcm[2 * i + 1] = (byte) ((samples[i] >> 8) & 0xff);
+    }
+
+    AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+    AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm), format, samples.length);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(pcm.length + 44);
+    AudioSystem.write(stream, AudioFileFormat.Type.WAVE, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Opens an in memory wav file as an AudioInputStream.
+   *
+   * @param wav_file the contents of the wav file
+   * @return the audio stream
+   * @throws IOException                   if the stream cannot be read
+   * @throws UnsupportedAudioFileException if the data is not a valid wav file
+   */
+  public static AudioInputStream openStream(byte[] wav_file) throws IOException, UnsupportedAudioFileException {
+    return AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav_file));
+  }
+
+  /**
+   * Generates WavData, read through WavReader.
+   *
+   * @param seconds the duration of the audio
+   * @param seed    the random seed
+   * @return the wav data
+   * @throws AuToBIException               if the wav data cannot be read
+   * @throws IOException                   if the wav file cannot be generated
+   * @throws UnsupportedAudioFileException if the wav file cannot be read
+   */
+  public static WavData generateWavData(double seconds, long seed)
+      throws AuToBIException, IOException, UnsupportedAudioFileException {
+    WavData wav = new WavReader().read(openStream(generateWavFile(seconds, seed)));
+    wav.setFilename("synthetic.wav");
+    return wav;
+  }
+
+  /**
+   * Generates a word for each voiced region of the synthetic audio.
+   * <p/>
+   * Each word holds a reference to the wav data in its "wav" attribute.
+   *
+   * @param wav the wav data generated by generateWavData
+   * @return the words
+   */
+  public static List<Word> generateWords(WavData wav) {
+    List<Word> words = new ArrayList<Word>();
+    double period = WORD_DURATION + PAUSE_DURATION;
+    for (int i = 0; (i + 1) * period <= wav.getDuration(); ++i) {
+      Word w = new Word(i * period, i * period + WORD_DURATION, "w" + i, null, wav.getFilename());
+      w.setAttribute("wav", wav);
+      words.add(w);
+    }
+    return words;
+  }
+}
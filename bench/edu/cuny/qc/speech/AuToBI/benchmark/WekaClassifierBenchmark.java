@@ -0,0 +1,112 @@
+/*  WekaClassifierBenchmark.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.benchmark;
+
+import edu.cuny.qc.speech.AuToBI.classifier.WekaClassifier;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import weka.classifiers.trees.J48;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures WekaClassifier.distributionForInstance on a trained J48 model.
+ * <p/>
+ * The feature set has a numeric and nominal mix similar to the pitch accent detection feature set.  The score is the
+ * time taken to classify every test word.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WekaClassifierBenchmark {
+
+  @Param({"50"})
+  public int num_features;
+
+  @Param({"1000"})
+  public int num_words;
+
+  private WekaClassifier classifier;
+  private List<Word> test_words;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Random rng = new Random(1L);
+    FeatureSet fs = new FeatureSet();
+    fs.setClassAttribute("nominal_PitchAccent");
+    for (int f = 0; f < num_features; ++f) {
+      fs.insertRequiredFeature("feature" + f);
+    }
+    fs.insertRequiredFeature("nominal_feature");
+
+    fs.setDataPoints(generateWords(rng, num_words));
+    fs.constructFeatures();
+
+    classifier = new WekaClassifier(new J48());
+    classifier.train(fs);
+
+    test_words = generateWords(rng, num_words);
+  }
+
+  /**
+   * Generates words whose class is a noisy function of their features.
+   *
+   * @param rng the random number generator
+   * @param n   the number of words
+   * @return the words
+   */
+  private List<Word> generateWords(Random rng, int n) {
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < n; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      double sum = 0.0;
+      for (int f = 0; f < num_features; ++f) {
+        double v = rng.nextGaussian();
+        w.setAttribute("feature" + f, v);
+        if (f < 5) {
+          sum += v;
+        }
+      }
+      w.setAttribute("nominal_feature", (i % 3 == 0) ? "A" : "B");
+      w.setAttribute("nominal_PitchAccent", (sum + rng.nextGaussian() > 0) ? "ACCENTED" : "DEACCENTED");
+      words.add(w);
+    }
+    return words;
+  }
+
+  @Benchmark
+  public void distributionForInstance(Blackhole bh) throws Exception {
+    for (Word w : test_words) {
+      bh.consume(classifier.distributionForInstance(w));
+    }
+  }
+}
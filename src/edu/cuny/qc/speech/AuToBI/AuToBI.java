@@ -24,13 +24,17 @@
 package edu.cuny.qc.speech.AuToBI;
 
 import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
+import edu.cuny.qc.speech.AuToBI.classifier.EnsembleSampledClassifier;
 import edu.cuny.qc.speech.AuToBI.core.*;
+import edu.cuny.qc.speech.AuToBI.core.syllabifier.EMSyllabifier;
 import edu.cuny.qc.speech.AuToBI.featureextractor.*;
 import edu.cuny.qc.speech.AuToBI.featureextractor.shapemodeling.*;
 import edu.cuny.qc.speech.AuToBI.featureset.*;
 import edu.cuny.qc.speech.AuToBI.io.*;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIReaderUtils;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
+import edu.cuny.qc.speech.AuToBI.util.TraceProfiler;
 import edu.cuny.qc.speech.AuToBI.util.WordReaderUtils;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -39,19 +43,21 @@ import org.apache.log4j.BasicConfigurator;
 import org.reflections.Reflections;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.FileInputStream;
 import java.io.ObjectInputStream;
+import java.io.StringWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import static java.util.concurrent.Executors.newFixedThreadPool;
-
 /**
  * This is the main class for the AuToBI system.
  * <p/>
@@ -98,6 +104,12 @@ public class AuToBI {
   // A list of AuToBITasks to be executed.
   protected HashMap<String, AuToBITask> tasks;
 
+  // Timing, allocation and cardinality statistics of the executed FeatureExtractors.
+  private FeatureExtractorMetrics feature_extractor_metrics;
+
+  // The file whose data points are being processed, used to report feature extractor metrics.
+  private String metrics_file;
+
   /**
    * Constructs a new AuToBI object.
    */
@@ -108,6 +120,7 @@ public class AuToBI {
     executed_feature_extractors = new HashSet<FeatureExtractor>();
     speaker_norm_file_mapping = new HashMap<String, String>();
     tasks = new HashMap<String, AuToBITask>();
+    feature_extractor_metrics = new FeatureExtractorMetrics();
   }
 
   /**
@@ -129,8 +142,32 @@ public class AuToBI {
       Logger l = Logger.getRootLogger();
       l.setLevel(Level.INFO);
     }
+    if (params.hasParameter("profile_trace")) {
+      TraceProfiler.enable();
+    }
 
+    TraceProfiler.Span span = TraceProfiler.begin("registry", "register_monikers");
     registerDefaultFeatureExtractorMonikers();
+    span.end();
+  }
+
+  /**
+   * Writes the spans recorded by the TraceProfiler to the file named by the "profile_trace" parameter.
+   * <p/>
+   * The file is in the Chrome trace event format.
+   */
+  public void writeProfileTrace() {
+    if (TraceProfiler.isEnabled() && hasParameter("profile_trace")) {
+      try {
+        String filename = getParameter("profile_trace");
+        TraceProfiler.write(filename);
+        AuToBIUtils.log("Wrote profile trace to: " + filename);
+      } catch (AuToBIException e) {
+        e.printStackTrace();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
   }
 
   /**
@@ -259,6 +296,16 @@ public class AuToBI {
     executed_feature_extractors = new HashSet<FeatureExtractor>();
   }
 
+  /**
+   * Forgets which feature extractors have been run, keeping the feature registry.
+   * <p/>
+   * Each feature extractor runs once per AuToBI object.  This allows the same registry to extract features from a
+   * new set of data points.
+   */
+  public void resetExecutedFeatureExtractors() {
+    executed_feature_extractors = new HashSet<FeatureExtractor>();
+  }
+
   /**
    * Extracts the features required for the feature set and optionally deletes intermediate features that may have been
    * generated in their processing
@@ -332,6 +379,7 @@ public class AuToBI {
    */
   public void initializeFeatureRegistry(FeatureSet fs) throws AuToBIException, IllegalAccessException,
       InvocationTargetException, InstantiationException {
+    TraceProfiler.Span span = TraceProfiler.begin("registry", "initialize_feature_registry");
     Stack<String> features = new Stack<String>();
     if (fs.getClassAttribute() != null) {
       features.add(fs.getClassAttribute());
@@ -412,6 +460,59 @@ public class AuToBI {
         }
       }
     }
+    consolidateContextNormalizedFeatureExtractors();
+    consolidateSpectrumBandFeatureExtractors();
+    span.arg("feature_extractors", feature_registry.size()).end();
+  }
+
+  /**
+   * Replaces the ContextNormalizedFeatureExtractors registered for the same attribute with a single
+   * MultiContextNormalizedFeatureExtractor covering all of their contexts.
+   * <p/>
+   * Feature sets typically request many context widths for the same attribute.  After consolidation the statistics of
+   * each attribute are calculated once per file, rather than once per context.
+   */
+  public void consolidateContextNormalizedFeatureExtractors() {
+    Map<String, Map<String, ContextDesc>> attribute_contexts = new HashMap<String, Map<String, ContextDesc>>();
+    for (FeatureExtractor fe : feature_registry.values()) {
+      if (fe instanceof ContextNormalizedFeatureExtractor) {
+        ContextNormalizedFeatureExtractor cnfe = (ContextNormalizedFeatureExtractor) fe;
+        if (!attribute_contexts.containsKey(cnfe.getAttributeName())) {
+          attribute_contexts.put(cnfe.getAttributeName(), new LinkedHashMap<String, ContextDesc>());
+        }
+        attribute_contexts.get(cnfe.getAttributeName()).put(cnfe.getContext().getLabel(), cnfe.getContext());
+      }
+    }
+
+    for (String attribute : attribute_contexts.keySet()) {
+      if (attribute_contexts.get(attribute).size() > 1) {
+        registerFeatureExtractor(new MultiContextNormalizedFeatureExtractor(attribute,
+            new ArrayList<ContextDesc>(attribute_contexts.get(attribute).values())), true);
+      }
+    }
+  }
+
+  /**
+   * Replaces the registered SpectrumBandFeatureExtractors with a single MultiSpectrumBandFeatureExtractor covering all
+   * of their bark bands.
+   * <p/>
+   * Spectral pitch accent detection requires the energy in every pair of bark bands.  After consolidation the energy
+   * in every band is calculated in a single pass over the spectrum.
+   */
+  public void consolidateSpectrumBandFeatureExtractors() {
+    Map<String, Pair<Integer, Integer>> bands = new LinkedHashMap<String, Pair<Integer, Integer>>();
+    for (FeatureExtractor fe : feature_registry.values()) {
+      if (fe instanceof SpectrumBandFeatureExtractor) {
+        SpectrumBandFeatureExtractor sbfe = (SpectrumBandFeatureExtractor) fe;
+        bands.put(sbfe.getLow() + "," + sbfe.getHigh(),
+            new Pair<Integer, Integer>(sbfe.getLow(), sbfe.getHigh()));
+      }
+    }
+
+    if (bands.size() > 1) {
+      registerFeatureExtractor(
+          new MultiSpectrumBandFeatureExtractor(new ArrayList<Pair<Integer, Integer>>(bands.values())), true);
+    }
   }
 
 
@@ -477,15 +578,30 @@ public class AuToBI {
       throw new AuToBIException("No feature extractor registered for feature: " + feature);
     }
     FeatureExtractor extractor = feature_registry.get(feature);
-    AuToBIUtils.debug("Start Feature Extraction for: " + feature);
+    boolean debug = AuToBIUtils.isDebugEnabled();
+    if (debug) {
+      AuToBIUtils.debug("Start Feature Extraction for: " + feature);
+    }
     if (extractor != null) {
       // Recursively extract the features required by the current FeatureExtractor.
       extractFeatures(extractor.getRequiredFeatures(), fs);
 
       if (!executed_feature_extractors.contains(extractor)) {
-        AuToBIUtils.debug("running feature extraction for: " + feature);
+        if (debug) {
+          AuToBIUtils.debug("running feature extraction for: " + feature);
+        }
+        TraceProfiler.Span span = TraceProfiler.begin("extractor", extractor.getClass().getSimpleName())
+            .arg("feature", feature);
+        long wall_start = System.nanoTime();
+        long cpu_start = FeatureExtractorMetrics.currentThreadCpuTime();
+        long alloc_start = FeatureExtractorMetrics.currentThreadAllocatedBytes();
         extractor.extractFeatures(fs.getDataPoints());
-        AuToBIUtils.debug("extracted features using: " + extractor.getClass().getCanonicalName());
+        feature_extractor_metrics.record(metrics_file, extractor, fs.getDataPoints(), wall_start, cpu_start,
+            alloc_start);
+        span.end();
+        if (debug) {
+          AuToBIUtils.debug("extracted features using: " + extractor.getClass().getCanonicalName());
+        }
         executed_feature_extractors.add(extractor);
       }
 
@@ -494,7 +610,9 @@ public class AuToBI {
       }
       featureGarbageCollection(fs);
     }
-    AuToBIUtils.debug("End Feature Extraction for: " + feature);
+    if (debug) {
+      AuToBIUtils.debug("End Feature Extraction for: " + feature);
+    }
   }
 
   /**
@@ -503,10 +621,21 @@ public class AuToBI {
    * @param fs the feature set
    */
   public void featureGarbageCollection(FeatureSet fs) {
+    if (dead_features.isEmpty()) {
+      return;
+    }
+    boolean debug = AuToBIUtils.isDebugEnabled();
     for (String feature : dead_features) {
-      AuToBIUtils.debug("Removing feature: " + feature);
+      if (debug) {
+        AuToBIUtils.debug("Removing feature: " + feature);
+      }
       fs.removeFeatureFromDataPoints(feature);
+      FeatureExtractor producer = feature_registry.get(feature);
+      if (producer != null) {
+        feature_extractor_metrics.recordCollection(metrics_file, producer);
+      }
     }
+    feature_extractor_metrics.recordCollectionEvent();
     dead_features.clear();
   }
 
@@ -706,72 +835,145 @@ public class AuToBI {
   public void propagateFeatureSet(Collection<FormattedFile> filenames, FeatureSet fs)
       throws UnsupportedAudioFileException, InvocationTargetException, InstantiationException, IllegalAccessException,
       AuToBIException {
+    propagateFeatureSet(filenames, fs, null);
+  }
+
+  /**
+   * Constructs a FeatureSet from a collection of filenames, optionally compacting the data points into a row store.
+   * <p/>
+   * When a CompactRowStore is given, the words of each file are compacted into the store as soon as the file has been
+   * processed, and are not added to the FeatureSet.  Words marked to be ignored are not stored, but their nominal
+   * values are recorded, so the features of the FeatureSet, constructed from the store, are those of a FeatureSet
+   * propagated without a store.  The store must be constructed from the same FeatureSet.
+   *
+   * @param filenames the filenames containing data points.
+   * @param fs        an empty feature set to propagate
+   * @param store     a row store to receive the data points, or null to add them to the feature set
+   * @throws UnsupportedAudioFileException if the wav file doesn't work out
+   */
+  public void propagateFeatureSet(Collection<FormattedFile> filenames, FeatureSet fs, final CompactRowStore store)
+      throws UnsupportedAudioFileException, InvocationTargetException, InstantiationException, IllegalAccessException,
+      AuToBIException {
+    propagateFeatureSet(filenames, fs, store, null);
+  }
+
+  /**
+   * Receives the data points of each file as soon as the file has been processed by propagateFeatureSet.
+   */
+  public interface PropagationListener {
+    /**
+     * Called, on the thread that called propagateFeatureSet, once a file has been processed.
+     * <p/>
+     * Attribute omission has already been applied to the words.
+     *
+     * @param index the index of the file in the collection of filenames
+     * @param words the data points of the file
+     * @throws AuToBIException to abort propagation
+     */
+    void fileComplete(int index, List<Word> words) throws AuToBIException;
+  }
+
+  /**
+   * Constructs a FeatureSet from a collection of filenames, notifying a listener as each file is completed.
+   * <p/>
+   * This allows callers to consume the data points of a file, e.g. to classify and evaluate them, while the remaining
+   * files are still being processed.
+   *
+   * @param filenames the filenames containing data points.
+   * @param fs        an empty feature set to propagate
+   * @param store     a row store to receive the data points, or null to add them to the feature set
+   * @param listener  a listener to receive the data points of each file, or null
+   * @throws UnsupportedAudioFileException if the wav file doesn't work out
+   */
+  public void propagateFeatureSet(Collection<FormattedFile> filenames, FeatureSet fs, final CompactRowStore store,
+                                  final PropagationListener listener)
+      throws UnsupportedAudioFileException, InvocationTargetException, InstantiationException, IllegalAccessException,
+      AuToBIException {
 
     if (fs.getClassAttribute() == null) {
       AuToBIUtils.warn("FeatureSet has null class attribute.  Classification experiments will generate errors.");
     }
 
-    Set<Pair<String, String>> attr_omit = new HashSet<Pair<String, String>>();
+    final List<Pair<String, String>> attr_omit =
+        AuToBIUtils.parseAttributeOmission(getOptionalParameter("attribute_omit", ""));
     Set<String> temp_features = new HashSet<String>();
-    if (hasParameter("attribute_omit") && getOptionalParameter("attribute_omit", "").contains(":")) {
-      try {
-        String[] omission = getParameter("attribute_omit").split(",");
-        for (String pair : omission) {
-          String[] av_pair = pair.split(":");
-          attr_omit.add(new Pair<String, String>(av_pair[0], av_pair[1]));
-
-          if (!fs.getRequiredFeatures().contains(av_pair[0])) {
-            temp_features.add(av_pair[0]);
-            fs.insertRequiredFeature(av_pair[0]);
-          }
-        }
-      } catch (AuToBIException e) {
-        e.printStackTrace();
+    for (Pair<String, String> e : attr_omit) {
+      if (!fs.getRequiredFeatures().contains(e.first)) {
+        temp_features.add(e.first);
+        fs.insertRequiredFeature(e.first);
       }
     }
 
     // initialize moniker map and feature registry here.
     // initialization within the threadpool leads to a race condition.
     // possible_todo: make the feature registry initialization threadsafe for initialization in FeatureSetPropagator
+    TraceProfiler.Span span = TraceProfiler.begin("extraction", "propagate_feature_set")
+        .arg("files", filenames.size());
     initializeFeatureRegistry(fs);
+    feature_extractor_metrics.registerMBeans();
 
-    ExecutorService threadpool = newFixedThreadPool(Integer.parseInt(getOptionalParameter("num_threads", "1")));
-    List<Future<FeatureSet>> results = new ArrayList<Future<FeatureSet>>();
+    final List<FeatureSetPropagator> propagators = new ArrayList<FeatureSetPropagator>();
     for (FormattedFile filename : filenames) {
-      results.add(threadpool.submit(new FeatureSetPropagator(this, filename, fs)));
+      propagators.add(new FeatureSetPropagator(this, filename, fs));
     }
 
-    for (Future<FeatureSet> new_fs : results) {
-      if (new_fs != null) {
-
-        List<Word> words;
-        try {
-          if (new_fs.get() == null) {
-            throw new AuToBIException("Unexpected null response from feature set propagation.");
-          }
-          if (new_fs.get().getDataPoints() == null) {
-            throw new AuToBIException("Unexpected null FeatureSet data points.");
-          }
+    // Files are processed longest first, estimated from their wav headers.
+    double[] durations = new double[propagators.size()];
+    long[] memory = new long[propagators.size()];
+    for (int i = 0; i < propagators.size(); ++i) {
+      durations[i] = propagators.get(i).getEstimatedDuration();
+      memory[i] = propagators.get(i).getEstimatedMemory();
+    }
+    long memory_budget = Long.parseLong(getOptionalParameter("memory_budget_mb", "0")) * 1024 * 1024;
+    SizeAwareScheduler<FeatureSet> scheduler = new SizeAwareScheduler<FeatureSet>(
+        Integer.parseInt(getOptionalParameter("num_threads", "1")), memory_budget);
+
+    // By default data points are added in the order of the input files, regardless of the order that files complete.
+    final boolean deterministic_order = getBooleanParameter("deterministic_order", true);
+    final List<List<Word>> results = new ArrayList<List<Word>>(Collections.nCopies(propagators.size(),
+        (List<Word>) null));
+    final FeatureSet target_fs = fs;
+
+    scheduler.run(propagators, durations, memory, new SizeAwareScheduler.ResultHandler<FeatureSet>() {
+      public void handle(int index, FeatureSet new_fs) throws AuToBIException {
+        if (new_fs == null) {
+          throw new AuToBIException("Unexpected null response from feature set propagation.");
+        }
+        if (new_fs.getDataPoints() == null) {
+          throw new AuToBIException("Unexpected null FeatureSet data points.");
+        }
 
-          words = new_fs.get().getDataPoints();
+        List<Word> words = new_fs.getDataPoints();
 
-          // Attribute omission by attribute values.
-          // This allows a user to omit data points with particular attributes, for
-          // example, to classify only phrase ending words.
-          if (attr_omit.size() > 0) {
-            for (Word w : words) {
-              for (Pair<String, String> e : attr_omit) {
-                if (w.hasAttribute(e.first) && w.getAttribute(e.first).equals(e.second)) {
-                  w.setAttribute("__ignore__", true);
-                }
-              }
+        // Attribute omission by attribute values.
+        // This allows a user to omit data points with particular attributes, for
+        // example, to classify only phrase ending words.
+        if (attr_omit.size() > 0) {
+          for (Word w : words) {
+            if (AuToBIUtils.hasOmittedAttribute(w, attr_omit)) {
+              w.setAttribute("__ignore__", true);
             }
           }
+        }
+        if (listener != null) {
+          listener.fileComplete(index, words);
+        }
+        if (store != null) {
+          store.add(index, words);
+        } else if (deterministic_order) {
+          results.set(index, words);
+        } else {
+          target_fs.getDataPoints().addAll(words);
+        }
+        // Release the propagator's reference to the wav data and its AuToBI object.
+        propagators.set(index, null);
+      }
+    });
+
+    if (deterministic_order) {
+      for (List<Word> words : results) {
+        if (words != null) {
           fs.getDataPoints().addAll(words);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        } catch (ExecutionException e) {
-          e.printStackTrace();
         }
       }
     }
@@ -780,7 +982,18 @@ public class AuToBI {
       fs.getRequiredFeatures().remove(f);
     }
 
-    threadpool.shutdown();
+    span.end();
+
+    reportFeatureExtractorMetrics();
+
+    if (store != null) {
+      fs.setFeatures(store.getFeatureSet().getFeatures());
+      if (hasParameter("arff_file") || hasParameter("liblinear_file") || hasParameter("feature_store_file")) {
+        AuToBIUtils.warn("Data points were compacted into a row store.  No arff, liblinear or feature store file is " +
+            "written.");
+      }
+      return;
+    }
 
     fs.constructFeatures();
 
@@ -799,6 +1012,37 @@ public class AuToBI {
         e.printStackTrace();
       }
     }
+
+    if (hasParameter("feature_store_file")) {
+      try {
+        fs.writeFeatureStore(getParameter("feature_store_file"));
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Reports the feature extractor metrics accumulated by feature set propagation.
+   * <p/>
+   * A summary is logged at the debug level.  If the "extractor_metrics_file" parameter is set a JSON report is written
+   * to that file.
+   */
+  public void reportFeatureExtractorMetrics() {
+    if (AuToBIUtils.isDebugEnabled()) {
+      AuToBIUtils.debug("Feature extractor metrics:\n" + feature_extractor_metrics.getSummary());
+    }
+    if (hasParameter("extractor_metrics_file")) {
+      try {
+        String filename = getParameter("extractor_metrics_file");
+        feature_extractor_metrics.writeReport(filename);
+        AuToBIUtils.log("Wrote feature extractor metrics to: " + filename);
+      } catch (AuToBIException e) {
+        e.printStackTrace();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
   }
 
   /**
@@ -835,6 +1079,22 @@ public class AuToBI {
     return tasks;
   }
 
+  /**
+   * Constructs a HypothesisWriter for the current tasks.
+   * <p/>
+   * The output format is read from -out_format (textgrid or jsonl, default textgrid).  The hypothesis features of each
+   * task are resolved when the writer is constructed, so tasks should be initialized first.
+   *
+   * @return the hypothesis writer
+   * @throws AuToBIException if the output format is unknown
+   */
+  public HypothesisWriter newHypothesisWriter() throws AuToBIException {
+    HypothesisWriter writer = new HypothesisWriter(tasks,
+        HypothesisWriter.parseFormat(getOptionalParameter("out_format", "textgrid")));
+    writer.setDistributions(getBooleanParameter("distributions", false));
+    return writer;
+  }
+
   /**
    * Writes a TextGrid file containing words and hypothesized ToBI labels.
    *
@@ -843,11 +1103,24 @@ public class AuToBI {
    * @throws IOException If there is a problem writing to the destination file.
    */
   public void writeTextGrid(List<Word> words, String out_file) throws IOException {
-    String text_grid = generateManualLookingTextGridString(words);
+    writeHypotheses(new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID), words, out_file);
+  }
 
-    AuToBIFileWriter writer = new AuToBIFileWriter(out_file);
-    writer.write(text_grid);
-    writer.close();
+  /**
+   * Writes the hypothesized ToBI labels of a list of words to a file.
+   *
+   * @param writer   the hypothesis writer
+   * @param words    the words, with merged hypotheses
+   * @param out_file the destination file
+   * @throws IOException if there is a problem writing to the destination file.
+   */
+  public void writeHypotheses(HypothesisWriter writer, List<Word> words, String out_file) throws IOException {
+    TraceProfiler.Span span = TraceProfiler.begin("io", "write_hypotheses").arg("file", out_file);
+    try {
+      writer.write(words, out_file);
+    } finally {
+      span.end();
+    }
   }
 
   /**
@@ -859,83 +1132,10 @@ public class AuToBI {
    *
    * @param words the words to output
    * @return a string representing the textgrid contents of the words.
+   * @see HypothesisWriter#writeTextGrid(List, java.io.Writer)
    */
   public String generateManualLookingTextGridString(List<Word> words) {
-    StringBuilder text_grid = new StringBuilder();
-
-    text_grid.append("File type = \"ooTextFile\"\n");
-    text_grid.append("Object class = \"TextGrid\"\n");
-    text_grid.append("xmin = 0\n");
-    text_grid.append("xmax = ").append(words.get(words.size() - 1).getEnd()).append("\n");
-    text_grid.append("tiers? <exists>\n");
-    text_grid.append("size = 3\n");
-    text_grid.append("item []:\n");
-    text_grid.append("item [1]:\n");
-    text_grid.append("class = \"TextTier\"\n");
-    text_grid.append("name = \"tones\"\n");
-    text_grid.append("xmin = 0\n");
-    text_grid.append("xmax = ").append(words.get(words.size() - 1).getEnd()).append("\n");
-    text_grid.append("points: size = __NUM_TONES__\n");
-    int tone_num = 1;
-    for (Word w : words) {
-      if (w.hasAttribute("hyp_pitch_accent")) {
-        if (!w.getAttribute("hyp_pitch_accent").equals("DEACCENTED")) {
-          text_grid.append("points [").append(++tone_num).append("]:\n");
-          text_grid.append("time = ").append(w.getStart() + w.getDuration() / 2).append("\n");
-          text_grid.append("mark = \"").append(w.getAttribute("hyp_pitch_accent").toString()).append("\"\n");
-        }
-      }
-
-      if (w.hasAttribute("hyp_phrase_boundary")) {
-        if (!w.getAttribute("hyp_phrase_boundary").equals("NONBOUNDARY")) {
-          text_grid.append("points [").append(++tone_num).append("]:\n");
-          text_grid.append("time = ").append(w.getEnd()).append("\n");
-          text_grid.append("mark = \"").append(w.getAttribute("hyp_phrase_boundary").toString()).append("\"\n");
-        }
-      }
-    }
-
-    text_grid.append("item [2]:\n");
-    text_grid.append("class = \"IntervalTier\"\n");
-    text_grid.append("name = \"words\"\n");
-    text_grid.append("xmin = 0\n");
-    text_grid.append("xmax = ").append(words.get(words.size() - 1).getEnd()).append("\n");
-    text_grid.append("intervals: size = ").append(words.size()).append("\n");
-    for (int i = 0; i < words.size(); ++i) {
-      Word w = words.get(i);
-      text_grid.append("intervals [").append(i + 1).append("]:\n");
-      text_grid.append("xmin = ").append(w.getStart()).append("\n");
-      text_grid.append("xmax = ").append(w.getEnd()).append("\n");
-      text_grid.append("text = \"").append(w.getLabel()).append("\"\n");
-    }
-
-    text_grid.append("item [3]:\n");
-    text_grid.append("class = \"TextTier\"\n");
-    text_grid.append("name = \"breaks\"\n");
-    text_grid.append("xmin = 0\n");
-    text_grid.append("xmax = ").append(words.get(words.size() - 1).getEnd()).append("\n");
-    text_grid.append("points: size = ").append(words.size()).append("\n");
-    for (int i = 0; i < words.size(); ++i) {
-      Word w = words.get(i);
-
-      String b_label = "1";
-      if (getTasks().containsKey("intonational_phrase_boundary_detection") &&
-          w.hasAttribute(tasks.get("intonational_phrase_boundary_detection").getHypFeature()) &&
-          w.getAttribute(tasks.get("intonational_phrase_boundary_detection").getHypFeature())
-              .equals("INTONATIONAL_BOUNDARY")) {
-        b_label = "4";
-      } else if (getTasks().containsKey("intonational_phrase_boundary_detection") &&
-          w.hasAttribute(tasks.get("intermediate_phrase_boundary_detection").getHypFeature()) &&
-          w.getAttribute(tasks.get("intermediate_phrase_boundary_detection").getHypFeature())
-              .equals("INTERMEDIATE_BOUNDARY")) {
-        b_label = "3";
-      }
-      text_grid.append("points [").append(i + 1).append("]:\n");
-      text_grid.append("time = ").append(w.getEnd()).append("\n");
-      text_grid.append("mark = \"").append(b_label).append("\"\n");
-    }
-
-    return text_grid.toString().replace("__NUM_TONES__", Integer.toString(tone_num - 1));
+    return new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID).toString(words);
   }
 
 
@@ -947,95 +1147,19 @@ public class AuToBI {
    *
    * @param words the words to output
    * @return a string representing the textgrid contents of the words.
+   * @see HypothesisWriter#writeIntervalTextGrid(List, java.io.Writer)
    */
   public String generateTextGridString(List<Word> words) {
-    String text_grid = "File type = \"ooTextFile\"\n";
-    text_grid += "Object class = \"TextGrid\"\n";
-    text_grid += "xmin = 0\n";
-    text_grid += "xmax = " + words.get(words.size() - 1).getEnd() + "\n";
-    text_grid += "tiers? <exists>\n";
-    text_grid += "size = 3\n";
-    text_grid += "item []:\n";
-    text_grid += "item [1]:\n";
-    text_grid += "class = \"IntervalTier\"\n";
-    text_grid += "name = \"words\"\n";
-    text_grid += "xmin = 0\n";
-    text_grid += "xmax = " + words.get(words.size() - 1).getEnd() + "\n";
-    text_grid += "intervals: size = " + words.size() + "\n";
-    for (int i = 0; i < words.size(); ++i) {
-      Word w = words.get(i);
-      text_grid += "intervals [" + (i + 1) + "]:\n";
-      text_grid += "xmin = " + w.getStart() + "\n";
-      text_grid += "xmax = " + w.getEnd() + "\n";
-      text_grid += "text = \"" + w.getLabel() + "\"\n";
-    }
-
-
-    text_grid += "item [2]:\n";
-    text_grid += "class = \"IntervalTier\"\n";
-    text_grid += "name = \"pitch_accent_hypothesis\"\n";
-    text_grid += "xmin = 0\n";
-    text_grid += "xmax = " + words.get(words.size() - 1).getEnd() + "\n";
-    text_grid += "intervals: size = " + words.size() + "\n";
-    for (int i = 0; i < words.size(); ++i) {
-      Word w = words.get(i);
-      String text = "";
-      if (getBooleanParameter("distributions", false)) {
-        String det_dist_feature = tasks.get("pitch_accent_detection").getDistFeature();
-        String class_dist_feature = tasks.get("pitch_accent_classification").getDistFeature();
-        if (w.hasAttribute(det_dist_feature)) {
-          text = w.getAttribute(det_dist_feature).toString();
-        }
-        if (w.hasAttribute(class_dist_feature)) {
-          text += w.getAttribute(class_dist_feature).toString();
-        }
-      } else {
-        if (w.hasAttribute("hyp_pitch_accent")) {
-          text = w.getAttribute("hyp_pitch_accent").toString();
-        }
-      }
-
-      text_grid += "intervals [" + (i + 1) + "]:\n";
-      text_grid += "xmin = " + w.getStart() + "\n";
-      text_grid += "xmax = " + w.getEnd() + "\n";
-      text_grid += "text = \"" + text + "\"\n";
-    }
-
-    text_grid += "item [3]:\n";
-    text_grid += "class = \"IntervalTier\"\n";
-    text_grid += "name = \"phrase_hypothesis\"\n";
-    text_grid += "xmin = 0\n";
-    text_grid += "xmax = " + words.get(words.size() - 1).getEnd() + "\n";
-    text_grid += "intervals: size = " + words.size() + "\n";
-    for (int i = 0; i < words.size(); ++i) {
-      Word w = words.get(i);
-
-      String text = "";
-      if (getBooleanParameter("distributions", false)) {
-        if (w.hasAttribute(tasks.get("intonational_phrase_boundary_detection").getDistFeature())) {
-          text = w.getAttribute(tasks.get("intonational_phrase_boundary_detection").getDistFeature()).toString();
-        }
-        if (w.hasAttribute(tasks.get("intermediate_phrase_boundary_detection").getDistFeature())) {
-          text = w.getAttribute(tasks.get("intermediate_phrase_boundary_detection").getDistFeature()).toString();
-        }
-        if (w.hasAttribute(tasks.get("boundary_tone_classification").getDistFeature())) {
-          text += w.getAttribute(tasks.get("boundary_tone_classification").getDistFeature()).toString();
-        }
-        if (w.hasAttribute(tasks.get("phrase_accent_classification").getDistFeature())) {
-          text += w.getAttribute(tasks.get("phrase_accent_classification").getDistFeature()).toString();
-        }
-      } else {
-        if (w.hasAttribute("hyp_phrase_boundary")) {
-          text = w.getAttribute("hyp_phrase_boundary").toString();
-        }
-      }
-
-      text_grid += "intervals [" + (i + 1) + "]:\n";
-      text_grid += "xmin = " + w.getStart() + "\n";
-      text_grid += "xmax = " + w.getEnd() + "\n";
-      text_grid += "text = \"" + text + "\"\n";
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID);
+    writer.setDistributions(getBooleanParameter("distributions", false));
+    StringWriter text_grid = new StringWriter();
+    try {
+      writer.writeIntervalTextGrid(words, text_grid);
+    } catch (IOException e) {
+      // StringWriters do not throw IOExceptions.
+      throw new RuntimeException(e);
     }
-    return text_grid;
+    return text_grid.toString();
   }
 
   /**
@@ -1163,10 +1287,8 @@ public class AuToBI {
             registerFeatureExtractor(new ContourFeatureExtractor(slope + norm + acoustic + subregion));
 
             // Region based Context Features
-            for (ContextDesc context : contexts) {
-              registerFeatureExtractor(
-                  new ContextNormalizedFeatureExtractor(slope + norm + acoustic + subregion, context));
-            }
+            registerFeatureExtractor(
+                new MultiContextNormalizedFeatureExtractor(slope + norm + acoustic + subregion, contexts));
 
             // Temporal based Context Features
             for (int prev = 0; prev < 3; prev++) {
@@ -1183,18 +1305,16 @@ public class AuToBI {
 
     registerFeatureExtractor(new SpectrumFeatureExtractor());
 
+    List<Pair<Integer, Integer>> bands = new ArrayList<Pair<Integer, Integer>>();
     for (int low = 0; low <= 19; ++low) {
       for (int high = low + 1; high <= 20; ++high) {
         registerFeatureExtractor(new SpectralTiltFeatureExtractor(low, high));
-        registerFeatureExtractor(new SpectrumBandFeatureExtractor(low, high));
+        bands.add(new Pair<Integer, Integer>(low, high));
 
         for (String feature_prefix : new String[]{"bark_tilt", "bark"}) {
           String feature_name = feature_prefix + "_" + low + "_" + high;
           // Region based Context Features
-          for (ContextDesc context : contexts) {
-            registerFeatureExtractor(
-                new ContextNormalizedFeatureExtractor(feature_name, context));
-          }
+          registerFeatureExtractor(new MultiContextNormalizedFeatureExtractor(feature_name, contexts));
 
           // Temporal based Context Features
           for (int prev = 0; prev < 3; prev++) {
@@ -1206,6 +1326,7 @@ public class AuToBI {
         }
       }
     }
+    registerFeatureExtractor(new MultiSpectrumBandFeatureExtractor(bands));
     registerFeatureExtractor(new DurationFeatureExtractor());
 
     ////////////////////
@@ -1345,18 +1466,10 @@ public class AuToBI {
                 " is not a valid PitchAccentDetectionClassifierCollection");
       }
 
-      // Register appropriate feature extractors for each classifier in the collection
+      // Register a single feature extractor to evaluate every classifier in the collection
       Integer high_bark = Integer.parseInt(getOptionalParameter("high_bark", "20"));
-      for (int low = 0; low < high_bark; ++low) {
-        for (int high = low + 1; high <= high_bark; ++high) {
-          registerFeatureExtractor(
-              new SpectrumPADFeatureExtractor(low, high, pacc.getPitchAccentDetector(low, high),
-                  new SpectrumPADFeatureSet(low, high)));
-          registerFeatureExtractor(
-              new CorrectionSpectrumPADFeatureExtractor(low, high, pacc.getCorrectionClassifier(low, high),
-                  new CorrectionSpectrumPADFeatureSet(low, high)));
-        }
-      }
+      registerFeatureExtractor(new MultiSpectrumPADFeatureExtractor(pacc, high_bark,
+          Integer.parseInt(getOptionalParameter("num_threads", "1"))));
     } catch (ClassNotFoundException e) {
       e.printStackTrace();
     } catch (FileNotFoundException e) {
@@ -1410,6 +1523,307 @@ public class AuToBI {
     autobi.init(args);
 
     autobi.run();
+    autobi.writeProfileTrace();
+  }
+
+  /**
+   * Reads a hypothesis checkpoint of a list of words.
+   * <p/>
+   * If the checkpoint does not exist, cannot be read, or was written for different words, null is returned and every
+   * feature is extracted.
+   *
+   * @param filename the checkpoint file
+   * @param words    the words
+   * @return the checkpoint, or null if it cannot be used
+   */
+  public HypothesisCheckpoint readCheckpoint(String filename, List<Word> words) {
+    if (!new File(filename).exists()) {
+      return null;
+    }
+    try {
+      HypothesisCheckpoint checkpoint = HypothesisCheckpoint.read(filename);
+      if (!checkpoint.matches(words)) {
+        AuToBIUtils.warn("Checkpoint, " + filename + ", was written for different words.  Extracting all features.");
+        return null;
+      }
+      return checkpoint;
+    } catch (IOException e) {
+      AuToBIUtils.warn("Unable to read checkpoint, " + filename + ": " + e.getMessage());
+    } catch (AuToBIException e) {
+      AuToBIUtils.warn(e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Writes the stored features and hypotheses of a feature set to a checkpoint, along with the fingerprint of each
+   * task's model file.
+   *
+   * @param filename the checkpoint file
+   * @param source   a description of the source of the data points
+   * @param fs       the feature set
+   * @throws IOException if the checkpoint cannot be written
+   */
+  public void writeCheckpoint(String filename, String source, FeatureSet fs) throws IOException {
+    TraceProfiler.Span span = TraceProfiler.begin("io", "write_checkpoint").arg("file", filename);
+    try {
+      new HypothesisCheckpoint(source, fs.getDataPoints(), fs.getRequiredFeatures(), getModelFingerprints()).write(
+          filename);
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Calculates a fingerprint of the model file of each task.
+   * <p/>
+   * The model file of a task is the one given by its model parameter, e.g. -pitch_accent_detector.  Tasks without a
+   * model file, or whose model file cannot be read, are omitted, and so are always considered changed.
+   *
+   * @return the fingerprint of each task's model file
+   */
+  public HashMap<String, String> getModelFingerprints() {
+    HashMap<String, String> fingerprints = new HashMap<String, String>();
+    for (String task : tasks.keySet()) {
+      String model_file = tasks.get(task).getModelFile();
+      if (model_file == null) {
+        continue;
+      }
+      try {
+        fingerprints.put(task, HypothesisCheckpoint.fingerprint(model_file));
+      } catch (IOException e) {
+        AuToBIUtils.warn("Unable to read model file, " + model_file + ": " + e.getMessage());
+      }
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Identifies the tasks whose hypotheses in a checkpoint are out of date.
+   * <p/>
+   * A task is out of date if its model file has changed since the checkpoint was written, if the checkpoint does not
+   * contain its hypotheses, or if it requires, directly or through other features, a hypothesis of an out of date
+   * task.  The feature registry must be initialized.
+   *
+   * @param checkpoint the checkpoint
+   * @return the identifiers of the out of date tasks
+   */
+  public Set<String> getStaleTasks(HypothesisCheckpoint checkpoint) {
+    Map<String, String> fingerprints = getModelFingerprints();
+    Set<String> stale = new HashSet<String>();
+    Set<String> stale_features = new HashSet<String>();
+    for (String task : tasks.keySet()) {
+      AuToBITask autobi_task = tasks.get(task);
+      String fingerprint = fingerprints.get(task);
+      if (fingerprint == null || !fingerprint.equals(checkpoint.getModelFingerprint(task)) ||
+          !checkpoint.hasFeature(autobi_task.getHypFeature()) ||
+          (getBooleanParameter("distributions", false) && !checkpoint.hasFeature(autobi_task.getDistFeature()))) {
+        stale.add(task);
+        stale_features.add(autobi_task.getHypFeature());
+        stale_features.add(autobi_task.getDistFeature());
+      }
+    }
+
+    // Tasks downstream of a stale hypothesis are stale too.
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (String task : tasks.keySet()) {
+        if (stale.contains(task)) {
+          continue;
+        }
+        AuToBITask autobi_task = tasks.get(task);
+        if (!Collections.disjoint(getFeatureDependencies(autobi_task.getHypFeature()), stale_features)) {
+          stale.add(task);
+          stale_features.add(autobi_task.getHypFeature());
+          stale_features.add(autobi_task.getDistFeature());
+          changed = true;
+        }
+      }
+    }
+    return stale;
+  }
+
+  /**
+   * Retrieves every feature that the extraction of a feature depends on, according to the feature registry.
+   *
+   * @param feature the feature
+   * @return the features required, directly or indirectly, to extract the feature
+   */
+  public Set<String> getFeatureDependencies(String feature) {
+    Set<String> dependencies = new HashSet<String>();
+    Stack<String> features = new Stack<String>();
+    features.add(feature);
+    while (!features.isEmpty()) {
+      FeatureExtractor extractor = feature_registry.get(features.pop());
+      if (extractor == null) {
+        continue;
+      }
+      for (String required : extractor.getRequiredFeatures()) {
+        if (dependencies.add(required)) {
+          features.add(required);
+        }
+      }
+    }
+    return dependencies;
+  }
+
+  /**
+   * Restores the features and up to date hypotheses of a feature set from a checkpoint.
+   * <p/>
+   * Restored features are registered with null feature extractors, so that only the hypotheses of out of date tasks,
+   * the features that depend on them, and any features the checkpoint lacks, are extracted by a subsequent call to
+   * extractFeatures.  The feature registry
+   * must be initialized.
+   *
+   * @param checkpoint the checkpoint
+   * @param fs         the feature set, containing the words of the checkpoint
+   * @return the identifiers of the tasks that must be re-run
+   * @throws AuToBIException if the words do not match the checkpoint
+   */
+  public Set<String> restoreFromCheckpoint(HypothesisCheckpoint checkpoint, FeatureSet fs) throws AuToBIException {
+    Set<String> stale = getStaleTasks(checkpoint);
+    Set<String> recomputed = new HashSet<String>();
+    for (String task : stale) {
+      recomputed.add(tasks.get(task).getHypFeature());
+      recomputed.add(tasks.get(task).getDistFeature());
+    }
+
+    // Features derived, directly or through other features, from a recomputed hypothesis are recomputed too.
+    List<String> restored = new ArrayList<String>();
+    for (String feature : checkpoint.getFeatureNames()) {
+      if (!recomputed.contains(feature) && feature_registry.containsKey(feature) &&
+          Collections.disjoint(getFeatureDependencies(feature), recomputed)) {
+        restored.add(feature);
+      }
+    }
+    checkpoint.restore(fs.getDataPoints(), restored);
+    for (String feature : restored) {
+      registerNullFeatureExtractor(feature);
+    }
+
+    Set<String> reused = new TreeSet<String>(tasks.keySet());
+    reused.removeAll(stale);
+    AuToBIUtils.info("Restored " + restored.size() + " features from checkpoint.  Re-running tasks: " +
+        new TreeSet<String>(stale) + ".  Reusing hypotheses of: " + reused);
+    return stale;
+  }
+
+  /**
+   * Initializes the AuToBI tasks and constructs an empty FeatureSet requiring the hypotheses of every task.
+   * <p/>
+   * A hypothesized event feature extractor is registered for each task with an available classifier.
+   *
+   * @return the feature set
+   */
+  public FeatureSet initializeHypothesisFeatureSet() {
+    FeatureSet autobi_fs = new FeatureSet();
+    initializeAuToBITasks();
+
+    for (AuToBITask task : tasks.values()) {
+      FeatureSet fs = task.getFeatureSet();
+      AuToBIClassifier classifier = task.getClassifier();
+
+      if (classifier == null) {
+        AuToBIUtils.error("Classifier for task, " + task.getTrueFeature() + ", is unavailable. Check the filename.");
+        continue;
+      }
+      if (classifier instanceof EnsembleSampledClassifier) {
+        ((EnsembleSampledClassifier) classifier)
+            .setNumThreads(Integer.parseInt(getOptionalParameter("num_threads", "1")));
+      }
+
+      String hyp_feature = task.getHypFeature();
+      registerFeatureExtractor(new HypothesizedEventFeatureExtractor(hyp_feature, classifier, fs));
+      autobi_fs.insertRequiredFeature(hyp_feature);
+
+      if (getBooleanParameter("distributions", false)) {
+        String dist_feature = task.getDistFeature();
+        registerFeatureExtractor(new HypothesizedDistributionFeatureExtractor(dist_feature, classifier, fs));
+        autobi_fs.insertRequiredFeature(dist_feature);
+      }
+      if (hasParameter("arff_file") || hasParameter("feature_store_file") || hasParameter("checkpoint_file")) {
+        // If a user is writing the features to an arff file, a feature store or a checkpoint, make the features used
+        // in any classification "required" so they persist.
+        for (String s : fs.getRequiredFeatures()) {
+          autobi_fs.insertRequiredFeature(s);
+        }
+      }
+      autobi_fs.insertRequiredFeature(fs.getClassAttribute());
+    }
+    return autobi_fs;
+  }
+
+  /**
+   * Hypothesizes prosodic events on a collection of files, writing the hypotheses of each file to an output directory.
+   * <p/>
+   * Each file is named after its input file with the extension of -out_format.  The wav file of each input file is
+   * found by replacing its extension with ".wav".  The hypotheses of each file are merged on the calling thread as the
+   * file completes, then written on a pool of -output_threads threads (default 1), so formatting and writing the output
+   * does not delay the extraction of the remaining files.  Evaluation results for each task are logged once every file
+   * has been processed.
+   *
+   * @param files   the input files
+   * @param out_dir the output directory
+   * @throws UnsupportedAudioFileException if a wav file cannot be read
+   * @throws InvocationTargetException     if a feature extractor cannot be constructed
+   * @throws InstantiationException        if a feature extractor cannot be constructed
+   * @throws IllegalAccessException        if a feature extractor cannot be constructed
+   * @throws AuToBIException               if propagation fails or an output file cannot be written
+   */
+  public void runBatch(final List<FormattedFile> files, final String out_dir)
+      throws UnsupportedAudioFileException, InvocationTargetException, InstantiationException, IllegalAccessException,
+      AuToBIException {
+    FeatureSet autobi_fs = initializeHypothesisFeatureSet();
+    final HypothesisWriter writer = newHypothesisWriter();
+    final String extension =
+        HypothesisWriter.getExtension(HypothesisWriter.parseFormat(getOptionalParameter("out_format", "textgrid")));
+    final List<Future<?>> futures = new ArrayList<Future<?>>();
+    final ExecutorService io_executor =
+        Executors.newFixedThreadPool(Math.max(1, Integer.parseInt(getOptionalParameter("output_threads", "1"))));
+    try {
+      propagateFeatureSet(files, autobi_fs, null, new PropagationListener() {
+        public void fileComplete(int index, final List<Word> words) {
+          if (words.isEmpty()) {
+            return;
+          }
+          String name = new File(files.get(index).getFilename()).getName();
+          if (name.lastIndexOf('.') > 0) {
+            name = name.substring(0, name.lastIndexOf('.'));
+          }
+          final String out_file = new File(out_dir, name + extension).getPath();
+          // Merging modifies the words, so it must not overlap the rest of propagation on this thread.
+          writer.mergeHypotheses(words);
+          futures.add(io_executor.submit(new Callable<Object>() {
+            public Object call() throws IOException {
+              AuToBIUtils.info("Writing hypotheses to " + out_file);
+              writeHypotheses(writer, words, out_file);
+              return null;
+            }
+          }));
+        }
+      });
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new AuToBIException("Interrupted while waiting for hypotheses to be written.");
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause() == null ? e : e.getCause();
+          throw new AuToBIException(cause.getMessage());
+        }
+      }
+    } finally {
+      io_executor.shutdownNow();
+    }
+
+    TraceProfiler.Span span = TraceProfiler.begin("evaluate", "evaluate_tasks");
+    for (String task : getClassificationTasks()) {
+      AuToBIUtils.info(task);
+      AuToBIUtils.info(evaluateTaskPerformance(task, autobi_fs));
+    }
+    span.end();
   }
 
   public void run() {
@@ -1424,6 +1838,22 @@ public class AuToBI {
                 "specified.");
       }
 
+      if (file_types == 0 && hasParameter("chunk_duration")) {
+        AuToBIUtils.info(
+            "No -input_file or -cprom_file filename specified.  Generating segmentation based on acoustic " +
+                "pseudosyllabification of successive chunks.");
+        if (hasParameter("out_file")) {
+          AuToBIUtils.info("Writing hypotheses to " + getParameter("out_file") + " as each chunk is classified");
+        }
+        new PseudosyllablePipeline(this).run(getParameter("wav_file"), getOptionalParameter("out_file"));
+        return;
+      }
+
+      if (hasParameter("input_files")) {
+        runBatch(AuToBIReaderUtils.globFormattedFiles(getParameter("input_files")), getParameter("out_dir"));
+        return;
+      }
+
       // TODO: support reading sph files.
       String wav_filename = getParameter("wav_file");
       WavReader reader = new WavReader();
@@ -1462,6 +1892,9 @@ public class AuToBI {
         } else {
           word_reader = new PseudosyllableWordReader(wav);
         }
+        if (getOptionalParameter("syllabifier", "villing").equals("em")) {
+          ((PseudosyllableWordReader) word_reader).setSyllabifier(new EMSyllabifier());
+        }
       }
       AuToBIUtils.log("Reading words from: " + filename);
 
@@ -1474,64 +1907,53 @@ public class AuToBI {
         word_reader.setSilenceRegex(getParameter("silence_regex"));
       }
 
+      TraceProfiler.Span span = TraceProfiler.begin("io", "read_words");
       List<Word> words = word_reader.readWords();
+      span.arg("words", words.size()).end();
 
-      FeatureSet autobi_fs = new FeatureSet();
+      FeatureSet autobi_fs = initializeHypothesisFeatureSet();
       autobi_fs.setDataPoints(words);
       for (Word w : words) {
         w.setAttribute("wav", wav);
       }
-      initializeAuToBITasks();
-
-      for (AuToBITask task : tasks.values()) {
-        FeatureSet fs = task.getFeatureSet();
-        AuToBIClassifier classifier = task.getClassifier();
-
-        if (classifier == null) {
-          AuToBIUtils.error("Classifier for task, " + task.getTrueFeature() + ", is unavailable. Check the filename.");
-          continue;
-        }
-
-        String hyp_feature = task.getHypFeature();
-        registerFeatureExtractor(new HypothesizedEventFeatureExtractor(hyp_feature, classifier, fs));
-        autobi_fs.insertRequiredFeature(hyp_feature);
-
-        if (getBooleanParameter("distributions", false)) {
-          String dist_feature = task.getDistFeature();
-          registerFeatureExtractor(new HypothesizedDistributionFeatureExtractor(dist_feature, classifier, fs));
-          autobi_fs.insertRequiredFeature(dist_feature);
-        }
-        if (hasParameter("arff_file")) {
-          // If a user is writing the features to an arff file, make the features used in any classification
-          // "required" so
-          // they persist.
-          for (String s : fs.getRequiredFeatures()) {
-            autobi_fs.insertRequiredFeature(s);
-          }
-        }
-        autobi_fs.insertRequiredFeature(fs.getClassAttribute());
-      }
       // AR: why not use the feature set propagator here?  move the reader information down here after constructing a
       // big autobi_fs feature set including all of the extracted features.  This will simplify the code and unify
       // AuToBI, AuToBITrainer and AuToBITrainTest a little more
       initializeFeatureRegistry(autobi_fs);
+      if (hasParameter("checkpoint_file")) {
+        HypothesisCheckpoint checkpoint = readCheckpoint(getParameter("checkpoint_file"), words);
+        if (checkpoint != null) {
+          restoreFromCheckpoint(checkpoint, autobi_fs);
+        }
+      }
+      span = TraceProfiler.begin("extraction", "extract_features").arg("file", wav_filename);
       extractFeatures(autobi_fs);
+      span.end();
+      if (hasParameter("checkpoint_file")) {
+        writeCheckpoint(getParameter("checkpoint_file"), wav_filename, autobi_fs);
+      }
       autobi_fs.constructFeatures();
 
       if (hasParameter("arff_file")) {
         autobi_fs.writeArff(getParameter("arff_file"), "AuToBIGenerated");
       }
+      if (hasParameter("feature_store_file")) {
+        autobi_fs.writeFeatureStore(getParameter("feature_store_file"));
+      }
 
+      span = TraceProfiler.begin("evaluate", "evaluate_tasks");
       for (String task : getClassificationTasks()) {
         AuToBIUtils.info(task);
         AuToBIUtils.info(evaluateTaskPerformance(task, autobi_fs));
       }
+      span.end();
 
       if (hasParameter("out_file")) {
-        AuToBIUtils.mergeAuToBIHypotheses(this, words);
+        HypothesisWriter writer = newHypothesisWriter();
+        writer.mergeHypotheses(words);
         String hypothesis_file = getParameter("out_file");
         AuToBIUtils.info("Writing hypotheses to " + hypothesis_file);
-        writeTextGrid(words, hypothesis_file);
+        writeHypotheses(writer, words, hypothesis_file);
       }
     } catch (AuToBIException e) {
       e.printStackTrace();
@@ -1583,6 +2005,34 @@ public class AuToBI {
     this.params = params;
   }
 
+  /**
+   * Retrieves the metrics recorded for executed FeatureExtractors.
+   *
+   * @return the feature extractor metrics
+   */
+  public FeatureExtractorMetrics getFeatureExtractorMetrics() {
+    return feature_extractor_metrics;
+  }
+
+  /**
+   * Sets the object used to record FeatureExtractor metrics.  This allows several AuToBI objects to share metrics.
+   *
+   * @param metrics the feature extractor metrics
+   */
+  public void setFeatureExtractorMetrics(FeatureExtractorMetrics metrics) {
+    this.feature_extractor_metrics = metrics;
+  }
+
+  /**
+   * Sets the name of the file whose data points are being processed.  Subsequent FeatureExtractor metrics are
+   * attributed to this file.
+   *
+   * @param file the file name
+   */
+  public void setMetricsFile(String file) {
+    this.metrics_file = file;
+  }
+
   /**
    * Sets the Moniker Map between strings and classes.
    *
@@ -22,11 +22,13 @@
  */
 package edu.cuny.qc.speech.AuToBI;
 
+import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
 import edu.cuny.qc.speech.AuToBI.core.*;
 import edu.cuny.qc.speech.AuToBI.io.*;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIReaderUtils;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
+import edu.cuny.qc.speech.AuToBI.util.TraceProfiler;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.FileNotFoundException;
@@ -35,6 +37,12 @@ import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AuToBITrainTest {
   public static void main(String[] args) {
@@ -65,6 +73,7 @@ public class AuToBITrainTest {
 
 
       HashMap<String, AuToBITask> tasks = AuToBIUtils.createTaskListFromParameters(autobi.getParameters(), false);
+      autobi.tasks = tasks;
 
       if (tasks.size() == 0) {
         AuToBIUtils.warn(
@@ -75,34 +84,63 @@ public class AuToBITrainTest {
         return;
       }
 
+      // With shared extraction, the features of every task are extracted in one pass over the training files and
+      // one pass over the testing files.
+      boolean shared_extraction = autobi.getBooleanParameter("shared_extraction", false);
+      // With streaming evaluation, each testing file is classified and evaluated as soon as its features have been
+      // extracted.
+      boolean streaming_evaluation = autobi.getBooleanParameter("streaming_evaluation", false);
+      FeatureSet shared_training = null;
+      FeatureSet shared_testing = null;
+      boolean[] reader_ignored = null;
+      HashMap<String, String> attribute_omit = new HashMap<String, String>();
       for (String task_label : tasks.keySet()) {
-        AuToBITask task = tasks.get(task_label);
+        attribute_omit.put(task_label, AuToBITrainer.getAttributeOmission(autobi, task_label));
+      }
+      if (shared_extraction) {
         AuToBITrainer trainer = new AuToBITrainer(autobi);
         try {
+          shared_training = trainer.propagateSharedFeatureSet(training_files, tasks.values(), attribute_omit.values());
+        } catch (Exception e) {
+          e.printStackTrace();
+          AuToBIUtils.error("Error extracting shared training features");
+          return;
+        }
+        shared_testing = AuToBITrainer.getSharedFeatureSet(tasks.values(), attribute_omit.values());
+        autobi.propagateFeatureSet(testing_files, shared_testing);
+        reader_ignored = new boolean[shared_testing.getDataPoints().size()];
+        for (int i = 0; i < reader_ignored.length; ++i) {
+          Word w = shared_testing.getDataPoints().get(i);
+          reader_ignored[i] = w.hasAttribute("__ignore__") && w.getAttribute("__ignore__").equals(true);
+        }
+      }
 
-          // Tone classification tasks ignore those points that do not have any associated prosodic event
-          if (task_label.equals("pitch_accent_classification")) {
-            autobi.getParameters().setParameter("attribute_omit", "nominal_PitchAccentType:NOACCENT");
-          } else if (task_label.equals("phrase_accent_boundary_tone_classification")) {
-            autobi.getParameters().setParameter("attribute_omit", "nominal_PhraseAccentBoundaryTone:NOTONE");
-          } else if (task_label.equals("phrase_accent_classification")) {
-            autobi.getParameters().setParameter("attribute_omit", "nominal_PhraseAccent:NOTONE");
-          } else if (task_label.equals("intermediate_phrase_boundary_detection")) {
-            autobi.getParameters()
-                .setParameter("attribute_omit", "nominal_IntermediatePhraseBoundary:INTONATIONAL_BOUNDARY");
+      for (String task_label : tasks.keySet()) {
+        AuToBITask task = tasks.get(task_label);
+        AuToBITrainer trainer = new AuToBITrainer(autobi);
+        try {
+          if (shared_extraction) {
+            trainer.trainClassifier(shared_training, task, attribute_omit.get(task_label));
           } else {
-            autobi.getParameters().setParameter("attribute_omit", "");
+            autobi.getParameters().setParameter("attribute_omit", attribute_omit.get(task_label));
+            trainer.trainClassifier(training_files, task.getFeatureSet(), task.getClassifier());
           }
-          trainer.trainClassifier(training_files, task.getFeatureSet(), task.getClassifier());
-
         } catch (Exception e) {
           e.printStackTrace();
           AuToBIUtils.error("Error training classifier for " + task_label);
           continue;
         }
-        FeatureSet testing_fs = task.getFeatureSet().newInstance();
-        testing_fs.getDataPoints().clear();
-        autobi.propagateFeatureSet(testing_files, testing_fs);
+        FeatureSet testing_fs;
+        EvaluationAccumulator accumulator = null;
+        if (shared_extraction) {
+          testing_fs = getSharedTestingFeatureSet(task, shared_testing, reader_ignored, attribute_omit.get(task_label));
+        } else if (streaming_evaluation) {
+          testing_fs = newTestingFeatureSet(task);
+          accumulator = evaluateWhilePropagating(autobi, testing_files, testing_fs, task, task_label);
+        } else {
+          testing_fs = newTestingFeatureSet(task);
+          autobi.propagateFeatureSet(testing_files, testing_fs);
+        }
 
         if (autobi.hasParameter("testing_arff_file")) {
           testing_fs.writeArff(autobi.getParameter("testing_arff_file"), "AuToBIGenerated");
@@ -116,6 +154,7 @@ public class AuToBITrainTest {
         AuToBIUtils.log("writing model to: " + autobi.getParameter(task_label));
         FileOutputStream fos;
         ObjectOutputStream out;
+        TraceProfiler.Span span = TraceProfiler.begin("io", "write_model");
         try {
           fos = new FileOutputStream(autobi.getParameter(task_label));
           out = new ObjectOutputStream(fos);
@@ -125,13 +164,22 @@ public class AuToBITrainTest {
           e.printStackTrace();
         } catch (IOException e) {
           e.printStackTrace();
+        } finally {
+          span.end();
         }
 
-        // prediction on test set
-        ClassifierUtils.generatePredictions(task.getClassifier(), "hyp", "DEFAULT", testing_fs);
+        EvaluationResults er;
+        if (accumulator != null) {
+          // the testing files were classified and counted as they were propagated.
+          er = accumulator.getResults();
+        } else {
+          // prediction on test set
+          ClassifierUtils.generatePredictions(task.getClassifier(), "hyp", "DEFAULT", testing_fs);
 
-        EvaluationResults er =
-            ClassifierUtils.generateEvaluationResults("hyp", testing_fs.getClassAttribute(), testing_fs);
+          span = TraceProfiler.begin("evaluate", task_label);
+          er = ClassifierUtils.generateEvaluationResults("hyp", testing_fs.getClassAttribute(), testing_fs);
+          span.end();
+        }
 
         EvaluationSummary es = new EvaluationSummary(er);
 
@@ -150,5 +198,122 @@ public class AuToBITrainTest {
     } catch (IOException e) {
       e.printStackTrace();
     }
+    autobi.writeProfileTrace();
+  }
+
+  /**
+   * Propagates the testing feature set while classifying and evaluating each file as soon as it has been processed.
+   * <p/>
+   * Each file is classified and counted on one of -evaluation_threads worker threads, so classification overlaps the
+   * extraction of the remaining files.  More than one worker requires a classifier that is safe to call concurrently.
+   * With -evaluation_report_interval N, a summary of the files evaluated so far is logged after every N files.
+   * <p/>
+   * Propagation continues to read the words of completed files on the calling thread, so workers only read them; the
+   * hypotheses are counted without being stored on the words.
+   *
+   * @param autobi      the AuToBI object
+   * @param files       the testing files
+   * @param testing_fs  an empty feature set to propagate
+   * @param task        the task, with a trained classifier
+   * @param task_label  the task label
+   * @return the accumulated evaluation of every testing file
+   * @throws UnsupportedAudioFileException if a wav file cannot be read
+   * @throws InvocationTargetException     if a feature extractor cannot be constructed
+   * @throws InstantiationException        if a feature extractor cannot be constructed
+   * @throws IllegalAccessException        if a feature extractor cannot be constructed
+   * @throws AuToBIException               if propagation, classification or evaluation fails
+   */
+  private static EvaluationAccumulator evaluateWhilePropagating(AuToBI autobi, List<FormattedFile> files,
+                                                                final FeatureSet testing_fs, AuToBITask task,
+                                                                final String task_label)
+      throws UnsupportedAudioFileException, InvocationTargetException, InstantiationException, IllegalAccessException,
+      AuToBIException {
+    final AuToBIClassifier classifier = task.getClassifier();
+    final EvaluationAccumulator accumulator = new EvaluationAccumulator();
+    final int report_interval = Integer.parseInt(autobi.getOptionalParameter("evaluation_report_interval", "0"));
+    final AtomicInteger completed = new AtomicInteger();
+    final List<Future<?>> futures = new ArrayList<Future<?>>();
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.max(1, Integer.parseInt(
+            autobi.getOptionalParameter("evaluation_threads", "1"))));
+    try {
+      autobi.propagateFeatureSet(files, testing_fs, null, new AuToBI.PropagationListener() {
+        public void fileComplete(final int index, final List<Word> words) {
+          futures.add(executor.submit(new Callable<Object>() {
+            public Object call() throws AuToBIException {
+              // The words are still read by propagation on the calling thread, so they are classified without
+              // storing the hypotheses on them.
+              List<String> hypotheses = ClassifierUtils.classify(classifier, "DEFAULT", words);
+
+              EvaluationAccumulator.Partial partial = new EvaluationAccumulator.Partial();
+              ClassifierUtils.accumulateEvaluation(partial, hypotheses, testing_fs.getClassAttribute(), words);
+              accumulator.commit(index, partial);
+
+              int n = completed.incrementAndGet();
+              if (report_interval > 0 && n % report_interval == 0) {
+                AuToBIUtils.log("Test Results on " + n + " test files for " + task_label + "\n" +
+                    accumulator.getSummary().toString());
+              }
+              return null;
+            }
+          }));
+        }
+      });
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new AuToBIException("Interrupted while waiting for evaluation to complete.");
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause() == null ? e : e.getCause();
+          throw new AuToBIException(cause.getMessage());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return accumulator;
+  }
+
+  /**
+   * Constructs an empty testing feature set for a task.
+   *
+   * @param task the task
+   * @return the feature set
+   */
+  private static FeatureSet newTestingFeatureSet(AuToBITask task) {
+    FeatureSet testing_fs = task.getFeatureSet().newInstance();
+    testing_fs.getDataPoints().clear();
+    return testing_fs;
+  }
+
+  /**
+   * Constructs the testing feature set of a task from the shared testing data points.
+   * <p/>
+   * The shared data points omitted by the task are marked to be ignored, as propagation would mark them for the task
+   * on its own, and the features of the testing feature set are constructed.
+   *
+   * @param task           the task
+   * @param shared_testing the shared testing feature set
+   * @param reader_ignored whether each shared data point was marked to be ignored when it was read
+   * @param omission       the attribute omission description of the task
+   * @return the testing feature set
+   */
+  static FeatureSet getSharedTestingFeatureSet(AuToBITask task, FeatureSet shared_testing, boolean[] reader_ignored,
+                                               String omission) {
+    FeatureSet testing_fs = newTestingFeatureSet(task);
+    List<Pair<String, String>> omitted = AuToBIUtils.parseAttributeOmission(omission);
+    for (int i = 0; i < reader_ignored.length; ++i) {
+      Word w = shared_testing.getDataPoints().get(i);
+      if (reader_ignored[i] || AuToBIUtils.hasOmittedAttribute(w, omitted)) {
+        w.setAttribute("__ignore__", true);
+      } else if (w.hasAttribute("__ignore__")) {
+        w.setAttribute("__ignore__", false);
+      }
+    }
+    testing_fs.getDataPoints().addAll(shared_testing.getDataPoints());
+    testing_fs.constructFeatures();
+    return testing_fs;
   }
-}
\ No newline at end of file
+}
@@ -24,13 +24,18 @@
 package edu.cuny.qc.speech.AuToBI;
 
 import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
+import edu.cuny.qc.speech.AuToBI.classifier.EnsembleSampledClassifier;
+import edu.cuny.qc.speech.AuToBI.classifier.WekaClassifier;
 import edu.cuny.qc.speech.AuToBI.core.*;
 import edu.cuny.qc.speech.AuToBI.io.*;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIReaderUtils;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
+import edu.cuny.qc.speech.AuToBI.util.TraceProfiler;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -75,10 +80,20 @@ public class AuToBITrainer {
    */
   public void trainClassifier(Collection<FormattedFile> filenames, FeatureSet fs, AuToBIClassifier classifier)
       throws Exception {
+    if (autobi.hasParameter("training_feature_store")) {
+      trainClassifierFromFeatureStore(autobi.getParameter("training_feature_store"), fs, classifier);
+      return;
+    }
+
     if (filenames.size() == 0) {
       throw new AuToBIException("No filenames specified for training. Aborting.");
     }
 
+    if (autobi.getBooleanParameter("streaming_training", false)) {
+      trainClassifierFromRowStore(filenames, fs, classifier);
+      return;
+    }
+
     autobi.propagateFeatureSet(filenames, fs);
 
     // Remove features with an __ignore__ attribute set to true before training.
@@ -89,8 +104,235 @@ public class AuToBITrainer {
       }
     }
 
+    train(fs, classifier);
+  }
+
+  /**
+   * Sets the number of threads a classifier trains on to -num_threads.
+   * <p/>
+   * An EnsembleSampledClassifier trains its members in parallel, and each member converts its data serially.  A
+   * WekaClassifier trained on its own converts its data in parallel instead.
+   *
+   * @param classifier the classifier
+   */
+  private void setNumThreads(AuToBIClassifier classifier) {
+    int num_threads = Integer.parseInt(autobi.getOptionalParameter("num_threads", "1"));
+    if (classifier instanceof EnsembleSampledClassifier) {
+      ((EnsembleSampledClassifier) classifier).setNumThreads(num_threads);
+    } else if (classifier instanceof WekaClassifier) {
+      ((WekaClassifier) classifier).setNumThreads(num_threads);
+    }
+  }
+
+  /**
+   * Trains a classifier on a feature set with constructed features.
+   *
+   * @param fs         The training data
+   * @param classifier The classifier to train
+   * @throws Exception If there is a problem with the classifier.train function.
+   */
+  private void train(FeatureSet fs, AuToBIClassifier classifier) throws Exception {
+    setNumThreads(classifier);
+
     AuToBIUtils.log("training classifier on " + fs.getDataPoints().size() + " points");
-    classifier.train(fs);
+    TraceProfiler.Span span = TraceProfiler.begin("train", classifier.getClass().getSimpleName())
+        .arg("data_points", fs.getDataPoints().size());
+    try {
+      classifier.train(fs);
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Constructs a FeatureSet whose required features are the union of those of several tasks.
+   * <p/>
+   * The class attributes of the tasks, and the attributes used to omit their data points, are required features of the
+   * shared set so that a single extraction pass produces everything each task needs.  The class attribute of the
+   * shared set is that of the first task.
+   *
+   * @param tasks          the tasks
+   * @param attribute_omit the attribute omission description of each task, as used by the attribute_omit parameter
+   * @return an empty feature set
+   */
+  public static FeatureSet getSharedFeatureSet(Collection<AuToBITask> tasks, Collection<String> attribute_omit) {
+    FeatureSet shared = new FeatureSet();
+    for (AuToBITask task : tasks) {
+      FeatureSet fs = task.getFeatureSet();
+      if (shared.getClassAttribute() == null && fs.getClassAttribute() != null) {
+        shared.setClassAttribute(fs.getClassAttribute());
+      } else if (fs.getClassAttribute() != null && !fs.getClassAttribute().equals(shared.getClassAttribute())) {
+        shared.insertRequiredFeature(fs.getClassAttribute());
+      }
+      for (String f : fs.getRequiredFeatures()) {
+        shared.insertRequiredFeature(f);
+      }
+    }
+    for (String omission : attribute_omit) {
+      for (Pair<String, String> e : AuToBIUtils.parseAttributeOmission(omission)) {
+        shared.insertRequiredFeature(e.first);
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * Extracts the features of several tasks in a single pass over a set of files.
+   * <p/>
+   * Each file is read and its acoustic features extracted once, rather than once per task.  No data points are
+   * omitted; task specific omission is applied when each task's data is derived from the result.
+   *
+   * @param filenames      The set of files
+   * @param tasks          The tasks
+   * @param attribute_omit The attribute omission description of each task
+   * @return a feature set holding the data points of every file
+   * @throws Exception If there is a problem with feature extraction
+   */
+  public FeatureSet propagateSharedFeatureSet(Collection<FormattedFile> filenames, Collection<AuToBITask> tasks,
+                                              Collection<String> attribute_omit) throws Exception {
+    if (filenames.size() == 0) {
+      throw new AuToBIException("No filenames specified for training. Aborting.");
+    }
+    FeatureSet shared = getSharedFeatureSet(tasks, attribute_omit);
+    autobi.getParameters().setParameter("attribute_omit", "");
+    autobi.propagateFeatureSet(filenames, shared);
+    return shared;
+  }
+
+  /**
+   * Trains the classifier of a task on the data points of a shared extraction pass.
+   * <p/>
+   * The task's feature set receives the shared data points and its features are constructed from them.  Data points
+   * marked to be ignored or having an omitted attribute value are then removed, exactly as trainClassifier does after
+   * extracting the task's features on its own.
+   *
+   * @param shared         the result of propagateSharedFeatureSet
+   * @param task           the task
+   * @param attribute_omit the attribute omission description of the task
+   * @throws Exception If there is a problem with the classifier.train function.
+   */
+  public void trainClassifier(FeatureSet shared, AuToBITask task, String attribute_omit) throws Exception {
+    List<Pair<String, String>> omission = AuToBIUtils.parseAttributeOmission(attribute_omit);
+    FeatureSet fs = task.getFeatureSet();
+    fs.getDataPoints().clear();
+    fs.getDataPoints().addAll(shared.getDataPoints());
+    fs.constructFeatures();
+
+    for (Iterator<Word> it = fs.getDataPoints().iterator(); it.hasNext(); ) {
+      Word w = it.next();
+      if ((w.hasAttribute("__ignore__") && w.getAttribute("__ignore__").equals(true)) ||
+          AuToBIUtils.hasOmittedAttribute(w, omission)) {
+        it.remove();
+      }
+    }
+
+    train(fs, task.getClassifier());
+  }
+
+  /**
+   * Retrieves the attribute omission description used when training a task.
+   * <p/>
+   * Tone classification tasks ignore those points that do not have any associated prosodic event, and intermediate
+   * phrase boundary detection ignores intonational phrase boundaries.
+   *
+   * @param autobi     the AuToBI object holding the task definitions
+   * @param task_label the task
+   * @return the attribute omission description
+   * @throws AuToBIException if the task has no true feature
+   */
+  static String getAttributeOmission(AuToBI autobi, String task_label) throws AuToBIException {
+    if (task_label.equals("phrase_accent_classification")) {
+      return autobi.getTrueFeature("phrase_accent_classification") + ":NOTONE";
+    } else if (task_label.equals("pitch_accent_classification")) {
+      return autobi.getTrueFeature("pitch_accent_classification") + ":NOACCENT";
+    } else if (task_label.equals("phrase_accent_boundary_tone_classification")) {
+      return autobi.getTrueFeature("phrase_accent_boundary_tone_classification") + ":NOTONE";
+    } else if (task_label.equals("intermediate_phrase_boundary_detection")) {
+      return "nominal_IntermediatePhraseBoundary:INTONATIONAL_BOUNDARY";
+    }
+    return "";
+  }
+
+  /**
+   * Trains an AuToBI classifier from a CompactRowStore.
+   * <p/>
+   * The words of each training file are compacted into the store as soon as they have been processed, so the memory
+   * required for training is bounded by the size of the required features rather than the size of the Word objects.
+   * The store holds "row_store_memory_mb" megabytes in memory, if set, and spills the remainder to "row_store_dir".
+   *
+   * @param filenames  The set of training files
+   * @param fs         The FeatureSet describing the required features for the task
+   * @param classifier The classifier to train
+   * @throws Exception If there is a problem with the classifier.train function.
+   */
+  private void trainClassifierFromRowStore(Collection<FormattedFile> filenames, FeatureSet fs,
+                                           AuToBIClassifier classifier) throws Exception {
+    long memory_limit = Long.parseLong(autobi.getOptionalParameter("row_store_memory_mb", "0")) * 1024 * 1024;
+    File spill_dir = autobi.hasParameter("row_store_dir") ? new File(autobi.getParameter("row_store_dir")) : null;
+    CompactRowStore store = new CompactRowStore(fs, memory_limit, spill_dir);
+    try {
+      autobi.propagateFeatureSet(filenames, fs, store);
+      train(store, classifier);
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Trains an AuToBI classifier from a feature store written by FeatureSet.writeFeatureStore.
+   * <p/>
+   * No features are extracted.  The required features and class attribute of the task are read from the store's
+   * memory mapped columns into a CompactRowStore, skipping rows whose values are omitted by "attribute_omit".  As with
+   * streaming training, the store holds "row_store_memory_mb" megabytes in memory, if set, and spills the remainder to
+   * "row_store_dir".
+   *
+   * @param filename   The feature store file
+   * @param fs         The FeatureSet describing the required features for the task
+   * @param classifier The classifier to train
+   * @throws Exception If the store does not hold the required features or there is a problem with training
+   */
+  private void trainClassifierFromFeatureStore(String filename, FeatureSet fs, AuToBIClassifier classifier)
+      throws Exception {
+    long memory_limit = Long.parseLong(autobi.getOptionalParameter("row_store_memory_mb", "0")) * 1024 * 1024;
+    File spill_dir = autobi.hasParameter("row_store_dir") ? new File(autobi.getParameter("row_store_dir")) : null;
+    List<Pair<String, String>> omission =
+        AuToBIUtils.parseAttributeOmission(autobi.getOptionalParameter("attribute_omit", ""));
+
+    TraceProfiler.Span span = TraceProfiler.begin("io", "read_feature_store").arg("file", filename);
+    ColumnarFeatureStore features = new ColumnarFeatureStore(filename);
+    CompactRowStore store;
+    try {
+      store = features.toCompactRowStore(fs, omission, memory_limit, spill_dir);
+    } finally {
+      features.close();
+      span.end();
+    }
+    try {
+      fs.setFeatures(store.getFeatureSet().getFeatures());
+      train(store, classifier);
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Trains a classifier on the rows of a CompactRowStore.
+   *
+   * @param store      The training data
+   * @param classifier The classifier to train
+   * @throws Exception If there is a problem with the classifier.train function.
+   */
+  private void train(CompactRowStore store, AuToBIClassifier classifier) throws Exception {
+    setNumThreads(classifier);
+
+    AuToBIUtils.log("training classifier on " + store.size() + " points");
+    TraceProfiler.Span span = TraceProfiler.begin("train", classifier.getClass().getSimpleName())
+        .arg("data_points", store.size());
+    try {
+      classifier.train(store);
+    } finally {
+      span.end();
+    }
   }
 
   public static void main(String[] args) {
@@ -109,38 +351,47 @@ public class AuToBITrainer {
           filenames = AuToBIReaderUtils.globFormattedFiles(autobi.getParameter("rhapsodie_filenames"),
               FormattedFile.Format.RHAPSODIE);
         } catch (AuToBIException e2) {
-          AuToBIUtils
-              .error("No training files specified with -training_filenames, -cprom_filenames or -rhapsodie_filenames");
-          return;
+          if (!autobi.hasParameter("training_feature_store")) {
+            AuToBIUtils.error("No training files specified with -training_filenames, -cprom_filenames, " +
+                "-rhapsodie_filenames or -training_feature_store");
+            return;
+          }
+          // The training data is read from the feature store rather than extracted from files.
+          filenames = new ArrayList<FormattedFile>();
         }
       }
     }
 
     HashMap<String, AuToBITask> tasks = AuToBIUtils.createTaskListFromParameters(autobi.getParameters(), false);
     autobi.tasks = tasks;
+
+    // With shared extraction, the features of every task are extracted in one pass over the training files.
+    FeatureSet shared = null;
+    HashMap<String, String> attribute_omit = new HashMap<String, String>();
+    if (autobi.getBooleanParameter("shared_extraction", false) && !autobi.hasParameter("training_feature_store")) {
+      try {
+        for (String task_label : tasks.keySet()) {
+          attribute_omit.put(task_label, getAttributeOmission(autobi, task_label));
+        }
+        shared = new AuToBITrainer(autobi)
+            .propagateSharedFeatureSet(filenames, tasks.values(), attribute_omit.values());
+      } catch (Exception e) {
+        e.printStackTrace();
+        AuToBIUtils.error("Error extracting shared features");
+        return;
+      }
+    }
+
     for (String task_label : tasks.keySet()) {
       AuToBITask task = tasks.get(task_label);
       AuToBITrainer trainer = new AuToBITrainer(autobi);
       try {
-
-        // Tone classification tasks ignore those points that do not have any associated prosodic event
-        if (task_label.equals("phrase_accent_classification")) {
-          autobi.getParameters()
-              .setParameter("attribute_omit", autobi.getTrueFeature("phrase_accent_classification") + ":NOTONE");
-        } else if (task_label.equals("pitch_accent_classification")) {
-          autobi.getParameters()
-              .setParameter("attribute_omit", autobi.getTrueFeature("pitch_accent_classification") + ":NOACCENT");
-        } else if (task_label.equals("phrase_accent_boundary_tone_classification")) {
-          autobi.getParameters()
-              .setParameter("attribute_omit",
-                  autobi.getTrueFeature("phrase_accent_boundary_tone_classification") + ":NOTONE");
-        } else if (task_label.equals("intermediate_phrase_boundary_detection")) {
-          autobi.getParameters()
-              .setParameter("attribute_omit", "nominal_IntermediatePhraseBoundary:INTONATIONAL_BOUNDARY");
+        if (shared != null) {
+          trainer.trainClassifier(shared, task, attribute_omit.get(task_label));
         } else {
-          autobi.getParameters().setParameter("attribute_omit", "");
+          autobi.getParameters().setParameter("attribute_omit", getAttributeOmission(autobi, task_label));
+          trainer.trainClassifier(filenames, task.getFeatureSet(), task.getClassifier());
         }
-        trainer.trainClassifier(filenames, task.getFeatureSet(), task.getClassifier());
       } catch (Exception e) {
         e.printStackTrace();
         AuToBIUtils.error("Error training classifier for " + task_label);
@@ -160,5 +411,6 @@ public class AuToBITrainer {
         AuToBIUtils.error("Could not write AuToBIClassifier: " + e.getMessage());
       }
     }
+    autobi.writeProfileTrace();
   }
 }
@@ -0,0 +1,324 @@
+/*  PseudosyllablePipeline.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI;
+
+import edu.cuny.qc.speech.AuToBI.core.*;
+import edu.cuny.qc.speech.AuToBI.core.syllabifier.EMSyllabifier;
+import edu.cuny.qc.speech.AuToBI.core.syllabifier.VillingSyllabifier;
+import edu.cuny.qc.speech.AuToBI.featureextractor.FeatureExtractorException;
+import edu.cuny.qc.speech.AuToBI.io.HypothesisWriter;
+import edu.cuny.qc.speech.AuToBI.io.PseudosyllableChunkReader;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
+import edu.cuny.qc.speech.AuToBI.util.TraceProfiler;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * PseudosyllablePipeline hypothesizes prosodic events on a wav file without a transcript, one chunk at a time.
+ * <p/>
+ * A reader thread syllabifies successive chunks of the wav file with a PseudosyllableChunkReader and passes them to
+ * the calling thread through a bounded queue.  The calling thread extracts features and classifies the
+ * pseudosyllables of each chunk while the next chunks are being syllabified.  Once a chunk has been classified its
+ * audio and features are released, and only the times and hypotheses of its pseudosyllables are retained.  Memory use
+ * is therefore bounded by the chunk duration and queue size rather than the duration of the file.
+ * <p/>
+ * The pipeline is configured by the following parameters:
+ * -chunk_duration the duration of each chunk in seconds
+ * -chunk_overlap the duration of acoustic context on either side of a chunk in seconds (default 1.0)
+ * -pipeline_queue_size the number of syllabified chunks that may wait for classification (default 2)
+ * -silence_threshold the silence threshold in dB (default 25.0)
+ * -syllabifier villing or em (default villing)
+ *
+ * @see PseudosyllableChunkReader
+ */
+public class PseudosyllablePipeline {
+  private AuToBI autobi;  // An AuToBI object to store parameters and handle the feature extraction.
+
+  // Marks the end of the chunk queue.
+  private static final PseudosyllableChunkReader.Chunk END_OF_STREAM =
+      new PseudosyllableChunkReader.Chunk(-1, 0.0, null, null);
+
+  /**
+   * Constructs a new PseudosyllablePipeline with an associated AuToBI object to manage parameters, tasks and feature
+   * extraction.
+   *
+   * @param autobi the AuToBI object
+   */
+  public PseudosyllablePipeline(AuToBI autobi) {
+    this.autobi = autobi;
+  }
+
+  /**
+   * Syllabifies, classifies and evaluates a wav file, retaining the hypotheses of every pseudosyllable.
+   * <p/>
+   * Evaluation results for each task are logged once the whole file has been processed.  The returned list grows with
+   * the duration of the file; run(String, String) writes the hypotheses of each chunk as it is classified instead.
+   *
+   * @param wav_filename the wav file
+   * @return the pseudosyllables of the file, in file time, with the hypotheses of each task
+   * @throws IOException                   if the wav file cannot be read
+   * @throws UnsupportedAudioFileException if there is a problem with the audio file format
+   * @throws FeatureExtractorException     if feature extraction fails
+   * @throws AuToBIException               if syllabification or classification fails
+   * @throws InvocationTargetException     if a feature extractor cannot be constructed
+   * @throws InstantiationException        if a feature extractor cannot be constructed
+   * @throws IllegalAccessException        if a feature extractor cannot be constructed
+   */
+  public List<Word> run(String wav_filename)
+      throws IOException, UnsupportedAudioFileException, FeatureExtractorException, AuToBIException,
+      InvocationTargetException, InstantiationException, IllegalAccessException {
+    List<Word> hypotheses = new ArrayList<Word>();
+    run(wav_filename, null, hypotheses);
+    return hypotheses;
+  }
+
+  /**
+   * Syllabifies, classifies and evaluates a wav file, writing the hypotheses of each chunk to a file as soon as it has
+   * been classified.
+   * <p/>
+   * The file is written in the format of -out_format.  No pseudosyllables are retained between chunks, so memory use
+   * does not grow with the duration of the file.  If no pseudosyllables are found, no file is written.
+   *
+   * @param wav_filename the wav file
+   * @param out_file     the destination of the hypotheses, or null to only evaluate the file
+   * @return the number of pseudosyllables written
+   * @throws IOException                   if the wav file cannot be read or the hypotheses cannot be written
+   * @throws UnsupportedAudioFileException if there is a problem with the audio file format
+   * @throws FeatureExtractorException     if feature extraction fails
+   * @throws AuToBIException               if syllabification or classification fails
+   * @throws InvocationTargetException     if a feature extractor cannot be constructed
+   * @throws InstantiationException        if a feature extractor cannot be constructed
+   * @throws IllegalAccessException        if a feature extractor cannot be constructed
+   */
+  public int run(String wav_filename, String out_file)
+      throws IOException, UnsupportedAudioFileException, FeatureExtractorException, AuToBIException,
+      InvocationTargetException, InstantiationException, IllegalAccessException {
+    return run(wav_filename, out_file, null);
+  }
+
+  /**
+   * Syllabifies, classifies and evaluates a wav file.
+   *
+   * @param wav_filename the wav file
+   * @param out_file     a file to stream the hypotheses of each chunk to, or null
+   * @param hypotheses   a list to receive the pseudosyllables of each chunk, or null
+   * @return the number of pseudosyllables classified
+   */
+  private int run(String wav_filename, String out_file, List<Word> hypotheses)
+      throws IOException, UnsupportedAudioFileException, FeatureExtractorException, AuToBIException,
+      InvocationTargetException, InstantiationException, IllegalAccessException {
+    final PseudosyllableChunkReader reader = new PseudosyllableChunkReader(wav_filename,
+        Double.parseDouble(autobi.getParameter("chunk_duration")),
+        Double.parseDouble(autobi.getOptionalParameter("chunk_overlap", "1.0")),
+        Double.parseDouble(autobi.getOptionalParameter("silence_threshold", "25.0")));
+    if (autobi.getOptionalParameter("syllabifier", "villing").equals("em")) {
+      reader.setSyllabifier(new EMSyllabifier());
+    } else {
+      reader.setSyllabifier(new VillingSyllabifier());
+    }
+
+    FeatureSet template = autobi.initializeHypothesisFeatureSet();
+    autobi.initializeFeatureRegistry(template);
+    if (autobi.hasParameter("arff_file")) {
+      AuToBIUtils.warn("Pseudosyllables are classified one chunk at a time.  No arff file is written.");
+    }
+
+    HashMap<String, EvaluationAccumulator> evaluations = new HashMap<String, EvaluationAccumulator>();
+    for (String task : autobi.getClassificationTasks()) {
+      evaluations.put(task, new EvaluationAccumulator());
+    }
+    // The hypothesis features of each task are resolved once for every chunk.
+    HypothesisWriter merger =
+        (out_file != null || autobi.hasParameter("out_file")) ? autobi.newHypothesisWriter() : null;
+    HypothesisWriter.HypothesisStream output = out_file != null ? merger.open(out_file) : null;
+
+    int queue_size = Math.max(1, Integer.parseInt(autobi.getOptionalParameter("pipeline_queue_size", "2")));
+    final BlockingQueue<PseudosyllableChunkReader.Chunk> queue =
+        new ArrayBlockingQueue<PseudosyllableChunkReader.Chunk>(queue_size);
+    final Throwable[] reader_error = new Throwable[1];
+    final AtomicBoolean stopped = new AtomicBoolean(false);  // set when the pipeline no longer takes chunks
+    Thread reader_thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          PseudosyllableChunkReader.Chunk chunk;
+          do {
+            TraceProfiler.Span span = TraceProfiler.begin("io", "read_chunk");
+            try {
+              chunk = reader.next();
+            } finally {
+              span.end();
+            }
+            queue.put(chunk == null ? END_OF_STREAM : chunk);
+          } while (chunk != null && !stopped.get());
+        } catch (InterruptedException e) {
+          // The pipeline has been abandoned.
+        } catch (Throwable e) {
+          // Errors, e.g., running out of memory, must also end the stream, or the pipeline would wait forever.
+          synchronized (reader_error) {
+            reader_error[0] = e;
+          }
+          try {
+            queue.put(END_OF_STREAM);
+          } catch (InterruptedException ie) {
+            // The pipeline has been abandoned.
+          }
+        }
+      }
+    }, "pseudosyllable-reader");
+    reader_thread.setDaemon(true);
+    reader_thread.start();
+
+    int num_words = 0;
+    boolean complete = false;
+    try {
+      while (true) {
+        PseudosyllableChunkReader.Chunk chunk = queue.take();
+        if (chunk == END_OF_STREAM) {
+          break;
+        }
+        TraceProfiler.Span span = TraceProfiler.begin("extraction", "classify_chunk")
+            .arg("chunk", chunk.getIndex()).arg("words", chunk.getWords().size());
+        try {
+          List<Word> chunk_hypotheses = processChunk(chunk, template, evaluations, merger);
+          num_words += chunk_hypotheses.size();
+          if (output != null) {
+            output.write(chunk_hypotheses);
+          }
+          if (hypotheses != null) {
+            hypotheses.addAll(chunk_hypotheses);
+          }
+        } finally {
+          span.end();
+        }
+      }
+      synchronized (reader_error) {
+        if (reader_error[0] != null) {
+          throw new AuToBIException("Error reading pseudosyllables from " + wav_filename + ": " +
+              reader_error[0].getMessage());
+        }
+      }
+      if (output != null) {
+        output.close();
+      }
+      complete = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuToBIException("Interrupted while waiting for pseudosyllables.");
+    } finally {
+      // The reader may be reading a chunk.  Rather than interrupting it, let it finish and wait for it before the
+      // reader is closed, draining the queue so that it is not blocked adding the chunk.
+      stopped.set(true);
+      boolean interrupted = false;
+      while (reader_thread.isAlive()) {
+        queue.clear();
+        try {
+          reader_thread.join(100);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      reader.close();
+      if (output != null && !complete) {
+        output.abort();
+      }
+    }
+
+    for (String task : autobi.getClassificationTasks()) {
+      AuToBIUtils.info(task);
+      AuToBIUtils.info(evaluations.get(task).getSummary().toString());
+    }
+    return num_words;
+  }
+
+  /**
+   * Extracts features from and classifies the pseudosyllables of a chunk.
+   *
+   * @param chunk       the chunk
+   * @param template    a feature set requiring the hypotheses of every task
+   * @param evaluations the evaluation of each task
+   * @param merger      a writer to merge the hypotheses of each pseudosyllable, or null if none are merged
+   * @return the pseudosyllables of the chunk, in file time, with only their hypotheses
+   * @throws FeatureExtractorException if feature extraction fails
+   * @throws AuToBIException           if classification fails
+   */
+  private List<Word> processChunk(PseudosyllableChunkReader.Chunk chunk, FeatureSet template,
+                                  HashMap<String, EvaluationAccumulator> evaluations,
+                                  HypothesisWriter merger)
+      throws FeatureExtractorException, AuToBIException {
+    List<Word> words = chunk.getWords();
+    List<Word> hypotheses = new ArrayList<Word>(words.size());
+    if (words.isEmpty()) {
+      return hypotheses;
+    }
+
+    FeatureSet fs = template.newInstance();
+    fs.setDataPoints(words);
+    for (Word w : words) {
+      w.setAttribute("wav", chunk.getWav());
+    }
+    autobi.resetExecutedFeatureExtractors();
+    autobi.extractFeatures(fs);
+
+    for (String task : autobi.getClassificationTasks()) {
+      AuToBITask autobi_task = autobi.getTasks().get(task);
+      EvaluationAccumulator.Partial partial = new EvaluationAccumulator.Partial();
+      ClassifierUtils.accumulateEvaluation(partial, autobi_task.getHypFeature(), autobi_task.getTrueFeature(), words);
+      evaluations.get(task).commit(chunk.getIndex(), partial);
+    }
+
+    List<String> retained = new ArrayList<String>();
+    if (merger != null) {
+      merger.mergeHypotheses(words);
+      retained.add("hyp_pitch_accent");
+      retained.add("hyp_phrase_boundary");
+    }
+    for (AuToBITask autobi_task : autobi.getTasks().values()) {
+      retained.add(autobi_task.getHypFeature());
+    }
+
+    double offset = chunk.getOffset();
+    for (Word w : words) {
+      Word h = new Word(w.getStart() + offset, w.getEnd() + offset, w.getLabel(), w.getAccent(), w.getFile());
+      for (String attribute : retained) {
+        if (w.hasAttribute(attribute)) {
+          h.setAttribute(attribute, w.getAttribute(attribute));
+        }
+      }
+      hypotheses.add(h);
+    }
+    return hypotheses;
+  }
+}
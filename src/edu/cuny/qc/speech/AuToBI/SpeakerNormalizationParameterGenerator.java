@@ -27,17 +27,35 @@ import edu.cuny.qc.speech.AuToBI.core.*;
 import edu.cuny.qc.speech.AuToBI.io.WavReader;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 
-import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.io.*;
 
 /**
  * SpeakerNormalizationParameterGenerator is a tool to construct speaker normalization parameters given a set of wav
  * files.
+ * <p/>
+ * Each file is analyzed independently into its own SpeakerNormalizationParameter, and these are merged into the
+ * parameters of the file's speaker in input order.  This allows files to be analyzed in parallel, and, when
+ * generating from filenames, only the files currently being analyzed are held in memory.
  */
 public class SpeakerNormalizationParameterGenerator {
 
+  private int num_threads = 1;  // the number of files to analyze concurrently
+
+  /**
+   * Sets the number of files to analyze concurrently.
+   *
+   * @param num_threads the number of threads
+   */
+  public void setNumThreads(int num_threads) {
+    this.num_threads = Math.max(1, num_threads);
+  }
+
   public SpeakerNormalizationParameter generateNormalizationParameters(List<WavData> wavs) {
     return generateNormalizationParameter(wavs, "");
   }
@@ -62,25 +80,96 @@ public class SpeakerNormalizationParameterGenerator {
    * @param snp  the existing parameters to add to
    */
   private void extendSpeakerNormalizationParameter(List<WavData> wavs, SpeakerNormalizationParameter snp) {
-    for (WavData wav : wavs) {
-      RAPTPitchExtractor pe = new RAPTPitchExtractor();
-
-      try {
-        Contour pitches = pe.getPitch(wav);
-        for (Pair<Double, Double> pitch : pitches) {
-          snp.insertPitch(pitch.second);
+    List<Callable<SpeakerNormalizationParameter>> tasks = new ArrayList<Callable<SpeakerNormalizationParameter>>();
+    for (final WavData wav : wavs) {
+      tasks.add(new Callable<SpeakerNormalizationParameter>() {
+        public SpeakerNormalizationParameter call() {
+          return analyzeWav(wav, "");
         }
-      } catch (AuToBIException e) {
-        e.printStackTrace();
+      });
+    }
+    try {
+      for (SpeakerNormalizationParameter file_snp : AuToBIUtils.invokeAll(tasks, num_threads)) {
+        snp.merge(file_snp);
       }
+    } catch (AuToBIException e) {
+      e.printStackTrace();
+    }
+  }
 
-      IntensityExtractor ie = new IntensityExtractor(wav);
+  /**
+   * Generates speaker normalization parameters for a set of speakers from wav files in a single pass.
+   * <p/>
+   * Each file is read, analyzed and released by one of the worker threads, so at most one file per thread is held in
+   * memory.  Per-file statistics are merged into the parameters of the corresponding speaker in the order of the
+   * filenames, so the results do not depend on the number of threads.
+   *
+   * @param filenames   the wav files to analyze
+   * @param speaker_ids the speaker of each file
+   * @return the parameters of each speaker, in order of first appearance
+   * @throws AuToBIException if a file cannot be read or analyzed
+   */
+  public Map<String, SpeakerNormalizationParameter> generateNormalizationParameters(List<String> filenames,
+                                                                                    List<String> speaker_ids)
+      throws AuToBIException {
+    if (filenames.size() != speaker_ids.size()) {
+      throw new AuToBIException("Number of speaker ids (" + speaker_ids.size() + ") does not match number of files (" +
+          filenames.size() + ")");
+    }
+    List<Callable<SpeakerNormalizationParameter>> tasks = new ArrayList<Callable<SpeakerNormalizationParameter>>();
+    for (int i = 0; i < filenames.size(); ++i) {
+      final String filename = filenames.get(i);
+      final String speaker_id = speaker_ids.get(i);
+      tasks.add(new Callable<SpeakerNormalizationParameter>() {
+        public SpeakerNormalizationParameter call() throws Exception {
+          AuToBIUtils.info("processing file: " + filename);
+          WavData wav = new WavReader().read(filename);
+          return analyzeWav(wav, speaker_id);
+        }
+      });
+    }
 
-      Contour intensities = ie.soundToIntensity();
-      for (Pair<Double, Double> intensity : intensities) {
-        snp.insertIntensity(intensity.second);
+    Map<String, SpeakerNormalizationParameter> snps = new LinkedHashMap<String, SpeakerNormalizationParameter>();
+    for (SpeakerNormalizationParameter file_snp : AuToBIUtils.invokeAll(tasks, num_threads)) {
+      SpeakerNormalizationParameter snp = snps.get(file_snp.getSpeakerId());
+      if (snp == null) {
+        snp = new SpeakerNormalizationParameter(file_snp.getSpeakerId());
+        snps.put(file_snp.getSpeakerId(), snp);
       }
+      snp.merge(file_snp);
+    }
+    return snps;
+  }
+
+  /**
+   * Calculates the pitch and intensity statistics of a single wav file.
+   *
+   * @param wav        the wave data to analyze
+   * @param speaker_id the speaker id
+   * @return the parameters of the file
+   */
+  private static SpeakerNormalizationParameter analyzeWav(WavData wav, String speaker_id) {
+    SpeakerNormalizationParameter snp = new SpeakerNormalizationParameter(speaker_id);
+    try {
+      snp.insertPitch(new RAPTPitchExtractor().getPitch(wav));
+    } catch (AuToBIException e) {
+      e.printStackTrace();
     }
+    snp.insertIntensity(new IntensityExtractor(wav).soundToIntensity());
+    return snp;
+  }
+
+  /**
+   * Identifies the speaker of a file by the first two characters of its base name.
+   * <p/>
+   * This matches the speaker_id attribute assigned by TextGridReader.
+   *
+   * @param filename the filename
+   * @return the speaker id
+   */
+  public static String getSpeakerIdFromFilename(String filename) {
+    String basename = new File(filename).getName();
+    return basename.substring(0, Math.min(2, basename.length()));
   }
 
   /**
@@ -107,6 +196,23 @@ public class SpeakerNormalizationParameterGenerator {
     return null;
   }
 
+  /**
+   * Serializes a SpeakerNormalizationParameter object.
+   *
+   * @param snp      the parameters
+   * @param filename the destination file
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeSerializedParameters(SpeakerNormalizationParameter snp, String filename)
+      throws IOException {
+    ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename));
+    try {
+      out.writeObject(snp);
+    } finally {
+      out.close();
+    }
+  }
+
   /**
    * Generates a SpeakerNormalizationParameter object from a single WavData object, and a corresponding speaker_id.
    *
@@ -120,45 +226,53 @@ public class SpeakerNormalizationParameterGenerator {
     return generateNormalizationParameter(list, speaker_id);
   }
 
+  /**
+   * Generates speaker normalization parameters from the files matching -wav_files.
+   * <p/>
+   * With -speaker_id, all files are treated as a single speaker whose parameters are written to -output_file.
+   * Otherwise, the speaker of each file is identified by the first two characters of its name, and the parameters of
+   * each speaker are written to &lt;speaker_id&gt;.spkrnorm in -output_dir.  -num_threads sets the number of files
+   * analyzed concurrently.
+   *
+   * @param args command line arguments
+   */
   public static void main(String[] args) {
     AuToBI autobi = new AuToBI();
     autobi.init(args);
 
     try {
-      String speaker_id = autobi.getParameter("speaker_id");
-      String output_file = autobi.getParameter("output_file");
-      SpeakerNormalizationParameter norm_param = new SpeakerNormalizationParameter(speaker_id);
-
-      WavReader reader = new WavReader();
-      for (String filename : AuToBIUtils.glob(autobi.getParameter("wav_files"))) {
-        AuToBIUtils.info("processing file: " + filename);
-        WavData wav = reader.read(filename);
-        RAPTPitchExtractor pitch_extractor = new RAPTPitchExtractor();
-        IntensityExtractor intensity_extractor = new IntensityExtractor(wav);
-
-        Contour pitch_values = pitch_extractor.getPitch(wav);
-        Contour intensity_values = intensity_extractor.soundToIntensity();
-
-        norm_param.insertPitch(pitch_values);
-        norm_param.insertIntensity(intensity_values);
-      }
+      SpeakerNormalizationParameterGenerator generator = new SpeakerNormalizationParameterGenerator();
+      generator.setNumThreads(Integer.parseInt(autobi.getOptionalParameter("num_threads", "1")));
 
-      AuToBIUtils.info("Successfully generated normalization parameters.");
+      List<String> filenames = AuToBIUtils.glob(autobi.getParameter("wav_files"));
+      List<String> speaker_ids = new ArrayList<String>();
+      String speaker_id = autobi.getOptionalParameter("speaker_id");
+      for (String filename : filenames) {
+        speaker_ids.add(speaker_id != null ? speaker_id : getSpeakerIdFromFilename(filename));
+      }
 
-      AuToBIUtils.info("Generated Parameters: " + norm_param);
+      Map<String, SpeakerNormalizationParameter> norm_params =
+          generator.generateNormalizationParameters(filenames, speaker_ids);
 
-      // Serialize parameters
-      FileOutputStream fos;
-      ObjectOutputStream out;
-      fos = new FileOutputStream(output_file);
-      out = new ObjectOutputStream(fos);
-      out.writeObject(norm_param);
-      out.close();
+      AuToBIUtils.info("Successfully generated normalization parameters.");
 
+      if (speaker_id != null) {
+        SpeakerNormalizationParameter norm_param = norm_params.get(speaker_id);
+        if (norm_param == null) {
+          norm_param = new SpeakerNormalizationParameter(speaker_id);
+        }
+        AuToBIUtils.info("Generated Parameters: " + norm_param);
+        writeSerializedParameters(norm_param, autobi.getParameter("output_file"));
+      } else {
+        String output_dir = autobi.getParameter("output_dir");
+        for (SpeakerNormalizationParameter norm_param : norm_params.values()) {
+          AuToBIUtils.info("Generated Parameters for " + norm_param.getSpeakerId() + ": " + norm_param);
+          writeSerializedParameters(norm_param,
+              new File(output_dir, norm_param.getSpeakerId() + ".spkrnorm").getPath());
+        }
+      }
     } catch (AuToBIException e) {
       e.printStackTrace();
-    } catch (UnsupportedAudioFileException e) {
-      e.printStackTrace();
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -27,8 +27,16 @@ import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.Distribution;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.NominalDictionary;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
+import edu.cuny.qc.speech.AuToBI.core.SpectralPADMatrix;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * SpectralPitchAccentDetector is an ensemble classifier.
  * <p/>
@@ -39,6 +47,7 @@ import edu.cuny.qc.speech.AuToBI.core.Word;
  * are made.
  */
 public class SpectralPitchAccentDetector extends AuToBIClassifier {
+  private static final long serialVersionUID = 8156373360458849515L;
 
   // Patterns of features used in the voting calculation.
   private final String prediction_pattern = "nominal_bark_##LOW##_##HIGH##__prediction";
@@ -56,6 +65,12 @@ public class SpectralPitchAccentDetector extends AuToBIClassifier {
   // The maximum bark index -- typically this is 20, but can be trained differently.
   private int high_bark;
 
+  // The attribute names used in the voting calculation for each band.  Generated on construction and
+  // deserialization, and never modified, so that detectors may be shared by threads.
+  private transient String[][] attribute_names;
+  // The class labels of the posteriors.
+  private transient NominalDictionary labels;
+
   /**
    * Constructs a new SpectralPitchAccentDetector to calculate a corrected weighted majority voting decision.
    *
@@ -63,6 +78,27 @@ public class SpectralPitchAccentDetector extends AuToBIClassifier {
    */
   public SpectralPitchAccentDetector(int high) {
     high_bark = high;
+    initialize();
+  }
+
+  /**
+   * Restores a serialized SpectralPitchAccentDetector, generating its transient fields.
+   *
+   * @param in the stream to read from
+   * @throws IOException            if the stream cannot be read
+   * @throws ClassNotFoundException if a serialized class cannot be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    initialize();
+  }
+
+  /**
+   * Generates the attribute names and class labels from the high bark index.
+   */
+  private void initialize() {
+    attribute_names = generateAttributeNames();
+    labels = new NominalDictionary(positive_class, negative_class).freeze();
   }
 
   /**
@@ -73,46 +109,116 @@ public class SpectralPitchAccentDetector extends AuToBIClassifier {
    * @throws Exception if something goes wrong
    */
   public Distribution distributionForInstance(Word testing_point) throws Exception {
-    Distribution dist = new Distribution();
+    return posteriorForInstance(testing_point).toDistribution();
+  }
+
+  /**
+   * Calculates the posterior from a weighted sum of votes from each corrected spectral classifier
+   *
+   * @param testing_point The point to evaluate
+   * @return the hypothesized posterior
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public Posterior posteriorForInstance(Word testing_point) throws Exception {
+    Object row = testing_point.getAttribute(SpectralPADMatrix.ROW_FEATURE);
+    if (row instanceof SpectralPADMatrix.Row && ((SpectralPADMatrix.Row) row).getMatrix().coversBarkBands(high_bark)) {
+      return posteriorForRow((SpectralPADMatrix.Row) row);
+    }
+
+    double positive_sum = 0.0;
+    double negative_sum = 0.0;
+    for (String[] names : attribute_names) {
+      double positive_conf;
+      double correct_conf;
+
+      // Total confidence in a positive prediction is calculated as C*C' + (1-C)*(1-C')
+      // where C is the confidence of a positive prediction
+      // and C' is the confidence that the prediction is correct.
+      if (testing_point.getAttribute(names[0]).equals(positive_class)) {
+        positive_conf = (Double) testing_point.getAttribute(names[1]);
+      } else {
+        positive_conf = 1 - (Double) testing_point.getAttribute(names[1]);
+      }
+
+      if (testing_point.getAttribute(names[2]).equals(positive_correction)) {
+        correct_conf = (Double) testing_point.getAttribute(names[3]);
+      } else {
+        correct_conf = 1 - (Double) testing_point.getAttribute(names[3]);
+      }
+
+      double overall_conf = positive_conf * correct_conf + (1 - positive_conf) * (1 - correct_conf);
+
+      positive_sum += overall_conf;
+      negative_sum += 1 - overall_conf;
+    }
+
+    return generatePosterior(positive_sum, negative_sum);
+  }
+
+  /**
+   * Calculates the posterior from the row of a SpectralPADMatrix.
+   * <p/>
+   * This is equivalent to reading the hypotheses from the attributes of the word, but avoids looking up four
+   * attributes per band.
+   *
+   * @param row the row of the matrix corresponding to the word
+   * @return the hypothesized posterior
+   * @throws AuToBIException if the posterior cannot be normalized
+   */
+  private Posterior posteriorForRow(SpectralPADMatrix.Row row) throws AuToBIException {
+    SpectralPADMatrix matrix = row.getMatrix();
+    int word = row.getIndex();
+
+    double positive_sum = 0.0;
+    double negative_sum = 0.0;
+    for (int band = 0; band < matrix.getNumBands(); ++band) {
+      double positive_conf = matrix.getAccentedConfidence(word, band);
+      double correct_conf = matrix.getCorrectConfidence(word, band);
+      double overall_conf = positive_conf * correct_conf + (1 - positive_conf) * (1 - correct_conf);
+
+      positive_sum += overall_conf;
+      negative_sum += 1 - overall_conf;
+    }
+
+    return generatePosterior(positive_sum, negative_sum);
+  }
+
+  /**
+   * Constructs a normalized posterior from the total votes for the positive and negative classes.
+   *
+   * @param positive_sum the votes for the positive class
+   * @param negative_sum the votes for the negative class
+   * @return the posterior
+   * @throws AuToBIException if the posterior cannot be normalized
+   */
+  private Posterior generatePosterior(double positive_sum, double negative_sum) throws AuToBIException {
+    Posterior posterior = new Posterior(labels, new double[]{positive_sum, negative_sum});
+    // The posterior is technically a histogram until it is normalized
+    posterior.normalize();
+    return posterior;
+  }
+
+  /**
+   * Generates the names of the prediction, prediction confidence, correction and correction confidence attributes for
+   * each band.
+   *
+   * @return the attribute names for each band
+   */
+  private String[][] generateAttributeNames() {
+    List<String[]> names = new ArrayList<String[]>();
     for (int low = 0; low < high_bark; ++low) {
       for (int high = low + 1; high <= high_bark; ++high) {
-        String prediction_attr =
-            prediction_pattern.replace("##LOW##", Integer.toString(low)).replace("##HIGH##", Integer.toString(high));
-        String conf_attr = prediction_confidence_pattern.replace("##LOW##", Integer.toString(low))
-            .replace("##HIGH##", Integer.toString(high));
-        String correction_attr =
-            correction_pattern.replace("##LOW##", Integer.toString(low)).replace("##HIGH##", Integer.toString(high));
-        String correction_conf_attr = correction_confidence_pattern.replace("##LOW##", Integer.toString(low))
-            .replace("##HIGH##", Integer.toString(high));
-
-        double positive_conf;
-        double correct_conf;
-
-        // Total confidence in a positive prediction is calculated as C*C' + (1-C)*(1-C')
-        // where C is the confidence of a positive prediction
-        // and C' is the confidence that the prediction is correct.
-        if (testing_point.getAttribute(prediction_attr).equals(positive_class)) {
-          positive_conf = (Double) testing_point.getAttribute(conf_attr);
-        } else {
-          positive_conf = 1 - (Double) testing_point.getAttribute(conf_attr);
-        }
-
-        if (testing_point.getAttribute(correction_attr).equals(positive_correction)) {
-          correct_conf = (Double) testing_point.getAttribute(correction_conf_attr);
-        } else {
-          correct_conf = 1 - (Double) testing_point.getAttribute(correction_conf_attr);
-        }
-
-        double overall_conf = positive_conf * correct_conf + (1 - positive_conf) * (1 - correct_conf);
-
-        dist.add(positive_class, overall_conf);
-        dist.add(negative_class, 1 - overall_conf);
+        String l = Integer.toString(low);
+        String h = Integer.toString(high);
+        names.add(new String[]{
+            prediction_pattern.replace("##LOW##", l).replace("##HIGH##", h),
+            prediction_confidence_pattern.replace("##LOW##", l).replace("##HIGH##", h),
+            correction_pattern.replace("##LOW##", l).replace("##HIGH##", h),
+            correction_confidence_pattern.replace("##LOW##", l).replace("##HIGH##", h)});
       }
     }
-
-    // Distribution is technically a histogram until it is normalized
-    dist.normalize();
-    return dist;
+    return names.toArray(new String[names.size()][]);
   }
 
   /**
@@ -23,11 +23,15 @@
  */
 package edu.cuny.qc.speech.AuToBI.classifier;
 
+import edu.cuny.qc.speech.AuToBI.core.CompactRowStore;
 import edu.cuny.qc.speech.AuToBI.core.Distribution;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An abstract serializable class to store, call and train classifiers.
@@ -45,6 +49,59 @@ public abstract class AuToBIClassifier implements Serializable {
    */
   public abstract Distribution distributionForInstance(Word testing_point) throws Exception;
 
+  /**
+   * Return the normalized posterior from the classifier.
+   * <p/>
+   * The default implementation converts the result of distributionForInstance.  Classifiers should override this to
+   * construct the posterior directly, with a label dictionary shared across all of the points they evaluate.
+   *
+   * @param testing_point The point to evaluate
+   * @return a normalized posterior
+   * @throws Exception If something fails.
+   */
+  public Posterior posteriorForInstance(Word testing_point) throws Exception {
+    Distribution dist = distributionForInstance(testing_point);
+    if (dist == null) {
+      return null;
+    }
+    return Posterior.fromDistribution(dist);
+  }
+
+  /**
+   * Return the normalized posterior for each of a list of points.
+   * <p/>
+   * The default implementation evaluates each point in turn.  Classifiers that can evaluate many points more
+   * efficiently than one at a time should override this.
+   *
+   * @param testing_points The points to evaluate
+   * @return a normalized posterior for each point, in the same order as the points
+   * @throws Exception If something fails.
+   */
+  public List<Posterior> posteriorsForInstances(List<Word> testing_points) throws Exception {
+    List<Posterior> posteriors = new ArrayList<Posterior>(testing_points.size());
+    for (Word testing_point : testing_points) {
+      posteriors.add(posteriorForInstance(testing_point));
+    }
+    return posteriors;
+  }
+
+  /**
+   * Return the normalized posterior distribution for each of a list of points.
+   * <p/>
+   * The distributions are constructed from posteriorsForInstances.
+   *
+   * @param testing_points The points to evaluate
+   * @return a normalized posterior distribution for each point, in the same order as the points
+   * @throws Exception If something fails.
+   */
+  public List<Distribution> distributionsForInstances(List<Word> testing_points) throws Exception {
+    List<Distribution> distributions = new ArrayList<Distribution>(testing_points.size());
+    for (Posterior posterior : posteriorsForInstances(testing_points)) {
+      distributions.add(posterior == null ? null : posterior.toDistribution());
+    }
+    return distributions;
+  }
+
   /**
    * Train the classifier on the given FeatureSet
    *
@@ -53,6 +110,19 @@ public abstract class AuToBIClassifier implements Serializable {
    */
   public abstract void train(FeatureSet feature_set) throws Exception;
 
+  /**
+   * Train the classifier on the rows of a CompactRowStore.
+   * <p/>
+   * By default the rows are materialized as a FeatureSet.  Classifiers that can read the store directly should
+   * override this to avoid holding the training data as Word objects.
+   *
+   * @param store The training data
+   * @throws Exception if something goes wrong
+   */
+  public void train(CompactRowStore store) throws Exception {
+    train(store.toFeatureSet());
+  }
+
   /**
    * Construct and return an untrained copy of the classifier.
    *
@@ -68,10 +138,10 @@ public abstract class AuToBIClassifier implements Serializable {
    * @throws Exception if something goes wrong.
    */
   public String classify(Word testing_point) throws Exception {
-    Distribution dist = distributionForInstance(testing_point);
-    if (dist == null) {
+    Posterior posterior = posteriorForInstance(testing_point);
+    if (posterior == null) {
       return null;
     }
-    return dist.getKeyWithMaximumValue();
+    return posterior.getKeyWithMaximumValue();
   }
 }
@@ -63,6 +63,17 @@ public class ClassBasedWeightFunctionTrainer {
         d.add(r.getAttribute(class_attribute).toString());
       }
     }
+    return getClassWeightMapping(d, type);
+  }
+
+  /**
+   * Calculates class weights from a distribution of class values.
+   *
+   * @param d    the number of data points with each class value.  The distribution is normalized in place.
+   * @param type the weighting function
+   * @return a map from class value to weight
+   */
+  public static Map<String, Double> getClassWeightMapping(Distribution d, WeightType type) {
     try {
       d.normalize();
     } catch (AuToBIException e) {
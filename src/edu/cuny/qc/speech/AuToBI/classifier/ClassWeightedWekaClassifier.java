@@ -23,10 +23,17 @@
  */
 package edu.cuny.qc.speech.AuToBI.classifier;
 
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.Feature;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
 import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
 import weka.classifiers.Classifier;
+import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Map;
+import java.util.Set;
 
 /**
  * ClassWeightedWekaClassifier is an AuToBI wrapper around a weka classifier.
@@ -57,12 +64,45 @@ public class ClassWeightedWekaClassifier extends WekaClassifier {
   public void train(FeatureSet feature_set) throws Exception {
     setFeatures(feature_set.getFeatures());
     class_attribute = feature_set.getClassAttribute();
+    resetLabels();
 
     ClassBasedWeightFunctionTrainer trainer =
         new ClassBasedWeightFunctionTrainer(class_attribute, ClassBasedWeightFunctionTrainer.WeightType.LINEAR);
     ClassBasedWeightFunction fn = trainer.trainWeightFunction(feature_set.getDataPoints());
 
-    Instances weka_instances = ClassifierUtils.convertFeatureSetToWeightedWekaInstances(feature_set, fn);
+    Instances weka_instances =
+        ClassifierUtils.convertFeatureSetToWeightedWekaInstances(feature_set, fn, getNumThreads());
     weka_classifier.buildClassifier(weka_instances);
   }
+
+  /**
+   * Weights converted training data by class value and trains the weka classifier on it.
+   * <p/>
+   * The weights are those a ClassBasedWeightFunction trained on the same data points would assign.  The weights of
+   * the instances are replaced.
+   *
+   * @param instances       The training data, with unit weights
+   * @param features        the features the instances were converted from
+   * @param class_attribute the class attribute
+   * @throws Exception if weka has a training problem.
+   */
+  @Override
+  protected void train(Instances instances, Set<Feature> features, String class_attribute) throws Exception {
+    Distribution d = new Distribution();
+    for (int i = 0; i < instances.numInstances(); ++i) {
+      Instance inst = instances.instance(i);
+      if (!Utils.isMissingValue(inst.classValue())) {
+        d.add(instances.classAttribute().value((int) inst.classValue()));
+      }
+    }
+    Map<String, Double> weights =
+        ClassBasedWeightFunctionTrainer.getClassWeightMapping(d, ClassBasedWeightFunctionTrainer.WeightType.LINEAR);
+    for (int i = 0; i < instances.numInstances(); ++i) {
+      Instance inst = instances.instance(i);
+      inst.setWeight(Utils.isMissingValue(inst.classValue()) ? 0 :
+          weights.get(instances.classAttribute().value((int) inst.classValue())));
+    }
+
+    super.train(instances, features, class_attribute);
+  }
 }
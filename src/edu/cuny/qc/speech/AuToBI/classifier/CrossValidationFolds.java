@@ -0,0 +1,342 @@
+/*  CrossValidationFolds.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.classifier;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+import edu.cuny.qc.speech.AuToBI.util.PartitionUtils;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * CrossValidationFolds describes the division of a list of data points into cross validation folds.
+ * <p/>
+ * The fold assignment is read from a feature on each data point in a single pass, and stored as a permutation of the
+ * data points grouped by fold.  The testing points of a fold are then a contiguous range of this permutation, and the
+ * training points are the two ranges on either side of it.  Training and testing lists are read-only views over the
+ * original data points, so no Word lists are copied and no Word is reassigned to a new FeatureSet when a fold is
+ * constructed.
+ * <p/>
+ * Data points without a fold assignment are included in every training fold and never in a testing fold.
+ * <p/>
+ * Within a fold the data points retain their original relative order, but training views list the points fold by
+ * fold.
+ */
+public class CrossValidationFolds {
+  private List<Word> data_points;  // the data points
+  private int num_folds;           // the number of folds
+  private int[] order;             // indices into data_points grouped by fold; unassigned points are last
+  private int[] offsets;           // offsets[i] is the first position in order of fold i's points
+
+  /**
+   * Constructs CrossValidationFolds from an existing fold assignment.
+   *
+   * @param data_points  the data points
+   * @param fold_feature the feature containing the Integer fold assignment of each data point
+   * @param num_folds    the number of folds
+   * @throws AuToBIException if a data point is assigned to a fold outside of [0, num_folds)
+   */
+  public CrossValidationFolds(List<Word> data_points, String fold_feature, int num_folds) throws AuToBIException {
+    if (num_folds < 1) {
+      throw new AuToBIException("Cannot construct " + num_folds + " cross validation folds.");
+    }
+    this.data_points = (data_points instanceof RandomAccess) ? data_points : new ArrayList<Word>(data_points);
+    this.num_folds = num_folds;
+
+    int n = this.data_points.size();
+    int[] assignment = new int[n];
+    int[] counts = new int[num_folds + 1];
+    for (int i = 0; i < n; ++i) {
+      Word w = this.data_points.get(i);
+      int fold = num_folds;
+      if (w.hasAttribute(fold_feature)) {
+        fold = (Integer) w.getAttribute(fold_feature);
+        if (fold < 0 || fold >= num_folds) {
+          throw new AuToBIException("Invalid fold assignment, " + fold + ", on Region: " + w.toString());
+        }
+      }
+      assignment[i] = fold;
+      counts[fold]++;
+    }
+
+    // A stable counting sort of the data point indices by fold.
+    offsets = new int[num_folds + 2];
+    for (int fold = 0; fold <= num_folds; ++fold) {
+      offsets[fold + 1] = offsets[fold] + counts[fold];
+    }
+    int[] next = Arrays.copyOf(offsets, num_folds + 1);
+    order = new int[n];
+    for (int i = 0; i < n; ++i) {
+      order[next[assignment[i]]++] = i;
+    }
+  }
+
+  /**
+   * Assigns stratified folds to the data points and constructs CrossValidationFolds from the assignment.
+   *
+   * @param data_points     the data points
+   * @param fold_feature    the feature to store the fold assignment on
+   * @param num_folds       the number of folds
+   * @param class_attribute the class attribute to stratify by
+   * @return the folds
+   * @throws AuToBIException if a data point does not have a class attribute
+   * @see PartitionUtils#assignStratifiedFoldNum(List, String, Integer, String)
+   */
+  public static CrossValidationFolds stratified(List<Word> data_points, String fold_feature, int num_folds,
+                                                String class_attribute) throws AuToBIException {
+    PartitionUtils.assignStratifiedFoldNum(data_points, fold_feature, num_folds, class_attribute);
+    return new CrossValidationFolds(data_points, fold_feature, num_folds);
+  }
+
+  /**
+   * Retrieves the number of folds.
+   *
+   * @return the number of folds
+   */
+  public int getNumFolds() {
+    return num_folds;
+  }
+
+  /**
+   * Retrieves the data points.
+   *
+   * @return the data points
+   */
+  public List<Word> getDataPoints() {
+    return data_points;
+  }
+
+  /**
+   * Retrieves a read-only view of the testing points of a fold.
+   *
+   * @param fold the fold
+   * @return the data points assigned to fold
+   */
+  public List<Word> getTestingPoints(int fold) {
+    checkFold(fold);
+    return new FoldView(data_points, order, offsets[fold], offsets[fold + 1], 0, 0);
+  }
+
+  /**
+   * Retrieves a read-only view of the training points of a fold.
+   *
+   * @param fold the fold
+   * @return the data points that are not assigned to fold
+   */
+  public List<Word> getTrainingPoints(int fold) {
+    checkFold(fold);
+    return new FoldView(data_points, order, 0, offsets[fold], offsets[fold + 1], order.length);
+  }
+
+  /**
+   * Retrieves a read-only view of the points assigned to a fold together with every unassigned point.
+   * <p/>
+   * This describes ensemble sampling, where each sample contains one fold of the majority class points and all of the
+   * other points.
+   *
+   * @param fold the fold
+   * @return the data points assigned to fold or to no fold
+   */
+  public List<Word> getSamplePoints(int fold) {
+    checkFold(fold);
+    return new FoldView(data_points, order, offsets[fold], offsets[fold + 1], offsets[num_folds], order.length);
+  }
+
+  /**
+   * Constructs a training FeatureSet for a fold.
+   * <p/>
+   * The data points must already be assigned to fs, or an equivalent FeatureSet.  The features of the returned
+   * FeatureSet are constructed from the training points.
+   *
+   * @param fs   the FeatureSet describing the data points
+   * @param fold the fold
+   * @return a FeatureSet over the training points of fold
+   */
+  public FeatureSet getTrainingFeatureSet(FeatureSet fs, int fold) {
+    FeatureSet training_fs = fs.newInstance(getTrainingPoints(fold));
+    training_fs.constructFeatures();
+    return training_fs;
+  }
+
+  /**
+   * Constructs a testing FeatureSet for a fold.
+   * <p/>
+   * The data points must already be assigned to fs, or an equivalent FeatureSet.
+   *
+   * @param fs   the FeatureSet describing the data points
+   * @param fold the fold
+   * @return a FeatureSet over the testing points of fold
+   */
+  public FeatureSet getTestingFeatureSet(FeatureSet fs, int fold) {
+    return fs.newInstance(getTestingPoints(fold));
+  }
+
+  /**
+   * Trains one classifier per fold on the fold's training points.
+   *
+   * @param classifier the classifier to copy for each fold
+   * @param fs         the FeatureSet describing the data points
+   * @param executor   the executor to train the folds on
+   * @return the trained classifiers, indexed by fold
+   * @throws AuToBIException if training any fold fails
+   */
+  public List<AuToBIClassifier> trainFolds(AuToBIClassifier classifier, FeatureSet fs, ExecutorService executor)
+      throws AuToBIException {
+    return AuToBIUtils.invokeAll(generateFoldTasks(classifier, fs, null), executor);
+  }
+
+  /**
+   * Trains one classifier per fold on a temporary pool of threads.
+   *
+   * @param classifier  the classifier to copy for each fold
+   * @param fs          the FeatureSet describing the data points
+   * @param num_threads the number of threads to train on
+   * @return the trained classifiers, indexed by fold
+   * @throws AuToBIException if training any fold fails
+   */
+  public List<AuToBIClassifier> trainFolds(AuToBIClassifier classifier, FeatureSet fs, int num_threads)
+      throws AuToBIException {
+    return AuToBIUtils.invokeAll(generateFoldTasks(classifier, fs, null), num_threads);
+  }
+
+  /**
+   * Generates cross validated hypotheses for every data point that is assigned to a fold.
+   * <p/>
+   * Each fold trains a copy of the classifier on its training points and evaluates its testing points.  Folds run
+   * concurrently on the executor.  No attributes are set on the data points, so the caller may safely store the
+   * results once this method returns.
+   *
+   * @param classifier the classifier to copy for each fold
+   * @param fs         the FeatureSet describing the data points
+   * @param executor   the executor to run the folds on
+   * @return a distribution for each data point, parallel to getDataPoints(); null for unassigned points
+   * @throws AuToBIException if training or evaluating any fold fails
+   */
+  public Distribution[] generateCrossValidatedDistributions(AuToBIClassifier classifier, FeatureSet fs,
+                                                            ExecutorService executor) throws AuToBIException {
+    Distribution[] distributions = new Distribution[data_points.size()];
+    AuToBIUtils.invokeAll(generateFoldTasks(classifier, fs, distributions), executor);
+    return distributions;
+  }
+
+  /**
+   * Generates cross validated hypotheses on a temporary pool of threads.
+   *
+   * @param classifier  the classifier to copy for each fold
+   * @param fs          the FeatureSet describing the data points
+   * @param num_threads the number of threads to run on
+   * @return a distribution for each data point, parallel to getDataPoints(); null for unassigned points
+   * @throws AuToBIException if training or evaluating any fold fails
+   */
+  public Distribution[] generateCrossValidatedDistributions(AuToBIClassifier classifier, FeatureSet fs,
+                                                            int num_threads) throws AuToBIException {
+    Distribution[] distributions = new Distribution[data_points.size()];
+    AuToBIUtils.invokeAll(generateFoldTasks(classifier, fs, distributions), num_threads);
+    return distributions;
+  }
+
+  /**
+   * Generates a task for each fold which trains a copy of the classifier on the fold's training points.
+   * <p/>
+   * If distributions is not null, each task also stores the hypotheses for the fold's testing points in it.
+   *
+   * @param classifier    the classifier to copy for each fold
+   * @param fs            the FeatureSet describing the data points
+   * @param distributions the destination for the hypotheses, parallel to getDataPoints(), or null
+   * @return the tasks, indexed by fold
+   */
+  private List<Callable<AuToBIClassifier>> generateFoldTasks(final AuToBIClassifier classifier, final FeatureSet fs,
+                                                             final Distribution[] distributions) {
+    List<Callable<AuToBIClassifier>> tasks = new ArrayList<Callable<AuToBIClassifier>>();
+    for (int fold = 0; fold < num_folds; ++fold) {
+      final int f = fold;
+      tasks.add(new Callable<AuToBIClassifier>() {
+        public AuToBIClassifier call() throws Exception {
+          AuToBIClassifier c = classifier.newInstance();
+          c.train(getTrainingFeatureSet(fs, f));
+          if (distributions != null) {
+            for (int i = offsets[f]; i < offsets[f + 1]; ++i) {
+              distributions[order[i]] = c.distributionForInstance(data_points.get(order[i]));
+            }
+          }
+          return c;
+        }
+      });
+    }
+    return tasks;
+  }
+
+  /**
+   * Confirms that a fold number is valid.
+   *
+   * @param fold the fold number
+   */
+  private void checkFold(int fold) {
+    if (fold < 0 || fold >= num_folds) {
+      throw new IndexOutOfBoundsException("Fold " + fold + " is not in [0, " + num_folds + ")");
+    }
+  }
+
+  /**
+   * A read-only list of the data points in up to two ranges of a permutation.
+   */
+  private static class FoldView extends AbstractList<Word> implements RandomAccess {
+    private final List<Word> data_points;
+    private final int[] order;
+    private final int start1;
+    private final int length1;
+    private final int start2;
+    private final int size;
+
+    FoldView(List<Word> data_points, int[] order, int start1, int end1, int start2, int end2) {
+      this.data_points = data_points;
+      this.order = order;
+      this.start1 = start1;
+      this.length1 = end1 - start1;
+      this.start2 = start2;
+      this.size = length1 + end2 - start2;
+    }
+
+    @Override
+    public Word get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      if (index < length1) {
+        return data_points.get(order[start1 + index]);
+      }
+      return data_points.get(order[start2 + index - length1]);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
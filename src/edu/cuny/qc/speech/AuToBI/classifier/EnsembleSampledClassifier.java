@@ -24,13 +24,25 @@
 package edu.cuny.qc.speech.AuToBI.classifier;
 
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.CompactRowStore;
 import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.Feature;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.NominalDictionary;
+import edu.cuny.qc.speech.AuToBI.core.Pair;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
 import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
 import edu.cuny.qc.speech.AuToBI.util.PartitionUtils;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
 
-import java.util.List;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Ensemble Sampling Classifiers divide the training data into k samples.  Then k classifiers are trained. During
@@ -41,8 +53,11 @@ import java.util.ArrayList;
  * of the largest minority class.
  */
 public class EnsembleSampledClassifier extends AuToBIClassifier {
+  private static final long serialVersionUID = 6362813741037933823L;
+
   protected List<AuToBIClassifier> classifiers;  // the ensemble of trained classifiers
   protected AuToBIClassifier classifier;         // a placeholder for a single classifier
+  private transient int num_threads;             // the number of threads to train and evaluate members on
 
 
   /**
@@ -54,6 +69,26 @@ public class EnsembleSampledClassifier extends AuToBIClassifier {
     this.classifier = c;
   }
 
+  /**
+   * Sets the number of threads used to train the ensemble members and to evaluate them in posteriorsForInstances.
+   * <p/>
+   * This is not serialized.  By default, and after deserialization, a single thread is used.
+   *
+   * @param num_threads the number of threads
+   */
+  public void setNumThreads(int num_threads) {
+    this.num_threads = num_threads;
+  }
+
+  /**
+   * Retrieves the number of threads used to train and evaluate the ensemble members.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return Math.max(1, num_threads);
+  }
+
   /**
    * Generate a distribution of hypotheses based on the ensemble of trained classifiers
    *
@@ -62,38 +97,163 @@ public class EnsembleSampledClassifier extends AuToBIClassifier {
    * @throws Exception if there is a classification problem
    */
   public Distribution distributionForInstance(Word testing_point) throws Exception {
+    return posteriorForInstance(testing_point).toDistribution();
+  }
 
-    Distribution dist = new Distribution();
+  /**
+   * Generate a posterior based on the ensemble of trained classifiers
+   *
+   * @param testing_point The point to evaluate
+   * @return a posterior over the hypotheses
+   * @throws Exception if there is a classification problem
+   */
+  @Override
+  public Posterior posteriorForInstance(Word testing_point) throws Exception {
+    List<Posterior> posteriors = new ArrayList<Posterior>(classifiers.size());
     for (AuToBIClassifier c : classifiers) {
-      Distribution d = c.distributionForInstance(testing_point);
+      posteriors.add(c.posteriorForInstance(testing_point));
+    }
+    return combine(posteriors);
+  }
 
-      for (String key : d.keySet()) {
-        if (dist.containsKey(key)) {
-          dist.put(key, dist.get(key) * d.get(key));
+  /**
+   * Generate a posterior for each of a list of points.
+   * <p/>
+   * Each ensemble member evaluates every point, and the members run concurrently.  The member posteriors are then
+   * combined in the same order as posteriorForInstance, so the results are identical.
+   *
+   * @param testing_points The points to evaluate
+   * @return a posterior for each point
+   * @throws Exception if there is a classification problem
+   */
+  @Override
+  public List<Posterior> posteriorsForInstances(final List<Word> testing_points) throws Exception {
+    List<Callable<List<Posterior>>> tasks = new ArrayList<Callable<List<Posterior>>>();
+    for (final AuToBIClassifier c : classifiers) {
+      tasks.add(new Callable<List<Posterior>>() {
+        public List<Posterior> call() throws Exception {
+          return c.posteriorsForInstances(testing_points);
+        }
+      });
+    }
+    List<List<Posterior>> member_posteriors = AuToBIUtils.invokeAll(tasks, getNumThreads());
+
+    List<Posterior> posteriors = new ArrayList<Posterior>(testing_points.size());
+    List<Posterior> point_posteriors = new ArrayList<Posterior>(classifiers.size());
+    for (int i = 0; i < testing_points.size(); ++i) {
+      point_posteriors.clear();
+      for (List<Posterior> p : member_posteriors) {
+        point_posteriors.add(p.get(i));
+      }
+      posteriors.add(combine(point_posteriors));
+    }
+    return posteriors;
+  }
+
+  /**
+   * Combines the posteriors of each ensemble member by taking their normalized product.
+   * <p/>
+   * A label that some members do not hypothesize takes the product of the members that do.
+   *
+   * @param posteriors the posterior from each member
+   * @return the combined posterior
+   * @throws AuToBIException if the combined posterior cannot be normalized
+   */
+  protected Posterior combine(List<Posterior> posteriors) throws AuToBIException {
+    NominalDictionary labels = posteriors.isEmpty() ? new NominalDictionary().freeze() : posteriors.get(0).getLabels();
+    for (Posterior p : posteriors) {
+      if (!p.getLabels().equals(labels)) {
+        labels = mergeLabels(posteriors);
+        break;
+      }
+    }
+
+    Posterior result = new Posterior(labels);
+    boolean[] assigned = new boolean[labels.size()];
+    for (Posterior p : posteriors) {
+      boolean shared = p.getLabels() == labels || p.getLabels().equals(labels);
+      for (int i = 0; i < p.size(); ++i) {
+        int j = shared ? i : labels.encode(p.getLabels().decode(i));
+        if (assigned[j]) {
+          result.set(j, result.get(j) * p.get(i));
         } else {
-          dist.put(key, d.get(key));
+          result.set(j, p.get(i));
+          assigned[j] = true;
         }
       }
     }
-    dist.normalize();
-    return dist;
+    result.normalize();
+    return result;
+  }
+
+  /**
+   * Constructs a label dictionary containing every label of a list of posteriors.
+   *
+   * @param posteriors the posteriors
+   * @return the union of their labels
+   */
+  private static NominalDictionary mergeLabels(List<Posterior> posteriors) {
+    NominalDictionary labels = new NominalDictionary();
+    for (Posterior p : posteriors) {
+      labels.merge(p.getLabels());
+    }
+    return labels.freeze();
   }
 
   /**
    * Train an ensemble of classifiers.
+   * <p/>
+   * The ensemble members are trained concurrently.
    *
    * @param feature_set The training data
    * @throws Exception if there is a training problem
    */
   public void train(FeatureSet feature_set) throws Exception {
-    classifiers = new ArrayList<AuToBIClassifier>();
-    List<FeatureSet> training_sets = constructEnsembleFeatureSets(feature_set);
+    List<Callable<AuToBIClassifier>> tasks = new ArrayList<Callable<AuToBIClassifier>>();
+    for (final FeatureSet fs : constructEnsembleFeatureSets(feature_set)) {
+      tasks.add(new Callable<AuToBIClassifier>() {
+        public AuToBIClassifier call() throws Exception {
+          AuToBIClassifier c = classifier.newInstance();
+          c.train(fs);
+          return c;
+        }
+      });
+    }
+    classifiers = AuToBIUtils.invokeAll(tasks, getNumThreads());
+  }
+
+  /**
+   * Train an ensemble of classifiers on the rows of a CompactRowStore.
+   * <p/>
+   * If the members are WekaClassifiers, the rows are converted to weka instances once, and each member is trained on
+   * its sample of the instances without constructing Word objects.  The samples are drawn as
+   * constructEnsembleFeatureSets draws them.  Other members are trained on the FeatureSet that the store materializes.
+   *
+   * @param store The training data
+   * @throws Exception if there is a training problem
+   */
+  @Override
+  public void train(CompactRowStore store) throws Exception {
+    if (!(classifier instanceof WekaClassifier)) {
+      super.train(store);
+      return;
+    }
+    FeatureSet feature_set = store.getFeatureSet();
+    final Set<Feature> features = feature_set.getFeatures();
+    final String class_attribute = feature_set.getClassAttribute();
+    Instances instances = ClassifierUtils.convertCompactRowStoreToWekaInstances(store, null);
 
-    for (FeatureSet fs : training_sets) {
-      AuToBIClassifier c = classifier.newInstance();
-      c.train(fs);
-      classifiers.add(c);
+    List<Callable<AuToBIClassifier>> tasks = new ArrayList<Callable<AuToBIClassifier>>();
+    for (final Instances sample : constructEnsembleSamples(instances, store.getClassDistribution())) {
+      tasks.add(new Callable<AuToBIClassifier>() {
+        public AuToBIClassifier call() throws Exception {
+          WekaClassifier c = (WekaClassifier) classifier.newInstance();
+          c.train(sample, features, class_attribute);
+          return c;
+        }
+      });
     }
+    classifiers = AuToBIUtils.invokeAll(tasks, getNumThreads());
   }
 
   /**
@@ -102,16 +262,116 @@ public class EnsembleSampledClassifier extends AuToBIClassifier {
    * @return a new EnsembleSampledClassifierInstance
    */
   public AuToBIClassifier newInstance() {
-    return new EnsembleSampledClassifier(classifier);
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(classifier);
+    c.setNumThreads(getNumThreads());
+    return c;
   }
 
+  /**
+   * Constructs the training sets for each member of the ensemble.
+   * <p/>
+   * The training sets are read-only views over the data points of training_set.
+   *
+   * @param training_set the training data
+   * @return a training set for each member of the ensemble
+   * @throws AuToBIException if the training sets cannot be constructed
+   */
   public List<FeatureSet> constructEnsembleFeatureSets(FeatureSet training_set) throws AuToBIException {
     List<FeatureSet> training_sets = new ArrayList<FeatureSet>();
 
-    // Identify the majority class.
     Distribution class_distribution =
         PartitionUtils.generateAttributeDistribution(training_set.getDataPoints(), training_set.getClassAttribute());
+    Pair<String, Integer> majority = getMajorityClass(class_distribution);
+    String majority_class = majority.first;
+    int num_folds = majority.second;
+
+    // Assign folds to majority class data points -- each majority class data point exists in a single training set,
+    // each other point exists in all of them.
+    List<Word> majority_class_points = PartitionUtils
+        .getAttributeMatchingWords(training_set.getDataPoints(), training_set.getClassAttribute(), majority_class);
+    PartitionUtils.assignFoldNum(majority_class_points, "ensemble_sampling_fold", num_folds);
 
+    // Generate training sets.
+    CrossValidationFolds folds =
+        new CrossValidationFolds(training_set.getDataPoints(), "ensemble_sampling_fold", num_folds);
+    for (int i = 0; i < num_folds; ++i) {
+      training_sets.add(training_set.newInstance(folds.getSamplePoints(i)));
+    }
+    return training_sets;
+  }
+
+  /**
+   * Constructs the training instances for each member of the ensemble.
+   * <p/>
+   * Majority class instances are assigned to a single sample and every other instance appears in each sample, as in
+   * constructEnsembleFeatureSets.  Each sample holds copies of its instances with unit weights, so that members may
+   * reweight them.
+   *
+   * @param instances          the training data
+   * @param class_distribution the distribution of class values of the training data
+   * @return training instances for each member of the ensemble
+   * @throws AuToBIException if the samples cannot be constructed
+   */
+  private static List<Instances> constructEnsembleSamples(Instances instances, Distribution class_distribution)
+      throws AuToBIException {
+    Pair<String, Integer> majority = getMajorityClass(class_distribution);
+    int num_folds = majority.second;
+    int majority_value = majority.first == null ? -1 : instances.classAttribute().indexOfValue(majority.first);
+
+    int n = instances.numInstances();
+    boolean[] is_majority = new boolean[n];
+    int majority_size = 0;
+    for (int i = 0; i < n; ++i) {
+      double value = instances.instance(i).classValue();
+      is_majority[i] = !Double.isNaN(value) && (int) value == majority_value;
+      if (is_majority[i]) {
+        majority_size++;
+      }
+    }
+    int[] assignment = PartitionUtils.generateFoldAssignment(majority_size, num_folds);
+
+    // Each sample holds the majority class instances of its fold followed by the remaining instances, in order.
+    int[] folds = new int[n];
+    for (int i = 0, j = 0; i < n; ++i) {
+      folds[i] = is_majority[i] ? assignment[j++] : num_folds;
+    }
+    List<Instances> samples = new ArrayList<Instances>();
+    for (int fold = 0; fold < num_folds; ++fold) {
+      Instances sample = new Instances(instances, 0);
+      for (int i = 0; i < n; ++i) {
+        if (folds[i] == fold) {
+          sample.add(copy(instances.instance(i)));
+        }
+      }
+      for (int i = 0; i < n; ++i) {
+        if (folds[i] == num_folds) {
+          sample.add(copy(instances.instance(i)));
+        }
+      }
+      samples.add(sample);
+    }
+    return samples;
+  }
+
+  /**
+   * Copies an instance with a unit weight.
+   *
+   * @param inst the instance
+   * @return the copy
+   */
+  private static Instance copy(Instance inst) {
+    return new DenseInstance(1, inst.toDoubleArray());
+  }
+
+  /**
+   * Identifies the majority class of a distribution and the number of ensemble members to divide it among.
+   * <p/>
+   * The number of members is the size of the majority class divided by the size of the largest minority class.
+   *
+   * @param class_distribution the number of data points with each class value
+   * @return the majority class and the number of ensemble members
+   */
+  private static Pair<String, Integer> getMajorityClass(Distribution class_distribution) {
     String majority_class = null;
     Double majority_size = 0.0;
     Double second_largest_size = 0.0;
@@ -126,25 +386,6 @@ public class EnsembleSampledClassifier extends AuToBIClassifier {
         }
       }
     }
-
-    // Assign folds to majority class data points -- each majority class data point exists in a single training set,
-    // each other point exists in all of them.
-    int num_folds = (int) Math.floor(majority_size / second_largest_size);
-    List<Word> majority_class_points = PartitionUtils
-        .getAttributeMatchingWords(training_set.getDataPoints(), training_set.getClassAttribute(), majority_class);
-    PartitionUtils.assignFoldNum(majority_class_points, "ensemble_sampling_fold", num_folds);
-
-    // Generate training sets.
-    for (int i = 0; i < num_folds; ++i) {
-      FeatureSet sampled_training_set = training_set.newInstance();
-      for (Word w : training_set.getDataPoints()) {
-        if (w.hasAttribute("ensemble_sampling_fold") && !w.getAttribute("ensemble_sampling_fold").equals(i)) {
-          sampled_training_set.getDataPoints().remove(w);
-        }
-      }
-
-      training_sets.add(sampled_training_set);
-    }
-    return training_sets;
+    return new Pair<String, Integer>(majority_class, (int) Math.floor(majority_size / second_largest_size));
   }
 }
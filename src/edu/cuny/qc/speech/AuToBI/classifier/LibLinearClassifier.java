@@ -28,7 +28,9 @@ import de.bwaldvogel.liblinear.*;
 import edu.cuny.qc.speech.AuToBI.core.*;
 import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -36,6 +38,7 @@ import java.util.Map;
  * LibLinearClassifier is a wrapper around a liblinear classifier with class based weights.
  */
 public class LibLinearClassifier extends AuToBIClassifier {
+  private static final long serialVersionUID = 2768932744000112191L;
 
   private final SolverType solver;
   private final double C;
@@ -48,6 +51,8 @@ public class LibLinearClassifier extends AuToBIClassifier {
 
   protected String class_attribute;
   protected String[] class_values;
+  private transient NominalDictionary labels;  // the class labels of the posteriors
+  private transient volatile LibLinearScorer scorer;  // the model with normalization folded in, built on first use
 
   public LibLinearClassifier() {
     this(false);
@@ -71,6 +76,16 @@ public class LibLinearClassifier extends AuToBIClassifier {
 
   @Override
   public Distribution distributionForInstance(Word testing_point) throws Exception {
+    return posteriorForInstance(testing_point).toDistribution();
+  }
+
+  @Override
+  public Posterior posteriorForInstance(Word testing_point) throws Exception {
+    LibLinearScorer s = getScorer();
+    if (s != null) {
+      return new Posterior(getLabels(), s.score(testing_point));
+    }
+
     de.bwaldvogel.liblinear.Feature[] raw_instance =
         ClassifierUtils.convertWordToLibLinearFeatures(testing_point, feature_map);
 
@@ -78,13 +93,57 @@ public class LibLinearClassifier extends AuToBIClassifier {
         ClassifierUtils.normalizeLibLinearFeatures(raw_instance, feature_map.inverse(), norm_map);
 
     double[] prob_estimates = new double[class_values.length];
-    double h = Linear.predictProbability(classifier, instance, prob_estimates);
+    Linear.predictProbability(classifier, instance, prob_estimates);
 
-    Distribution d = new Distribution();
-    for (int i = 0; i < class_values.length; ++i)
-      d.put(class_values[i], prob_estimates[i]);
+    return new Posterior(getLabels(), prob_estimates);
+  }
+
+  /**
+   * Evaluates the classifier on a list of points.
+   * <p/>
+   * Probability models are scored in dense blocks by a LibLinearScorer.
+   *
+   * @param testing_points The points to evaluate
+   * @return a posterior for each point, in the same order as the points
+   * @throws Exception If something fails.
+   */
+  @Override
+  public List<Posterior> posteriorsForInstances(List<Word> testing_points) throws Exception {
+    LibLinearScorer s = getScorer();
+    if (s == null) {
+      return super.posteriorsForInstances(testing_points);
+    }
+    List<Posterior> posteriors = new ArrayList<Posterior>(testing_points.size());
+    for (double[] prob_estimates : s.scoreAll(testing_points)) {
+      posteriors.add(new Posterior(getLabels(), prob_estimates));
+    }
+    return posteriors;
+  }
 
-    return d;
+  /**
+   * Retrieves the class labels of the posteriors.
+   *
+   * @return the label dictionary
+   */
+  private NominalDictionary getLabels() {
+    if (labels == null) {
+      labels = new NominalDictionary(class_values).freeze();
+    }
+    return labels;
+  }
+
+  /**
+   * Retrieves the scorer for the trained model, constructing it if necessary.
+   * <p/>
+   * The scorer is not serialized, so a deserialized classifier constructs it on first use.
+   *
+   * @return the scorer, or null if the model does not produce probabilities
+   */
+  private LibLinearScorer getScorer() {
+    if (scorer == null && classifier != null && classifier.isProbabilityModel()) {
+      scorer = new LibLinearScorer(classifier, feature_map, norm_map, class_values.length);
+    }
+    return scorer;
   }
 
   @Override
@@ -94,53 +153,104 @@ public class LibLinearClassifier extends AuToBIClassifier {
    * @param feature_set the feature set
    */
   public void train(FeatureSet feature_set) throws Exception {
-    Parameter parameter = new Parameter(solver, C, eps);
     feature_map = ClassifierUtils.generateFeatureMap(feature_set);
     class_attribute = feature_set.getClassAttribute();
+    setClassValues(feature_set.getFeature(class_attribute));
+
+    // convert feature set
+    de.bwaldvogel.liblinear.Feature[][] raw_x =
+        ClassifierUtils.convertFeatureSetToLibLinearFeatures(feature_set, feature_map);
+
+    // calculate (and store) normalization parameters
+    norm_map = ClassifierUtils.generateNormParams(feature_set);
+
+    Map<String, Double> weights = null;
+    if (class_weighting) {
+      weights = ClassBasedWeightFunctionTrainer.getClassWeightMapping(feature_set.getDataPoints(), class_attribute,
+          ClassBasedWeightFunctionTrainer.WeightType.LINEAR);
+    }
 
-    // Construct a list of valid values for the class attribtue.
-    edu.cuny.qc.speech.AuToBI.core.Feature class_feature = feature_set.getFeature(class_attribute);
+    train(raw_x, ClassifierUtils.convertFeatureSetToLibLinearLabels(feature_set, class_values), weights);
+  }
+
+  /**
+   * Trains the classifier directly from the rows of a CompactRowStore.
+   * <p/>
+   * The resulting model is identical to the one trained on the FeatureSet that the store would materialize.
+   *
+   * @param store The training data
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public void train(CompactRowStore store) throws Exception {
+    FeatureSet feature_set = store.getFeatureSet();
+    feature_map = ClassifierUtils.generateFeatureMap(feature_set);
+    class_attribute = feature_set.getClassAttribute();
+    setClassValues(feature_set.getFeature(class_attribute));
+
+    de.bwaldvogel.liblinear.Feature[][] raw_x =
+        ClassifierUtils.convertCompactRowStoreToLibLinearFeatures(store, feature_map);
+    norm_map = ClassifierUtils.generateNormParams(store);
+
+    Map<String, Double> weights = null;
+    if (class_weighting) {
+      weights = ClassBasedWeightFunctionTrainer.getClassWeightMapping(store.getClassDistribution(),
+          ClassBasedWeightFunctionTrainer.WeightType.LINEAR);
+    }
+
+    train(raw_x, ClassifierUtils.convertCompactRowStoreToLibLinearLabels(store, class_values), weights);
+  }
+
+  /**
+   * Constructs the list of valid values for the class attribute.
+   *
+   * @param class_feature the class feature
+   */
+  private void setClassValues(edu.cuny.qc.speech.AuToBI.core.Feature class_feature) {
     class_values = new String[class_feature.getNominalValues().size()];
     int j = 0;
     for (String s : class_feature.getNominalValues()) {
       class_values[j] = s;
       j++;
     }
+    labels = null;
+  }
+
+  /**
+   * Normalizes the training data and trains the liblinear model.
+   *
+   * @param raw_x   the unnormalized training features
+   * @param y       the training labels
+   * @param weights the weight of each class value, or null for unweighted training
+   */
+  private void train(de.bwaldvogel.liblinear.Feature[][] raw_x, double[] y, Map<String, Double> weights) {
+    Parameter parameter = new Parameter(solver, C, eps);
 
     // Set up the liblinear problem
     Problem problem = new Problem();
-    problem.l = feature_set.getDataPoints().size();
+    problem.l = raw_x.length;
     problem.n = feature_map.size();
 
-    // convert feature set
-    de.bwaldvogel.liblinear.Feature[][] raw_x =
-        ClassifierUtils.convertFeatureSetToLibLinearFeatures(feature_set, feature_map);
-
-    // calculate (and store) normalization parameters
-    norm_map = ClassifierUtils.generateNormParams(feature_set);
-
     // normalize features
     problem.x = ClassifierUtils.normalizeLibLinearFeatures(raw_x, feature_map.inverse(), norm_map);
-    problem.y = ClassifierUtils.convertFeatureSetToLibLinearLabels(feature_set, class_values);
-
-    if (class_weighting) {
-      // calculate and set weights
-      Map<String, Double> map =
-          ClassBasedWeightFunctionTrainer.getClassWeightMapping(feature_set.getDataPoints(), class_attribute,
-              ClassBasedWeightFunctionTrainer.WeightType.LINEAR);
+    problem.y = y;
 
-      double[] weights = new double[class_values.length];
-      int[] labels = new int[class_values.length];
+    if (weights != null) {
+      // set weights
+      double[] class_weights = new double[class_values.length];
+      int[] class_labels = new int[class_values.length];
       for (int i = 0; i < class_values.length; ++i) {
-        labels[i] = i + 1;
-        weights[i] = map.get(class_values[i]);
+        class_labels[i] = i + 1;
+        class_weights[i] = weights.get(class_values[i]);
       }
-      parameter.setWeights(weights, labels);
+      parameter.setWeights(class_weights, class_labels);
     }
 
     // TODO xval to tune parameters C and eps
 
     classifier = Linear.train(problem, parameter);
+    scorer = null;
+    getScorer();
   }
 
 
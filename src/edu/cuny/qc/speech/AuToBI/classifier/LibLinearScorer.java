@@ -0,0 +1,297 @@
+/*  LibLinearScorer.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.classifier;
+
+import com.google.common.collect.BiMap;
+import de.bwaldvogel.liblinear.Model;
+import edu.cuny.qc.speech.AuToBI.core.Aggregation;
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Feature;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LibLinearScorer evaluates a liblinear logistic regression model directly from the attributes of a word.
+ * <p/>
+ * The z-score normalization applied to the training data is folded into the model at construction time.  Each
+ * weight is divided by the standard deviation of its feature and the contribution of the feature means is moved into
+ * a per-class bias.  Missing values are replaced by the feature mean, which contributes nothing after normalization,
+ * exactly as a missing feature does in the unnormalized model.  Features that are constant after normalization, e.g.
+ * nominal features, are dropped from the model entirely.
+ * <p/>
+ * Scoring a word then takes one attribute lookup and one multiply-add per feature and class, and scoring a list of
+ * words is a dense matrix-vector product over blocks of words.  The probabilities are those of
+ * Linear.predictProbability on the normalized liblinear features, up to floating point rounding.
+ */
+public class LibLinearScorer {
+  public static final int BLOCK_SIZE = 256;  // the number of words gathered into a dense block by scoreAll
+
+  private int num_outputs;          // the length of the probability arrays
+  private int nr_class;             // the number of classes in the model
+  private int nr_w;                 // the number of weight vectors in the model
+  private String[] names;           // the name of each scored feature
+  private Feature[] nominal;        // the nominal feature of each column, null for numeric features
+  private double[] means;           // the training mean of each scored feature
+  private double[] weights;         // the folded weights, indexed by weight vector then column
+  private double[] bias;            // the folded bias of each weight vector
+  private String[] degenerate_names;      // features with zero variance, which are scored without folding
+  private Feature[] degenerate_nominal;   // the nominal feature of each degenerate column, or null
+  private double[] degenerate_means;      // the training mean of each degenerate feature
+  private double[] degenerate_weights;    // the unfolded weights of the degenerate features
+  private String[] string_features;       // string features, which liblinear cannot score
+
+  /**
+   * Constructs a scorer for a trained liblinear model.
+   *
+   * @param model       the liblinear model
+   * @param feature_map the liblinear index of each feature
+   * @param norm_map    the normalization parameters of each feature
+   * @param num_outputs the length of the probability arrays
+   */
+  public LibLinearScorer(Model model, BiMap<Feature, Integer> feature_map, Map<String, Aggregation> norm_map,
+                         int num_outputs) {
+    this(model.getFeatureWeights(), model.getNrFeature(), model.getBias() >= 0, model.getNrClass(), feature_map,
+        norm_map, num_outputs);
+  }
+
+  /**
+   * Constructs a scorer from the weights of a liblinear model.
+   * <p/>
+   * Following liblinear, weights are stored by feature then weight vector, with a single weight vector for a two
+   * class model.
+   *
+   * @param model_weights the model weights
+   * @param nr_feature    the number of features in the model
+   * @param has_bias      true if the model weights include a bias feature
+   * @param nr_class      the number of classes in the model
+   * @param feature_map   the liblinear index of each feature
+   * @param norm_map      the normalization parameters of each feature
+   * @param num_outputs   the length of the probability arrays
+   */
+  public LibLinearScorer(double[] model_weights, int nr_feature, boolean has_bias, int nr_class,
+                         BiMap<Feature, Integer> feature_map, Map<String, Aggregation> norm_map, int num_outputs) {
+    this.num_outputs = num_outputs;
+    this.nr_class = nr_class;
+    this.nr_w = model_weights.length / (nr_feature + (has_bias ? 1 : 0));
+
+    BiMap<Integer, Feature> index_map = feature_map.inverse();
+    List<Integer> columns = new ArrayList<Integer>();
+    List<Integer> degenerate = new ArrayList<Integer>();
+    List<String> strings = new ArrayList<String>();
+    // As in ClassifierUtils.convertWordToLibLinearFeatures, the last feature index is not used.
+    for (int i = 1; i < feature_map.size(); ++i) {
+      Feature f = index_map.get(i);
+      if (f.isString()) {
+        strings.add(f.getName());
+        continue;
+      }
+      Aggregation agg = norm_map.get(f.getName());
+      if (i > nr_feature || agg == null || agg.getSize() < 2) {
+        continue;
+      }
+      if (agg.getStdev() == 0.0 || Double.isNaN(agg.getStdev())) {
+        degenerate.add(i);
+      } else {
+        columns.add(i);
+      }
+    }
+    string_features = strings.toArray(new String[strings.size()]);
+
+    int n = columns.size();
+    names = new String[n];
+    nominal = new Feature[n];
+    means = new double[n];
+    weights = new double[nr_w * n];
+    bias = new double[nr_w];
+    for (int j = 0; j < n; ++j) {
+      int idx = columns.get(j);
+      Feature f = index_map.get(idx);
+      Aggregation agg = norm_map.get(f.getName());
+      names[j] = f.getName();
+      nominal[j] = f.isNominal() ? f : null;
+      means[j] = agg.getMean();
+      double sd = agg.getStdev();
+      for (int k = 0; k < nr_w; ++k) {
+        double w = model_weights[(idx - 1) * nr_w + k] / sd;
+        weights[k * n + j] = w;
+        bias[k] -= w * means[j];
+      }
+    }
+
+    int d = degenerate.size();
+    degenerate_names = new String[d];
+    degenerate_nominal = new Feature[d];
+    degenerate_means = new double[d];
+    degenerate_weights = new double[nr_w * d];
+    for (int j = 0; j < d; ++j) {
+      int idx = degenerate.get(j);
+      Feature f = index_map.get(idx);
+      degenerate_names[j] = f.getName();
+      degenerate_nominal[j] = f.isNominal() ? f : null;
+      degenerate_means[j] = norm_map.get(f.getName()).getMean();
+      for (int k = 0; k < nr_w; ++k) {
+        degenerate_weights[k * d + j] = model_weights[(idx - 1) * nr_w + k];
+      }
+    }
+  }
+
+  /**
+   * Retrieves the raw value of a feature for a word.
+   *
+   * @param w       the word
+   * @param name    the feature name
+   * @param feature the nominal feature, or null for a numeric feature
+   * @return the value, or NaN if the word has no value
+   */
+  private static double getValue(Word w, String name, Feature feature) {
+    Object v = w.getAttribute(name);
+    if (v == null) {
+      return Double.NaN;
+    }
+    if (feature != null) {
+      return feature.getNominalIndex((String) v);
+    }
+    return (Double) v;
+  }
+
+  /**
+   * Checks that a word has no string features.
+   *
+   * @param w the word
+   * @throws AuToBIException if the word has a value for a string feature
+   */
+  private void checkStringFeatures(Word w) throws AuToBIException {
+    for (String name : string_features) {
+      if (w.hasAttribute(name)) {
+        throw new AuToBIException("Feature, " + name +
+            " is a 'string' feature.  LibLinear does not support this feature type.");
+      }
+    }
+  }
+
+  /**
+   * Adds the contribution of the zero variance features and the bias, and converts decision values to probabilities.
+   *
+   * @param w          the word
+   * @param dec_values the decision values of the word, overwritten by the probabilities
+   */
+  private void finish(Word w, double[] dec_values) {
+    int d = degenerate_names.length;
+    for (int j = 0; j < d; ++j) {
+      double v = getValue(w, degenerate_names[j], degenerate_nominal[j]);
+      if (!Double.isNaN(v)) {
+        double x = (v - degenerate_means[j]) / 0.0;
+        if (!Double.isNaN(x)) {
+          for (int k = 0; k < nr_w; ++k) {
+            dec_values[k] += degenerate_weights[k * d + j] * x;
+          }
+        }
+      }
+    }
+
+    for (int k = 0; k < nr_w; ++k) {
+      dec_values[k] = 1 / (1 + Math.exp(-(dec_values[k] + bias[k])));
+    }
+    if (nr_class == 2) {
+      dec_values[1] = 1. - dec_values[0];
+    } else {
+      double sum = 0;
+      for (int i = 0; i < nr_class; ++i) {
+        sum += dec_values[i];
+      }
+      for (int i = 0; i < nr_class; ++i) {
+        dec_values[i] = dec_values[i] / sum;
+      }
+    }
+  }
+
+  /**
+   * Calculates the class probabilities of a word.
+   *
+   * @param w the word
+   * @return the probability of each class, in the order of the model's weight vectors
+   * @throws AuToBIException if the word has a value for a string feature
+   */
+  public double[] score(Word w) throws AuToBIException {
+    checkStringFeatures(w);
+    double[] dec_values = new double[Math.max(num_outputs, nr_class)];
+    int n = names.length;
+    for (int j = 0; j < n; ++j) {
+      double v = getValue(w, names[j], nominal[j]);
+      if (Double.isNaN(v)) {
+        v = means[j];
+      }
+      for (int k = 0; k < nr_w; ++k) {
+        dec_values[k] += weights[k * n + j] * v;
+      }
+    }
+    finish(w, dec_values);
+    return dec_values;
+  }
+
+  /**
+   * Calculates the class probabilities of a list of words.
+   * <p/>
+   * The feature values of each block of BLOCK_SIZE words are gathered into a dense matrix which is multiplied by the
+   * folded weights.
+   *
+   * @param words the words
+   * @return the probability of each class for each word
+   * @throws AuToBIException if a word has a value for a string feature
+   */
+  public List<double[]> scoreAll(List<Word> words) throws AuToBIException {
+    List<double[]> scores = new ArrayList<double[]>(words.size());
+    int n = names.length;
+    double[] block = new double[BLOCK_SIZE * n];
+    for (int start = 0; start < words.size(); start += BLOCK_SIZE) {
+      int rows = Math.min(BLOCK_SIZE, words.size() - start);
+      for (int r = 0; r < rows; ++r) {
+        Word w = words.get(start + r);
+        checkStringFeatures(w);
+        for (int j = 0; j < n; ++j) {
+          double v = getValue(w, names[j], nominal[j]);
+          block[r * n + j] = Double.isNaN(v) ? means[j] : v;
+        }
+      }
+      for (int r = 0; r < rows; ++r) {
+        double[] dec_values = new double[Math.max(num_outputs, nr_class)];
+        int offset = r * n;
+        for (int k = 0; k < nr_w; ++k) {
+          int w_offset = k * n;
+          double sum = 0.0;
+          for (int j = 0; j < n; ++j) {
+            sum += weights[w_offset + j] * block[offset + j];
+          }
+          dec_values[k] = sum;
+        }
+        finish(words.get(start + r), dec_values);
+        scores.add(dec_values);
+      }
+    }
+    return scores;
+  }
+}
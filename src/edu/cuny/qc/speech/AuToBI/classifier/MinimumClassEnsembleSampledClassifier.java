@@ -26,7 +26,6 @@ package edu.cuny.qc.speech.AuToBI.classifier;
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.Distribution;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
-import edu.cuny.qc.speech.AuToBI.core.Word;
 import edu.cuny.qc.speech.AuToBI.util.PartitionUtils;
 
 import java.util.ArrayList;
@@ -41,6 +40,7 @@ import java.util.List;
  * of the smallest class.
  */
 public class MinimumClassEnsembleSampledClassifier extends EnsembleSampledClassifier {
+  private static final long serialVersionUID = -2543584756302688533L;
 
   /**
    * Constructs an EnsembleSampledClassifier based on the supplied classifier.
@@ -51,30 +51,15 @@ public class MinimumClassEnsembleSampledClassifier extends EnsembleSampledClassi
     super(c);
   }
 
-  /**
-   * Train an ensemble of classifiers.
-   *
-   * @param feature_set The training data
-   * @throws Exception if there is a training problem
-   */
-  public void train(FeatureSet feature_set) throws Exception {
-    classifiers = new ArrayList<AuToBIClassifier>();
-    List<FeatureSet> training_sets = constructEnsembleFeatureSets(feature_set);
-
-    for (FeatureSet fs : training_sets) {
-      AuToBIClassifier c = classifier.newInstance();
-      c.train(fs);
-      classifiers.add(c);
-    }
-  }
-
   /**
    * Construct a copy of the ensemble classifier.
    *
    * @return a new EnsembleSampledClassifierInstance
    */
   public AuToBIClassifier newInstance() {
-    return new MinimumClassEnsembleSampledClassifier(classifier);
+    MinimumClassEnsembleSampledClassifier c = new MinimumClassEnsembleSampledClassifier(classifier);
+    c.setNumThreads(getNumThreads());
+    return c;
   }
 
   @Override
@@ -103,19 +88,13 @@ public class MinimumClassEnsembleSampledClassifier extends EnsembleSampledClassi
     int num_folds = (int) Math.floor(majority_size / smallest_size);
 
     try {
-      PartitionUtils.assignStratifiedFoldNum(training_set.getDataPoints(), "ensemble_sampling_fold", num_folds,
-          training_set.getClassAttribute());
+      CrossValidationFolds folds = CrossValidationFolds
+          .stratified(training_set.getDataPoints(), "ensemble_sampling_fold", num_folds,
+              training_set.getClassAttribute());
 
       // Generate training sets.
       for (int i = 0; i < num_folds; ++i) {
-        FeatureSet sampled_training_set = training_set.newInstance();
-        for (Word w : training_set.getDataPoints()) {
-          if (!w.hasAttribute("ensemble_sampling_fold") || w.getAttribute("ensemble_sampling_fold").equals(i)) {
-            sampled_training_set.getDataPoints().add(w);
-          }
-        }
-
-        training_sets.add(sampled_training_set);
+        training_sets.add(training_set.newInstance(folds.getSamplePoints(i)));
       }
     } catch (AuToBIException e) {
       e.printStackTrace();
@@ -26,6 +26,8 @@ package edu.cuny.qc.speech.AuToBI.classifier;
 import edu.cuny.qc.speech.AuToBI.core.Contour;
 import edu.cuny.qc.speech.AuToBI.core.Distribution;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.NominalDictionary;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 import edu.cuny.qc.speech.AuToBI.featureextractor.shapemodeling.ContourQuantizerException;
 import edu.cuny.qc.speech.AuToBI.featureextractor.shapemodeling.QuantizedContourModel;
@@ -40,12 +42,15 @@ import java.util.List;
  * multinomial prior.
  */
 public class QCMClassifier extends AuToBIClassifier {
+  private static final long serialVersionUID = 7159803485182334278L;
+
   private String class_attribute; // the class attribute to predict
   private String contour_attribute; // the attribute to use for classification
   private int time_bins; // time bins in the QCM
   private int value_bins;  // value bins in the QCM
   private HashMap<String, QuantizedContourModel> models; // a set of QCM for classification
   private Distribution prior; // Prior distribution of class labels
+  private transient NominalDictionary labels; // the class labels of the posteriors
 
   public QCMClassifier(String class_attribute, String contour_attribute, int time_bins, int value_bins) {
     this.class_attribute = class_attribute;
@@ -65,11 +70,27 @@ public class QCMClassifier extends AuToBIClassifier {
    */
   @Override
   public Distribution distributionForInstance(Word testing_point) throws Exception {
-    Distribution results = new Distribution();
+    return posteriorForInstance(testing_point).toDistribution();
+  }
+
+  /**
+   * Constructs a posterior of likelihoods over the classes.
+   *
+   * @param testing_point The point to evaluate
+   * @return A posterior of likelihoods
+   * @throws Exception
+   */
+  @Override
+  public Posterior posteriorForInstance(Word testing_point) throws Exception {
+    if (labels == null) {
+      labels = new NominalDictionary(models.keySet()).freeze();
+    }
+    Posterior results = new Posterior(labels);
 
     Contour c = (Contour) testing_point.getAttribute(contour_attribute);
 
-    for (String key : models.keySet()) {
+    for (int i = 0; i < labels.size(); ++i) {
+      String key = labels.decode(i);
       double likelihood = prior.get(key);
       try {
         if (c != null) {
@@ -78,7 +99,7 @@ public class QCMClassifier extends AuToBIClassifier {
       } catch (ContourQuantizerException e) {
         e.printStackTrace();
       }
-      results.put(key, likelihood);
+      results.set(i, likelihood);
     }
     results.normalize();
 
@@ -94,6 +115,7 @@ public class QCMClassifier extends AuToBIClassifier {
   @Override
   public void train(FeatureSet feature_set) throws Exception {
     models.clear();
+    labels = null;
     prior = new Distribution();
     HashMap<String, List<Contour>> data = new HashMap<String, List<Contour>>();
 
@@ -25,13 +25,18 @@ package edu.cuny.qc.speech.AuToBI.classifier;
 
 import edu.cuny.qc.speech.AuToBI.core.Distribution;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 import edu.cuny.qc.speech.AuToBI.util.PartitionUtils;
 
+import java.util.List;
+
 /**
  * UnderSampledClassifier downsamples majority class tokens before training.
  */
 public class UnderSampledClassifier extends AuToBIClassifier {
+  private static final long serialVersionUID = 2227695083481061561L;
+
   private AuToBIClassifier classifier;
   private String class_attribute;
 
@@ -44,6 +49,16 @@ public class UnderSampledClassifier extends AuToBIClassifier {
     return classifier.distributionForInstance(testing_point);
   }
 
+  @Override
+  public Posterior posteriorForInstance(Word testing_point) throws Exception {
+    return classifier.posteriorForInstance(testing_point);
+  }
+
+  @Override
+  public List<Posterior> posteriorsForInstances(List<Word> testing_points) throws Exception {
+    return classifier.posteriorsForInstances(testing_points);
+  }
+
   public void train(FeatureSet feature_set) throws Exception {
 
     FeatureSet undersampled = feature_set.newInstance();
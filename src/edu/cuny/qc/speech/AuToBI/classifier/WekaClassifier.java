@@ -23,13 +23,17 @@
  */
 package edu.cuny.qc.speech.AuToBI.classifier;
 
+import edu.cuny.qc.speech.AuToBI.core.CompactRowStore;
 import edu.cuny.qc.speech.AuToBI.core.Distribution;
 import edu.cuny.qc.speech.AuToBI.core.Feature;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.NominalDictionary;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -46,6 +50,8 @@ public class WekaClassifier extends AuToBIClassifier {
   // Stored features are necessary for classifying a single data point.
   protected Set<Feature> features;
   protected String class_attribute;
+  private transient NominalDictionary labels;  // the class labels of the posteriors
+  private transient int num_threads;         // the number of threads to convert training data on
 
   /**
    * Constructs a new WekaClassifier given a weka Classfiier object.
@@ -58,6 +64,28 @@ public class WekaClassifier extends AuToBIClassifier {
     this.class_attribute = "";
   }
 
+  /**
+   * Sets the number of threads used to convert the training data to weka instances.
+   * <p/>
+   * This is not serialized.  By default, and after deserialization, the training data is converted on the calling
+   * thread, as it should be when the classifier is itself trained in parallel, e.g., as a member of an
+   * EnsembleSampledClassifier.
+   *
+   * @param num_threads the number of threads
+   */
+  public void setNumThreads(int num_threads) {
+    this.num_threads = num_threads;
+  }
+
+  /**
+   * Retrieves the number of threads used to convert the training data to weka instances.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return Math.max(1, num_threads);
+  }
+
   /**
    * Evaluates the weka classifier on a single point.
    *
@@ -66,15 +94,42 @@ public class WekaClassifier extends AuToBIClassifier {
    * @throws Exception
    */
   public Distribution distributionForInstance(Word testing_point) throws Exception {
+    return posteriorForInstance(testing_point).toDistribution();
+  }
+
+  /**
+   * Evaluates the weka classifier on a single point.
+   * <p/>
+   * The posterior uses the distribution array returned by weka directly.
+   *
+   * @param testing_point The point to evaluate
+   * @return a posterior over the hypotheses.
+   * @throws Exception
+   */
+  @Override
+  public Posterior posteriorForInstance(Word testing_point) throws Exception {
     Instance test_instance = ClassifierUtils.convertWordToInstance(testing_point, features, class_attribute);
 
     double[] distribution = weka_classifier.distributionForInstance(test_instance);
 
-    Distribution d = new Distribution();
-    for (int i = 0; i < test_instance.classAttribute().numValues(); ++i) {
-      d.put(test_instance.classAttribute().value(i), distribution[i]);
+    if (labels == null) {
+      labels = generateLabels(test_instance.classAttribute());
     }
-    return d;
+    return new Posterior(labels, distribution);
+  }
+
+  /**
+   * Constructs a label dictionary from the values of a weka class attribute.
+   *
+   * @param class_attr the class attribute
+   * @return the label dictionary
+   */
+  private static NominalDictionary generateLabels(Attribute class_attr) {
+    String[] values = new String[class_attr.numValues()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = class_attr.value(i);
+    }
+    return new NominalDictionary(values).freeze();
   }
 
   /**
@@ -89,11 +144,50 @@ public class WekaClassifier extends AuToBIClassifier {
     }
     setFeatures(feature_set.getFeatures());
     class_attribute = feature_set.getClassAttribute();
+    resetLabels();
 
-    Instances weka_instances = ClassifierUtils.convertFeatureSetToWekaInstances(feature_set);
+    Instances weka_instances = ClassifierUtils.convertFeatureSetToWekaInstances(feature_set, getNumThreads());
     weka_classifier.buildClassifier(weka_instances);
   }
 
+  /**
+   * Trains the weka classifier directly from the rows of a CompactRowStore, without constructing Word objects.
+   * <p/>
+   * The resulting model is identical to the one trained on the FeatureSet that the store would materialize.
+   *
+   * @param store The training data
+   * @throws Exception if weka has a training problem.
+   */
+  @Override
+  public void train(CompactRowStore store) throws Exception {
+    FeatureSet feature_set = store.getFeatureSet();
+    train(ClassifierUtils.convertCompactRowStoreToWekaInstances(store, null), feature_set.getFeatures(),
+        feature_set.getClassAttribute());
+  }
+
+  /**
+   * Trains the weka classifier on converted training data.
+   *
+   * @param instances       The training data, with unit weights
+   * @param features        the features the instances were converted from
+   * @param class_attribute the class attribute
+   * @throws Exception if weka has a training problem.
+   */
+  protected void train(Instances instances, Set<Feature> features, String class_attribute) throws Exception {
+    setFeatures(features);
+    this.class_attribute = class_attribute;
+    resetLabels();
+
+    weka_classifier.buildClassifier(instances);
+  }
+
+  /**
+   * Discards the class labels of the posteriors so that they are regenerated after the classifier is retrained.
+   */
+  protected void resetLabels() {
+    labels = null;
+  }
+
   /**
    * Constructs a copy of the object.
    *
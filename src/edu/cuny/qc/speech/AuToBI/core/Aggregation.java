@@ -99,6 +99,56 @@ public class Aggregation implements Serializable {
     n++;
   }
 
+  /**
+   * Inserts the first length values of an array into the Aggregation.
+   * <p/>
+   * The values are accumulated in the same order as repeated calls to insert, so the result is identical, but the
+   * running totals are only boxed once.
+   *
+   * @param values the values
+   * @param length the number of values to insert
+   */
+  public void insert(double[] values, int length) {
+    if (length == 0) {
+      return;
+    }
+    double s = sum;
+    double sq = ssq;
+    double mx = (max == null) ? values[0] : max;
+    double mn = (min == null) ? values[0] : min;
+    for (int i = 0; i < length; ++i) {
+      double v = values[i];
+      s += v;
+      sq += (v * v);
+      mx = Math.max(mx, v);
+      mn = Math.min(mn, v);
+    }
+    sum = s;
+    ssq = sq;
+    max = mx;
+    min = mn;
+    n += length;
+  }
+
+  /**
+   * Merges the values of another Aggregation into this one.
+   * <p/>
+   * Merging is associative, so Aggregations built independently, e.g. one per file, can be combined in any grouping.
+   * The resulting sums may differ from inserting every value into a single Aggregation by floating point rounding.
+   *
+   * @param other the aggregation to merge
+   */
+  public void merge(Aggregation other) {
+    if (other.n == 0) {
+      return;
+    }
+    sum += other.sum;
+    ssq += other.ssq;
+    max = (max == null) ? other.max : Math.max(max, other.max);
+    min = (min == null) ? other.min : Math.min(min, other.min);
+    n += other.n;
+  }
+
   /**
    * Removes a value from the Aggregation.
    * <p/>
@@ -41,6 +41,7 @@ public class AuToBITask {
   private String defaultValue;          // A default value for the classification
   private FeatureSet featureSet;
   // An empty feature set describing the feature structure for this classification task
+  private String modelFile;             // The file the classifier was read from, if any
 
 
   /**
@@ -160,4 +161,22 @@ public class AuToBITask {
   public void setFeatureSet(FeatureSet featureSet) {
     this.featureSet = featureSet;
   }
+
+  /**
+   * Gets the name of the model file the classifier of this task was specified by.
+   *
+   * @return the model filename, or null if the task has no model file
+   */
+  public String getModelFile() {
+    return modelFile;
+  }
+
+  /**
+   * Sets the name of the model file the classifier of this task was specified by.
+   *
+   * @param model_file the model filename
+   */
+  public void setModelFile(String model_file) {
+    modelFile = model_file;
+  }
 }
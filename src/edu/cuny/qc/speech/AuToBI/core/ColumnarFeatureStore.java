@@ -0,0 +1,625 @@
+/*  ColumnarFeatureStore.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * ColumnarFeatureStore reads and writes the features of a FeatureSet in a binary columnar format.
+ * <p/>
+ * Unlike arff, csv and liblinear files, a feature store can be read back by AuToBI without parsing text.  Each column
+ * is memory mapped when it is first accessed, so values can be read, e.g., to train a classifier through a
+ * CompactRowStore, without constructing Word objects or reading unused columns.
+ * <p/>
+ * A store file contains, in order:
+ * <ul>
+ * <li>a header: the number of rows, the name and type of each column, the values of each nominal or string column
+ * and the range of rows of each source file,</li>
+ * <li>the start times and end times of the rows, as doubles,</li>
+ * <li>each column in turn, as doubles for numeric columns or as int codes into the column's values for nominal and
+ * string columns.</li>
+ * </ul>
+ * Missing values are stored as NaN or as the code -1.  Blocks are aligned to 8 bytes and all values are big-endian.
+ * <p/>
+ * Nominal features and the class attribute are stored as nominal columns, keeping the order of their nominal values.
+ * Other features are numeric if every value is a Number, and are otherwise stored as strings.
+ */
+public class ColumnarFeatureStore {
+  public static final int MAGIC = 0x41424653;   // "ABFS"
+  public static final int VERSION = 1;
+
+  public static final byte NUMERIC = 0;
+  public static final byte NOMINAL = 1;
+  public static final byte STRING = 2;
+
+  private static final int PREFIX_SIZE = 12;   // the magic number, version and header length
+
+  private final String filename;
+  private final int rows;
+  private final String[] columns;
+  private final byte[] types;
+  private final NominalDictionary[] dictionaries;  // the values of each nominal or string column, or null
+  private final Map<String, Integer> column_index;
+  private final int class_column;
+  private final String[] files;                    // the source file of each row range
+  private final int[] file_starts;                 // the first row of each file
+  private final int[] file_ends;                   // one past the last row of each file
+  private final long data_offset;                  // the position of the start times
+
+  private RandomAccessFile file;
+  private FileChannel channel;
+  private DoubleBuffer starts;
+  private DoubleBuffer ends;
+  private final DoubleBuffer[] numeric_columns;
+  private final IntBuffer[] coded_columns;
+
+  /**
+   * Opens a feature store file.  Columns are mapped as they are accessed.
+   *
+   * @param filename the store file
+   * @throws IOException     if the file cannot be read
+   * @throws AuToBIException if the file is not a feature store
+   */
+  public ColumnarFeatureStore(String filename) throws IOException, AuToBIException {
+    this.filename = filename;
+    file = new RandomAccessFile(filename, "r");
+    try {
+      if (file.length() < PREFIX_SIZE || file.readInt() != MAGIC) {
+        throw new AuToBIException("File is not a feature store: " + filename);
+      }
+      int version = file.readInt();
+      if (version != VERSION) {
+        throw new AuToBIException("Unsupported feature store version " + version + ": " + filename);
+      }
+      byte[] header = new byte[file.readInt()];
+      file.readFully(header);
+      data_offset = align(PREFIX_SIZE + header.length);
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+      rows = in.readInt();
+      int num_columns = in.readInt();
+      class_column = in.readInt();
+      columns = new String[num_columns];
+      types = new byte[num_columns];
+      dictionaries = new NominalDictionary[num_columns];
+      column_index = new HashMap<String, Integer>();
+      for (int i = 0; i < num_columns; ++i) {
+        columns[i] = in.readUTF();
+        types[i] = in.readByte();
+        column_index.put(columns[i], i);
+        if (types[i] != NUMERIC) {
+          dictionaries[i] = new NominalDictionary();
+          int num_values = in.readInt();
+          for (int j = 0; j < num_values; ++j) {
+            dictionaries[i].add(in.readUTF());
+          }
+        }
+      }
+      int num_files = in.readInt();
+      files = new String[num_files];
+      file_starts = new int[num_files];
+      file_ends = new int[num_files];
+      for (int i = 0; i < num_files; ++i) {
+        files[i] = in.readBoolean() ? in.readUTF() : null;
+        file_starts[i] = in.readInt();
+        file_ends[i] = in.readInt();
+      }
+    } catch (EOFException e) {
+      file.close();
+      throw new AuToBIException("Truncated feature store header: " + filename);
+    } catch (AuToBIException e) {
+      file.close();
+      throw e;
+    }
+    channel = file.getChannel();
+    numeric_columns = new DoubleBuffer[columns.length];
+    coded_columns = new IntBuffer[columns.length];
+  }
+
+  /**
+   * Writes the data points of a feature set to a feature store file.
+   * <p/>
+   * The columns are the features of the feature set, which are constructed if they have not been.  Data points marked
+   * to be ignored are not written.  Consecutive data points with the same source file form the row range of that file.
+   *
+   * @param fs       the feature set
+   * @param filename the destination file
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(FeatureSet fs, String filename) throws IOException {
+    if (fs.getFeatures().isEmpty()) {
+      fs.constructFeatures();
+    }
+    List<Word> words = new ArrayList<Word>();
+    for (Word w : fs.getDataPoints()) {
+      if (!(w.hasAttribute("__ignore__") && w.getAttribute("__ignore__").equals(true))) {
+        words.add(w);
+      }
+    }
+
+    List<Feature> features = new ArrayList<Feature>(fs.getFeatures());
+    byte[] types = new byte[features.size()];
+    NominalDictionary[] dictionaries = new NominalDictionary[features.size()];
+    int class_column = -1;
+    for (int i = 0; i < features.size(); ++i) {
+      Feature f = features.get(i);
+      if (f.getName().equals(fs.getClassAttribute())) {
+        class_column = i;
+      }
+      if (f.isNominal() || i == class_column) {
+        types[i] = NOMINAL;
+        dictionaries[i] = new NominalDictionary(f.getNominalValues());
+      } else {
+        types[i] = NUMERIC;
+        for (Word w : words) {
+          Object value = w.getAttribute(f.getName());
+          if (value != null && !(value instanceof Number)) {
+            types[i] = STRING;
+            dictionaries[i] = new NominalDictionary();
+            break;
+          }
+        }
+      }
+    }
+
+    // Codes are assigned before the header is written so that it holds every value.
+    int[][] codes = new int[features.size()][];
+    for (int i = 0; i < features.size(); ++i) {
+      if (dictionaries[i] != null) {
+        codes[i] = new int[words.size()];
+        for (int r = 0; r < words.size(); ++r) {
+          Object value = words.get(r).getAttribute(features.get(i).getName());
+          codes[i][r] = value == null ? -1 : dictionaries[i].add(value.toString());
+        }
+      }
+    }
+
+    ByteArrayOutputStream header_bytes = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream(header_bytes);
+    header.writeInt(words.size());
+    header.writeInt(features.size());
+    header.writeInt(class_column);
+    for (int i = 0; i < features.size(); ++i) {
+      header.writeUTF(features.get(i).getName());
+      header.writeByte(types[i]);
+      if (dictionaries[i] != null) {
+        header.writeInt(dictionaries[i].size());
+        for (String value : dictionaries[i].getValues()) {
+          header.writeUTF(value);
+        }
+      }
+    }
+    List<Integer> boundaries = new ArrayList<Integer>();
+    for (int r = 0; r < words.size(); ++r) {
+      if (r == 0 || !sameFile(words.get(r - 1).getFile(), words.get(r).getFile())) {
+        boundaries.add(r);
+      }
+    }
+    boundaries.add(words.size());
+    header.writeInt(boundaries.size() - 1);
+    for (int i = 0; i < boundaries.size() - 1; ++i) {
+      String source = words.get(boundaries.get(i)).getFile();
+      header.writeBoolean(source != null);
+      if (source != null) {
+        header.writeUTF(source);
+      }
+      header.writeInt(boundaries.get(i));
+      header.writeInt(boundaries.get(i + 1));
+    }
+    header.close();
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(header_bytes.size());
+      header_bytes.writeTo(out);
+      pad(out, align(PREFIX_SIZE + header_bytes.size()) - (PREFIX_SIZE + header_bytes.size()));
+
+      for (Word w : words) {
+        out.writeDouble(w.getStart());
+      }
+      for (Word w : words) {
+        out.writeDouble(w.getEnd());
+      }
+      for (int i = 0; i < features.size(); ++i) {
+        if (codes[i] != null) {
+          for (int code : codes[i]) {
+            out.writeInt(code);
+          }
+          pad(out, align(4L * words.size()) - 4L * words.size());
+        } else {
+          for (Word w : words) {
+            Object value = w.getAttribute(features.get(i).getName());
+            out.writeDouble(value == null ? Double.NaN : ((Number) value).doubleValue());
+          }
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static boolean sameFile(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static long align(long position) {
+    return (position + 7) / 8 * 8;
+  }
+
+  private static void pad(DataOutputStream out, long n) throws IOException {
+    for (long i = 0; i < n; ++i) {
+      out.writeByte(0);
+    }
+  }
+
+  /**
+   * Computes the file position of a column.
+   *
+   * @param column the column index
+   * @return the position of the first value of the column
+   */
+  private long columnOffset(int column) {
+    long offset = data_offset + 16L * rows;
+    for (int i = 0; i < column; ++i) {
+      offset += types[i] == NUMERIC ? 8L * rows : align(4L * rows);
+    }
+    return offset;
+  }
+
+  /**
+   * Maps a region of the store file.
+   *
+   * @param offset the file position
+   * @param length the number of bytes
+   * @return a read only buffer over the region
+   * @throws AuToBIException if the region cannot be mapped
+   */
+  private ByteBuffer map(long offset, long length) throws AuToBIException {
+    if (channel == null) {
+      throw new AuToBIException("Feature store is closed: " + filename);
+    }
+    if (length > Integer.MAX_VALUE) {
+      throw new AuToBIException("Feature store column is too large to map: " + filename);
+    }
+    try {
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    } catch (IOException e) {
+      throw new AuToBIException("Unable to map feature store " + filename + ": " + e.getMessage());
+    }
+  }
+
+  private synchronized DoubleBuffer getNumericColumn(int column) throws AuToBIException {
+    if (types[column] != NUMERIC) {
+      throw new AuToBIException("Column " + columns[column] + " is not numeric.");
+    }
+    if (numeric_columns[column] == null) {
+      numeric_columns[column] = map(columnOffset(column), 8L * rows).asDoubleBuffer();
+    }
+    return numeric_columns[column];
+  }
+
+  private synchronized IntBuffer getCodedColumn(int column) throws AuToBIException {
+    if (types[column] == NUMERIC) {
+      throw new AuToBIException("Column " + columns[column] + " is numeric.");
+    }
+    if (coded_columns[column] == null) {
+      coded_columns[column] = map(columnOffset(column), 4L * rows).asIntBuffer();
+    }
+    return coded_columns[column];
+  }
+
+  private synchronized void mapTimes() throws AuToBIException {
+    if (starts == null) {
+      starts = map(data_offset, 8L * rows).asDoubleBuffer();
+      ends = map(data_offset + 8L * rows, 8L * rows).asDoubleBuffer();
+    }
+  }
+
+  /**
+   * @return the number of rows
+   */
+  public int size() {
+    return rows;
+  }
+
+  /**
+   * @return the number of columns, including the class attribute
+   */
+  public int numColumns() {
+    return columns.length;
+  }
+
+  /**
+   * Retrieves the name of a column.
+   *
+   * @param column the column index
+   * @return the feature name
+   */
+  public String getColumnName(int column) {
+    return columns[column];
+  }
+
+  /**
+   * Retrieves the column index of a feature.
+   *
+   * @param feature the feature name
+   * @return the column index, or -1 if the feature is not stored
+   */
+  public int getColumnIndex(String feature) {
+    Integer i = column_index.get(feature);
+    return i == null ? -1 : i;
+  }
+
+  /**
+   * @return the column index of the class attribute, or -1 if there is none
+   */
+  public int getClassColumn() {
+    return class_column;
+  }
+
+  /**
+   * Retrieves the type of a column.
+   *
+   * @param column the column index
+   * @return NUMERIC, NOMINAL or STRING
+   */
+  public byte getColumnType(int column) {
+    return types[column];
+  }
+
+  /**
+   * Retrieves the values of a nominal or string column.
+   *
+   * @param column the column index
+   * @return the dictionary of values, or null if the column is numeric
+   */
+  public NominalDictionary getDictionary(int column) {
+    return dictionaries[column];
+  }
+
+  /**
+   * Retrieves a numeric value.
+   *
+   * @param column the column index
+   * @param row    the row
+   * @return the value, or NaN if it is missing
+   * @throws AuToBIException if the column is not numeric or cannot be mapped
+   */
+  public double getNumeric(int column, int row) throws AuToBIException {
+    return getNumericColumn(column).get(row);
+  }
+
+  /**
+   * Retrieves the code of a nominal or string value.
+   *
+   * @param column the column index
+   * @param row    the row
+   * @return the code of the value in the column's dictionary, or -1 if it is missing
+   * @throws AuToBIException if the column is numeric or cannot be mapped
+   */
+  public int getCode(int column, int row) throws AuToBIException {
+    return getCodedColumn(column).get(row);
+  }
+
+  /**
+   * Retrieves a value as it was stored on the data point.
+   *
+   * @param column the column index
+   * @param row    the row
+   * @return a Double for numeric columns, a String otherwise, or null if the value is missing
+   * @throws AuToBIException if the column cannot be mapped
+   */
+  public Object getValue(int column, int row) throws AuToBIException {
+    if (types[column] == NUMERIC) {
+      double value = getNumeric(column, row);
+      return Double.isNaN(value) ? null : value;
+    }
+    int code = getCode(column, row);
+    return code < 0 ? null : dictionaries[column].decode(code);
+  }
+
+  /**
+   * Retrieves the start time of a row.
+   *
+   * @param row the row
+   * @return the start time of the data point
+   * @throws AuToBIException if the times cannot be mapped
+   */
+  public double getStart(int row) throws AuToBIException {
+    mapTimes();
+    return starts.get(row);
+  }
+
+  /**
+   * Retrieves the end time of a row.
+   *
+   * @param row the row
+   * @return the end time of the data point
+   * @throws AuToBIException if the times cannot be mapped
+   */
+  public double getEnd(int row) throws AuToBIException {
+    mapTimes();
+    return ends.get(row);
+  }
+
+  /**
+   * @return the number of source files
+   */
+  public int numFiles() {
+    return files.length;
+  }
+
+  /**
+   * Retrieves the name of a source file.
+   *
+   * @param i the file index
+   * @return the file name, or null if the data points had no file
+   */
+  public String getFileName(int i) {
+    return files[i];
+  }
+
+  /**
+   * Retrieves the first row of a source file.
+   *
+   * @param i the file index
+   * @return the first row
+   */
+  public int getFileStart(int i) {
+    return file_starts[i];
+  }
+
+  /**
+   * Retrieves the row following the last row of a source file.
+   *
+   * @param i the file index
+   * @return one past the last row
+   */
+  public int getFileEnd(int i) {
+    return file_ends[i];
+  }
+
+  /**
+   * Constructs a FeatureSet describing the stored columns, without data points.
+   *
+   * @return the feature set
+   */
+  public FeatureSet getFeatureSet() {
+    FeatureSet fs = new FeatureSet();
+    Set<Feature> features = new LinkedHashSet<Feature>();
+    for (int i = 0; i < columns.length; ++i) {
+      if (i == class_column) {
+        fs.setClassAttribute(columns[i]);
+      } else {
+        fs.insertRequiredFeature(columns[i]);
+      }
+      Feature f = new Feature(columns[i]);
+      if (types[i] == NOMINAL) {
+        f.setNominal();
+        f.setNominalValues(dictionaries[i].getValues());
+      } else if (types[i] == STRING) {
+        f.setString(true);
+      }
+      features.add(f);
+    }
+    fs.setFeatures(features);
+    return fs;
+  }
+
+  /**
+   * Reads the stored rows into a FeatureSet of Words.
+   *
+   * @return a feature set with constructed features and data points
+   * @throws AuToBIException if a column cannot be mapped
+   */
+  public FeatureSet toFeatureSet() throws AuToBIException {
+    FeatureSet fs = getFeatureSet();
+    Set<Feature> features = fs.getFeatures();
+    List<Word> words = new ArrayList<Word>(rows);
+    for (int i = 0; i < files.length; ++i) {
+      for (int r = file_starts[i]; r < file_ends[i]; ++r) {
+        words.add(new Word(getStart(r), getEnd(r), null, null, files[i]));
+      }
+    }
+    fs.setDataPoints(words);
+    for (int c = 0; c < columns.length; ++c) {
+      for (int r = 0; r < rows; ++r) {
+        Object value = getValue(c, r);
+        if (value != null) {
+          words.get(r).setAttribute(columns[c], value);
+        }
+      }
+    }
+    fs.setFeatures(features);
+    return fs;
+  }
+
+  /**
+   * Compacts the stored rows into a CompactRowStore, without constructing Word objects.
+   * <p/>
+   * Each source file becomes one segment of the row store.  Rows with an omitted attribute value are skipped, but
+   * their nominal values are recorded in the row store.
+   *
+   * @param fs           a FeatureSet describing the required features and class attribute of the row store
+   * @param omission     attribute values whose rows are skipped, as parsed by AuToBIUtils.parseAttributeOmission
+   * @param memory_limit the number of bytes of rows to hold in memory before spilling to disk, unlimited if <= 0
+   * @param spill_dir    the directory of the spill file, or null for the default temporary directory
+   * @return the row store
+   * @throws AuToBIException if a required feature is not stored or a column cannot be mapped
+   */
+  public CompactRowStore toCompactRowStore(FeatureSet fs, List<Pair<String, String>> omission, long memory_limit,
+                                           File spill_dir) throws AuToBIException {
+    List<Integer> omit_columns = new ArrayList<Integer>();
+    List<String> omit_values = new ArrayList<String>();
+    for (Pair<String, String> e : omission) {
+      int column = getColumnIndex(e.first);
+      if (column < 0) {
+        AuToBIUtils.warn("Omitted attribute " + e.first + " is not in feature store " + filename);
+      } else {
+        omit_columns.add(column);
+        omit_values.add(e.second);
+      }
+    }
+
+    CompactRowStore store = new CompactRowStore(fs, memory_limit, spill_dir);
+    for (int i = 0; i < files.length; ++i) {
+      int[] rows = new int[file_ends[i] - file_starts[i]];
+      boolean[] omitted = new boolean[rows.length];
+      for (int r = 0; r < rows.length; ++r) {
+        rows[r] = file_starts[i] + r;
+        for (int j = 0; j < omit_columns.size() && !omitted[r]; ++j) {
+          Object value = getValue(omit_columns.get(j), rows[r]);
+          omitted[r] = value instanceof String && value.equals(omit_values.get(j));
+        }
+      }
+      store.add(i, this, rows, omitted);
+    }
+    return store;
+  }
+
+  /**
+   * Unmaps the columns and closes the store file.
+   */
+  public synchronized void close() {
+    starts = null;
+    ends = null;
+    Arrays.fill(numeric_columns, null);
+    Arrays.fill(coded_columns, null);
+    channel = null;
+    try {
+      file.close();
+    } catch (IOException e) {
+      AuToBIUtils.warn("Unable to close feature store: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,677 @@
+/*  CompactRowStore.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * CompactRowStore holds the required features and class attribute of a data set as rows of primitive doubles.
+ * <p/>
+ * Words carry their features in attribute maps of boxed values, along with intermediate objects like wav data and
+ * contours.  For training, only the required features and the class attribute are needed.  Storing these as double
+ * rows allows the Word objects of a file to be released as soon as the file has been processed.
+ * <p/>
+ * Rows are added in segments, typically one per input file.  Segments are visited in order of their index, regardless
+ * of the order in which they were added, so that a data set assembled by several threads has a deterministic order.
+ * When a memory limit is set, segments beyond the limit are spilled to a temporary file and read back when visited.
+ * <p/>
+ * Columns are ordered as FeatureSet.constructFeatures() orders features: the required features followed by the class
+ * attribute.  Features whose name starts with "nominal_" and the class attribute are nominal.  Nominal values are
+ * stored as codes; numeric values are stored directly.  Missing values, and non-numeric values of numeric features,
+ * are stored as NaN.  Each row is followed by the start and end time of the word.
+ * <p/>
+ * Data points marked to be ignored are not stored, but their nominal values are recorded, so that the FeatureSet
+ * described by the store is the one FeatureSet.constructFeatures() would produce before the ignored points are removed.
+ */
+public class CompactRowStore {
+  private static final int SPILL_BLOCK = 1 << 16;  // the number of doubles written or read at once when spilling
+
+  /**
+   * Receives the rows of a CompactRowStore.
+   */
+  public interface RowVisitor {
+
+    /**
+     * Visits a row.  The row array is reused between calls and must not be retained.
+     *
+     * @param row the row values
+     * @throws AuToBIException if the row cannot be processed
+     */
+    public void visit(double[] row) throws AuToBIException;
+  }
+
+  /**
+   * A block of rows, held in memory or spilled to disk.
+   */
+  private static class Segment {
+    private final int rows;
+    private final int[][] first_codes;  // the nominal codes of each column in order of first appearance
+    private double[] data;
+    private long offset = -1;
+
+    private Segment(int rows, double[] data, int[][] first_codes) {
+      this.rows = rows;
+      this.data = data;
+      this.first_codes = first_codes;
+    }
+  }
+
+  /**
+   * Collects the nominal codes of each column of a segment in order of first appearance.
+   */
+  private class FirstAppearances {
+    private final BitSet[] seen = new BitSet[columns.length];
+    private final List<List<Integer>> codes = new ArrayList<List<Integer>>();
+
+    private FirstAppearances() {
+      for (int i = 0; i < columns.length; ++i) {
+        seen[i] = new BitSet();
+        codes.add(new ArrayList<Integer>());
+      }
+    }
+
+    /**
+     * Records a nominal code.
+     *
+     * @param column the column
+     * @param code   the code, or NaN if the value is missing
+     */
+    private void record(int column, double code) {
+      if (!Double.isNaN(code) && !seen[column].get((int) code)) {
+        seen[column].set((int) code);
+        codes.get(column).add((int) code);
+      }
+    }
+
+    /**
+     * @return the recorded codes of each column
+     */
+    private int[][] toArray() {
+      int[][] result = new int[columns.length][];
+      for (int i = 0; i < columns.length; ++i) {
+        result[i] = new int[codes.get(i).size()];
+        for (int j = 0; j < result[i].length; ++j) {
+          result[i][j] = codes.get(i).get(j);
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Determines if a word is marked to be ignored.
+   *
+   * @param w the word
+   * @return true if the word has an __ignore__ attribute set to true
+   */
+  private static boolean isIgnored(Word w) {
+    return w.hasAttribute("__ignore__") && w.getAttribute("__ignore__").equals(true);
+  }
+
+  private final FeatureSet template;                      // the required features and class attribute
+  private final String[] columns;                         // the name of each column
+  private final Map<String, Integer> column_index;        // the index of each column by name
+  private final int width;                                // the number of values in each row
+  private final List<NominalDictionary> dictionaries;     // nominal codes of each column, or null if numeric
+  private final TreeMap<Integer, Segment> segments;
+  private final long memory_limit;                        // the memory held before spilling, unlimited if <= 0
+  private final File spill_dir;                           // the directory of the spill file
+  private long memory_used;
+  private int size;
+  private RandomAccessFile spill_file;
+  private File spill_path;
+  private long spill_offset;
+  private boolean warned_non_numeric;
+  private int[][] nominal_order;                          // the first appearance rank of each nominal code
+
+  /**
+   * Constructs a CompactRowStore that holds all rows in memory.
+   *
+   * @param fs a FeatureSet describing the required features and class attribute
+   */
+  public CompactRowStore(FeatureSet fs) {
+    this(fs, 0, null);
+  }
+
+  /**
+   * Constructs a CompactRowStore.
+   *
+   * @param fs           a FeatureSet describing the required features and class attribute
+   * @param memory_limit the number of bytes of rows to hold in memory before spilling to disk.  Values <= 0 disable
+   *                     spilling.
+   * @param spill_dir    the directory of the spill file, or null for the default temporary directory
+   */
+  public CompactRowStore(FeatureSet fs, long memory_limit, File spill_dir) {
+    this.template = fs;
+    this.memory_limit = memory_limit;
+    this.spill_dir = spill_dir;
+
+    List<String> names = new ArrayList<String>(fs.getRequiredFeatures());
+    if (fs.getClassAttribute() != null) {
+      names.add(fs.getClassAttribute());
+    }
+    columns = names.toArray(new String[names.size()]);
+    width = columns.length + 2;
+    column_index = new HashMap<String, Integer>();
+    dictionaries = new ArrayList<NominalDictionary>();
+    for (int i = 0; i < columns.length; ++i) {
+      column_index.put(columns[i], i);
+      boolean nominal = columns[i].startsWith("nominal_") ||
+          (i == columns.length - 1 && fs.getClassAttribute() != null);
+      dictionaries.add(nominal ? new NominalDictionary() : null);
+    }
+    segments = new TreeMap<Integer, Segment>();
+  }
+
+  /**
+   * Compacts a list of words into a new segment.
+   * <p/>
+   * Words marked to be ignored are not stored, but their nominal values are recorded.
+   *
+   * @param index the position of the segment in the store
+   * @param words the words
+   * @throws AuToBIException if the segment already exists or cannot be spilled
+   */
+  public synchronized void add(int index, List<Word> words) throws AuToBIException {
+    if (segments.containsKey(index)) {
+      throw new AuToBIException("CompactRowStore already contains segment " + index);
+    }
+    int rows = 0;
+    for (Word w : words) {
+      if (!isIgnored(w)) {
+        rows++;
+      }
+    }
+    double[] data = new double[rows * width];
+    FirstAppearances first = new FirstAppearances();
+    int offset = 0;
+    for (Word w : words) {
+      boolean ignored = isIgnored(w);
+      for (int i = 0; i < columns.length; ++i) {
+        if (isNominal(i)) {
+          double code = encode(i, w.getAttribute(columns[i]));
+          first.record(i, code);
+          if (!ignored) {
+            data[offset + i] = code;
+          }
+        } else if (!ignored) {
+          data[offset + i] = encode(i, w.getAttribute(columns[i]));
+        }
+      }
+      if (!ignored) {
+        data[offset + columns.length] = w.getStart();
+        data[offset + columns.length + 1] = w.getEnd();
+        offset += width;
+      }
+    }
+
+    addSegment(index, rows, data, first.toArray());
+  }
+
+  /**
+   * Adds a segment of encoded rows, spilling it if the memory limit is exceeded.
+   *
+   * @param index       the position of the segment in the store
+   * @param rows        the number of rows
+   * @param data        the row data
+   * @param first_codes the nominal codes of each column in order of first appearance
+   * @throws AuToBIException if the segment cannot be spilled
+   */
+  private void addSegment(int index, int rows, double[] data, int[][] first_codes) throws AuToBIException {
+    Segment segment = new Segment(rows, data, first_codes);
+    segments.put(index, segment);
+    size += rows;
+    memory_used += 8L * data.length;
+    nominal_order = null;
+
+    if (memory_limit > 0 && memory_used > memory_limit) {
+      spill(segment);
+    }
+  }
+
+  /**
+   * Compacts rows of a ColumnarFeatureStore into a new segment, without constructing Word objects.
+   * <p/>
+   * Values are encoded as they would be if the data points were added as Words.  Ignored rows are not stored, but their
+   * nominal values are recorded.
+   *
+   * @param index   the position of the segment in the store
+   * @param source  the feature store
+   * @param rows    the rows of the feature store
+   * @param ignored whether each of the rows is ignored
+   * @throws AuToBIException if the segment already exists, a column is not in the feature store or the segment cannot
+   *                         be spilled
+   */
+  public synchronized void add(int index, ColumnarFeatureStore source, int[] rows, boolean[] ignored)
+      throws AuToBIException {
+    if (segments.containsKey(index)) {
+      throw new AuToBIException("CompactRowStore already contains segment " + index);
+    }
+    // The position of each row in the segment, or -1 if it is ignored.
+    int[] slots = new int[rows.length];
+    int stored = 0;
+    for (int r = 0; r < rows.length; ++r) {
+      slots[r] = ignored[r] ? -1 : stored++;
+    }
+    double[] data = new double[stored * width];
+    FirstAppearances first = new FirstAppearances();
+    for (int i = 0; i < columns.length; ++i) {
+      int column = source.getColumnIndex(columns[i]);
+      if (column < 0) {
+        throw new AuToBIException("Feature store does not contain feature " + columns[i]);
+      }
+      boolean numeric_source = source.getColumnType(column) == ColumnarFeatureStore.NUMERIC;
+      if (numeric_source && dictionaries.get(i) == null) {
+        for (int r = 0; r < rows.length; ++r) {
+          if (slots[r] >= 0) {
+            data[slots[r] * width + i] = source.getNumeric(column, rows[r]);
+          }
+        }
+      } else if (!numeric_source && dictionaries.get(i) != null) {
+        // Source codes are translated once, on first use, so that codes are assigned in order of appearance.
+        int[] mapping = new int[source.getDictionary(column).size()];
+        Arrays.fill(mapping, -1);
+        for (int r = 0; r < rows.length; ++r) {
+          int code = source.getCode(column, rows[r]);
+          double value = Double.NaN;
+          if (code >= 0) {
+            if (mapping[code] < 0) {
+              mapping[code] = dictionaries.get(i).add(source.getDictionary(column).decode(code));
+            }
+            value = mapping[code];
+          }
+          first.record(i, value);
+          if (slots[r] >= 0) {
+            data[slots[r] * width + i] = value;
+          }
+        }
+      } else {
+        for (int r = 0; r < rows.length; ++r) {
+          if (dictionaries.get(i) != null) {
+            double value = encode(i, source.getValue(column, rows[r]));
+            first.record(i, value);
+            if (slots[r] >= 0) {
+              data[slots[r] * width + i] = value;
+            }
+          } else if (slots[r] >= 0) {
+            data[slots[r] * width + i] = encode(i, source.getValue(column, rows[r]));
+          }
+        }
+      }
+    }
+    for (int r = 0; r < rows.length; ++r) {
+      if (slots[r] >= 0) {
+        data[slots[r] * width + columns.length] = source.getStart(rows[r]);
+        data[slots[r] * width + columns.length + 1] = source.getEnd(rows[r]);
+      }
+    }
+
+    addSegment(index, stored, data, first.toArray());
+  }
+
+  /**
+   * Encodes an attribute value.
+   *
+   * @param column the column
+   * @param value  the value
+   * @return the numeric value or nominal code, or NaN if the value is missing
+   */
+  private double encode(int column, Object value) {
+    if (value == null) {
+      return Double.NaN;
+    }
+    NominalDictionary dictionary = dictionaries.get(column);
+    if (dictionary != null) {
+      return dictionary.add(value.toString());
+    }
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    if (!warned_non_numeric) {
+      AuToBIUtils.warn("Non-numeric value of feature " + columns[column] + " is stored as a missing value.");
+      warned_non_numeric = true;
+    }
+    return Double.NaN;
+  }
+
+  /**
+   * Writes a segment to the spill file and releases its data.
+   *
+   * @param segment the segment
+   * @throws AuToBIException if the spill file cannot be written
+   */
+  private void spill(Segment segment) throws AuToBIException {
+    try {
+      if (spill_file == null) {
+        spill_path = File.createTempFile("autobi_rows", ".bin", spill_dir);
+        spill_path.deleteOnExit();
+        spill_file = new RandomAccessFile(spill_path, "rw");
+      }
+      FileChannel channel = spill_file.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(8 * Math.min(SPILL_BLOCK, segment.data.length));
+      long position = spill_offset;
+      for (int start = 0; start < segment.data.length; start += SPILL_BLOCK) {
+        int length = Math.min(SPILL_BLOCK, segment.data.length - start);
+        buffer.clear();
+        buffer.asDoubleBuffer().put(segment.data, start, length);
+        buffer.limit(8 * length);
+        while (buffer.hasRemaining()) {
+          position += channel.write(buffer, position);
+        }
+      }
+      segment.offset = spill_offset;
+      spill_offset = position;
+      memory_used -= 8L * segment.data.length;
+      segment.data = null;
+    } catch (IOException e) {
+      throw new AuToBIException("Unable to spill rows to disk: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Retrieves the data of a segment, reading it from the spill file if necessary.
+   *
+   * @param segment the segment
+   * @return the row data
+   * @throws AuToBIException if the spill file cannot be read
+   */
+  private double[] load(Segment segment) throws AuToBIException {
+    if (segment.data != null) {
+      return segment.data;
+    }
+    double[] data = new double[segment.rows * width];
+    try {
+      FileChannel channel = spill_file.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(8 * Math.min(SPILL_BLOCK, Math.max(1, data.length)));
+      long position = segment.offset;
+      for (int start = 0; start < data.length; start += SPILL_BLOCK) {
+        int length = Math.min(SPILL_BLOCK, data.length - start);
+        buffer.clear();
+        buffer.limit(8 * length);
+        while (buffer.hasRemaining()) {
+          int read = channel.read(buffer, position);
+          if (read < 0) {
+            throw new AuToBIException("Unexpected end of spill file.");
+          }
+          position += read;
+        }
+        buffer.flip();
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        doubles.get(data, start, length);
+      }
+    } catch (IOException e) {
+      throw new AuToBIException("Unable to read spilled rows: " + e.getMessage());
+    }
+    return data;
+  }
+
+  /**
+   * Visits every row in segment order.
+   *
+   * @param visitor the visitor
+   * @throws AuToBIException if a spilled segment cannot be read or the visitor fails
+   */
+  public synchronized void forEachRow(RowVisitor visitor) throws AuToBIException {
+    double[] row = new double[width];
+    for (Segment segment : segments.values()) {
+      double[] data = load(segment);
+      for (int r = 0; r < segment.rows; ++r) {
+        System.arraycopy(data, r * width, row, 0, width);
+        visitor.visit(row);
+      }
+    }
+  }
+
+  /**
+   * @return the number of rows
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of feature columns, including the class attribute
+   */
+  public int numColumns() {
+    return columns.length;
+  }
+
+  /**
+   * Retrieves the name of a column.
+   *
+   * @param column the column index
+   * @return the feature name
+   */
+  public String getColumnName(int column) {
+    return columns[column];
+  }
+
+  /**
+   * Retrieves the column index of a feature.
+   *
+   * @param feature the feature name
+   * @return the column index, or -1 if the feature is not stored
+   */
+  public int getColumnIndex(String feature) {
+    Integer i = column_index.get(feature);
+    return i == null ? -1 : i;
+  }
+
+  /**
+   * @return the column index of the class attribute, or -1 if there is none
+   */
+  public int getClassColumn() {
+    return template.getClassAttribute() == null ? -1 : columns.length - 1;
+  }
+
+  /**
+   * @return the column index of the start time in each row
+   */
+  public int getStartColumn() {
+    return columns.length;
+  }
+
+  /**
+   * @return the column index of the end time in each row
+   */
+  public int getEndColumn() {
+    return columns.length + 1;
+  }
+
+  /**
+   * Determines if a column holds nominal codes.
+   *
+   * @param column the column index
+   * @return true if the column is nominal
+   */
+  public boolean isNominal(int column) {
+    return dictionaries.get(column) != null;
+  }
+
+  /**
+   * Retrieves the nominal value of a code.
+   *
+   * @param column the column index
+   * @param code   the stored code
+   * @return the nominal value, or null if the code is NaN
+   */
+  public synchronized String getNominalValue(int column, double code) {
+    if (Double.isNaN(code)) {
+      return null;
+    }
+    return dictionaries.get(column).decode((int) code);
+  }
+
+  /**
+   * Retrieves the index of a stored code among the nominal values of the feature constructed by getFeatureSet().
+   *
+   * @param column the column index
+   * @param code   the stored code
+   * @return the nominal index, or -1 if the code is NaN
+   */
+  public synchronized int getNominalIndex(int column, double code) {
+    if (Double.isNaN(code)) {
+      return -1;
+    }
+    return getNominalOrder()[column][(int) code];
+  }
+
+  /**
+   * Ranks the codes of each nominal column by their first appearance in segment order.
+   * <p/>
+   * Codes are assigned in the order that segments are added, which depends on thread scheduling.  Ranking them by
+   * first appearance orders nominal values as FeatureSet.constructFeatures() would for the same data points.
+   *
+   * @return the rank of each code, by column
+   */
+  private int[][] getNominalOrder() {
+    if (nominal_order == null) {
+      int[][] order = new int[columns.length][];
+      for (int i = 0; i < columns.length; ++i) {
+        if (isNominal(i)) {
+          order[i] = new int[dictionaries.get(i).size()];
+          Arrays.fill(order[i], -1);
+          int next = 0;
+          for (Segment segment : segments.values()) {
+            for (int code : segment.first_codes[i]) {
+              if (order[i][code] < 0) {
+                order[i][code] = next++;
+              }
+            }
+          }
+        }
+      }
+      nominal_order = order;
+    }
+    return nominal_order;
+  }
+
+  /**
+   * Constructs a FeatureSet describing the stored rows, without data points.
+   * <p/>
+   * Its features are those that FeatureSet.constructFeatures() would produce for the added words, including those that
+   * are ignored.
+   *
+   * @return the feature set
+   */
+  public synchronized FeatureSet getFeatureSet() {
+    FeatureSet fs = template.newInstance(new ArrayList<Word>());
+    Set<Feature> features = new LinkedHashSet<Feature>();
+    int[][] order = getNominalOrder();
+    for (int i = 0; i < columns.length; ++i) {
+      Feature f = new Feature(columns[i]);
+      if (isNominal(i)) {
+        f.setNominal();
+        String[] values = new String[dictionaries.get(i).size()];
+        for (int code = 0; code < values.length; ++code) {
+          values[order[i][code]] = dictionaries.get(i).decode(code);
+        }
+        f.setNominalValues(values);
+      }
+      features.add(f);
+    }
+    fs.setFeatures(features);
+    return fs;
+  }
+
+  /**
+   * Calculates the distribution of class values.
+   *
+   * @return the number of rows with each class value
+   * @throws AuToBIException if there is no class attribute or a spilled segment cannot be read
+   */
+  public Distribution getClassDistribution() throws AuToBIException {
+    final int class_column = getClassColumn();
+    if (class_column < 0) {
+      throw new AuToBIException("CompactRowStore has no class attribute.");
+    }
+    final Distribution d = new Distribution();
+    forEachRow(new RowVisitor() {
+      public void visit(double[] row) {
+        if (!Double.isNaN(row[class_column])) {
+          d.add(getNominalValue(class_column, row[class_column]));
+        }
+      }
+    });
+    return d;
+  }
+
+  /**
+   * Reconstructs a FeatureSet of Words holding only the stored features.
+   * <p/>
+   * This allows classifiers without a native CompactRowStore training path to be trained from the store.
+   *
+   * @return a feature set with constructed features and data points
+   * @throws AuToBIException if a spilled segment cannot be read
+   */
+  public FeatureSet toFeatureSet() throws AuToBIException {
+    final FeatureSet fs = getFeatureSet();
+    Set<Feature> features = fs.getFeatures();
+    final List<Word> words = new ArrayList<Word>(size());
+    forEachRow(new RowVisitor() {
+      public void visit(double[] row) {
+        Word w = new Word(row[getStartColumn()], row[getEndColumn()], null);
+        for (int i = 0; i < columns.length; ++i) {
+          if (!Double.isNaN(row[i])) {
+            w.setAttribute(columns[i], isNominal(i) ? getNominalValue(i, row[i]) : row[i]);
+          }
+        }
+        words.add(w);
+      }
+    });
+    fs.setDataPoints(words);
+    fs.setFeatures(features);
+    return fs;
+  }
+
+  /**
+   * Releases the rows and deletes the spill file.
+   */
+  public synchronized void close() {
+    segments.clear();
+    size = 0;
+    memory_used = 0;
+    nominal_order = null;
+    if (spill_file != null) {
+      try {
+        spill_file.close();
+      } catch (IOException e) {
+        AuToBIUtils.warn("Unable to close spill file: " + e.getMessage());
+      }
+      if (!spill_path.delete()) {
+        AuToBIUtils.warn("Unable to delete spill file: " + spill_path);
+      }
+      spill_file = null;
+      spill_offset = 0;
+    }
+  }
+}
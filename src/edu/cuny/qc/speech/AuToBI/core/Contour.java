@@ -83,6 +83,29 @@ public class Contour implements Iterable<Pair<Double, Double>> {
     this.num_empty = n;
   }
 
+  /**
+   * Constructs a contour with n values, optionally without allocating storage for them.
+   * <p/>
+   * A subclass that does not allocate storage holds its own values, and must override every method that accesses the
+   * values and empty_values arrays.
+   *
+   * @param x0       the starting time
+   * @param dx       the time step
+   * @param n        the number of values
+   * @param allocate if true, allocate storage for n empty values
+   */
+  protected Contour(double x0, double dx, int n, boolean allocate) {
+    this.x0 = x0;
+    this.dx = dx;
+    this.n = n;
+    if (allocate) {
+      this.values = new double[n];
+      this.empty_values = new boolean[n];
+      Arrays.fill(empty_values, true);
+      this.num_empty = n;
+    }
+  }
+
   /**
    * Retrieves the starting time of the contour.
    *
@@ -0,0 +1,170 @@
+/*  EvaluationAccumulator.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * EvaluationAccumulator collects classification results from several threads into a single EvaluationResults.
+ * <p/>
+ * Results are counted in Partial objects, each of which is confined to a single thread and codes class labels as
+ * ints.  A completed Partial is committed with an index, e.g. the index of the file it covers, without locking.
+ * getResults() merges the committed partials in index order, and can be called while other partials are still being
+ * counted to report intermediate results.
+ * <p/>
+ * Class labels are ordered as ClassifierUtils.generateEvaluationResults orders them over the concatenation of the
+ * partials: true labels in order of first appearance, followed by the remaining hypothesized labels.
+ */
+public class EvaluationAccumulator {
+  // the committed partials by index
+  private final ConcurrentSkipListMap<Integer, Partial> partials = new ConcurrentSkipListMap<Integer, Partial>();
+
+  /**
+   * Partial holds the confusion matrix of a subset of the classified instances.
+   * <p/>
+   * A Partial is not thread safe.  It should be filled by a single thread and then committed.
+   */
+  public static class Partial {
+    private final NominalDictionary labels = new NominalDictionary();       // the code of each label
+    private final NominalDictionary true_labels = new NominalDictionary();  // true labels by first appearance
+    private final NominalDictionary hyp_labels = new NominalDictionary();   // hypothesized labels by first appearance
+    private double[][] counts = new double[4][4];                          // counts by true then hypothesized code
+
+    /**
+     * Registers class labels without counting an instance.
+     * <p/>
+     * This is used for labels of instances that are excluded from evaluation but still define the set of classes.
+     *
+     * @param hyp_class  the hypothesized class, or null
+     * @param true_class the true class, or null
+     */
+    public void addLabels(String hyp_class, String true_class) {
+      if (true_class != null) {
+        true_labels.add(true_class);
+        labels.add(true_class);
+      }
+      if (hyp_class != null) {
+        hyp_labels.add(hyp_class);
+        labels.add(hyp_class);
+      }
+    }
+
+    /**
+     * Counts a classified instance.
+     *
+     * @param hyp_class  the hypothesized class
+     * @param true_class the true class
+     */
+    public void addInstance(String hyp_class, String true_class) {
+      addLabels(hyp_class, true_class);
+      int i = labels.encode(true_class);
+      int j = labels.encode(hyp_class);
+      if (labels.size() > counts.length) {
+        double[][] grown = new double[2 * labels.size()][2 * labels.size()];
+        for (int k = 0; k < counts.length; ++k) {
+          System.arraycopy(counts[k], 0, grown[k], 0, counts.length);
+        }
+        counts = grown;
+      }
+      counts[i][j]++;
+    }
+
+    /**
+     * Constructs an EvaluationResults object from the counts of this partial.
+     *
+     * @return the evaluation results
+     * @throws AuToBIException if the results cannot be constructed
+     */
+    public EvaluationResults toEvaluationResults() throws AuToBIException {
+      int n = labels.size();
+      double[][] matrix = new double[n][n];
+      for (int i = 0; i < n; ++i) {
+        System.arraycopy(counts[i], 0, matrix[i], 0, n);
+      }
+      return new EvaluationResults(labels.getValues().toArray(new String[n]), matrix);
+    }
+  }
+
+  /**
+   * Commits a completed partial.
+   *
+   * @param index   the position of the partial in the merge order
+   * @param partial the partial
+   * @throws AuToBIException if a partial with the same index has already been committed
+   */
+  public void commit(int index, Partial partial) throws AuToBIException {
+    if (partials.putIfAbsent(index, partial) != null) {
+      throw new AuToBIException("EvaluationAccumulator already contains partial " + index);
+    }
+  }
+
+  /**
+   * Retrieves the number of committed partials.
+   *
+   * @return the number of committed partials
+   */
+  public int size() {
+    return partials.size();
+  }
+
+  /**
+   * Merges the committed partials into a single EvaluationResults object.
+   *
+   * @return the evaluation results
+   * @throws AuToBIException if the results cannot be merged
+   */
+  public EvaluationResults getResults() throws AuToBIException {
+    List<Partial> committed = new ArrayList<Partial>();
+    for (Map.Entry<Integer, Partial> e : partials.entrySet()) {
+      committed.add(e.getValue());
+    }
+
+    NominalDictionary classes = new NominalDictionary();
+    for (Partial p : committed) {
+      classes.merge(p.true_labels);
+    }
+    for (Partial p : committed) {
+      classes.merge(p.hyp_labels);
+    }
+
+    EvaluationResults results = new EvaluationResults(classes.getValues());
+    for (Partial p : committed) {
+      results.add(p.toEvaluationResults());
+    }
+    return results;
+  }
+
+  /**
+   * Constructs an EvaluationSummary of the committed partials.
+   *
+   * @return the evaluation summary
+   * @throws AuToBIException if the results cannot be merged
+   */
+  public EvaluationSummary getSummary() throws AuToBIException {
+    return new EvaluationSummary(getResults());
+  }
+}
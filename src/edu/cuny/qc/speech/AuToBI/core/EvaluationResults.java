@@ -33,6 +33,7 @@ import java.util.Collection;
 public class EvaluationResults {
   private String[] classNames;         // an array of class labels
   private double[][] confusionMatrix;  // the confusion matrix
+  private NominalDictionary classes;   // the index of each class label
 
 
   /**
@@ -54,6 +55,7 @@ public class EvaluationResults {
 
     this.classNames = classNames;
     this.confusionMatrix = confusionMatrix;
+    this.classes = new NominalDictionary(classNames);
   }
 
   /**
@@ -64,6 +66,7 @@ public class EvaluationResults {
   public EvaluationResults(Collection<String> class_names) {
     this.classNames = new String[class_names.size()];
     class_names.toArray(this.classNames);
+    this.classes = new NominalDictionary(this.classNames);
 
     initializeContingencyMatrix();
   }
@@ -87,6 +90,7 @@ public class EvaluationResults {
    */
   public EvaluationResults(String[] class_names) {
     this.classNames = class_names;
+    this.classes = new NominalDictionary(class_names);
     initializeContingencyMatrix();
   }
 
@@ -243,6 +247,11 @@ public class EvaluationResults {
    * @throws AuToBIException if class_name is invalid
    */
   private int lookupClassName(String class_name) throws AuToBIException {
+    int code = classes.encode(class_name);
+    if (code >= 0 && class_name.equals(classNames[code])) {
+      return code;
+    }
+    // Repeated class names shift the dictionary codes, so fall back to the position of the first match.
     for (int i = 0; i < classNames.length; ++i) {
       if (class_name.equals(classNames[i])) {
         return i;
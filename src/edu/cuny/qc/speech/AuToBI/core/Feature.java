@@ -42,6 +42,8 @@ public class Feature implements Comparable, Serializable {
   public static final int STRING_LIST = 0;
   public static final int CSV_FORMAT = 1;
   private boolean isString;                     // is the feature a string
+  // the codes of the nominal values, built on demand and discarded whenever the nominal values change
+  private transient volatile NominalDictionary dictionary;
 
   /**
    * Constructs a new feature.
@@ -110,6 +112,7 @@ public class Feature implements Comparable, Serializable {
    */
   public void setNominal() {
     nominalValues = new LinkedHashSet<String>();
+    dictionary = null;
   }
 
   /**
@@ -131,7 +134,9 @@ public class Feature implements Comparable, Serializable {
     if (!isNominal()) {
       setNominal();
     }
-    nominalValues.add(s);
+    if (nominalValues.add(s)) {
+      dictionary = null;
+    }
   }
 
   /**
@@ -157,11 +162,74 @@ public class Feature implements Comparable, Serializable {
 
   /**
    * Retrieves the set of nominal values.
+   * <p/>
+   * The set is a view of the nominal values of the feature.  Modifying it modifies the feature.
    *
-   * @return the nominal values
+   * @return the nominal values, or null if the feature is not nominal
    */
   public Set<String> getNominalValues() {
-    return nominalValues;
+    if (nominalValues == null) {
+      return null;
+    }
+    return new NominalValueView();
+  }
+
+  /**
+   * A view of the nominal values that discards the dictionary whenever the values are modified through it.
+   */
+  private class NominalValueView extends AbstractSet<String> {
+    @Override
+    public Iterator<String> iterator() {
+      final Iterator<String> it = nominalValues.iterator();
+      return new Iterator<String>() {
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        public String next() {
+          return it.next();
+        }
+
+        public void remove() {
+          it.remove();
+          dictionary = null;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return nominalValues.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return nominalValues.contains(o);
+    }
+
+    @Override
+    public boolean add(String s) {
+      boolean added = nominalValues.add(s);
+      if (added) {
+        dictionary = null;
+      }
+      return added;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      boolean removed = nominalValues.remove(o);
+      if (removed) {
+        dictionary = null;
+      }
+      return removed;
+    }
+
+    @Override
+    public void clear() {
+      nominalValues.clear();
+      dictionary = null;
+    }
   }
 
   /**
@@ -170,8 +238,9 @@ public class Feature implements Comparable, Serializable {
    * @param values a set of nominal values
    */
   public void setNominalValues(Collection<String> values) {
-    this.nominalValues = new LinkedHashSet<String>();
-    this.nominalValues.addAll(values);
+    // The values may be a view of the current nominal values, so they are copied before they are replaced.
+    this.nominalValues = new LinkedHashSet<String>(values);
+    dictionary = null;
   }
 
   /**
@@ -180,8 +249,8 @@ public class Feature implements Comparable, Serializable {
    * @param values the values
    */
   public void setNominalValues(String[] values) {
-    nominalValues = new LinkedHashSet<String>();
-    this.nominalValues.addAll(Arrays.asList(values));
+    nominalValues = new LinkedHashSet<String>(Arrays.asList(values));
+    dictionary = null;
   }
 
   /**
@@ -191,10 +260,10 @@ public class Feature implements Comparable, Serializable {
    */
   public void addNominalValues(Collection<String> values) {
     if (nominalValues == null) {
-      nominalValues = new LinkedHashSet<String>();
+      setNominal();
     }
     for (String s : values) {
-      this.nominalValues.add(s);
+      addNominalValue(s);
     }
   }
 
@@ -205,9 +274,11 @@ public class Feature implements Comparable, Serializable {
    */
   public void addNominalValues(String[] values) {
     if (nominalValues == null) {
-      nominalValues = new LinkedHashSet<String>();
+      setNominal();
+    }
+    for (String s : values) {
+      addNominalValue(s);
     }
-    this.nominalValues.addAll(Arrays.asList(values));
   }
 
   /**
@@ -217,12 +288,29 @@ public class Feature implements Comparable, Serializable {
    * @param value the value to index
    */
   public int getNominalIndex(String value) {
-    int i = 0;
-    for (String nominalValue : nominalValues) {
-      if (nominalValue.equals(value)) return i;
-      i++;
+    return getNominalDictionary().encode(value);
+  }
+
+  /**
+   * Retrieves the dictionary of nominal values.
+   * <p/>
+   * The code of each value is its position in getNominalValues().  The dictionary is not serialized; it is rebuilt
+   * from the nominal values when needed, and discarded whenever they change.  The dictionary is frozen, so it cannot be
+   * modified once it has been built and may be shared by threads that code values concurrently.  To add a value, use
+   * addNominalValue.
+   *
+   * @return the dictionary, or null if the feature is not nominal
+   */
+  public NominalDictionary getNominalDictionary() {
+    if (nominalValues == null) {
+      return null;
+    }
+    NominalDictionary d = dictionary;
+    if (d == null) {
+      d = new NominalDictionary(nominalValues).freeze();
+      dictionary = d;
     }
-    return -1;
+    return d;
   }
 
   /**
@@ -234,13 +322,18 @@ public class Feature implements Comparable, Serializable {
     if (!isNominal()) {
       setNominal();
     }
+    // Numeric values are only converted to strings the first time they are seen.
+    HashSet<Object> seen_numbers = new HashSet<Object>();
     for (Region r : data_points) {
-      if (r.getAttribute(name) == null) {
+      Object value = r.getAttribute(name);
+      if (value == null) {
         AuToBIUtils.debug("Region " + r + " has no attribute: " + name);
-      } else if (r.getAttribute(name) instanceof String) {
-        addNominalValue((String) r.getAttribute(name));
-      } else if (r.getAttribute(name) instanceof Number) {
-        addNominalValue(r.getAttribute(name).toString());
+      } else if (value instanceof String) {
+        addNominalValue((String) value);
+      } else if (value instanceof Number) {
+        if (seen_numbers.add(value)) {
+          addNominalValue(value.toString());
+        }
       }
     }
   }
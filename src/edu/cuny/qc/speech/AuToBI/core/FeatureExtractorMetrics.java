@@ -0,0 +1,469 @@
+/*  FeatureExtractorMetrics.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FeatureExtractorMetrics records the cost of each FeatureExtractor executed during feature extraction.
+ * <p/>
+ * Statistics are kept at two granularities.  Totals are accumulated for each FeatureExtractor class, and are
+ * available over JMX once registerMBeans() has been called.  Per-file statistics are accumulated for each extractor
+ * instance, identified by the first feature it extracts, so that expensive nodes of the extraction graph can be
+ * identified.  Both are included in the JSON report written by writeReport().
+ * <p/>
+ * A single FeatureExtractorMetrics object may be shared by AuToBI objects running on different threads.
+ */
+public class FeatureExtractorMetrics {
+  public static final String JMX_DOMAIN = "edu.cuny.qc.speech.AuToBI";
+
+  private static final ThreadMXBean thread_bean = ManagementFactory.getThreadMXBean();
+  private static final boolean cpu_time_supported = isCpuTimeSupported();
+  private static final boolean allocation_supported = isAllocationSupported();
+
+  // A cache of moniker fields by feature extractor class
+  private static final ConcurrentMap<Class<?>, String> monikers = new ConcurrentHashMap<Class<?>, String>();
+
+  // Totals for each feature extractor class
+  private final ConcurrentMap<String, FeatureExtractorStats> extractor_stats;
+
+  // Statistics for each feature extractor instance, by file
+  private final ConcurrentMap<String, ConcurrentMap<String, FeatureExtractorStats>> file_stats;
+
+  // The number of garbage collection passes that removed at least one feature
+  private final AtomicLong collection_events;
+
+  // The names of MBeans registered by this object, or null if MBeans are not registered
+  private Set<ObjectName> registered_names;
+
+  /**
+   * Constructs a new, empty FeatureExtractorMetrics object.
+   */
+  public FeatureExtractorMetrics() {
+    extractor_stats = new ConcurrentHashMap<String, FeatureExtractorStats>();
+    file_stats = new ConcurrentHashMap<String, ConcurrentMap<String, FeatureExtractorStats>>();
+    collection_events = new AtomicLong();
+  }
+
+  /**
+   * Retrieves the cpu time used by the current thread.
+   *
+   * @return cpu time in nanoseconds, or -1 if unsupported
+   */
+  public static long currentThreadCpuTime() {
+    return cpu_time_supported ? thread_bean.getCurrentThreadCpuTime() : -1;
+  }
+
+  /**
+   * Retrieves the total number of bytes allocated by the current thread.
+   *
+   * @return allocated bytes, or -1 if unsupported
+   */
+  public static long currentThreadAllocatedBytes() {
+    if (!allocation_supported) {
+      return -1;
+    }
+    return ((com.sun.management.ThreadMXBean) thread_bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static boolean isCpuTimeSupported() {
+    try {
+      return thread_bean.isCurrentThreadCpuTimeSupported() && thread_bean.isThreadCpuTimeEnabled();
+    } catch (UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  private static boolean isAllocationSupported() {
+    try {
+      if (thread_bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) thread_bean;
+        return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+      }
+    } catch (UnsupportedOperationException e) {
+      // fall through
+    }
+    return false;
+  }
+
+  /**
+   * Records an execution of a feature extractor on the current thread.
+   * <p/>
+   * The start values should be taken from System.nanoTime(), currentThreadCpuTime() and currentThreadAllocatedBytes()
+   * immediately before the extractor runs.
+   *
+   * @param file        the file being processed
+   * @param fe          the feature extractor
+   * @param regions     the regions processed
+   * @param wall_start  the value of System.nanoTime() before the extractor ran
+   * @param cpu_start   the cpu time before the extractor ran
+   * @param alloc_start the allocated bytes before the extractor ran
+   */
+  public void record(String file, FeatureExtractor fe, List regions, long wall_start, long cpu_start,
+                     long alloc_start) {
+    long wall = System.nanoTime() - wall_start;
+    long cpu = cpu_start < 0 ? -1 : currentThreadCpuTime() - cpu_start;
+    long alloc = alloc_start < 0 ? -1 : currentThreadAllocatedBytes() - alloc_start;
+    int features = countProducedFeatures(fe, regions);
+
+    getExtractorStats(fe).record(wall, cpu, alloc, regions.size(), features);
+    getInstanceStats(file, fe).record(wall, cpu, alloc, regions.size(), features);
+  }
+
+  /**
+   * Counts the features a feature extractor declares that are present on at least one of the regions it processed.
+   * <p/>
+   * The search for each feature stops at the first region that has it, so this is usually one lookup per feature.
+   *
+   * @param fe      the feature extractor
+   * @param regions the regions processed
+   * @return the number of features produced
+   */
+  static int countProducedFeatures(FeatureExtractor fe, List regions) {
+    if (fe.getExtractedFeatures() == null) {
+      return 0;
+    }
+    int features = 0;
+    for (String feature : fe.getExtractedFeatures()) {
+      for (Object r : regions) {
+        if (((Region) r).hasAttribute(feature)) {
+          ++features;
+          break;
+        }
+      }
+    }
+    return features;
+  }
+
+  /**
+   * Records the removal of a feature produced by a feature extractor by reference count garbage collection.
+   *
+   * @param file the file being processed
+   * @param fe   the feature extractor that produced the feature
+   */
+  public void recordCollection(String file, FeatureExtractor fe) {
+    getExtractorStats(fe).recordCollection();
+    getInstanceStats(file, fe).recordCollection();
+  }
+
+  /**
+   * Records a garbage collection pass that removed at least one feature.
+   */
+  public void recordCollectionEvent() {
+    collection_events.incrementAndGet();
+  }
+
+  /**
+   * @return the number of garbage collection passes that removed at least one feature
+   */
+  public long getCollectionEvents() {
+    return collection_events.get();
+  }
+
+  /**
+   * Retrieves the accumulated statistics for a feature extractor class, creating them if necessary.
+   *
+   * @param fe the feature extractor
+   * @return the statistics for its class
+   */
+  public FeatureExtractorStats getExtractorStats(FeatureExtractor fe) {
+    String name = fe.getClass().getName();
+    FeatureExtractorStats stats = extractor_stats.get(name);
+    if (stats == null) {
+      FeatureExtractorStats new_stats = new FeatureExtractorStats(name, name, getMoniker(fe.getClass()));
+      stats = extractor_stats.putIfAbsent(name, new_stats);
+      if (stats == null) {
+        stats = new_stats;
+        registerMBean(stats);
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Retrieves the statistics of a feature extractor instance on a file, creating them if necessary.
+   *
+   * @param file the file
+   * @param fe   the feature extractor
+   * @return the statistics for the extractor on the file
+   */
+  public FeatureExtractorStats getInstanceStats(String file, FeatureExtractor fe) {
+    if (file == null) {
+      file = "";
+    }
+    ConcurrentMap<String, FeatureExtractorStats> instances = file_stats.get(file);
+    if (instances == null) {
+      ConcurrentMap<String, FeatureExtractorStats> new_instances =
+          new ConcurrentHashMap<String, FeatureExtractorStats>();
+      instances = file_stats.putIfAbsent(file, new_instances);
+      if (instances == null) {
+        instances = new_instances;
+      }
+    }
+
+    String name = getInstanceName(fe);
+    FeatureExtractorStats stats = instances.get(name);
+    if (stats == null) {
+      FeatureExtractorStats new_stats =
+          new FeatureExtractorStats(name, fe.getClass().getName(), getMoniker(fe.getClass()));
+      stats = instances.putIfAbsent(name, new_stats);
+      if (stats == null) {
+        stats = new_stats;
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Identifies a feature extractor instance by the first feature it extracts.
+   *
+   * @param fe the feature extractor
+   * @return the name of the instance
+   */
+  static String getInstanceName(FeatureExtractor fe) {
+    if (fe.getExtractedFeatures() == null || fe.getExtractedFeatures().isEmpty()) {
+      return fe.getClass().getName();
+    }
+    return fe.getExtractedFeatures().get(0);
+  }
+
+  /**
+   * Retrieves the moniker of a feature extractor class.
+   *
+   * @param c the class
+   * @return the value of the static moniker field, or an empty string if there is none
+   */
+  static String getMoniker(Class<?> c) {
+    String moniker = monikers.get(c);
+    if (moniker == null) {
+      try {
+        Object value = c.getDeclaredField("moniker").get(null);
+        moniker = value == null ? "" : value.toString();
+      } catch (NoSuchFieldException e) {
+        moniker = "";
+      } catch (IllegalAccessException e) {
+        moniker = "";
+      } catch (NullPointerException e) {
+        // an instance field
+        moniker = "";
+      }
+      monikers.put(c, moniker);
+    }
+    return moniker;
+  }
+
+  /**
+   * @return the statistics for each feature extractor class, ordered by decreasing wall time
+   */
+  public List<FeatureExtractorStats> getExtractorStats() {
+    return sortByWallTime(extractor_stats.values());
+  }
+
+  /**
+   * @return the files for which statistics have been recorded
+   */
+  public Set<String> getFiles() {
+    return new TreeSet<String>(file_stats.keySet());
+  }
+
+  /**
+   * Retrieves the statistics for each feature extractor instance on a file.
+   *
+   * @param file the file
+   * @return the statistics ordered by decreasing wall time
+   */
+  public List<FeatureExtractorStats> getFileStats(String file) {
+    Map<String, FeatureExtractorStats> instances = file_stats.get(file);
+    if (instances == null) {
+      return new ArrayList<FeatureExtractorStats>();
+    }
+    return sortByWallTime(instances.values());
+  }
+
+  private static List<FeatureExtractorStats> sortByWallTime(Collection<FeatureExtractorStats> values) {
+    List<FeatureExtractorStats> stats = new ArrayList<FeatureExtractorStats>(values);
+    Collections.sort(stats, new Comparator<FeatureExtractorStats>() {
+      public int compare(FeatureExtractorStats a, FeatureExtractorStats b) {
+        long wall_a = a.getWallTimeNanos();
+        long wall_b = b.getWallTimeNanos();
+        if (wall_a != wall_b) {
+          return wall_a > wall_b ? -1 : 1;
+        }
+        return a.getName().compareTo(b.getName());
+      }
+    });
+    return stats;
+  }
+
+  /**
+   * Clears all recorded statistics.
+   */
+  public synchronized void reset() {
+    for (FeatureExtractorStats stats : extractor_stats.values()) {
+      stats.reset();
+    }
+    file_stats.clear();
+    collection_events.set(0);
+  }
+
+  /**
+   * Registers an MBean for each feature extractor class with the platform MBean server.
+   * <p/>
+   * Classes encountered after registration are registered as they are first recorded.  MBeans previously registered
+   * under the same names, for example by another FeatureExtractorMetrics object, are replaced.
+   */
+  public synchronized void registerMBeans() {
+    if (registered_names == null) {
+      registered_names = new HashSet<ObjectName>();
+    }
+    for (FeatureExtractorStats stats : extractor_stats.values()) {
+      registerMBean(stats);
+    }
+  }
+
+  /**
+   * Unregisters all MBeans registered by this object.
+   */
+  public synchronized void unregisterMBeans() {
+    if (registered_names == null) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName name : registered_names) {
+      try {
+        if (server.isRegistered(name)) {
+          server.unregisterMBean(name);
+        }
+      } catch (JMException e) {
+        AuToBIUtils.warn("Unable to unregister MBean: " + name + " -- " + e.getMessage());
+      }
+    }
+    registered_names = null;
+  }
+
+  /**
+   * Constructs the JMX object name for the statistics of a feature extractor class.
+   *
+   * @param extractor_class the class name
+   * @return the object name
+   * @throws JMException if the name is malformed
+   */
+  public static ObjectName getObjectName(String extractor_class) throws JMException {
+    return new ObjectName(JMX_DOMAIN + ":type=FeatureExtractor,name=" + ObjectName.quote(extractor_class));
+  }
+
+  private synchronized void registerMBean(FeatureExtractorStats stats) {
+    if (registered_names == null) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = getObjectName(stats.getExtractorClass());
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(stats, name);
+      registered_names.add(name);
+    } catch (JMException e) {
+      AuToBIUtils.warn("Unable to register MBean for " + stats.getExtractorClass() + " -- " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the recorded statistics as a JSON document.
+   *
+   * @param writer the destination
+   * @throws IOException if there is a problem writing
+   */
+  public void writeReport(Writer writer) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n  \"collection_events\": ").append(collection_events.get()).append(",\n");
+    sb.append("  \"extractors\": [");
+    appendJson(sb, getExtractorStats(), "\n    ");
+    sb.append("\n  ],\n  \"files\": [");
+    boolean first = true;
+    for (String file : getFiles()) {
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("    {\"file\": ").append(AuToBIUtils.quoteJson(file)).append(", \"extractors\": [");
+      appendJson(sb, getFileStats(file), "\n      ");
+      sb.append("\n    ]}");
+    }
+    sb.append("\n  ]\n}\n");
+    writer.write(sb.toString());
+    writer.flush();
+  }
+
+  /**
+   * Writes the recorded statistics as a JSON document to a file.
+   *
+   * @param filename the destination file
+   * @throws IOException if there is a problem writing
+   */
+  public void writeReport(String filename) throws IOException {
+    Writer writer = new BufferedWriter(new FileWriter(filename));
+    try {
+      writeReport(writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static void appendJson(StringBuilder sb, List<FeatureExtractorStats> stats, String indent) {
+    for (int i = 0; i < stats.size(); ++i) {
+      if (i > 0) {
+        sb.append(",");
+      }
+      sb.append(indent);
+      stats.get(i).appendJson(sb);
+    }
+  }
+
+  /**
+   * Constructs a human readable summary of the feature extractor class totals.
+   *
+   * @return the summary, one line per class, ordered by decreasing wall time
+   */
+  public String getSummary() {
+    StringBuilder sb = new StringBuilder();
+    for (FeatureExtractorStats stats : getExtractorStats()) {
+      sb.append(stats.toString()).append("\n");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,176 @@
+/*  FeatureExtractorStats.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+/**
+ * FeatureExtractorStats accumulates the cost of running a FeatureExtractor.
+ * <p/>
+ * Statistics are accumulated across invocations and may be updated from several threads.  CPU time and allocated
+ * bytes are reported as -1 when the JVM does not support their measurement.
+ */
+public class FeatureExtractorStats implements FeatureExtractorStatsMBean {
+  private final String name;             // the name of the extractor or extractor instance
+  private final String extractor_class;  // the canonical class name of the extractor
+  private final String moniker;          // the moniker of the extractor class
+  private long invocations;
+  private long wall_nanos;
+  private long cpu_nanos;
+  private long allocated_bytes;
+  private long regions;
+  private long features;
+  private long collected_features;
+
+  /**
+   * Constructs a new, empty FeatureExtractorStats object.
+   *
+   * @param name            the name under which the statistics are reported
+   * @param extractor_class the canonical class name of the extractor
+   * @param moniker         the moniker of the extractor class
+   */
+  public FeatureExtractorStats(String name, String extractor_class, String moniker) {
+    this.name = name;
+    this.extractor_class = extractor_class;
+    this.moniker = moniker;
+  }
+
+  /**
+   * Records a single execution of the feature extractor.
+   *
+   * @param wall_nanos      elapsed time in nanoseconds
+   * @param cpu_nanos       cpu time in nanoseconds, or a negative value if unavailable
+   * @param allocated_bytes bytes allocated, or a negative value if unavailable
+   * @param regions         the number of regions processed
+   * @param features        the number of declared features present on the regions after the execution
+   */
+  public synchronized void record(long wall_nanos, long cpu_nanos, long allocated_bytes, int regions, int features) {
+    ++invocations;
+    this.wall_nanos += wall_nanos;
+    this.cpu_nanos = accumulate(this.cpu_nanos, cpu_nanos);
+    this.allocated_bytes = accumulate(this.allocated_bytes, allocated_bytes);
+    this.regions += regions;
+    this.features += features;
+  }
+
+  /**
+   * Records the removal of a produced feature by reference count garbage collection.
+   */
+  public synchronized void recordCollection() {
+    ++collected_features;
+  }
+
+  /**
+   * Adds a measurement to a running total.  Once a measurement is unavailable the total remains unavailable.
+   *
+   * @param total the running total
+   * @param value the new measurement
+   * @return the updated total
+   */
+  private static long accumulate(long total, long value) {
+    if (total < 0 || value < 0) {
+      return -1;
+    }
+    return total + value;
+  }
+
+  /**
+   * @return the name under which the statistics are reported
+   */
+  public String getName() {
+    return name;
+  }
+
+  public String getExtractorClass() {
+    return extractor_class;
+  }
+
+  public String getMoniker() {
+    return moniker;
+  }
+
+  public synchronized long getInvocations() {
+    return invocations;
+  }
+
+  public synchronized long getWallTimeNanos() {
+    return wall_nanos;
+  }
+
+  public synchronized long getCpuTimeNanos() {
+    return cpu_nanos;
+  }
+
+  public synchronized long getAllocatedBytes() {
+    return allocated_bytes;
+  }
+
+  public synchronized long getRegions() {
+    return regions;
+  }
+
+  public synchronized long getFeatures() {
+    return features;
+  }
+
+  public synchronized long getCollectedFeatures() {
+    return collected_features;
+  }
+
+  public synchronized void reset() {
+    invocations = 0;
+    wall_nanos = 0;
+    cpu_nanos = 0;
+    allocated_bytes = 0;
+    regions = 0;
+    features = 0;
+    collected_features = 0;
+  }
+
+  /**
+   * Writes the statistics as a JSON object.
+   *
+   * @param sb the builder to append to
+   */
+  synchronized void appendJson(StringBuilder sb) {
+    sb.append("{\"name\": ").append(AuToBIUtils.quoteJson(name));
+    sb.append(", \"class\": ").append(AuToBIUtils.quoteJson(extractor_class));
+    sb.append(", \"moniker\": ").append(AuToBIUtils.quoteJson(moniker));
+    sb.append(", \"invocations\": ").append(invocations);
+    sb.append(", \"wall_nanos\": ").append(wall_nanos);
+    sb.append(", \"cpu_nanos\": ").append(cpu_nanos);
+    sb.append(", \"allocated_bytes\": ").append(allocated_bytes);
+    sb.append(", \"regions\": ").append(regions);
+    sb.append(", \"features\": ").append(features);
+    sb.append(", \"collected_features\": ").append(collected_features);
+    sb.append("}");
+  }
+
+  @Override
+  public synchronized String toString() {
+    return name + " invocations=" + invocations + " wall_ms=" + (wall_nanos / 1000000.0) + " cpu_ms=" +
+        (cpu_nanos < 0 ? -1 : cpu_nanos / 1000000.0) + " allocated_bytes=" + allocated_bytes + " regions=" + regions +
+        " features=" + features + " collected_features=" + collected_features;
+  }
+}
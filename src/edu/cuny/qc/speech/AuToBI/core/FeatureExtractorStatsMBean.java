@@ -0,0 +1,82 @@
+/*  FeatureExtractorStatsMBean.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+/**
+ * Management interface exposing the accumulated cost of a FeatureExtractor over JMX.
+ *
+ * @see FeatureExtractorStats
+ */
+public interface FeatureExtractorStatsMBean {
+
+  /**
+   * @return the canonical class name of the feature extractor
+   */
+  public String getExtractorClass();
+
+  /**
+   * @return the moniker of the feature extractor class, or an empty string if the class has none
+   */
+  public String getMoniker();
+
+  /**
+   * @return the number of times the feature extractor has run
+   */
+  public long getInvocations();
+
+  /**
+   * @return the total elapsed time spent in the feature extractor in nanoseconds
+   */
+  public long getWallTimeNanos();
+
+  /**
+   * @return the total cpu time spent in the feature extractor in nanoseconds, or -1 if unsupported by the JVM
+   */
+  public long getCpuTimeNanos();
+
+  /**
+   * @return the total number of bytes allocated by the feature extractor, or -1 if unsupported by the JVM
+   */
+  public long getAllocatedBytes();
+
+  /**
+   * @return the total number of regions processed
+   */
+  public long getRegions();
+
+  /**
+   * @return the total number of declared features that were present on the regions after each execution
+   */
+  public long getFeatures();
+
+  /**
+   * @return the number of produced features that were removed by reference count garbage collection
+   */
+  public long getCollectedFeatures();
+
+  /**
+   * Clears the accumulated statistics.
+   */
+  public void reset();
+}
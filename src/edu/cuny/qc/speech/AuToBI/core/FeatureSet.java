@@ -27,6 +27,7 @@ import com.google.common.collect.HashBiMap;
 import edu.cuny.qc.speech.AuToBI.io.AuToBIFileWriter;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
+import edu.cuny.qc.speech.AuToBI.util.TraceProfiler;
 
 import java.util.*;
 import java.io.Serializable;
@@ -78,6 +79,26 @@ public class FeatureSet implements Serializable {
     return newfs;
   }
 
+  /**
+   * Constructs a FeatureSet with the same required features and class attribute as this one over the supplied data
+   * points.
+   * <p/>
+   * Unlike setDataPoints, the data points are not reassigned to the new FeatureSet.  They must already be assigned to
+   * a FeatureSet with the same required features (typically this one), and the supplied list is used directly rather
+   * than copied.  This makes it inexpensive to describe subsets of a data set, e.g., cross validation folds.
+   *
+   * @param points the data points, already assigned to an equivalent FeatureSet
+   * @return a new FeatureSet over points
+   */
+  public FeatureSet newInstance(List<Word> points) {
+    FeatureSet newfs = new FeatureSet();
+    newfs.features.addAll(this.getFeatures());
+    newfs.required_features.putAll(this.required_features);
+    newfs.class_attribute = this.getClassAttribute();
+    newfs.data_points = points;
+    return newfs;
+  }
+
 
   /**
    * Retrieves the associated data points.
@@ -195,6 +216,7 @@ public class FeatureSet implements Serializable {
    * The class attribute is always treated as a nominal feature.
    */
   public void constructFeatures() {
+    TraceProfiler.Span span = TraceProfiler.begin("features", "construct_features");
     features.clear();
     for (String feature : required_features.keySet()) {
       Feature f = new Feature(feature);
@@ -209,6 +231,7 @@ public class FeatureSet implements Serializable {
       class_feature.generateNominalValues(data_points);
       features.add(class_feature);
     }
+    span.arg("data_points", data_points == null ? 0 : data_points.size()).end();
   }
 
   /**
@@ -289,16 +312,21 @@ public class FeatureSet implements Serializable {
    */
   public void writeArff(String arff_file, String relation_name) throws
       IOException {
-    AuToBIFileWriter writer = new AuToBIFileWriter(arff_file);
-
-    writer.write("@relation ");
-    writer.write(relation_name);
-    writer.write("\n\n");
-    writer.write(generateArffAttributes());
-    String data_section = generateArffData();
-    writer.write("\n");
-    writer.write(data_section);
-    writer.close();
+    TraceProfiler.Span span = TraceProfiler.begin("io", "write_arff").arg("file", arff_file);
+    try {
+      AuToBIFileWriter writer = new AuToBIFileWriter(arff_file);
+
+      writer.write("@relation ");
+      writer.write(relation_name);
+      writer.write("\n\n");
+      writer.write(generateArffAttributes());
+      String data_section = generateArffData();
+      writer.write("\n");
+      writer.write(data_section);
+      writer.close();
+    } finally {
+      span.end();
+    }
   }
 
   /**
@@ -318,21 +346,43 @@ public class FeatureSet implements Serializable {
     de.bwaldvogel.liblinear.Feature[][] data = ClassifierUtils.normalizeLibLinearFeatures(
         ClassifierUtils.convertFeatureSetToLibLinearFeatures(this), feature_map.inverse(), norm_map);
 
-    AuToBIFileWriter writer = new AuToBIFileWriter(filename);
-    for (int i = 0; i < labels.length; i++) {
-      writer.write(String.valueOf((int) labels[i]));
-      writer.write(" ");
-      for (int j = 0; j < data[i].length; j++) {
-        writer.write(String.valueOf(data[i][j].getIndex()));
-        writer.write(":");
-        writer.write(String.valueOf(data[i][j].getValue()));
-        if (j < data[i].length - 1) {
-          writer.write(" ");
+    TraceProfiler.Span span = TraceProfiler.begin("io", "write_liblinear").arg("file", filename);
+    try {
+      AuToBIFileWriter writer = new AuToBIFileWriter(filename);
+      for (int i = 0; i < labels.length; i++) {
+        writer.write(String.valueOf((int) labels[i]));
+        writer.write(" ");
+        for (int j = 0; j < data[i].length; j++) {
+          writer.write(String.valueOf(data[i][j].getIndex()));
+          writer.write(":");
+          writer.write(String.valueOf(data[i][j].getValue()));
+          if (j < data[i].length - 1) {
+            writer.write(" ");
+          }
         }
+        writer.write("\n");
       }
-      writer.write("\n");
+      writer.close();
+    } finally {
+      span.end();
+    }
+  }
+
+  /**
+   * Writes the contents of the feature set to a binary columnar feature store.
+   * <p/>
+   * Unlike arff, csv and liblinear files, a feature store can be read back by AuToBI through ColumnarFeatureStore.
+   *
+   * @param filename the name of the destination file
+   * @throws IOException if there is a problem writing to the file.
+   */
+  public void writeFeatureStore(String filename) throws IOException {
+    TraceProfiler.Span span = TraceProfiler.begin("io", "write_feature_store").arg("file", filename);
+    try {
+      ColumnarFeatureStore.write(this, filename);
+    } finally {
+      span.end();
     }
-    writer.close();
   }
 
   /**
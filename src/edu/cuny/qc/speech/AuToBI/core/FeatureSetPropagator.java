@@ -27,8 +27,11 @@ import edu.cuny.qc.speech.AuToBI.AuToBI;
 import edu.cuny.qc.speech.AuToBI.featureextractor.FeatureExtractorException;
 import edu.cuny.qc.speech.AuToBI.io.*;
 import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+import edu.cuny.qc.speech.AuToBI.util.TraceProfiler;
 import edu.cuny.qc.speech.AuToBI.util.WordReaderUtils;
 
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
 import java.util.List;
@@ -42,23 +45,91 @@ public class FeatureSetPropagator implements Callable<FeatureSet> {
   private AuToBI autobi;
   private FormattedFile file;
   private final FeatureSet target_fs;
+  private double estimated_duration = -1;  // the duration of the wav file in seconds, read from its header
+  private long estimated_memory = -1;      // the size of the decoded wav file in bytes
 
   public FeatureSetPropagator(AuToBI autobi, FormattedFile file, FeatureSet fs) {
     this.autobi = new AuToBI();
     this.autobi.setParameters(autobi.getParameters());
     this.autobi.setFeatureRegistry(autobi.getFeatureRegistry());
     this.autobi.setMonikerMap(autobi.getMonikerMap());
+    this.autobi.setFeatureExtractorMetrics(autobi.getFeatureExtractorMetrics());
+    this.autobi.setMetricsFile(file.getFilename());
     this.file = file;
     this.target_fs = fs;
   }
 
+  /**
+   * Retrieves the name of the wav file associated with the input file.
+   *
+   * @return the wav filename
+   */
+  private String getWavFilename() {
+    String filename = file.getFilename();
+    return filename.substring(0, filename.lastIndexOf('.')) + ".wav";
+  }
+
+  /**
+   * Reads the duration and decoded size of the wav file from its header.
+   * <p/>
+   * If the wav file is not read, or its header cannot be read, both estimates are zero.
+   */
+  private void readWavHeader() {
+    estimated_duration = 0;
+    estimated_memory = 0;
+    if (!autobi.getBooleanParameter("read_wav", true)) {
+      return;
+    }
+    try {
+      AudioFileFormat format = new WavReader().readFormat(getWavFilename());
+      long frames = format.getFrameLength();
+      if (frames == AudioSystem.NOT_SPECIFIED) {
+        return;
+      }
+      estimated_duration = frames / format.getFormat().getFrameRate();
+      // The raw bytes and the decoded double samples are both held while reading.
+      estimated_memory = frames * (format.getFormat().getFrameSize() + 8L * format.getFormat().getChannels());
+    } catch (UnsupportedAudioFileException e) {
+      AuToBIUtils.debug("Unable to read wav header: " + e.getMessage());
+    } catch (IOException e) {
+      AuToBIUtils.debug("Unable to read wav header: " + e.getMessage());
+    } catch (AuToBIException e) {
+      AuToBIUtils.debug("Unable to read wav header: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Retrieves the duration of the wav file, read from its header.
+   *
+   * @return the duration in seconds, or zero if it is unavailable
+   */
+  public double getEstimatedDuration() {
+    if (estimated_duration < 0) {
+      readWavHeader();
+    }
+    return estimated_duration;
+  }
+
+  /**
+   * Retrieves the memory required to hold the decoded wav file, estimated from its header.
+   *
+   * @return the size in bytes, or zero if it is unavailable
+   */
+  public long getEstimatedMemory() {
+    if (estimated_memory < 0) {
+      readWavHeader();
+    }
+    return estimated_memory;
+  }
+
   public FeatureSet call() {
     String filename = file.getFilename();
     String file_stem = filename.substring(0, filename.lastIndexOf('.'));
-    String wav_filename = file_stem + ".wav";
+    String wav_filename = getWavFilename();
 
     WavReader wav_reader = new WavReader();
     WavData wav = null;
+    TraceProfiler.Span file_span = TraceProfiler.begin("file", file_stem);
     try {
       try {
         if (autobi.getBooleanParameter("read_wav", true)) {
@@ -75,7 +146,9 @@ public class FeatureSetPropagator implements Callable<FeatureSet> {
       } else {
         reader = WordReaderUtils.getAppropriateReader(file, autobi.getParameters());
       }
+      TraceProfiler.Span span = TraceProfiler.begin("io", "read_words");
       List<Word> words = reader.readWords();
+      span.arg("words", words.size()).end();
 
       for (Word w : words) {
         w.setAttribute("wav", wav);
@@ -84,7 +157,9 @@ public class FeatureSetPropagator implements Callable<FeatureSet> {
       FeatureSet current_fs = target_fs.newInstance();
       current_fs.setDataPoints(words);
 
+      span = TraceProfiler.begin("extraction", "extract_features");
       autobi.extractFeatures(current_fs);
+      span.end();
 
       if (!autobi.getBooleanParameter("feature_preservation", false)) {
         for (Word w : current_fs.getDataPoints()) {
@@ -108,6 +183,8 @@ public class FeatureSetPropagator implements Callable<FeatureSet> {
       e.printStackTrace();
     } catch (UnsupportedAudioFileException e) {
       e.printStackTrace();
+    } finally {
+      file_span.end();
     }
 
     return null;
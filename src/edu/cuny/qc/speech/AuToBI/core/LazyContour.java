@@ -0,0 +1,271 @@
+/*  LazyContour.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+/**
+ * LazyContour is a Contour derived from another contour, whose values are only computed when they are read.
+ * <p/>
+ * Derived contours such as log, normalized and delta contours are assigned to every region of a file, but are usually
+ * only read over the spans of those regions, e.g., words, which often cover less than half of the file.  A
+ * LazyContour computes its values in fixed size chunks of frames, when a frame of the chunk is first read, and keeps
+ * each computed chunk.  Frames that are never read are never computed or stored.
+ * <p/>
+ * Transforms compose: a LazyContour may be derived from another LazyContour, in which case only the source frames
+ * needed by the requested chunks are computed.  The source contour is retained for as long as the derived contour.
+ * <p/>
+ * Values are identical to those of the corresponding eager functions in ContourUtils.  Concurrent reads are safe; a
+ * chunk read by two threads at once may be computed twice.  Like Contour, writes are not synchronized.
+ */
+public class LazyContour extends Contour {
+  public static final int CHUNK_SIZE = 256;  // the number of frames computed at once
+
+  /**
+   * Computes the value of a frame of a derived contour from its source contour.
+   */
+  public interface Transform {
+
+    /**
+     * Determines if a frame of the derived contour has a value.
+     *
+     * @param source the source contour
+     * @param index  the frame
+     * @return true if the frame has a value, false if it is empty
+     */
+    public boolean hasValue(Contour source, int index);
+
+    /**
+     * Computes the value of a frame of the derived contour.  Only called for frames that have a value.
+     *
+     * @param source the source contour
+     * @param index  the frame
+     * @return the value
+     */
+    public double apply(Contour source, int index);
+  }
+
+  /**
+   * A block of computed frames.  The arrays are filled by the constructor, so a Chunk is safely published to other
+   * threads through its final fields.
+   */
+  private static class Chunk {
+    private final double[] values;
+    private final boolean[] empty;
+
+    private Chunk(Contour source, Transform transform, int start, int length) {
+      values = new double[length];
+      empty = new boolean[length];
+      for (int i = 0; i < length; ++i) {
+        if (transform.hasValue(source, start + i)) {
+          values[i] = transform.apply(source, start + i);
+        } else {
+          empty[i] = true;
+        }
+      }
+    }
+  }
+
+  private final Contour source;       // the contour the values are derived from
+  private final Transform transform;  // the derivation of each frame
+  private final Chunk[] chunks;       // the computed chunks, or null if a chunk has not been read
+
+  /**
+   * Constructs a LazyContour with the same times as a source contour.
+   *
+   * @param source    the source contour
+   * @param transform the transform computing each frame from the source
+   */
+  public LazyContour(Contour source, Transform transform) {
+    super(source.getStart(), source.getStep(), source.size(), false);
+    this.source = source;
+    this.transform = transform;
+    this.chunks = new Chunk[(n + CHUNK_SIZE - 1) / CHUNK_SIZE];
+  }
+
+  /**
+   * Constructs a lazily evaluated log contour.
+   *
+   * @param source the source contour
+   * @return a contour holding the natural log of each source value
+   */
+  public static LazyContour log(Contour source) {
+    return new LazyContour(source, new PointwiseTransform() {
+      public double apply(Contour source, int index) {
+        return Math.log(source.get(index));
+      }
+    });
+  }
+
+  /**
+   * Constructs a lazily evaluated z-score normalized contour.
+   *
+   * @param source       the source contour
+   * @param norm_params  the normalization parameters
+   * @param feature_name the normalization feature
+   * @return a contour holding the normalized value of each source value
+   * @see edu.cuny.qc.speech.AuToBI.util.ContourUtils#zScoreNormalizeContour
+   */
+  public static LazyContour zScoreNormalize(Contour source, final SpeakerNormalizationParameter norm_params,
+                                            final String feature_name) {
+    return new LazyContour(source, new PointwiseTransform() {
+      public double apply(Contour source, int index) {
+        return norm_params.normalize(feature_name, source.get(index));
+      }
+    });
+  }
+
+  /**
+   * Constructs a lazily evaluated range normalized contour.
+   *
+   * @param source       the source contour
+   * @param norm_params  the normalization parameters
+   * @param feature_name the normalization feature
+   * @return a contour holding the range normalized value of each source value
+   * @see edu.cuny.qc.speech.AuToBI.util.ContourUtils#rangeNormalizeContour
+   */
+  public static LazyContour rangeNormalize(Contour source, final SpeakerNormalizationParameter norm_params,
+                                           final String feature_name) {
+    return new LazyContour(source, new PointwiseTransform() {
+      public double apply(Contour source, int index) {
+        return norm_params.rangeNormalize(feature_name, source.get(index));
+      }
+    });
+  }
+
+  /**
+   * Constructs a lazily evaluated delta contour.
+   * <p/>
+   * Each value is x[t+1] - x[t-1].  The first and last frames are empty.
+   *
+   * @param source the source contour
+   * @return a contour holding the first order differences of the source contour
+   * @see edu.cuny.qc.speech.AuToBI.util.ContourUtils#generateDeltaContour
+   */
+  public static LazyContour delta(Contour source) {
+    return new LazyContour(source, new Transform() {
+      public boolean hasValue(Contour source, int index) {
+        return index < source.size() - 1 && !source.isEmpty(index - 1) && !source.isEmpty(index) &&
+            !source.isEmpty(index + 1);
+      }
+
+      public double apply(Contour source, int index) {
+        return source.get(index + 1) - source.get(index - 1);
+      }
+    });
+  }
+
+  /**
+   * A transform whose frames have values wherever the source frame has a value.
+   */
+  private abstract static class PointwiseTransform implements Transform {
+    public boolean hasValue(Contour source, int index) {
+      return !source.isEmpty(index);
+    }
+  }
+
+  /**
+   * Retrieves the chunk holding a frame, computing it if it has not been read.
+   *
+   * @param index the frame, which must be within the contour
+   * @return the chunk
+   */
+  private Chunk chunk(int index) {
+    int c = index / CHUNK_SIZE;
+    Chunk chunk = chunks[c];
+    if (chunk == null) {
+      int start = c * CHUNK_SIZE;
+      chunk = new Chunk(source, transform, start, Math.min(CHUNK_SIZE, n - start));
+      chunks[c] = chunk;
+    }
+    return chunk;
+  }
+
+  /**
+   * Retrieves the number of chunks that have been computed.
+   *
+   * @return the number of computed chunks
+   */
+  public int numComputedChunks() {
+    int count = 0;
+    for (Chunk chunk : chunks) {
+      if (chunk != null) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public double get(int index) {
+    if (isEmpty(index)) {
+      return Double.NaN;
+    }
+    return chunk(index).values[index % CHUNK_SIZE];
+  }
+
+  @Override
+  public boolean isEmpty(int i) {
+    return i < 0 || i >= n || chunk(i).empty[i % CHUNK_SIZE];
+  }
+
+  @Override
+  public Pair<Double, Double> getPair(int i) {
+    if (isEmpty(i)) {
+      return null;
+    }
+    return new Pair<Double, Double>(timeFromIndex(i), get(i));
+  }
+
+  @Override
+  public void set(int index, double value) {
+    Chunk chunk = chunk(index);
+    chunk.values[index % CHUNK_SIZE] = value;
+    chunk.empty[index % CHUNK_SIZE] = false;
+  }
+
+  @Override
+  public void setEmpty(int index) {
+    chunk(index).empty[index % CHUNK_SIZE] = true;
+  }
+
+  @Override
+  public void setEmpty(double time) {
+    setEmpty(indexFromTime(time));
+  }
+
+  /**
+   * Returns the number of non-empty values in the Contour.  This computes every chunk.
+   *
+   * @return the number of elements in the contour.
+   */
+  @Override
+  public int contentSize() {
+    int count = 0;
+    for (int i = 0; i < n; ++i) {
+      if (!isEmpty(i)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,213 @@
+/*  NominalDictionary.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * NominalDictionary assigns a stable integer code to each value of a nominal feature or class label.
+ * <p/>
+ * Codes are assigned in order of insertion, starting at 0, and never change once assigned, so values can be encoded
+ * and decoded in constant time.  A dictionary can grow, and dictionaries built independently, e.g. from different
+ * files, can be merged.
+ * <p/>
+ * A dictionary that is shared, e.g. by every thread coding the values of a Feature, is frozen first.  A frozen
+ * dictionary can no longer gain values, so its codes are fixed for as long as it is in use.
+ */
+public class NominalDictionary implements Serializable {
+  private static final long serialVersionUID = 20141021L;
+
+  private final ArrayList<String> values;         // the value of each code
+  private final HashMap<String, Integer> codes;   // the code of each value
+  private boolean frozen;                         // true if values can no longer be added
+
+  /**
+   * Constructs an empty NominalDictionary.
+   */
+  public NominalDictionary() {
+    values = new ArrayList<String>();
+    codes = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Constructs a NominalDictionary from a collection of values.
+   * <p/>
+   * Values are coded in the iteration order of the collection.  Repeated values keep the code of their first
+   * occurrence.
+   *
+   * @param values the values
+   */
+  public NominalDictionary(Collection<String> values) {
+    this();
+    for (String value : values) {
+      add(value);
+    }
+  }
+
+  /**
+   * Constructs a NominalDictionary from an array of values.
+   * <p/>
+   * Values are coded in the order they are supplied.  Repeated values keep the code of their first occurrence.
+   *
+   * @param values the values
+   */
+  public NominalDictionary(String... values) {
+    this();
+    for (String value : values) {
+      add(value);
+    }
+  }
+
+  /**
+   * Freezes the dictionary, so that no further values can be added.
+   *
+   * @return this dictionary
+   */
+  public NominalDictionary freeze() {
+    frozen = true;
+    return this;
+  }
+
+  /**
+   * Determines if the dictionary is frozen.
+   *
+   * @return true if no further values can be added
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Adds a value to the dictionary if it is not already present.
+   *
+   * @param value the value
+   * @return the code of the value
+   * @throws UnsupportedOperationException if the value is not present and the dictionary is frozen
+   */
+  public int add(String value) {
+    Integer code = codes.get(value);
+    if (code == null) {
+      if (frozen) {
+        throw new UnsupportedOperationException("Cannot add " + value + " to a frozen NominalDictionary.");
+      }
+      code = values.size();
+      codes.put(value, code);
+      values.add(value);
+    }
+    return code;
+  }
+
+  /**
+   * Retrieves the code of a value.
+   *
+   * @param value the value
+   * @return the code, or -1 if the value is not in the dictionary
+   */
+  public int encode(String value) {
+    Integer code = codes.get(value);
+    return code == null ? -1 : code;
+  }
+
+  /**
+   * Retrieves the value of a code.
+   *
+   * @param code the code
+   * @return the value
+   */
+  public String decode(int code) {
+    return values.get(code);
+  }
+
+  /**
+   * Determines if a value is in the dictionary.
+   *
+   * @param value the value
+   * @return true if the value is in the dictionary
+   */
+  public boolean contains(String value) {
+    return codes.containsKey(value);
+  }
+
+  /**
+   * Retrieves the number of values in the dictionary.
+   *
+   * @return the number of values
+   */
+  public int size() {
+    return values.size();
+  }
+
+  /**
+   * Retrieves the values of the dictionary in code order.
+   *
+   * @return an unmodifiable list of values
+   */
+  public List<String> getValues() {
+    return Collections.unmodifiableList(values);
+  }
+
+  /**
+   * Merges the values of another dictionary into this one.
+   * <p/>
+   * Values of the other dictionary that are not already present are appended in the other dictionary's code order.
+   * Existing codes are unchanged.
+   *
+   * @param other the dictionary to merge
+   * @return the code in this dictionary of each code of the other dictionary
+   * @throws UnsupportedOperationException if the other dictionary has a value this one lacks and this one is frozen
+   */
+  public int[] merge(NominalDictionary other) {
+    int[] mapping = new int[other.size()];
+    for (int i = 0; i < mapping.length; ++i) {
+      mapping[i] = add(other.decode(i));
+    }
+    return mapping;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof NominalDictionary)) {
+      return false;
+    }
+    return values.equals(((NominalDictionary) o).values);
+  }
+
+  @Override
+  public int hashCode() {
+    return values.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return values.toString();
+  }
+}
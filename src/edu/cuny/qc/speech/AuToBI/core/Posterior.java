@@ -0,0 +1,214 @@
+/*  Posterior.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+/**
+ * Posterior is a compact distribution over a fixed set of class labels.
+ * <p/>
+ * The values are stored in a primitive array indexed by a NominalDictionary that is shared across all of the posteriors
+ * a classifier generates.  The dictionary must not gain values while its posteriors are in use, so classifiers
+ * share a frozen dictionary.  Posterior is used on the classification path in place of Distribution, which requires a
+ * hash map entry and a boxed value per label.  toDistribution() constructs the equivalent Distribution where one is
+ * still required.
+ */
+public class Posterior {
+  private final NominalDictionary labels;  // the class labels
+  private final double[] values;           // the value of each label
+
+  /**
+   * Constructs a Posterior with zero values for each label.
+   *
+   * @param labels the class labels
+   */
+  public Posterior(NominalDictionary labels) {
+    this(labels, new double[labels.size()]);
+  }
+
+  /**
+   * Constructs a Posterior from an array of values.
+   * <p/>
+   * The array is used directly rather than copied.
+   *
+   * @param labels the class labels
+   * @param values the value of each label, indexed by the label dictionary
+   * @throws IllegalArgumentException if the number of values does not match the number of labels
+   */
+  public Posterior(NominalDictionary labels, double[] values) {
+    if (values.length != labels.size()) {
+      throw new IllegalArgumentException(
+          "Posterior has " + values.length + " values for " + labels.size() + " labels.");
+    }
+    this.labels = labels;
+    this.values = values;
+  }
+
+  /**
+   * Constructs a Posterior from a Distribution.
+   * <p/>
+   * Labels are indexed in the iteration order of the distribution.
+   *
+   * @param dist the distribution
+   * @return an equivalent posterior
+   */
+  public static Posterior fromDistribution(Distribution dist) {
+    NominalDictionary labels = new NominalDictionary(dist.keySet()).freeze();
+    double[] values = new double[labels.size()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = dist.get(labels.decode(i));
+    }
+    return new Posterior(labels, values);
+  }
+
+  /**
+   * Retrieves the class labels.
+   *
+   * @return the label dictionary
+   */
+  public NominalDictionary getLabels() {
+    return labels;
+  }
+
+  /**
+   * Retrieves the number of labels.
+   *
+   * @return the number of labels
+   */
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Retrieves the value of the label at an index.
+   *
+   * @param index the index of the label
+   * @return the value
+   */
+  public double get(int index) {
+    return values[index];
+  }
+
+  /**
+   * Retrieves the value of a label.
+   * <p/>
+   * Labels that are not in the dictionary have a value of zero.
+   *
+   * @param label the label
+   * @return the value
+   */
+  public double get(String label) {
+    int index = labels.encode(label);
+    return index < 0 ? 0.0 : values[index];
+  }
+
+  /**
+   * Sets the value of the label at an index.
+   *
+   * @param index the index of the label
+   * @param value the value
+   */
+  public void set(int index, double value) {
+    values[index] = value;
+  }
+
+  /**
+   * Identify the index of the label with the greatest value.
+   * <p/>
+   * When there are multiple equal valued labels, the lowest index is returned.
+   *
+   * @return the index of a label with the greatest value, or -1 if there are no labels
+   */
+  public int getIndexWithMaximumValue() {
+    int best = -1;
+    double max_value = -Double.MAX_VALUE;
+    for (int i = 0; i < values.length; ++i) {
+      if (values[i] > max_value) {
+        max_value = values[i];
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Identify the label with the greatest value.
+   *
+   * @return A label with the greatest associated value
+   */
+  public String getKeyWithMaximumValue() {
+    int best = getIndexWithMaximumValue();
+    if (best < 0) {
+      AuToBIUtils.warn("null maximum value key");
+      AuToBIUtils.warn(this.toString());
+      return null;
+    }
+    return labels.decode(best);
+  }
+
+  /**
+   * Normalize the posterior such that it sums to 1.
+   *
+   * @throws AuToBIException if there is no mass assigned to the posterior
+   */
+  public void normalize() throws AuToBIException {
+    double sum = 0.0;
+    for (double v : values) {
+      sum += v;
+    }
+
+    if (sum == 0) {
+      throw new AuToBIException("sum is zero. no normalization possible.");
+    }
+
+    for (int i = 0; i < values.length; ++i) {
+      values[i] /= sum;
+    }
+  }
+
+  /**
+   * Constructs a Distribution containing the same values as the posterior.
+   *
+   * @return an equivalent Distribution
+   */
+  public Distribution toDistribution() {
+    Distribution dist = new Distribution();
+    for (int i = 0; i < values.length; ++i) {
+      dist.put(labels.decode(i), values[i]);
+    }
+    return dist;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < values.length; ++i) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(labels.decode(i)).append("=").append(values[i]);
+    }
+    return sb.append("}").toString();
+  }
+}
@@ -0,0 +1,306 @@
+/*  RangeAggregation.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+/**
+ * RangeAggregation answers aggregate queries over index ranges of a fixed sequence of values.
+ * <p/>
+ * The size, mean and standard deviation of any range are calculated in constant time from prefix sums of counts, sums
+ * and sums of squares.  Minimum and maximum queries use a sparse table over fixed size blocks of the sequence, so a
+ * query costs one table lookup plus a scan of at most two partial blocks.  Blocking keeps the table small enough to
+ * build over a full file contour.
+ * <p/>
+ * Values that are not present (e.g., empty contour entries) are excluded from every aggregate.  The reported values
+ * follow the conventions of Aggregation: the mean of an empty range is zero, the standard deviation of a range with
+ * fewer than two values is zero, and the minimum and maximum of an empty range are Double.MAX_VALUE and
+ * -Double.MAX_VALUE respectively.
+ *
+ * @see Aggregation
+ */
+public class RangeAggregation {
+  private static final int BLOCK_SIZE = 16;  // the number of values summarized by each sparse table entry
+
+  private int n;               // the number of values in the sequence
+  private double[] values;     // the sequence values
+  private boolean[] present;   // true if the corresponding value is included in aggregates
+  private double offset;       // subtracted from each value before summing to limit cancellation error
+  private int[] count;         // count[i] is the number of present values in [0, i)
+  private double[] sum;        // sum[i] is the sum of offset values in [0, i)
+  private double[] ssq;        // ssq[i] is the sum of squared offset values in [0, i)
+  private double[][] block_min;  // block_min[k][b] is the minimum of blocks b through b + 2^k - 1
+  private double[][] block_max;  // block_max[k][b] is the maximum of blocks b through b + 2^k - 1
+
+  /**
+   * Constructs a RangeAggregation over the values of a contour.
+   * <p/>
+   * Empty contour entries are excluded from the aggregates.
+   *
+   * @param c the contour
+   */
+  public RangeAggregation(Contour c) {
+    double[] v = new double[c.size()];
+    boolean[] p = new boolean[c.size()];
+    for (int i = 0; i < c.size(); ++i) {
+      p[i] = !c.isEmpty(i);
+      if (p[i]) {
+        v[i] = c.get(i);
+      }
+    }
+    init(v, p);
+  }
+
+  /**
+   * Constructs a RangeAggregation over an array of values.
+   *
+   * @param values  the values
+   * @param present flags indicating which values should be included in the aggregates
+   */
+  public RangeAggregation(double[] values, boolean[] present) {
+    init(values, present);
+  }
+
+  /**
+   * Builds the prefix sums and block sparse tables.
+   *
+   * @param v the values
+   * @param p the presence flags
+   */
+  private void init(double[] v, boolean[] p) {
+    this.n = v.length;
+    this.values = v;
+    this.present = p;
+
+    offset = 0.0;
+    for (int i = 0; i < n; ++i) {
+      if (p[i]) {
+        offset = v[i];
+        break;
+      }
+    }
+
+    count = new int[n + 1];
+    sum = new double[n + 1];
+    ssq = new double[n + 1];
+    for (int i = 0; i < n; ++i) {
+      count[i + 1] = count[i];
+      sum[i + 1] = sum[i];
+      ssq[i + 1] = ssq[i];
+      if (p[i]) {
+        double d = v[i] - offset;
+        count[i + 1]++;
+        sum[i + 1] += d;
+        ssq[i + 1] += d * d;
+      }
+    }
+
+    int num_blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    int levels = 1;
+    while ((1 << levels) <= num_blocks) {
+      levels++;
+    }
+    block_min = new double[levels][];
+    block_max = new double[levels][];
+    block_min[0] = new double[num_blocks];
+    block_max[0] = new double[num_blocks];
+    for (int b = 0; b < num_blocks; ++b) {
+      block_min[0][b] = scanMin(b * BLOCK_SIZE, Math.min(n, (b + 1) * BLOCK_SIZE) - 1);
+      block_max[0][b] = scanMax(b * BLOCK_SIZE, Math.min(n, (b + 1) * BLOCK_SIZE) - 1);
+    }
+    for (int k = 1; k < levels; ++k) {
+      int width = num_blocks - (1 << k) + 1;
+      block_min[k] = new double[width];
+      block_max[k] = new double[width];
+      for (int b = 0; b < width; ++b) {
+        block_min[k][b] = Math.min(block_min[k - 1][b], block_min[k - 1][b + (1 << (k - 1))]);
+        block_max[k][b] = Math.max(block_max[k - 1][b], block_max[k - 1][b + (1 << (k - 1))]);
+      }
+    }
+  }
+
+  /**
+   * Retrieves the length of the underlying sequence, including values that are not present.
+   *
+   * @return the sequence length
+   */
+  public int size() {
+    return n;
+  }
+
+  /**
+   * Retrieves the number of present values in the inclusive range [start, end].
+   * <p/>
+   * Indices outside of the sequence are ignored.
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the number of values
+   */
+  public int getSize(int start, int end) {
+    start = Math.max(0, start);
+    end = Math.min(n - 1, end);
+    if (start > end) {
+      return 0;
+    }
+    return count[end + 1] - count[start];
+  }
+
+  /**
+   * Calculates the mean of the present values in the inclusive range [start, end].
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the mean
+   */
+  public double getMean(int start, int end) {
+    int size = getSize(start, end);
+    if (size < 1) {
+      return 0.0;
+    }
+    start = Math.max(0, start);
+    end = Math.min(n - 1, end);
+    return offset + (sum[end + 1] - sum[start]) / size;
+  }
+
+  /**
+   * Calculates the variance of the present values in the inclusive range [start, end].
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the variance
+   */
+  public double getVariance(int start, int end) {
+    int size = getSize(start, end);
+    if (size < 2) {
+      return 0.0;
+    }
+    start = Math.max(0, start);
+    end = Math.min(n - 1, end);
+    double s = sum[end + 1] - sum[start];
+    double ss = ssq[end + 1] - ssq[start];
+    return Math.max(0.0, (ss - s * s / size) / (size - 1));
+  }
+
+  /**
+   * Calculates the standard deviation of the present values in the inclusive range [start, end].
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the standard deviation
+   */
+  public double getStdev(int start, int end) {
+    return Math.sqrt(getVariance(start, end));
+  }
+
+  /**
+   * Retrieves the minimum present value in the inclusive range [start, end].
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the minimum value
+   */
+  public double getMin(int start, int end) {
+    start = Math.max(0, start);
+    end = Math.min(n - 1, end);
+    if (start > end) {
+      return Double.MAX_VALUE;
+    }
+    int first_block = (start + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    int last_block = (end + 1) / BLOCK_SIZE - 1;
+    if (first_block > last_block) {
+      return scanMin(start, end);
+    }
+    int k = log2(last_block - first_block + 1);
+    double min = Math.min(block_min[k][first_block], block_min[k][last_block - (1 << k) + 1]);
+    min = Math.min(min, scanMin(start, first_block * BLOCK_SIZE - 1));
+    return Math.min(min, scanMin((last_block + 1) * BLOCK_SIZE, end));
+  }
+
+  /**
+   * Retrieves the maximum present value in the inclusive range [start, end].
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the maximum value
+   */
+  public double getMax(int start, int end) {
+    start = Math.max(0, start);
+    end = Math.min(n - 1, end);
+    if (start > end) {
+      return -Double.MAX_VALUE;
+    }
+    int first_block = (start + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    int last_block = (end + 1) / BLOCK_SIZE - 1;
+    if (first_block > last_block) {
+      return scanMax(start, end);
+    }
+    int k = log2(last_block - first_block + 1);
+    double max = Math.max(block_max[k][first_block], block_max[k][last_block - (1 << k) + 1]);
+    max = Math.max(max, scanMax(start, first_block * BLOCK_SIZE - 1));
+    return Math.max(max, scanMax((last_block + 1) * BLOCK_SIZE, end));
+  }
+
+  /**
+   * Linearly scans for the minimum present value in [start, end].
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the minimum value
+   */
+  private double scanMin(int start, int end) {
+    double min = Double.MAX_VALUE;
+    for (int i = start; i <= end; ++i) {
+      if (present[i]) {
+        min = Math.min(min, values[i]);
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Linearly scans for the maximum present value in [start, end].
+   *
+   * @param start the first index
+   * @param end   the last index
+   * @return the maximum value
+   */
+  private double scanMax(int start, int end) {
+    double max = -Double.MAX_VALUE;
+    for (int i = start; i <= end; ++i) {
+      if (present[i]) {
+        max = Math.max(max, values[i]);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Calculates floor(log2(x)) for positive x.
+   *
+   * @param x the value
+   * @return the integral base 2 logarithm
+   */
+  private static int log2(int x) {
+    return 31 - Integer.numberOfLeadingZeros(x);
+  }
+}
@@ -311,6 +311,24 @@ public class Region implements Serializable {
     }
   }
 
+  /**
+   * Retrieves an attribute by its precomputed index in a FeatureSet.
+   * <p/>
+   * This avoids the name lookups of getAttribute when reading the same attributes from many data points.  The index
+   * is only used if this region is stored in the given FeatureSet, otherwise the attribute is looked up by name.
+   *
+   * @param fs   the FeatureSet the index was computed for
+   * @param idx  the index of the attribute in the FeatureSet, or -1 if it is not a required feature
+   * @param name the name of the attribute
+   * @return the attribute value or null if it does not exist
+   */
+  public Object getAttribute(FeatureSet fs, int idx, String name) {
+    if (idx >= 0 && fs != null && fs == feature_set && idx < fs_attributes.length && fs_attributes[idx] != null) {
+      return fs_attributes[idx];
+    }
+    return getAttribute(name);
+  }
+
   /**
    * Retrieves a set of all of the set attribute names.
    * <p/>
@@ -0,0 +1,330 @@
+/*  RegionIndex.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import java.util.*;
+
+/**
+ * RegionIndex is an immutable index of a list of regions by time.
+ * <p/>
+ * Alignment of annotation tiers, e.g., tones, breaks or syllables to words, requires finding the regions of one tier
+ * that overlap a region of another.  A RegionIndex answers these queries in O(log n + k) time for k results, without
+ * assuming that the regions are disjoint.
+ * <p/>
+ * Regions are held in order of their start times, ties keeping the order of the input list, and are identified by
+ * their position in this order.  For a sorted tier this is the order of the list.  The positions form an implicit
+ * balanced interval tree: the node at the midpoint of each range of positions records the latest end time within the
+ * range, so that ranges that end before a query can be skipped.  Results are returned in position order.
+ * <p/>
+ * Two notions of overlap are supported.  Intervals "intersect" if they share any time, including a boundary point, so
+ * that point regions such as tones can be aligned.  Intervals "overlap" if each starts before the other ends, so that
+ * adjacent regions that only share a boundary do not overlap.
+ *
+ * @param <R> the type of region
+ */
+public class RegionIndex<R extends Region> {
+  private final List<R> regions;    // the regions in order of start time
+  private final double[] starts;    // the start time of each position
+  private final double[] ends;      // the end time of each position
+  private final double[] max_end;   // the latest end time of the range whose midpoint is each position
+  private final int[] by_end;       // the positions in order of end time
+
+  /**
+   * Constructs an index of a list of regions.  The list is not modified.
+   *
+   * @param regions the regions
+   */
+  public RegionIndex(List<? extends R> regions) {
+    List<R> sorted = new ArrayList<R>(regions);
+    Collections.sort(sorted, new Comparator<R>() {
+      public int compare(R a, R b) {
+        return Double.compare(a.getStart(), b.getStart());
+      }
+    });
+    this.regions = Collections.unmodifiableList(sorted);
+
+    int n = sorted.size();
+    starts = new double[n];
+    ends = new double[n];
+    for (int i = 0; i < n; ++i) {
+      starts[i] = sorted.get(i).getStart();
+      ends[i] = sorted.get(i).getEnd();
+    }
+    max_end = new double[n];
+    buildMaxEnd(0, n);
+
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; ++i) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Double.compare(ends[a], ends[b]);
+      }
+    });
+    by_end = new int[n];
+    for (int i = 0; i < n; ++i) {
+      by_end[i] = order[i];
+    }
+  }
+
+  /**
+   * Records the latest end time of each range of positions at its midpoint.
+   *
+   * @param lo the first position of the range
+   * @param hi one past the last position of the range
+   * @return the latest end time in the range, or -infinity if it is empty
+   */
+  private double buildMaxEnd(int lo, int hi) {
+    if (lo >= hi) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    int mid = (lo + hi) >>> 1;
+    max_end[mid] = Math.max(ends[mid], Math.max(buildMaxEnd(lo, mid), buildMaxEnd(mid + 1, hi)));
+    return max_end[mid];
+  }
+
+  /**
+   * @return the number of indexed regions
+   */
+  public int size() {
+    return regions.size();
+  }
+
+  /**
+   * Retrieves the region at a position.
+   *
+   * @param position the position, in order of start time
+   * @return the region
+   */
+  public R get(int position) {
+    return regions.get(position);
+  }
+
+  /**
+   * @return an unmodifiable list of the regions in order of start time
+   */
+  public List<R> getRegions() {
+    return regions;
+  }
+
+  /**
+   * Retrieves the regions that share any time with an interval, including regions that only touch its boundaries.
+   *
+   * @param start the start of the interval
+   * @param end   the end of the interval
+   * @return the intersecting regions, in order of start time
+   */
+  public List<R> intersecting(double start, double end) {
+    List<R> result = new ArrayList<R>();
+    collect(0, regions.size(), start, end, true, result);
+    return result;
+  }
+
+  /**
+   * Retrieves the regions that overlap an interval, i.e., that start before it ends and end after it starts.
+   *
+   * @param start the start of the interval
+   * @param end   the end of the interval
+   * @return the overlapping regions, in order of start time
+   */
+  public List<R> overlapping(double start, double end) {
+    List<R> result = new ArrayList<R>();
+    collect(0, regions.size(), start, end, false, result);
+    return result;
+  }
+
+  /**
+   * Retrieves the regions overlapping each of a list of query regions.
+   *
+   * @param queries the query regions
+   * @return the overlapping regions of each query, in the order of the queries
+   */
+  public List<List<R>> overlapping(List<? extends Region> queries) {
+    List<List<R>> result = new ArrayList<List<R>>(queries.size());
+    for (Region q : queries) {
+      result.add(overlapping(q.getStart(), q.getEnd()));
+    }
+    return result;
+  }
+
+  /**
+   * Retrieves the regions that include a time, including regions that start or end at the time.
+   *
+   * @param time the time
+   * @return the regions containing the time, in order of start time
+   */
+  public List<R> containing(double time) {
+    return intersecting(time, time);
+  }
+
+  /**
+   * Retrieves the regions that lie entirely within an interval.
+   *
+   * @param start the start of the interval
+   * @param end   the end of the interval
+   * @return the contained regions, in order of start time
+   */
+  public List<R> containedIn(double start, double end) {
+    List<R> result = new ArrayList<R>();
+    for (int i = firstStartingAtOrAfter(start); i < regions.size() && starts[i] <= end; ++i) {
+      if (ends[i] <= end) {
+        result.add(regions.get(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Retrieves the region nearest to a time.
+   * <p/>
+   * A region containing the time has distance zero.  Otherwise the distance is to the nearest boundary of the region.
+   * Ties are resolved in favor of the earlier region.
+   *
+   * @param time the time
+   * @return the nearest region, or null if the index is empty
+   */
+  public R nearest(double time) {
+    if (regions.isEmpty()) {
+      return null;
+    }
+    List<R> containing = containing(time);
+    if (!containing.isEmpty()) {
+      return containing.get(0);
+    }
+
+    // The latest region ending before the time.
+    int lo = 0;
+    int hi = by_end.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (ends[by_end[mid]] < time) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    int before = lo > 0 ? by_end[lo - 1] : -1;
+    int after = firstStartingAtOrAfter(time);
+
+    if (after >= regions.size()) {
+      return regions.get(before);
+    }
+    if (before < 0 || starts[after] - time < time - ends[before]) {
+      return regions.get(after);
+    }
+    return regions.get(before);
+  }
+
+  /**
+   * Finds the first position at or after a given position whose region ends after a time.
+   * <p/>
+   * When the regions do not overlap, this is the first region, from the position onwards, that is not entirely before
+   * the time.
+   *
+   * @param time the time
+   * @param from the first position to consider
+   * @return the position, or -1 if no such region exists
+   */
+  public int firstEndingAfter(double time, int from) {
+    return firstEnding(0, regions.size(), time, false, from);
+  }
+
+  /**
+   * Finds the first position at or after a given position whose region ends at or after a time.
+   *
+   * @param time the time
+   * @param from the first position to consider
+   * @return the position, or -1 if no such region exists
+   */
+  public int firstEndingAtOrAfter(double time, int from) {
+    return firstEnding(0, regions.size(), time, true, from);
+  }
+
+  /**
+   * Finds the first position in a range, at or after from, whose region ends after a time.
+   */
+  private int firstEnding(int lo, int hi, double time, boolean inclusive, int from) {
+    if (lo >= hi || hi <= from) {
+      return -1;
+    }
+    int mid = (lo + hi) >>> 1;
+    if (!endsAfter(max_end[mid], time, inclusive)) {
+      return -1;
+    }
+    int position = firstEnding(lo, mid, time, inclusive, from);
+    if (position >= 0) {
+      return position;
+    }
+    if (mid >= from && endsAfter(ends[mid], time, inclusive)) {
+      return mid;
+    }
+    return firstEnding(mid + 1, hi, time, inclusive, from);
+  }
+
+  private static boolean endsAfter(double end, double time, boolean inclusive) {
+    return inclusive ? end >= time : end > time;
+  }
+
+  /**
+   * Collects the regions of a range of positions that intersect or overlap an interval.
+   */
+  private void collect(int lo, int hi, double start, double end, boolean inclusive, List<R> result) {
+    if (lo >= hi) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    if (!endsAfter(max_end[mid], start, inclusive)) {
+      return;
+    }
+    collect(lo, mid, start, end, inclusive, result);
+    if (inclusive ? starts[mid] > end : starts[mid] >= end) {
+      return;
+    }
+    if (endsAfter(ends[mid], start, inclusive)) {
+      result.add(regions.get(mid));
+    }
+    collect(mid + 1, hi, start, end, inclusive, result);
+  }
+
+  /**
+   * Finds the first position whose region starts at or after a time.
+   *
+   * @param time the time
+   * @return the position, or size() if every region starts before the time
+   */
+  private int firstStartingAtOrAfter(double time) {
+    int lo = 0;
+    int hi = starts.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (starts[mid] < time) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
@@ -0,0 +1,163 @@
+/*  SizeAwareScheduler.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+/**
+ * SizeAwareScheduler executes a list of tasks of varying size on a thread pool.
+ * <p/>
+ * Tasks are started largest first, so that a single long task submitted last does not leave the other threads idle
+ * at the end of a run.  Tasks of equal size are started in their original order.
+ * <p/>
+ * Each task has an estimated memory requirement.  When a memory budget is set, a task is only started if the memory
+ * of the tasks already running plus its own fits in the budget.  If the next task does not fit, no later task is
+ * started until enough running tasks complete for it to fit, so smaller tasks cannot delay it indefinitely and the
+ * largest-first order is kept.  A task larger than the budget is run when no other task is running.
+ * <p/>
+ * Results are passed to a ResultHandler as the tasks complete, along with the index of the task in the original list,
+ * so callers can reassemble the results in a deterministic order.
+ *
+ * @param <T> the result type of the tasks
+ */
+public class SizeAwareScheduler<T> {
+  private final int num_threads;     // the maximum number of tasks to run at once
+  private final long memory_budget;  // the maximum memory of the tasks running at once, unlimited if <= 0
+
+  /**
+   * Receives the results of completed tasks.
+   *
+   * @param <T> the result type of the tasks
+   */
+  public interface ResultHandler<T> {
+
+    /**
+     * Handles the result of a completed task.  Results are handled on the thread that called run().
+     *
+     * @param index  the index of the task in the list passed to run()
+     * @param result the result of the task
+     * @throws AuToBIException if the result is unacceptable.  No further tasks are started.
+     */
+    public void handle(int index, T result) throws AuToBIException;
+  }
+
+  /**
+   * Constructs a new SizeAwareScheduler.
+   *
+   * @param num_threads   the maximum number of tasks to run at once
+   * @param memory_budget the maximum total memory of the tasks running at once.  Values <= 0 disable the budget.
+   */
+  public SizeAwareScheduler(int num_threads, long memory_budget) {
+    this.num_threads = Math.max(1, num_threads);
+    this.memory_budget = memory_budget;
+  }
+
+  /**
+   * Determines the order in which tasks are started, largest first.  Tasks of equal size retain their relative order.
+   *
+   * @param sizes the size of each task
+   * @return the task indices in the order they should be started
+   */
+  public static int[] order(final double[] sizes) {
+    Integer[] order = new Integer[sizes.length];
+    for (int i = 0; i < sizes.length; ++i) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Double.compare(sizes[b], sizes[a]);
+      }
+    });
+
+    int[] result = new int[sizes.length];
+    for (int i = 0; i < sizes.length; ++i) {
+      result[i] = order[i];
+    }
+    return result;
+  }
+
+  /**
+   * Runs a list of tasks, passing their results to a handler as they complete.
+   * <p/>
+   * A task that throws an exception is reported as an error and its result is not handled.
+   *
+   * @param tasks   the tasks
+   * @param sizes   the size of each task, used to order the tasks
+   * @param memory  the estimated memory required by each task
+   * @param handler the result handler
+   * @throws AuToBIException if the handler rejects a result or the scheduler is interrupted
+   */
+  public void run(List<? extends Callable<T>> tasks, double[] sizes, long[] memory, ResultHandler<T> handler)
+      throws AuToBIException {
+    if (sizes.length != tasks.size() || memory.length != tasks.size()) {
+      throw new AuToBIException("Task sizes do not match the number of tasks.");
+    }
+    LinkedList<Integer> pending = new LinkedList<Integer>();
+    for (int i : order(sizes)) {
+      pending.add(i);
+    }
+
+    ExecutorService executor = newFixedThreadPool(Math.max(1, Math.min(num_threads, tasks.size())));
+    CompletionService<T> completion = new ExecutorCompletionService<T>(executor);
+    Map<Future<T>, Integer> running = new HashMap<Future<T>, Integer>();
+    long in_flight = 0;
+    try {
+      while (!pending.isEmpty() || !running.isEmpty()) {
+        while (!pending.isEmpty() && running.size() < num_threads) {
+          int i = pending.getFirst();
+          if (!running.isEmpty() && memory_budget > 0 && in_flight + memory[i] > memory_budget) {
+            // Let the running tasks drain until the next task fits.
+            break;
+          }
+          running.put(completion.submit(tasks.get(i)), i);
+          in_flight += memory[i];
+          pending.removeFirst();
+        }
+
+        Future<T> done = completion.take();
+        int i = running.remove(done);
+        in_flight -= memory[i];
+        T result;
+        try {
+          result = done.get();
+        } catch (ExecutionException e) {
+          AuToBIUtils.error("Task " + i + " failed: " + e.getCause());
+          e.printStackTrace();
+          continue;
+        }
+        handler.handle(i, result);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuToBIException("Interrupted while waiting for tasks to complete.");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -118,9 +118,7 @@ public class SpeakerNormalizationParameter implements Serializable {
    * @param pitch_values the pitch values to insert
    */
   public void insertPitch(Contour pitch_values) {
-    for (Pair<Double, Double> pitch : pitch_values) {
-      insertPitch(pitch.second);
-    }
+    insertContour(pitch_values, params.get("f0"), params.get("log[f0]"));
   }
 
   /**
@@ -129,8 +127,44 @@ public class SpeakerNormalizationParameter implements Serializable {
    * @param intensity_values the intensity values to insert
    */
   public void insertIntensity(Contour intensity_values) {
-    for (Pair<Double, Double> intensity : intensity_values) {
-      insertIntensity(intensity.second);
+    insertContour(intensity_values, params.get("I"), params.get("log[I]"));
+  }
+
+  /**
+   * Inserts the non-empty values of a contour and their logs into a pair of aggregations.
+   *
+   * @param contour the contour
+   * @param values  the aggregation of raw values
+   * @param logs    the aggregation of log values
+   */
+  private void insertContour(Contour contour, Aggregation values, Aggregation logs) {
+    double[] raw = new double[contour.size()];
+    double[] log = new double[contour.size()];
+    int n = 0;
+    for (int i = 0; i < contour.size(); ++i) {
+      if (!contour.isEmpty(i)) {
+        raw[n] = contour.get(i);
+        log[n] = Math.log(raw[n]);
+        ++n;
+      }
+    }
+    values.insert(raw, n);
+    logs.insert(log, n);
+  }
+
+  /**
+   * Merges the statistics of another set of parameters into this one.
+   * <p/>
+   * This allows parameters to be generated independently, e.g. one per file, and combined afterwards.  The speaker
+   * id of this object is retained.
+   *
+   * @param other the parameters to merge
+   */
+  public void merge(SpeakerNormalizationParameter other) {
+    for (String key : params.keySet()) {
+      if (other.params.containsKey(key)) {
+        params.get(key).merge(other.params.get(key));
+      }
     }
   }
 
@@ -0,0 +1,201 @@
+/*  SpectralPADMatrix.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpectralPADMatrix stores the hypotheses of spectral pitch accent detection for a list of words and a list of bark
+ * bands.
+ * <p/>
+ * For each word and band, the matrix holds the confidence that the word is accented, according to the band's pitch
+ * accent detector, and the confidence that this prediction is correct, according to the band's correction classifier.
+ * These are stored in dense [word x band] arrays so that the corrected weighted majority vote can be calculated
+ * without looking up hundreds of attributes per word.
+ * <p/>
+ * Each word refers to its row of the matrix through the ROW_FEATURE attribute.
+ *
+ * @see edu.cuny.qc.speech.AuToBI.SpectralPitchAccentDetector
+ */
+public class SpectralPADMatrix {
+  // The attribute containing a word's SpectralPADMatrix.Row
+  public static final String ROW_FEATURE = "spectralPADMatrixRow";
+
+  private List<Pair<Integer, Integer>> bands;  // the low and high bark boundaries of each band
+  private int num_words;                       // the number of words
+  private double[] accented_confidence;        // confidence that each word is accented, indexed [word][band]
+  private double[] correct_confidence;         // confidence that each prediction is correct, indexed [word][band]
+
+  /**
+   * Constructs an empty SpectralPADMatrix.
+   *
+   * @param bands     the low and high bark boundaries of each band
+   * @param num_words the number of words
+   */
+  public SpectralPADMatrix(List<Pair<Integer, Integer>> bands, int num_words) {
+    this.bands = new ArrayList<Pair<Integer, Integer>>(bands);
+    this.num_words = num_words;
+    this.accented_confidence = new double[num_words * bands.size()];
+    this.correct_confidence = new double[num_words * bands.size()];
+  }
+
+  /**
+   * Retrieves the number of bands.
+   *
+   * @return the number of bands
+   */
+  public int getNumBands() {
+    return bands.size();
+  }
+
+  /**
+   * Retrieves the number of words.
+   *
+   * @return the number of words
+   */
+  public int getNumWords() {
+    return num_words;
+  }
+
+  /**
+   * Retrieves the bands.
+   *
+   * @return the low and high bark boundaries of each band
+   */
+  public List<Pair<Integer, Integer>> getBands() {
+    return bands;
+  }
+
+  /**
+   * Determines if the bands are exactly every pair of bark boundaries, 0 <= low < high <= high_bark, ordered by low then
+   * by high.
+   *
+   * @param high_bark the highest bark boundary
+   * @return true if the matrix covers every band in order
+   */
+  public boolean coversBarkBands(int high_bark) {
+    int b = 0;
+    for (int low = 0; low < high_bark; ++low) {
+      for (int high = low + 1; high <= high_bark; ++high) {
+        if (b >= bands.size() || bands.get(b).first != low || bands.get(b).second != high) {
+          return false;
+        }
+        ++b;
+      }
+    }
+    return b == bands.size();
+  }
+
+  /**
+   * Sets the confidence that a word is accented according to a band's pitch accent detector.
+   *
+   * @param word  the word index
+   * @param band  the band index
+   * @param value the confidence
+   */
+  public void setAccentedConfidence(int word, int band, double value) {
+    accented_confidence[word * bands.size() + band] = value;
+  }
+
+  /**
+   * Retrieves the confidence that a word is accented according to a band's pitch accent detector.
+   *
+   * @param word the word index
+   * @param band the band index
+   * @return the confidence
+   */
+  public double getAccentedConfidence(int word, int band) {
+    return accented_confidence[word * bands.size() + band];
+  }
+
+  /**
+   * Sets the confidence that a band's prediction on a word is correct.
+   *
+   * @param word  the word index
+   * @param band  the band index
+   * @param value the confidence
+   */
+  public void setCorrectConfidence(int word, int band, double value) {
+    correct_confidence[word * bands.size() + band] = value;
+  }
+
+  /**
+   * Retrieves the confidence that a band's prediction on a word is correct.
+   *
+   * @param word the word index
+   * @param band the band index
+   * @return the confidence
+   */
+  public double getCorrectConfidence(int word, int band) {
+    return correct_confidence[word * bands.size() + band];
+  }
+
+  /**
+   * Retrieves the row of the matrix corresponding to a word.
+   *
+   * @param word the word index
+   * @return the row
+   */
+  public Row getRow(int word) {
+    return new Row(this, word);
+  }
+
+  /**
+   * A reference to the row of a SpectralPADMatrix that corresponds to a single word.
+   */
+  public static class Row {
+    private SpectralPADMatrix matrix;  // the matrix
+    private int index;                 // the row index
+
+    /**
+     * Constructs a new Row.
+     *
+     * @param matrix the matrix
+     * @param index  the row index
+     */
+    public Row(SpectralPADMatrix matrix, int index) {
+      this.matrix = matrix;
+      this.index = index;
+    }
+
+    /**
+     * Retrieves the matrix.
+     *
+     * @return the matrix
+     */
+    public SpectralPADMatrix getMatrix() {
+      return matrix;
+    }
+
+    /**
+     * Retrieves the row index.
+     *
+     * @return the row index
+     */
+    public int getIndex() {
+      return index;
+    }
+  }
+}
@@ -23,6 +23,9 @@
  */
 package edu.cuny.qc.speech.AuToBI.core;
 
+import java.util.Arrays;
+import java.util.Comparator;
+
 /**
  * Spectrum objects contain acoustic spectrum information.
  * <p/>
@@ -176,6 +179,67 @@ public class Spectrum {
     return power_spectrum;
   }
 
+  /**
+   * Retrieves the total power in several frequency bands in a single pass over the spectrum.
+   * <p/>
+   * Bands that share a bottom frequency bin share a running sum, so each frame is traversed once per distinct bottom
+   * frequency rather than once per band.  The values are identical to calling getPowerInBand for each band.
+   *
+   * @param low_freqs  The bottom frequency of each band
+   * @param high_freqs The top frequency of each band
+   * @param log_values If true, return log power, else return raw power.
+   * @return An array of powers for each band, indexed by band then by frame.
+   * @throws AuToBIException if an invalid band is requested.
+   */
+  public double[][] getPowerInBands(double[] low_freqs, double[] high_freqs, boolean log_values)
+      throws AuToBIException {
+    int num_bands = low_freqs.length;
+    final int[] start = new int[num_bands];
+    final int[] end = new int[num_bands];
+    Integer[] order = new Integer[num_bands];
+    for (int b = 0; b < num_bands; ++b) {
+      if (low_freqs[b] > high_freqs[b]) {
+        throw new AuToBIException(
+            "Bottom frequency is greater than top frequency. (" + low_freqs[b] + " > " + high_freqs[b] + ")");
+      }
+      start[b] = (int) Math.max(0, Math.ceil(toFreqBin(low_freqs[b])));
+      end[b] = (int) Math.ceil(toFreqBin(high_freqs[b]));
+      order[b] = b;
+    }
+
+    // Visit bands sharing a bottom bin consecutively, in increasing order of their top bin.
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        if (start[a] != start[b]) {
+          return start[a] < start[b] ? -1 : 1;
+        }
+        return end[a] < end[b] ? -1 : (end[a] == end[b] ? 0 : 1);
+      }
+    });
+
+    double[][] power = new double[num_bands][data.length];
+    for (int i = 0; i < data.length; ++i) {
+      int idx = 0;
+      while (idx < num_bands) {
+        int s = start[order[idx]];
+        double sum = 0.0;
+        int j = s;
+        while (idx < num_bands && start[order[idx]] == s) {
+          int b = order[idx];
+          int e = Math.min(data[i].length, end[b]);
+          while (j < e) {
+            sum += data[i][j];
+            ++j;
+          }
+          power[b][i] = log_values ? Math.log(sum) : sum;
+          ++idx;
+        }
+      }
+    }
+
+    return power;
+  }
+
   /**
    * Identify the spectrum frequency bin corresponding to a given frequency
    * <p/>
@@ -27,7 +27,9 @@ import edu.cuny.qc.speech.AuToBI.SpectrumExtractor;
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.WavData;
 import edu.cuny.qc.speech.AuToBI.io.WavReader;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 import edu.cuny.qc.speech.AuToBI.util.SignalProcessingUtils;
+import org.jtransforms.fft.DoubleFFT_1D;
 
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -37,21 +39,53 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements Kornel Laskowski et al.'s Fundamental Frequency Variation (FFV) Features.
  * <p/>
+ * Frames are calculated in blocks, which can be distributed across several threads.  Each thread holds its own FFT plan
+ * and scratch buffers, so no arrays are allocated per frame.  Only the FFV spectrum entries used by the filterbank are
+ * calculated, and the filterbank is applied as a sparse matrix.
  */
 public class FFVExtractor {
 
+  /**
+   * Receives progress updates from calculateFFV.
+   */
+  public interface ProgressListener {
+    /**
+     * Called after each block of frames has been calculated.
+     * <p/>
+     * Calls are serialized, and frames_completed increases with each call.
+     *
+     * @param frames_completed the number of frames calculated so far
+     * @param num_frames       the total number of frames
+     * @param elapsed_nanos    the time since the calculation started, in nanoseconds
+     */
+    void progress(int frames_completed, int num_frames, long elapsed_nanos);
+  }
+
   private double tsep;  // the separation between the two windows (in seconds)
   private double tint;  // the length of the internal window (in seconds)
   private double text;  // the length of the external window (in seconds)
   private double tstep; // ffv frame size (in seconds)
 
   private static final int FFT_COEFS = 512;
+  private static final int FRAMES_PER_BLOCK = 64; // the number of frames a thread calculates between progress updates
   private double[][] filterbank; // filterbank parameters
   private boolean[] filterbank_mask; // a mask determining if any of the filterbank entries are nonzero
+  private int[][] filter_indices;     // the nonzero entries of each filter
+  private double[][] filter_weights;  // the weights of the nonzero entries of each filter
+  private int[] ffv_indices;          // the FFV spectrum entries used by any filter
+  private double[] rho;               // the dilation coefficient of each FFV spectrum entry
+
+  private int num_threads;            // the number of threads to calculate frames on
+  private ProgressListener listener;  // receives progress updates, may be null
 
   /**
    * Constructs a new FFVCalculator with appropriate parameters.
@@ -66,99 +100,200 @@ public class FFVExtractor {
     this.tsep = tsep;
     this.tint = tint;
     this.text = text;
+    this.num_threads = 1;
 
     // Construct the filterbank
     constructFilterbank();
+    constructDilationCoefficients();
   }
 
-  double[][] calculateFFV(WavData wav, int channel) {
-    int sint = timeToSample(tint, wav.sampleRate);
-    int sext = timeToSample(text, wav.sampleRate);
-    int ssep = timeToSample(tsep, wav.sampleRate);
-    int sstep = timeToSample(tstep, wav.sampleRate);
-
-    System.err.println("Number of window samples: " + (sext + sint));
-    System.err.println("Step size: " + sstep);
+  /**
+   * Sets the number of threads used to calculate frames.
+   *
+   * @param num_threads the number of threads
+   */
+  public void setNumThreads(int num_threads) {
+    this.num_threads = num_threads;
+  }
 
-    double[] l_win = constructAsymFFVWindow(sint, sext);
-    double[] r_win = new double[l_win.length];
-    for (int i = 0; i < l_win.length; ++i) {
-      r_win[l_win.length - i - 1] = l_win[i];
-    }
+  /**
+   * Retrieves the number of threads used to calculate frames.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return Math.max(1, num_threads);
+  }
 
-    int s0 = sext + ssep / 2;
+  /**
+   * Sets a listener to receive progress updates from calculateFFV.
+   *
+   * @param listener the listener, or null to disable progress updates
+   */
+  public void setProgressListener(ProgressListener listener) {
+    this.listener = listener;
+  }
 
-    int num_frames = (wav.getNumSamples() - 2 * s0) / sstep + 1;
-    System.err.println("Number of FFV frames: " + num_frames);
+  /**
+   * Calculates the filterbanked FFV features of one channel of a wav file.
+   *
+   * @param wav     the wav data
+   * @param channel the channel
+   * @return the filterbanked FFV features, indexed by frame then by filter
+   * @throws AuToBIException if the calculation fails
+   */
+  double[][] calculateFFV(final WavData wav, final int channel) throws AuToBIException {
+    final int sint = timeToSample(tint, wav.sampleRate);
+    final int sext = timeToSample(text, wav.sampleRate);
+    final int ssep = timeToSample(tsep, wav.sampleRate);
+    final int sstep = timeToSample(tstep, wav.sampleRate);
 
-    double[][] ffv_out = new double[num_frames][filterbank.length];
+    AuToBIUtils.debug("Number of window samples: " + (sext + sint));
+    AuToBIUtils.debug("Step size: " + sstep);
 
-    int i = 0;
-    for (int si = s0; si < wav.getNumSamples() - s0; si += sstep, i++) {
-      double[] l_samps = wav.getSamples(channel, si - ssep / 2 - sext, si - ssep / 2 + sint);
-      double[] r_samps = wav.getSamples(channel, si + ssep / 2 - sint, si + ssep / 2 + sext);
+    final double[] l_win = constructAsymFFVWindow(sint, sext);
+    final double[] r_win = new double[l_win.length];
+    for (int i = 0; i < l_win.length; ++i) {
+      r_win[l_win.length - i - 1] = l_win[i];
+    }
 
-      // convert to integer representation and do pre-emphasis
-      for (int j = l_samps.length - 1; j >= 0; --j) {
-        if (j == l_samps.length - 1) {
-          l_samps[j] = l_samps[j] * (1 << (wav.sampleSize - 1));
-          r_samps[j] = r_samps[j] * (1 << (wav.sampleSize - 1));
+    final int s0 = sext + ssep / 2;
+
+    final int num_frames = Math.max(0, (wav.getNumSamples() - 2 * s0) / sstep + 1);
+    AuToBIUtils.debug("Number of FFV frames: " + num_frames);
+
+    final double[][] ffv_out = new double[num_frames][filterbank.length];
+
+    // Frames are centered on s0, s0 + sstep, ... up to wav.getNumSamples() - s0.  Any remaining rows are left empty.
+    int span = wav.getNumSamples() - 2 * s0;
+    final int num_calculated = span <= 0 ? 0 : Math.min(num_frames, (span + sstep - 1) / sstep);
+    final int num_blocks = (num_calculated + FRAMES_PER_BLOCK - 1) / FRAMES_PER_BLOCK;
+
+    final AtomicInteger next_block = new AtomicInteger(0);
+    final int[] completed = new int[1];
+    final long start_time = System.nanoTime();
+
+    List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+    for (int t = 0; t < Math.min(getNumThreads(), Math.max(1, num_blocks)); ++t) {
+      workers.add(new Callable<Void>() {
+        public Void call() throws Exception {
+          FrameCalculator calculator = new FrameCalculator(wav, channel, l_win, r_win);
+          for (int block = next_block.getAndIncrement(); block < num_blocks; block = next_block.getAndIncrement()) {
+            int end = Math.min(num_calculated, (block + 1) * FRAMES_PER_BLOCK);
+            for (int i = block * FRAMES_PER_BLOCK; i < end; ++i) {
+              int si = s0 + i * sstep;
+              calculator.calculateFrame(si - ssep / 2 - sext, si + ssep / 2 - sint, ffv_out[i]);
+            }
+            if (listener != null) {
+              synchronized (completed) {
+                completed[0] += end - block * FRAMES_PER_BLOCK;
+                listener.progress(completed[0], num_frames, System.nanoTime() - start_time);
+              }
+            }
+          }
+          return null;
         }
-        if (j == 0) {
-          l_samps[j] = 0.;
-          r_samps[j] = 0.;
-        } else {
-          l_samps[j - 1] = l_samps[j - 1] * (1 << (wav.sampleSize - 1));
-          r_samps[j - 1] = r_samps[j - 1] * (1 << (wav.sampleSize - 1));
-
-          l_samps[j] = l_samps[j] - .97 * l_samps[j - 1];
-          r_samps[j] = r_samps[j] - .97 * r_samps[j - 1];
-        }
-      }
-
-      double[] l_fft = calculateWindowedSpectrum(l_samps, l_win, FFT_COEFS * 2);
-      double[] r_fft = calculateWindowedSpectrum(r_samps, r_win, FFT_COEFS * 2);
-
-      double[] ffv_spec = calculateFFVSpectrum(l_fft, r_fft);
-
-      ffv_out[i] = filterbankFFV(ffv_spec, filterbank);
-      System.err.format("Calculated frame %d of %d\r", i + 1, num_frames);
+      });
     }
+    AuToBIUtils.invokeAll(workers, getNumThreads());
+
     return ffv_out;
   }
 
   /**
-   * Applies each filter in the N element filterbank. Returns an N element vector of the filtered signal.
-   *
-   * @param signal     the signal
-   * @param filterbank the filterbank
-   * @return a vector of filtered signals
+   * FrameCalculator holds the FFT plan and scratch buffers used to calculate FFV frames on a single thread.
    */
-  private double[] filterbankFFV(double[] signal, double[][] filterbank) {
-    double[] out = new double[filterbank.length];
+  private class FrameCalculator {
+    private final double[] samples;     // the samples of the channel
+    private final double scale;         // converts samples to an integer representation
+    private final double[] l_win;       // the left window function
+    private final double[] r_win;       // the right window function
+    private final DoubleFFT_1D fft;     // the FFT plan
+    private final double[] buffer;      // windowed samples, then their FFT
+    private final double[] l_pow;       // the left power spectrum
+    private final double[] r_pow;       // the right power spectrum
+    private final double[] l_sqrt;      // the square root of the left power spectrum
+    private final double[] r_sqrt;      // the square root of the right power spectrum
+    private final double[] ffv_spec;    // the FFV spectrum
+
+    FrameCalculator(WavData wav, int channel, double[] l_win, double[] r_win) {
+      this.samples = wav.getSamples(channel);
+      this.scale = 1 << (wav.sampleSize - 1);
+      this.l_win = l_win;
+      this.r_win = r_win;
+      this.fft = new DoubleFFT_1D(FFT_COEFS * 2);
+      this.buffer = new double[FFT_COEFS * 2];
+      this.l_pow = new double[FFT_COEFS];
+      this.r_pow = new double[FFT_COEFS];
+      this.l_sqrt = new double[FFT_COEFS];
+      this.r_sqrt = new double[FFT_COEFS];
+      this.ffv_spec = new double[FFT_COEFS];
+    }
 
-    for (int i = 0; i < filterbank.length; i++) {
-      out[i] = 0;
-      for (int j = 0; j < filterbank[i].length; j++) {
-        out[i] += signal[j] * filterbank[i][j];
+    /**
+     * Calculates the filterbanked FFV features of a single frame.
+     *
+     * @param l_start the first sample of the left window
+     * @param r_start the first sample of the right window
+     * @param out     the destination of the filterbanked features
+     */
+    void calculateFrame(int l_start, int r_start, double[] out) {
+      calculateWindowedSpectrum(l_start, l_win, l_pow, l_sqrt);
+      calculateWindowedSpectrum(r_start, r_win, r_pow, r_sqrt);
+
+      for (int idx : ffv_indices) {
+        ffv_spec[idx] = calculateFFVEntry(l_pow, l_sqrt, r_pow, r_sqrt, idx);
       }
+
+      filterbankFFV(ffv_spec, out);
     }
 
-    return out;
+    /**
+     * Calculates the power spectrum of a pre-emphasized and windowed segment of the signal.
+     *
+     * @param start the first sample of the segment
+     * @param win   the window function, which also defines the length of the segment
+     * @param pow   the destination of the power spectrum
+     * @param sqrt  the destination of the square root of the power spectrum
+     */
+    private void calculateWindowedSpectrum(int start, double[] win, double[] pow, double[] sqrt) {
+      // convert to integer representation, do pre-emphasis and apply the window.
+      int len = Math.min(win.length, buffer.length);
+      buffer[0] = 0.;
+      for (int j = 1; j < len; ++j) {
+        buffer[j] = (samples[start + j] * scale - .97 * (samples[start + j - 1] * scale)) * win[j];
+      }
+      Arrays.fill(buffer, len, buffer.length, 0.);
+
+      fft.realForward(buffer);
+
+      pow[0] = 0.;
+      sqrt[0] = 0.;
+      for (int k = 1; k < pow.length; ++k) {
+        pow[k] = buffer[2 * k] * buffer[2 * k] + (buffer[2 * k + 1] * buffer[2 * k + 1]);
+        sqrt[k] = Math.sqrt(pow[k]);
+      }
+    }
   }
 
   /**
-   * Calculates the power spectrum of a windowed signal.
+   * Applies each filter in the N element filterbank. Returns an N element vector of the filtered signal.
+   * <p/>
+   * Only the nonzero filterbank entries are visited.
    *
    * @param signal the signal
-   * @param win    the window
-   * @param nCoef  the number of coefficients
-   * @return the power spectrum
+   * @param out    the destination of the filtered signals
    */
-  private double[] calculateWindowedSpectrum(double[] signal, double[] win, int nCoef) {
-    double[] win_sig = SignalProcessingUtils.convolveSignal(signal, win);
-    win_sig = SignalProcessingUtils.resizeArray(win_sig, nCoef);
-    return SignalProcessingUtils.getPowerSpectrum(nCoef, win_sig);
+  private void filterbankFFV(double[] signal, double[] out) {
+    for (int i = 0; i < filter_indices.length; i++) {
+      double sum = 0;
+      int[] indices = filter_indices[i];
+      double[] weights = filter_weights[i];
+      for (int j = 0; j < indices.length; j++) {
+        sum += signal[indices[j]] * weights[j];
+      }
+      out[i] = sum;
+    }
   }
 
   /**
@@ -214,59 +349,88 @@ public class FFVExtractor {
     int n = l_pow.length;
     double[] ffv = new double[n];
 
-    for (int r = -n / 2; r < n / 2; r++) {
+    double[] l_sqrt = new double[n];
+    double[] r_sqrt = new double[n];
+    for (int k = 0; k < n; k++) {
+      l_sqrt[k] = Math.sqrt(l_pow[k]);
+      r_sqrt[k] = Math.sqrt(r_pow[k]);
+    }
 
-      // This frame won't be used in the filterbanked calculation, so skip it. (improves runtime by about 3x)
-      // TODO: allow a user to generate the full FFV spectrum, not only the filterbanked version.
-      if (!filterbank_mask[r + n / 2]) {
-        ffv[r + n / 2] = 0.;
-        continue;
-      }
+    // Entries that won't be used in the filterbanked calculation are skipped. (improves runtime by about 3x)
+    // TODO: allow a user to generate the full FFV spectrum, not only the filterbanked version.
+    for (int idx : ffv_indices) {
+      ffv[idx] = calculateFFVEntry(l_pow, l_sqrt, r_pow, r_sqrt, idx);
+    }
 
-      double rho = Math.pow(2, 4.0 * -Math.abs(r) / n * (tsep / 0.008));
+    return ffv;
+  }
 
-      double num = 0;
-      double denom_l = 0;
-      double denom_r = 0;
-      if (r < 0) {  // contraction (squeeze the right frame)
-        for (int k = 0; k < n; k++) {
+  /**
+   * Calculates a single entry of the FFV spectrum.
+   *
+   * @param l_pow  the left power spectrum
+   * @param l_sqrt the square root of the left power spectrum
+   * @param r_pow  the right power spectrum
+   * @param r_sqrt the square root of the right power spectrum
+   * @param idx    the index of the FFV spectrum entry
+   * @return the FFV spectrum entry
+   */
+  private double calculateFFVEntry(double[] l_pow, double[] l_sqrt, double[] r_pow, double[] r_sqrt, int idx) {
+    int n = l_pow.length;
+    int r = idx - n / 2;
+    double rho = this.rho[idx];
 
-          double right = interpolate(r_pow, rho, k);
-          num += Math.sqrt(l_pow[k]) * right;
+    double num = 0;
+    double denom_l = 0;
+    double denom_r = 0;
+    if (r < 0) {  // contraction (squeeze the right frame)
+      for (int k = 0; k < n; k++) {
 
-          denom_l += l_pow[k];
-          denom_r += right * right;
-        }
-      } else {  // dilation (squeeze the left frame)
-        for (int k = 0; k < n; k++) {
-          double left = interpolate(l_pow, rho, k);
-          num += left * Math.sqrt(r_pow[k]);
+        double right = interpolate(r_sqrt, rho, k);
+        num += l_sqrt[k] * right;
 
-          denom_l += left * left;
-          denom_r += r_pow[k];
-        }
+        denom_l += l_pow[k];
+        denom_r += right * right;
       }
-      ffv[r + n / 2] = num / Math.sqrt(denom_l * denom_r);
-    }
+    } else {  // dilation (squeeze the left frame)
+      for (int k = 0; k < n; k++) {
+        double left = interpolate(l_sqrt, rho, k);
+        num += left * r_sqrt[k];
 
-    return ffv;
+        denom_l += left * left;
+        denom_r += r_pow[k];
+      }
+    }
+    return num / Math.sqrt(denom_l * denom_r);
   }
 
   /**
-   * Interpolate the power spectrum for a given set of ffv and fft indices.
+   * Interpolate the magnitude spectrum for a given set of ffv and fft indices.
    *
-   * @param pow the right power spectrum
-   * @param rho   ffv dilation coefficient
+   * @param mag the magnitude (square root of the power) spectrum
+   * @param rho ffv dilation coefficient
    * @param k   fft index
-   * @return the interpolated power spectrum for the given indices
+   * @return the interpolated magnitude spectrum for the given indices
    */
-  private double interpolate(double[] pow, double rho, int k) {
+  private double interpolate(double[] mag, double rho, int k) {
     double rho_k = rho * k;
     int low_idx = (int) Math.floor(rho_k);
     int high_idx = (int) Math.ceil(rho_k);
     double alpha = rho_k - low_idx;
 
-    return (1 - alpha) * Math.sqrt(pow[low_idx]) + (alpha) * Math.sqrt(pow[high_idx]);
+    return (1 - alpha) * mag[low_idx] + (alpha) * mag[high_idx];
+  }
+
+  /**
+   * Precomputes the dilation coefficient of each FFV spectrum entry used by the filterbank.
+   */
+  private void constructDilationCoefficients() {
+    int n = FFT_COEFS;
+    rho = new double[n];
+    for (int idx : ffv_indices) {
+      int r = idx - n / 2;
+      rho[idx] = Math.pow(2, 4.0 * -Math.abs(r) / n * (tsep / 0.008));
+    }
   }
 
   /**
@@ -340,6 +504,42 @@ public class FFVExtractor {
         }
       }
     }
+
+    // Store the nonzero entries of each filter.
+    filter_indices = new int[filterbank.length][];
+    filter_weights = new double[filterbank.length][];
+    for (int i = 0; i < filterbank.length; i++) {
+      int size = 0;
+      for (double w : filterbank[i]) {
+        if (w != 0) {
+          size++;
+        }
+      }
+      filter_indices[i] = new int[size];
+      filter_weights[i] = new double[size];
+      int k = 0;
+      for (int j = 0; j < filterbank[i].length; j++) {
+        if (filterbank[i][j] != 0) {
+          filter_indices[i][k] = j;
+          filter_weights[i][k] = filterbank[i][j];
+          k++;
+        }
+      }
+    }
+
+    int size = 0;
+    for (boolean b : filterbank_mask) {
+      if (b) {
+        size++;
+      }
+    }
+    ffv_indices = new int[size];
+    int k = 0;
+    for (int j = 0; j < filterbank_mask.length; j++) {
+      if (filterbank_mask[j]) {
+        ffv_indices[k++] = j;
+      }
+    }
   }
 
   public static void main(String[] args) {
@@ -385,6 +585,12 @@ public class FFVExtractor {
        */
 
       FFVExtractor ffvc = new FFVExtractor(0.01, 0.01, 0.011, 0.015);
+      ffvc.setNumThreads(Runtime.getRuntime().availableProcessors());
+      ffvc.setProgressListener(new ProgressListener() {
+        public void progress(int frames_completed, int num_frames, long elapsed_nanos) {
+          System.err.format("Calculated frame %d of %d\r", frames_completed, num_frames);
+        }
+      });
       double[][] ffv = ffvc.calculateFFV(wav, 0);
 
       System.out.println("FFV points:" + ffv.length);
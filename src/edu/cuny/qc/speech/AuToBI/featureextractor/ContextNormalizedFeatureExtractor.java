@@ -24,8 +24,8 @@
 package edu.cuny.qc.speech.AuToBI.featureextractor;
 
 import edu.cuny.qc.speech.AuToBI.core.*;
-import edu.cuny.qc.speech.AuToBI.util.ContourUtils;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -44,12 +44,12 @@ import java.util.List;
  * Doubles.
  *
  * @see edu.cuny.qc.speech.AuToBI.core.ContextDesc
+ * @see MultiContextNormalizedFeatureExtractor
  */
 public class ContextNormalizedFeatureExtractor extends FeatureExtractor {
   public static final String moniker =
       "zMinWordContext,zMaxWordContext,zMeanWordContext,zNormWordContext,rNormWordContext";
 
-  private static final Double EPSILON = 0.00001;  // values less than this are considered zero for normalization
   private String attribute_name;                 // the feature to normalize
   private ContextDesc context;                   // the normalization context
 
@@ -107,139 +107,33 @@ public class ContextNormalizedFeatureExtractor extends FeatureExtractor {
    * <p/>
    * This version of the function decouples the extraction of the value to be normalized from the normalization context.
    * This is helpful when performing context normalization of subregions.
+   * <p/>
+   * The context statistics are calculated by a single context MultiContextNormalizedFeatureExtractor.
    *
    * @param regions         The regions to extract features for normalization
    * @param context_regions The regions to calculate normalization parameters from
    * @throws FeatureExtractorException if something goes wrong
    */
   public void extractFeatures(List regions, List<Region> context_regions) throws FeatureExtractorException {
-    if (regions.size() != context_regions.size()) {
-      throw new FeatureExtractorException("Regions and Context Regions must be the same size");
-    }
-    if (regions.isEmpty()) return;
-    if (((Region) regions.get(0)).getAttribute(attribute_name) instanceof Contour) {
-      for (int i = 0; i < regions.size(); ++i) {
-        Region r = (Region) regions.get(i);
-
-        int prev_idx = Math.max(0, i - context.getBack());
-        int next_idx = Math.min(regions.size() - 1, i + context.getBack());
-
-        extractContextNormAttributes(r, context_regions.get(prev_idx).getStart(),
-            context_regions.get(next_idx).getEnd());
-      }
-    } else if (((Region) regions.get(0)).getAttribute(attribute_name) instanceof Double) {
-      ContextFrame window = new ContextFrame(context_regions, attribute_name, context.getBack(), context.getForward());
-      for (Object o : regions) {
-        Region r = (Region) o;
-
-        extractContextNormAttributes(r, window);
-        window.increment();
-      }
-    }
+    new MultiContextNormalizedFeatureExtractor(attribute_name, Collections.singletonList(context))
+        .extractFeatures(regions, context_regions);
   }
 
   /**
-   * Extract context normalized attributes for a single region and context defined by time.
+   * Retrieves the name of the normalized attribute.
    *
-   * @param r     The data point
-   * @param start Start time
-   * @param end   End time
+   * @return the attribute name
    */
-  private void extractContextNormAttributes(Region r, Double start, Double end) throws FeatureExtractorException {
-
-    if (!r.hasAttribute(attribute_name)) {
-      return;
-    }
-    // Generate context normalizing statistics
-    Contour c = (Contour) r.getAttribute(attribute_name);
-    Contour context_c;
-    try {
-      context_c = ContourUtils.getSubContour(c, start, end);
-    } catch (AuToBIException e) {
-      throw new FeatureExtractorException(e.getMessage());
-    }
-
-    Aggregation agg = new Aggregation();
-    for (Pair<Double, Double> tvp : context_c) {
-      agg.insert(tvp.second);
-    }
-    Double max = agg.getMax();
-    Double min = agg.getMin();
-    Double mean = agg.getMean();
-    Double stdev = agg.getStdev();
-
-    // Calculate normalized features
-    String context_feature_stem = attribute_name + "," + context.getLabel();
-
-    if (r.getAttribute(attribute_name) instanceof Double) {
-      Double value = (Double) r.getAttribute(attribute_name);
-      // Z Score
-      if (Math.abs(stdev) > EPSILON) {
-        r.setAttribute("zNormWordContext[" + context_feature_stem + "]", (value - mean) / stdev);
-      }
-      // Range Normalization
-      if ((max - min) > EPSILON) {
-        r.setAttribute("rNormWordContext[" + context_feature_stem + "]", (value - min) / (max - min));
-      }
-    } else if (r.getAttribute(attribute_name) instanceof Contour) {
-      // Calculate Z Score normalization
-      if (Math.abs(stdev) > EPSILON) {
-        if (r.hasAttribute("min[" + attribute_name + "]")) {
-          r.setAttribute("zMinWordContext[" + context_feature_stem + "]", (
-              (Double) r.getAttribute("min[" + attribute_name + "]") - mean) / stdev);
-        }
-        if (r.hasAttribute("max[" + attribute_name + "]")) {
-          r.setAttribute("zMaxWordContext[" + context_feature_stem + "]", (
-              (Double) r.getAttribute("max[" + attribute_name + "]") - mean) / stdev);
-        }
-        if (r.hasAttribute("mean[" + attribute_name + "]")) {
-          r.setAttribute("zMeanWordContext[" + context_feature_stem + "]", (
-              (Double) r.getAttribute("mean[" + attribute_name + "]") - mean) / stdev);
-        }
-      }
-    }
+  public String getAttributeName() {
+    return attribute_name;
   }
 
   /**
-   * Extract context normalized attributes for a single data point.
+   * Retrieves the normalization context.
    *
-   * @param r      The data point
-   * @param window The current context window
+   * @return the context
    */
-  private void extractContextNormAttributes(Region r, ContextFrame window) {
-    Double max = window.getMax();
-    Double min = window.getMin();
-    Double mean = window.getMean();
-    Double stdev = window.getStdev();
-
-    String context_feature_stem = attribute_name + "," + context.getLabel();
-
-    if (r.getAttribute(attribute_name) instanceof Double) {
-      Double value = (Double) r.getAttribute(attribute_name);
-      // Z Score
-      if (Math.abs(stdev) > EPSILON) {
-        r.setAttribute("zNormWordContext[" + context_feature_stem + "]", (value - mean) / stdev);
-      }
-      // Range Normalization
-      if ((max - min) > EPSILON) {
-        r.setAttribute("rNormWordContext[" + context_feature_stem + "]", (value - min) / (max - min));
-      }
-    } else if (r.getAttribute(attribute_name) instanceof Contour) {
-      // Calculate Z Score normalization
-      if (Math.abs(stdev) > EPSILON) {
-        if (r.hasAttribute("min[" + attribute_name + "]")) {
-          r.setAttribute("zMinWordContext[" + context_feature_stem + "]", (
-              (Double) r.getAttribute("min[" + attribute_name + "]") - mean) / stdev);
-        }
-        if (r.hasAttribute("max[" + attribute_name + "]")) {
-          r.setAttribute("zMaxWordContext[" + context_feature_stem + "]", (
-              (Double) r.getAttribute("max[" + attribute_name + "]") - mean) / stdev);
-        }
-        if (r.hasAttribute("mean[" + attribute_name + "]")) {
-          r.setAttribute("zMeanWordContext[" + context_feature_stem + "]", (
-              (Double) r.getAttribute("mean[" + attribute_name + "]") - mean) / stdev);
-        }
-      }
-    }
+  public ContextDesc getContext() {
+    return context;
   }
 }
@@ -24,7 +24,7 @@
 package edu.cuny.qc.speech.AuToBI.featureextractor;
 
 import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
-import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
 import edu.cuny.qc.speech.AuToBI.core.FeatureExtractor;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
 import edu.cuny.qc.speech.AuToBI.core.Word;
@@ -91,11 +91,11 @@ public class CorrectionSpectrumPADFeatureExtractor extends FeatureExtractor {
 
     for (Word w : (List<Word>) regions) {
       try {
-        Distribution result = classifier.distributionForInstance(w);
+        Posterior result = classifier.posteriorForInstance(w);
 
         w.setAttribute("nominal_bark_" + low + "_" + high + "__correction_prediction", result.getKeyWithMaximumValue());
         w.setAttribute("bark_" + low + "_" + high + "__correction_prediction_confidence",
-            result.get(result.getKeyWithMaximumValue()));
+            result.get(result.getIndexWithMaximumValue()));
       } catch (Exception e) {
         throw new FeatureExtractorException(e.getMessage());
       }
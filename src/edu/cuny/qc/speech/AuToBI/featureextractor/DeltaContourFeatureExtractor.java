@@ -26,7 +26,7 @@ package edu.cuny.qc.speech.AuToBI.featureextractor;
 import edu.cuny.qc.speech.AuToBI.core.Contour;
 import edu.cuny.qc.speech.AuToBI.core.Region;
 import edu.cuny.qc.speech.AuToBI.core.FeatureExtractor;
-import edu.cuny.qc.speech.AuToBI.util.ContourUtils;
+import edu.cuny.qc.speech.AuToBI.core.LazyContour;
 
 import java.util.HashMap;
 import java.util.List;
@@ -64,6 +64,7 @@ public class DeltaContourFeatureExtractor extends FeatureExtractor {
   /**
    * Calculates delta Contour features.
    * <p/>
+   * The delta contour is evaluated lazily, so only the frames that are read are computed.
    *
    * @param regions The regions to extract features from
    * @throws FeatureExtractorException When something goes wrong
@@ -77,7 +78,7 @@ public class DeltaContourFeatureExtractor extends FeatureExtractor {
         if (cache.containsKey(c)) {
           r.setAttribute("delta[" + attribute_name + "]", cache.get(c));
         } else {
-          Contour delta_contour = ContourUtils.generateDeltaContour(c);
+          Contour delta_contour = LazyContour.delta(c);
           r.setAttribute("delta[" + attribute_name + "]", delta_contour);
           cache.put(c, delta_contour);
         }
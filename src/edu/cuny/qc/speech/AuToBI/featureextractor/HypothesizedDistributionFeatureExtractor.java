@@ -26,7 +26,9 @@ package edu.cuny.qc.speech.AuToBI.featureextractor;
 
 import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
 import edu.cuny.qc.speech.AuToBI.core.*;
+import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -64,15 +66,21 @@ public class HypothesizedDistributionFeatureExtractor extends FeatureExtractor {
    */
   @Override
   public void extractFeatures(List regions) throws FeatureExtractorException {
-
+    List<Word> words = new ArrayList<Word>();
     for (Region r : (List<Region>) regions) {
       if (r instanceof Word) {
-        try {
-          Distribution dist = classifier.distributionForInstance((Word) r);
-          r.setAttribute(dist_feature, dist);
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
+        words.add((Word) r);
+      }
+    }
+
+    List<Posterior> posteriors = ClassifierUtils.generatePosteriors(classifier, words);
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+      try {
+        Posterior posterior = (posteriors != null) ? posteriors.get(i) : classifier.posteriorForInstance(w);
+        w.setAttribute(dist_feature, posterior.toDistribution());
+      } catch (Exception e) {
+        e.printStackTrace();
       }
     }
   }
@@ -27,9 +27,12 @@ package edu.cuny.qc.speech.AuToBI.featureextractor;
 import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
 import edu.cuny.qc.speech.AuToBI.core.FeatureExtractor;
 import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
 import edu.cuny.qc.speech.AuToBI.core.Region;
 import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -65,15 +68,26 @@ public class HypothesizedEventFeatureExtractor extends FeatureExtractor {
    */
   @Override
   public void extractFeatures(List regions) throws FeatureExtractorException {
-
+    List<Word> words = new ArrayList<Word>();
     for (Region r : (List<Region>) regions) {
       if (r instanceof Word) {
-        try {
-          String hyp = classifier.classify((Word) r);
-          r.setAttribute(hyp_feature, hyp);
-        } catch (Exception e) {
-          e.printStackTrace();
+        words.add((Word) r);
+      }
+    }
+
+    List<Posterior> posteriors = ClassifierUtils.generatePosteriors(classifier, words);
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+      try {
+        String hyp;
+        if (posteriors != null) {
+          hyp = posteriors.get(i) == null ? null : posteriors.get(i).getKeyWithMaximumValue();
+        } else {
+          hyp = classifier.classify(w);
         }
+        w.setAttribute(hyp_feature, hyp);
+      } catch (Exception e) {
+        e.printStackTrace();
       }
     }
   }
@@ -24,6 +24,7 @@
 package edu.cuny.qc.speech.AuToBI.featureextractor;
 
 import edu.cuny.qc.speech.AuToBI.core.Contour;
+import edu.cuny.qc.speech.AuToBI.core.LazyContour;
 import edu.cuny.qc.speech.AuToBI.core.Region;
 import edu.cuny.qc.speech.AuToBI.core.FeatureExtractor;
 
@@ -61,6 +62,8 @@ public class LogContourFeatureExtractor extends FeatureExtractor {
   @Override
   /**
    * Constructs a new Contour object containing log transformed values based on a source contour.
+   * <p/>
+   * The log contour is evaluated lazily, so only the frames that are read are transformed.
    */
   public void extractFeatures(List regions) throws FeatureExtractorException {
     HashMap<Contour, Contour> cache = new HashMap<Contour, Contour>();
@@ -71,12 +74,7 @@ public class LogContourFeatureExtractor extends FeatureExtractor {
         if (cache.containsKey(src_contour)) {
           r.setAttribute(tgt, cache.get(src_contour));
         } else {
-          Contour tgt_contour = new Contour(src_contour.getStart(), src_contour.getStep(), src_contour.size());
-          for (int i = 0; i < src_contour.size(); ++i) {
-            if (!src_contour.isEmpty(i)) {
-              tgt_contour.set(i, Math.log(src_contour.get(i)));
-            }
-          }
+          Contour tgt_contour = LazyContour.log(src_contour);
           r.setAttribute(tgt, tgt_contour);
           cache.put(src_contour, tgt_contour);
         }
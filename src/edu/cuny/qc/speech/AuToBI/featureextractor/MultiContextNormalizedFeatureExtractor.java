@@ -0,0 +1,229 @@
+/*  MultiContextNormalizedFeatureExtractor.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.featureextractor;
+
+import edu.cuny.qc.speech.AuToBI.core.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A feature extractor to calculate context normalized aggregations of an attribute over several contexts at once.
+ * <p/>
+ * This extracts the same features as ContextNormalizedFeatureExtractor for every supplied ContextDesc.  Rather than
+ * aggregating each context window from scratch, the values of the attribute are summarized once per list of regions
+ * by a RangeAggregation, and each (region, context) pair is answered by a constant time range query.
+ * <p/>
+ * Contour attributes are summarized once per distinct Contour object.  Typically every region in a file refers to the
+ * same full file contour, so this is done once per file.
+ *
+ * @see ContextNormalizedFeatureExtractor
+ * @see edu.cuny.qc.speech.AuToBI.core.RangeAggregation
+ */
+public class MultiContextNormalizedFeatureExtractor extends FeatureExtractor {
+
+  private static final Double EPSILON = 0.00001;  // values less than this are considered zero for normalization
+  private String attribute_name;                  // the feature to normalize
+  private List<ContextDesc> contexts;             // the normalization contexts
+
+  /**
+   * Constructs a MultiContextNormalizedFeatureExtractor
+   *
+   * @param attribute_name the attribute to analyze
+   * @param contexts       the normalization contexts
+   */
+  public MultiContextNormalizedFeatureExtractor(String attribute_name, List<ContextDesc> contexts) {
+    super();
+    this.attribute_name = attribute_name;
+    this.contexts = new ArrayList<ContextDesc>(contexts);
+
+    for (ContextDesc context : contexts) {
+      extracted_features.add("zMinWordContext[" + attribute_name + "," + context.getLabel() + "]");
+      extracted_features.add("zMaxWordContext[" + attribute_name + "," + context.getLabel() + "]");
+      extracted_features.add("zMeanWordContext[" + attribute_name + "," + context.getLabel() + "]");
+      extracted_features.add("zNormWordContext[" + attribute_name + "," + context.getLabel() + "]");
+      extracted_features.add("rNormWordContext[" + attribute_name + "," + context.getLabel() + "]");
+    }
+  }
+
+  /**
+   * Retrieves the name of the normalized attribute.
+   *
+   * @return the attribute name
+   */
+  public String getAttributeName() {
+    return attribute_name;
+  }
+
+  /**
+   * Retrieves the normalization contexts.
+   *
+   * @return the contexts
+   */
+  public List<ContextDesc> getContexts() {
+    return contexts;
+  }
+
+  /**
+   * Extracts features over a list of regions.
+   *
+   * @param regions the list of data points
+   * @throws FeatureExtractorException if there is a problem.
+   */
+  public void extractFeatures(List regions) throws FeatureExtractorException {
+    // Don't differentiate context regions and feature regions
+    extractFeatures(regions, regions);
+  }
+
+  /**
+   * Extracts features from a list of regions with a distinct list of regions to describe the context.
+   *
+   * @param regions         The regions to extract features for normalization
+   * @param context_regions The regions to calculate normalization parameters from
+   * @throws FeatureExtractorException if something goes wrong
+   */
+  public void extractFeatures(List regions, List<Region> context_regions) throws FeatureExtractorException {
+    if (regions.size() != context_regions.size()) {
+      throw new FeatureExtractorException("Regions and Context Regions must be the same size");
+    }
+    if (regions.isEmpty()) return;
+    if (((Region) regions.get(0)).getAttribute(attribute_name) instanceof Contour) {
+      extractContourContextNormAttributes(regions, context_regions);
+    } else if (((Region) regions.get(0)).getAttribute(attribute_name) instanceof Double) {
+      extractDoubleContextNormAttributes(regions, context_regions);
+    }
+  }
+
+  /**
+   * Extracts context normalized attributes of a contour attribute.
+   * <p/>
+   * As in ContextNormalizedFeatureExtractor, the context of a region spans from the start of the region getBack()
+   * regions before it to the end of the region getBack() regions after it.
+   *
+   * @param regions         The regions to extract features for normalization
+   * @param context_regions The regions to calculate normalization parameters from
+   * @throws FeatureExtractorException if a context has a start time after its end time
+   */
+  private void extractContourContextNormAttributes(List regions, List<Region> context_regions)
+      throws FeatureExtractorException {
+    Map<Contour, RangeAggregation> aggregations = new IdentityHashMap<Contour, RangeAggregation>();
+
+    for (int i = 0; i < regions.size(); ++i) {
+      Region r = (Region) regions.get(i);
+      if (!r.hasAttribute(attribute_name)) {
+        continue;
+      }
+      Contour c = (Contour) r.getAttribute(attribute_name);
+      RangeAggregation agg = aggregations.get(c);
+      if (agg == null) {
+        agg = new RangeAggregation(c);
+        aggregations.put(c, agg);
+      }
+
+      for (ContextDesc context : contexts) {
+        int prev_idx = Math.max(0, i - context.getBack());
+        int next_idx = Math.min(regions.size() - 1, i + context.getBack());
+
+        double start = context_regions.get(prev_idx).getStart();
+        double end = context_regions.get(next_idx).getEnd();
+        if (start > end) {
+          throw new FeatureExtractorException("start (" + start + ") greater than end (" + end + ")");
+        }
+
+        int start_idx = c.indexFromTimeCeil(start);
+        int end_idx = c.indexFromTimeFloor(end);
+        double stdev = agg.getStdev(start_idx, end_idx);
+
+        // Calculate Z Score normalization
+        if (Math.abs(stdev) > EPSILON) {
+          double mean = agg.getMean(start_idx, end_idx);
+          String context_feature_stem = attribute_name + "," + context.getLabel();
+          if (r.hasAttribute("min[" + attribute_name + "]")) {
+            r.setAttribute("zMinWordContext[" + context_feature_stem + "]", (
+                (Double) r.getAttribute("min[" + attribute_name + "]") - mean) / stdev);
+          }
+          if (r.hasAttribute("max[" + attribute_name + "]")) {
+            r.setAttribute("zMaxWordContext[" + context_feature_stem + "]", (
+                (Double) r.getAttribute("max[" + attribute_name + "]") - mean) / stdev);
+          }
+          if (r.hasAttribute("mean[" + attribute_name + "]")) {
+            r.setAttribute("zMeanWordContext[" + context_feature_stem + "]", (
+                (Double) r.getAttribute("mean[" + attribute_name + "]") - mean) / stdev);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Extracts context normalized attributes of a Double attribute.
+   * <p/>
+   * The context of a region includes the values of the getBack() preceding and getForward() following regions.
+   *
+   * @param regions         The regions to extract features for normalization
+   * @param context_regions The regions to calculate normalization parameters from
+   */
+  private void extractDoubleContextNormAttributes(List regions, List<Region> context_regions) {
+    double[] values = new double[context_regions.size()];
+    boolean[] present = new boolean[context_regions.size()];
+    for (int i = 0; i < context_regions.size(); ++i) {
+      Object v = context_regions.get(i).getAttribute(attribute_name);
+      if (v instanceof Number) {
+        values[i] = ((Number) v).doubleValue();
+        present[i] = true;
+      }
+    }
+    RangeAggregation agg = new RangeAggregation(values, present);
+
+    for (int i = 0; i < regions.size(); ++i) {
+      Region r = (Region) regions.get(i);
+      if (!(r.getAttribute(attribute_name) instanceof Double)) {
+        continue;
+      }
+      Double value = (Double) r.getAttribute(attribute_name);
+
+      for (ContextDesc context : contexts) {
+        int start_idx = i - context.getBack();
+        int end_idx = i + context.getForward();
+
+        String context_feature_stem = attribute_name + "," + context.getLabel();
+
+        // Z Score
+        double stdev = agg.getStdev(start_idx, end_idx);
+        if (Math.abs(stdev) > EPSILON) {
+          r.setAttribute("zNormWordContext[" + context_feature_stem + "]",
+              (value - agg.getMean(start_idx, end_idx)) / stdev);
+        }
+        // Range Normalization
+        double max = agg.getMax(start_idx, end_idx);
+        double min = agg.getMin(start_idx, end_idx);
+        if ((max - min) > EPSILON) {
+          r.setAttribute("rNormWordContext[" + context_feature_stem + "]", (value - min) / (max - min));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*  MultiSpectrumBandFeatureExtractor.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.featureextractor;
+
+import edu.cuny.qc.speech.AuToBI.core.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MultiSpectrumBandFeatureExtractor extracts the energy from several frequency ranges at once.
+ * <p/>
+ * This extracts the same features as SpectrumBandFeatureExtractor for every supplied bark band.  The energy in every
+ * band is calculated in a single pass over each Spectrum.
+ *
+ * @see SpectrumBandFeatureExtractor
+ * @see Spectrum#getPowerInBands(double[], double[], boolean)
+ */
+@SuppressWarnings("unchecked")
+public class MultiSpectrumBandFeatureExtractor extends FeatureExtractor {
+  private String spectrum_feature;  // the spectrum feature
+  private List<Pair<Integer, Integer>> bands;  // the low and high boundaries of each band
+
+  /**
+   * Constructs a new MultiSpectrumBandFeatureExtractor for a list of bark bands.
+   *
+   * @param bands the low and high bark boundaries of each band
+   */
+  public MultiSpectrumBandFeatureExtractor(List<Pair<Integer, Integer>> bands) {
+    this.spectrum_feature = "spectrum";
+    this.bands = new ArrayList<Pair<Integer, Integer>>(bands);
+
+    for (Pair<Integer, Integer> band : bands) {
+      extracted_features.add("spectrumBand[" + band.first + "," + band.second + "]");
+    }
+
+    required_features.add(spectrum_feature);
+  }
+
+  /**
+   * Retrieves the bark bands.
+   *
+   * @return the low and high boundaries of each band
+   */
+  public List<Pair<Integer, Integer>> getBands() {
+    return bands;
+  }
+
+  /**
+   * Extracts spectrum based features for each region.
+   *
+   * @param regions the regions to extract features from.
+   * @throws FeatureExtractorException if something goes wrong.
+   */
+  public void extractFeatures(List regions) throws FeatureExtractorException {
+    double[] low_freqs = new double[bands.size()];
+    double[] high_freqs = new double[bands.size()];
+    for (int b = 0; b < bands.size(); ++b) {
+      low_freqs[b] = SpectralTiltFeatureExtractor.barkToHertz(bands.get(b).first);
+      high_freqs[b] = SpectralTiltFeatureExtractor.barkToHertz(bands.get(b).second);
+    }
+
+    Map<Spectrum, Contour[]> cache = new IdentityHashMap<Spectrum, Contour[]>();
+    try {
+      for (Region r : (List<Region>) regions) {
+        if (r.hasAttribute(spectrum_feature)) {
+          Spectrum spectrum = (Spectrum) r.getAttribute(spectrum_feature);
+          if (!cache.containsKey(spectrum)) {
+            double[][] power = spectrum.getPowerInBands(low_freqs, high_freqs, false);
+            Contour[] contours = new Contour[bands.size()];
+            for (int b = 0; b < bands.size(); ++b) {
+              contours[b] = new Contour(spectrum.getStartingTime(), spectrum.getFrameSize(), power[b]);
+            }
+            cache.put(spectrum, contours);
+          }
+          Contour[] contours = cache.get(spectrum);
+          for (int b = 0; b < bands.size(); ++b) {
+            r.setAttribute(extracted_features.get(b), contours[b]);
+          }
+        }
+      }
+    } catch (AuToBIException e) {
+      e.printStackTrace();
+    }
+  }
+}
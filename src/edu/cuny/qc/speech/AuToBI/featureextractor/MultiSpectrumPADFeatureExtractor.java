@@ -0,0 +1,203 @@
+/*  MultiSpectrumPADFeatureExtractor.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.featureextractor;
+
+import edu.cuny.qc.speech.AuToBI.PitchAccentDetectionClassifierCollection;
+import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
+import edu.cuny.qc.speech.AuToBI.core.*;
+import edu.cuny.qc.speech.AuToBI.featureset.CorrectionSpectrumPADFeatureSet;
+import edu.cuny.qc.speech.AuToBI.featureset.SpectrumPADFeatureSet;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * MultiSpectrumPADFeatureExtractor generates spectral pitch accent detection (PAD) hypotheses and their corrections
+ * for every bark band of a PitchAccentDetectionClassifierCollection in a single stage.
+ * <p/>
+ * This extracts the same features as a SpectrumPADFeatureExtractor and a CorrectionSpectrumPADFeatureExtractor for
+ * each band.  The band classifiers are independent, so they are evaluated concurrently, one task per band.  The
+ * regions are only read during the concurrent evaluation; the hypotheses are stored on the regions afterwards by the
+ * calling thread.
+ * <p/>
+ * The bands of every call are evaluated on a single pool owned by the extractor, so concurrent calls, e.g., one per
+ * file during feature set propagation, share its threads rather than each starting their own.  With -num_threads N,
+ * at most N band classifiers run at once however many files are being processed; the file threads wait on the
+ * pool.
+ * <p/>
+ * The hypotheses are also stored in a SpectralPADMatrix, and each region is assigned its row of the matrix, so that
+ * SpectralPitchAccentDetector can combine them without attribute lookups.
+ * <p/>
+ * Unlike SpectrumPADFeatureExtractor, the regions are not reassigned to each band's FeatureSet.
+ *
+ * @see SpectrumPADFeatureExtractor
+ * @see CorrectionSpectrumPADFeatureExtractor
+ * @see edu.cuny.qc.speech.AuToBI.SpectralPitchAccentDetector
+ */
+@SuppressWarnings("unchecked")
+public class MultiSpectrumPADFeatureExtractor extends FeatureExtractor {
+  private final String ACCENTED_VALUE = "ACCENTED";  // a label for ACCENTED words
+  private final String CORRECT_VALUE = "CORRECT";    // a label for correct predictions
+
+  private List<Pair<Integer, Integer>> bands;      // the low and high bark boundaries of each band
+  private List<AuToBIClassifier> detectors;        // the pitch accent detector for each band
+  private List<AuToBIClassifier> correctors;       // the correction classifier for each band
+  private ExecutorService executor;                // the pool to evaluate bands on, null to evaluate serially
+
+  /**
+   * Constructs a new MultiSpectrumPADFeatureExtractor for every pair of bark boundaries, 0 <= low < high <= high_bark.
+   *
+   * @param pacc        the pitch accent detection and correction classifiers
+   * @param high_bark   the highest bark boundary
+   * @param num_threads the number of threads to evaluate the bands on, shared by every call to extractFeatures
+   */
+  public MultiSpectrumPADFeatureExtractor(PitchAccentDetectionClassifierCollection pacc, int high_bark,
+                                          int num_threads) {
+    this.bands = new ArrayList<Pair<Integer, Integer>>();
+    this.detectors = new ArrayList<AuToBIClassifier>();
+    this.correctors = new ArrayList<AuToBIClassifier>();
+    if (num_threads > 1) {
+      // Daemon threads, so the pool does not keep the JVM alive after processing is complete.
+      this.executor = Executors.newFixedThreadPool(num_threads, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "spectral-pad-band");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+
+    for (int low = 0; low < high_bark; ++low) {
+      for (int high = low + 1; high <= high_bark; ++high) {
+        bands.add(new Pair<Integer, Integer>(low, high));
+        detectors.add(pacc.getPitchAccentDetector(low, high));
+        correctors.add(pacc.getCorrectionClassifier(low, high));
+
+        extracted_features.add("nominal_bark_" + low + "_" + high + "__prediction");
+        extracted_features.add("bark_" + low + "_" + high + "__prediction_confidence");
+        extracted_features.add("bark_" + low + "_" + high + "__prediction_confidence_accented");
+        extracted_features.add("nominal_bark_" + low + "_" + high + "__correction_prediction");
+        extracted_features.add("bark_" + low + "_" + high + "__correction_prediction_confidence");
+
+        required_features.addAll(new SpectrumPADFeatureSet(low, high).getRequiredFeatures());
+        required_features.addAll(new CorrectionSpectrumPADFeatureSet(low, high).getRequiredFeatures());
+      }
+    }
+    extracted_features.add(SpectralPADMatrix.ROW_FEATURE);
+
+    // The correction classifiers require the predictions extracted here.
+    required_features.removeAll(extracted_features);
+  }
+
+  /**
+   * Retrieves the bark bands.
+   *
+   * @return the low and high boundaries of each band
+   */
+  public List<Pair<Integer, Integer>> getBands() {
+    return bands;
+  }
+
+  /**
+   * Generates pitch accent detection hypotheses and corrections for each band on each region.
+   *
+   * @param regions The regions to extract features from.
+   * @throws FeatureExtractorException if something goes wrong
+   */
+  public void extractFeatures(List regions) throws FeatureExtractorException {
+    List<Word> words = new ArrayList<Word>((List<Word>) regions);
+    SpectralPADMatrix matrix = new SpectralPADMatrix(bands, words.size());
+
+    Posterior[][] predictions = evaluate(detectors, words);
+    for (int b = 0; b < bands.size(); ++b) {
+      String prefix = "bark_" + bands.get(b).first + "_" + bands.get(b).second + "__";
+      for (int i = 0; i < words.size(); ++i) {
+        Posterior result = predictions[b][i];
+        int best = result.getIndexWithMaximumValue();
+        String key = result.getLabels().decode(best);
+        Word w = words.get(i);
+        w.setAttribute("nominal_" + prefix + "prediction", key);
+        w.setAttribute(prefix + "prediction_confidence", result.get(best));
+        w.setAttribute(prefix + "prediction_confidence_accented", result.get(ACCENTED_VALUE));
+        matrix.setAccentedConfidence(i, b, key.equals(ACCENTED_VALUE) ? result.get(best) : 1 - result.get(best));
+      }
+    }
+    // Release the predictions before the corrections are evaluated.
+    predictions = null;
+
+    Posterior[][] corrections = evaluate(correctors, words);
+    for (int b = 0; b < bands.size(); ++b) {
+      String prefix = "bark_" + bands.get(b).first + "_" + bands.get(b).second + "__";
+      for (int i = 0; i < words.size(); ++i) {
+        Posterior result = corrections[b][i];
+        int best = result.getIndexWithMaximumValue();
+        String key = result.getLabels().decode(best);
+        Word w = words.get(i);
+        w.setAttribute("nominal_" + prefix + "correction_prediction", key);
+        w.setAttribute(prefix + "correction_prediction_confidence", result.get(best));
+        matrix.setCorrectConfidence(i, b, key.equals(CORRECT_VALUE) ? result.get(best) : 1 - result.get(best));
+      }
+    }
+
+    for (int i = 0; i < words.size(); ++i) {
+      words.get(i).setAttribute(SpectralPADMatrix.ROW_FEATURE, matrix.getRow(i));
+    }
+  }
+
+  /**
+   * Evaluates one classifier per band on every word.
+   * <p/>
+   * Each classifier is used by a single task of a call.  Concurrent calls share the classifiers, as the per band
+   * extractors this replaces did.
+   *
+   * @param classifiers the classifier for each band
+   * @param words       the words
+   * @return the hypothesized posteriors, indexed by band then by word
+   * @throws FeatureExtractorException if any classification fails
+   */
+  private Posterior[][] evaluate(List<AuToBIClassifier> classifiers, final List<Word> words)
+      throws FeatureExtractorException {
+    List<Callable<Posterior[]>> tasks = new ArrayList<Callable<Posterior[]>>();
+    for (final AuToBIClassifier classifier : classifiers) {
+      tasks.add(new Callable<Posterior[]>() {
+        public Posterior[] call() throws Exception {
+          return classifier.posteriorsForInstances(words).toArray(new Posterior[words.size()]);
+        }
+      });
+    }
+
+    try {
+      List<Posterior[]> results = executor == null ? AuToBIUtils.invokeAll(tasks, 1) :
+          AuToBIUtils.invokeAll(tasks, executor);
+      return results.toArray(new Posterior[classifiers.size()][]);
+    } catch (AuToBIException e) {
+      throw new FeatureExtractorException(e.getMessage());
+    }
+  }
+}
@@ -24,7 +24,6 @@
 package edu.cuny.qc.speech.AuToBI.featureextractor;
 
 import edu.cuny.qc.speech.AuToBI.core.*;
-import edu.cuny.qc.speech.AuToBI.util.ContourUtils;
 
 import java.util.HashMap;
 import java.util.List;
@@ -70,6 +69,8 @@ public class NormalizedContourFeatureExtractor extends FeatureExtractor {
 
   /**
    * Performs z-score normalization on the specified contour, storing the result in a new list of TimeValuePairs
+   * <p/>
+   * The normalized contour is evaluated lazily, so only the frames that are read are normalized.
    *
    * @param regions The regions to extract features from.
    * @throws FeatureExtractorException if the normalization parameters cannot normalize the features
@@ -88,8 +89,7 @@ public class NormalizedContourFeatureExtractor extends FeatureExtractor {
         } else {
           SpeakerNormalizationParameter norm_params = (SpeakerNormalizationParameter) r.getAttribute(norm_feature);
           if (norm_params.canNormalize(feature_name)) {
-            Contour norm_contour =
-                ContourUtils.zScoreNormalizeContour((Contour) r.getAttribute(feature_name), norm_params, feature_name);
+            Contour norm_contour = LazyContour.zScoreNormalize(c, norm_params, feature_name);
             r.setAttribute("znormC[" + feature_name + "]", norm_contour);
             cache.put(c, norm_contour);
           } else {
@@ -25,9 +25,9 @@ package edu.cuny.qc.speech.AuToBI.featureextractor;
 
 import edu.cuny.qc.speech.AuToBI.core.Contour;
 import edu.cuny.qc.speech.AuToBI.core.FeatureExtractor;
+import edu.cuny.qc.speech.AuToBI.core.LazyContour;
 import edu.cuny.qc.speech.AuToBI.core.Region;
 import edu.cuny.qc.speech.AuToBI.core.SpeakerNormalizationParameter;
-import edu.cuny.qc.speech.AuToBI.util.ContourUtils;
 
 import java.util.HashMap;
 import java.util.List;
@@ -80,6 +80,8 @@ public class RangeNormalizedContourFeatureExtractor extends FeatureExtractor {
 
   /**
    * Performs z-score normalization on the specified contour, storing the result in a new list of TimeValuePairs
+   * <p/>
+   * The normalized contour is evaluated lazily, so only the frames that are read are normalized.
    *
    * @param regions The regions to extract features from.
    * @throws edu.cuny.qc.speech.AuToBI.featureextractor.FeatureExtractorException if the normalization parameters
@@ -97,8 +99,7 @@ public class RangeNormalizedContourFeatureExtractor extends FeatureExtractor {
         } else {
           SpeakerNormalizationParameter norm_params = (SpeakerNormalizationParameter) r.getAttribute(norm_feature);
           if (norm_params.canNormalize(feature_name)) {
-            Contour norm_contour =
-                ContourUtils.rangeNormalizeContour(c, norm_params, feature_name);
+            Contour norm_contour = LazyContour.rangeNormalize(c, norm_params, feature_name);
             r.setAttribute("rnormC[" + feature_name + "]", norm_contour);
             cache.put(c, norm_contour);
           } else {
@@ -68,6 +68,24 @@ public class SpectrumBandFeatureExtractor extends ContourFeatureExtractor {
     this(Integer.parseInt(low_bark), Integer.parseInt(high_bark));
   }
 
+  /**
+   * Retrieves the bottom of the frequency region.
+   *
+   * @return the low bark boundary
+   */
+  public int getLow() {
+    return low;
+  }
+
+  /**
+   * Retrieves the top of the frequency region.
+   *
+   * @return the high bark boundary
+   */
+  public int getHigh() {
+    return high;
+  }
+
   /**
    * Extracts spectrum based features for each region.
    *
@@ -87,11 +87,11 @@ public class SpectrumPADFeatureExtractor extends FeatureExtractor {
 
     for (Word w : (List<Word>) regions) {
       try {
-        Distribution result = classifier.distributionForInstance(w);
+        Posterior result = classifier.posteriorForInstance(w);
 
         w.setAttribute("nominal_bark_" + low + "_" + high + "__prediction", result.getKeyWithMaximumValue());
         w.setAttribute("bark_" + low + "_" + high + "__prediction_confidence",
-            result.get(result.getKeyWithMaximumValue()));
+            result.get(result.getIndexWithMaximumValue()));
         w.setAttribute("bark_" + low + "_" + high + "__prediction_confidence_accented", result.get(ACCENTED_VALUE));
       } catch (Exception e) {
         throw new FeatureExtractorException(e.getMessage());
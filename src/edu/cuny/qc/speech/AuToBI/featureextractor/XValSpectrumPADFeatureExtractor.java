@@ -23,14 +23,12 @@
  */
 package edu.cuny.qc.speech.AuToBI.featureextractor;
 
-import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
+import edu.cuny.qc.speech.AuToBI.classifier.CrossValidationFolds;
 import edu.cuny.qc.speech.AuToBI.classifier.WekaClassifier;
 import edu.cuny.qc.speech.AuToBI.core.*;
-import edu.cuny.qc.speech.AuToBI.util.PartitionUtils;
 import weka.classifiers.trees.J48;
 
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * The XValSpectrumPADFeatureExtractor is used to generate cross vaidated predictions of spectral pitch accent detection
@@ -50,6 +48,7 @@ public class XValSpectrumPADFeatureExtractor extends FeatureExtractor {
   private int high; // the top of the frequency region
   private int num_folds;  // the number of folds used in the hypothesis generation.
   private FeatureSet fs;  // a description of the featureset used in the prediction
+  private int num_threads;  // the number of threads used to train the folds
 
   /**
    * Constructs a new XValSpectrumFeatureExtractor for a specific spectral region.
@@ -60,7 +59,22 @@ public class XValSpectrumPADFeatureExtractor extends FeatureExtractor {
    * @param fs        a feature set used in the xval experiments
    */
   public XValSpectrumPADFeatureExtractor(int low, int high, int num_folds, FeatureSet fs) {
+    this(low, high, num_folds, fs, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a new XValSpectrumFeatureExtractor for a specific spectral region, training the folds on a specified
+   * number of threads.
+   *
+   * @param low         the bottom of the spectral region.
+   * @param high        the top of the spectral region.
+   * @param num_folds   the number of folds to be used in the generation
+   * @param fs          a feature set used in the xval experiments
+   * @param num_threads the number of threads to train the folds on
+   */
+  public XValSpectrumPADFeatureExtractor(int low, int high, int num_folds, FeatureSet fs, int num_threads) {
     this.low = low;
+    this.num_threads = num_threads;
     this.high = high;
     this.num_folds = num_folds;
     this.fs = fs;
@@ -86,50 +100,25 @@ public class XValSpectrumPADFeatureExtractor extends FeatureExtractor {
 
     // Extract spectrum features.
     feature_set.setDataPoints((List<Word>) regions);
+
+    // Train n-fold cross validated prediction features.
+    Distribution[] results;
     try {
-      PartitionUtils
-          .assignStratifiedFoldNum((List<Word>) regions, FOLD_ASSIGNMENT_FEATURE, num_folds,
-              feature_set.getClassAttribute());
+      CrossValidationFolds folds = CrossValidationFolds
+          .stratified((List<Word>) regions, FOLD_ASSIGNMENT_FEATURE, num_folds, feature_set.getClassAttribute());
+      results = folds.generateCrossValidatedDistributions(new WekaClassifier(new J48()), feature_set, num_threads);
     } catch (AuToBIException e) {
       throw new FeatureExtractorException(e.getMessage());
     }
 
-    // Train n-fold cross validated prediction features.
-    for (int fold_num = 0; fold_num < num_folds; ++fold_num) {
-      AuToBIClassifier classifier = new WekaClassifier(new J48());
-
-      FeatureSet training_fs = fs.newInstance();
-
-      List<Word> training_regions = new ArrayList<Word>();
-      List<Word> testing_regions = new ArrayList<Word>();
-      try {
-        PartitionUtils
-            .splitData((List<Word>) regions, training_regions, testing_regions, fold_num, FOLD_ASSIGNMENT_FEATURE);
-      } catch (AuToBIException e) {
-        // This should never happen.  If there is a problem with splitData it would have thrown
-        // an exception during the fold assignment method assignStratifiedFoldNum
-        throw new FeatureExtractorException(e.getMessage());
-      }
-      training_fs.setDataPoints(training_regions);
-      training_fs.constructFeatures();
-      try {
-        classifier.train(training_fs);
-      } catch (Exception e) {
-        throw new FeatureExtractorException(e.getMessage());
-      }
-
-      for (Word w : testing_regions) {
-        try {
-          Distribution result = classifier.distributionForInstance(w);
-
-          w.setAttribute("nominal_bark_" + low + "_" + high + "__prediction", result.getKeyWithMaximumValue());
-          w.setAttribute("bark_" + low + "_" + high + "__prediction_confidence",
-              result.get(result.getKeyWithMaximumValue()));
-          w.setAttribute("bark_" + low + "_" + high + "__prediction_confidence_accented", result.get(ACCENTED_VALUE));
-        } catch (Exception e) {
-          throw new FeatureExtractorException(e.getMessage());
-        }
-      }
+    for (int i = 0; i < regions.size(); ++i) {
+      Word w = (Word) regions.get(i);
+      Distribution result = results[i];
+
+      w.setAttribute("nominal_bark_" + low + "_" + high + "__prediction", result.getKeyWithMaximumValue());
+      w.setAttribute("bark_" + low + "_" + high + "__prediction_confidence",
+          result.get(result.getKeyWithMaximumValue()));
+      w.setAttribute("bark_" + low + "_" + high + "__prediction_confidence_accented", result.get(ACCENTED_VALUE));
     }
   }
 }
\ No newline at end of file
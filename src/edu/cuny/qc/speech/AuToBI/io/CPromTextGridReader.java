@@ -29,6 +29,7 @@ import edu.cuny.qc.speech.AuToBI.core.Region;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -65,22 +66,14 @@ public class CPromTextGridReader extends TextGridReader {
    * @throws AuToBIException     if there is an alignment problem
    */
   public List<Word> readWords() throws IOException, AuToBIException {
-    AuToBIFileReader file_reader;
-    if (charsetName == null) {
-      file_reader = new AuToBIFileReader(filename, "UTF16");
-    } else {
-      file_reader = new AuToBIFileReader(filename, charsetName);
-    }
-
-    Tier tier;
-    readTextGridTier(file_reader);  // Remove TextGrid header
-    tier = readTextGridTier(file_reader);
-    while (tier != null && tier.getName() != null) {
+    List<String> tier_names = Arrays.asList(words_tier_name == null ? "words" : words_tier_name,
+        prominence_tier_name == null ? "delivery" : prominence_tier_name);
+    for (Tier tier : readTiers(charsetName == null ? "UTF16" : charsetName, tier_names)) {
       if (words_tier_name != null) {
         if (tier.getName().equals(words_tier_name)) {
           words_tier = tier;
         }
-      } else if (tier.getName() != null && tier.getName().equals("words")) {
+      } else if (tier.getName().equals("words")) {
         words_tier = tier;
       }
 
@@ -88,10 +81,9 @@ public class CPromTextGridReader extends TextGridReader {
         if (tier.getName().equals(prominence_tier_name)) {
           prominence_tier = tier;
         }
-      } else if (tier.getName() != null && tier.getName().equals("delivery")) {
+      } else if (tier.getName().equals("delivery")) {
         prominence_tier = tier;
       }
-      tier = readTextGridTier(file_reader);
     }
 
     List<Word> words = generateWordList(words_tier.getRegions());
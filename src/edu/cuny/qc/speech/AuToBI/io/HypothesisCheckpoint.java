@@ -0,0 +1,253 @@
+/*  HypothesisCheckpoint.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * HypothesisCheckpoint stores the extracted features and hypotheses of the words of a single file.
+ * <p/>
+ * A checkpoint allows hypotheses to be regenerated without extracting features from audio.  Along with the feature
+ * values of each word it records a fingerprint of the model file used for each task, so that a later run can
+ * determine which task models have changed since the checkpoint was written.
+ * <p/>
+ * Only values that are Numbers, Strings, Booleans or Distributions are stored.  A feature with any other value, e.g.,
+ * a contour, is omitted from the checkpoint and must be extracted again.
+ */
+public class HypothesisCheckpoint implements Serializable {
+  private static final long serialVersionUID = 20141022L;
+
+  private String source;                                 // a description of the source file
+  private double[] starts;                               // the start time of each word
+  private double[] ends;                                 // the end time of each word
+  private LinkedHashMap<String, Object[]> features;      // the value of each feature for each word
+  private HashMap<String, String> model_fingerprints;    // the fingerprint of the model file of each task
+
+  /**
+   * Constructs a checkpoint of a list of words.
+   *
+   * @param source             a description of the source file
+   * @param words              the words
+   * @param feature_names      the features to store
+   * @param model_fingerprints the fingerprint of the model file of each task
+   */
+  public HypothesisCheckpoint(String source, List<Word> words, Collection<String> feature_names,
+                              Map<String, String> model_fingerprints) {
+    this.source = source;
+    this.starts = new double[words.size()];
+    this.ends = new double[words.size()];
+    for (int i = 0; i < words.size(); ++i) {
+      starts[i] = words.get(i).getStart();
+      ends[i] = words.get(i).getEnd();
+    }
+
+    this.features = new LinkedHashMap<String, Object[]>();
+    for (String feature : feature_names) {
+      Object[] values = new Object[words.size()];
+      boolean storable = true;
+      for (int i = 0; i < words.size() && storable; ++i) {
+        Object value = words.get(i).getAttribute(feature);
+        if (value == null || isStorable(value)) {
+          values[i] = value;
+        } else {
+          storable = false;
+        }
+      }
+      if (storable) {
+        features.put(feature, values);
+      }
+    }
+    this.model_fingerprints = new HashMap<String, String>(model_fingerprints);
+  }
+
+  /**
+   * Determines if a feature value can be stored in a checkpoint.
+   *
+   * @param value the value
+   * @return true if the value is a Number, String, Boolean or Distribution
+   */
+  private static boolean isStorable(Object value) {
+    return value instanceof Number || value instanceof String || value instanceof Boolean ||
+        value instanceof Distribution;
+  }
+
+  /**
+   * Retrieves the description of the source file.
+   *
+   * @return the source
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Retrieves the number of stored words.
+   *
+   * @return the number of words
+   */
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * Determines if the checkpoint was written for a list of words, by comparing the number and times of the words.
+   *
+   * @param words the words
+   * @return true if the words have the same times as the stored words
+   */
+  public boolean matches(List<Word> words) {
+    if (words.size() != starts.length) {
+      return false;
+    }
+    for (int i = 0; i < starts.length; ++i) {
+      if (Math.abs(words.get(i).getStart() - starts[i]) > 1e-6 || Math.abs(words.get(i).getEnd() - ends[i]) > 1e-6) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Retrieves the names of the stored features.
+   *
+   * @return the feature names
+   */
+  public Set<String> getFeatureNames() {
+    return Collections.unmodifiableSet(features.keySet());
+  }
+
+  /**
+   * Determines if a feature is stored.
+   *
+   * @param feature the feature name
+   * @return true if the feature is stored
+   */
+  public boolean hasFeature(String feature) {
+    return features.containsKey(feature);
+  }
+
+  /**
+   * Retrieves the fingerprint of the model file used for a task when the checkpoint was written.
+   *
+   * @param task the task identifier
+   * @return the fingerprint, or null if the task was not run
+   */
+  public String getModelFingerprint(String task) {
+    return model_fingerprints.get(task);
+  }
+
+  /**
+   * Assigns stored feature values to a list of words.
+   * <p/>
+   * The words must match the checkpoint.  Missing values are left unassigned.
+   *
+   * @param words         the words
+   * @param feature_names the features to restore
+   * @throws AuToBIException if the words do not match the checkpoint or a feature is not stored
+   */
+  public void restore(List<Word> words, Collection<String> feature_names) throws AuToBIException {
+    if (!matches(words)) {
+      throw new AuToBIException("Words do not match the checkpoint of " + source);
+    }
+    for (String feature : feature_names) {
+      Object[] values = features.get(feature);
+      if (values == null) {
+        throw new AuToBIException("Checkpoint of " + source + " does not contain feature: " + feature);
+      }
+      for (int i = 0; i < values.length; ++i) {
+        if (values[i] != null) {
+          words.get(i).setAttribute(feature, values[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the checkpoint to a file.
+   *
+   * @param filename the destination file
+   * @throws IOException if the file cannot be written
+   */
+  public void write(String filename) throws IOException {
+    ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+    try {
+      out.writeObject(this);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a checkpoint from a file.
+   *
+   * @param filename the checkpoint file
+   * @return the checkpoint
+   * @throws IOException     if the file cannot be read
+   * @throws AuToBIException if the file does not contain a checkpoint
+   */
+  public static HypothesisCheckpoint read(String filename) throws IOException, AuToBIException {
+    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)));
+    try {
+      Object o = in.readObject();
+      if (!(o instanceof HypothesisCheckpoint)) {
+        throw new AuToBIException("File does not contain a hypothesis checkpoint: " + filename);
+      }
+      return (HypothesisCheckpoint) o;
+    } catch (ClassNotFoundException e) {
+      throw new AuToBIException("File does not contain a hypothesis checkpoint: " + filename);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Calculates a fingerprint of the contents of a file, e.g., a serialized model.
+   *
+   * @param filename the file
+   * @return the length and CRC32 checksum of the file
+   * @throws IOException if the file cannot be read
+   */
+  public static String fingerprint(String filename) throws IOException {
+    CRC32 crc = new CRC32();
+    long length = 0;
+    InputStream in = new BufferedInputStream(new FileInputStream(filename));
+    try {
+      byte[] buffer = new byte[65536];
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        crc.update(buffer, 0, n);
+        length += n;
+      }
+    } finally {
+      in.close();
+    }
+    return length + ":" + Long.toHexString(crc.getValue());
+  }
+}
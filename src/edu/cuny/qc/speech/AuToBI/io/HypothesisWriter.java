@@ -0,0 +1,700 @@
+/*  HypothesisWriter.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.AuToBITask;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+import java.io.*;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HypothesisWriter serializes the hypothesized ToBI labels of a list of words.
+ * <p/>
+ * The feature names of each task are resolved once, when the writer is constructed, rather than for every word.
+ * Output is written directly to a Writer, one tier or one word at a time, without first constructing the whole
+ * document as a String.
+ * <p/>
+ * Two formats are supported.  TEXTGRID writes a Praat TextGrid that looks like a manual annotation, with tones, words
+ * and breaks tiers.  JSONL writes one JSON object per line for each word containing its times, its label, the merged
+ * pitch accent and phrase boundary hypotheses and the hypothesis and confidence of each task.
+ */
+public class HypothesisWriter {
+
+  /**
+   * The output format of the hypotheses.
+   */
+  public enum Format {
+    TEXTGRID, JSONL
+  }
+
+  private Format format;
+  private boolean distributions;  // if true, interval textgrids contain hypothesized distributions
+
+  // the hypothesis, confidence and distribution features of each task, or null if the task is unavailable
+  private String accent_detection_hyp;
+  private String accent_detection_conf;
+  private String accent_detection_dist;
+  private String accent_classification_hyp;
+  private String accent_classification_dist;
+  private String intonational_boundary_hyp;
+  private String intonational_boundary_conf;
+  private String intonational_boundary_dist;
+  private String intermediate_boundary_hyp;
+  private String intermediate_boundary_dist;
+  private String boundary_tone_hyp;
+  private String boundary_tone_dist;
+  private String phrase_accent_hyp;
+  private String phrase_accent_dist;
+
+  private String[] task_names;     // the task names, in sorted order
+  private String[] hyp_features;   // the hypothesis feature of each task
+  private String[] conf_features;  // the confidence feature of each task
+
+  /**
+   * Constructs a HypothesisWriter for a set of tasks.
+   *
+   * @param tasks  the tasks, indexed by task name
+   * @param format the output format
+   */
+  public HypothesisWriter(Map<String, AuToBITask> tasks, Format format) {
+    this.format = format;
+
+    accent_detection_hyp = getHypFeature(tasks, "pitch_accent_detection");
+    accent_detection_conf = getConfFeature(tasks, "pitch_accent_detection");
+    accent_detection_dist = getDistFeature(tasks, "pitch_accent_detection");
+    accent_classification_hyp = getHypFeature(tasks, "pitch_accent_classification");
+    accent_classification_dist = getDistFeature(tasks, "pitch_accent_classification");
+    intonational_boundary_hyp = getHypFeature(tasks, "intonational_phrase_boundary_detection");
+    intonational_boundary_conf = getConfFeature(tasks, "intonational_phrase_boundary_detection");
+    intonational_boundary_dist = getDistFeature(tasks, "intonational_phrase_boundary_detection");
+    intermediate_boundary_hyp = getHypFeature(tasks, "intermediate_phrase_boundary_detection");
+    intermediate_boundary_dist = getDistFeature(tasks, "intermediate_phrase_boundary_detection");
+    boundary_tone_hyp = getHypFeature(tasks, "phrase_accent_boundary_tone_classification");
+    boundary_tone_dist = getDistFeature(tasks, "phrase_accent_boundary_tone_classification");
+    phrase_accent_hyp = getHypFeature(tasks, "phrase_accent_classification");
+    phrase_accent_dist = getDistFeature(tasks, "phrase_accent_classification");
+
+    TreeMap<String, AuToBITask> sorted = new TreeMap<String, AuToBITask>(tasks);
+    task_names = new String[sorted.size()];
+    hyp_features = new String[sorted.size()];
+    conf_features = new String[sorted.size()];
+    int i = 0;
+    for (Map.Entry<String, AuToBITask> e : sorted.entrySet()) {
+      task_names[i] = e.getKey();
+      hyp_features[i] = e.getValue().getHypFeature();
+      conf_features[i] = e.getValue().getConfFeature();
+      ++i;
+    }
+  }
+
+  private static String getHypFeature(Map<String, AuToBITask> tasks, String task) {
+    return tasks.containsKey(task) ? tasks.get(task).getHypFeature() : null;
+  }
+
+  private static String getConfFeature(Map<String, AuToBITask> tasks, String task) {
+    return tasks.containsKey(task) ? tasks.get(task).getConfFeature() : null;
+  }
+
+  private static String getDistFeature(Map<String, AuToBITask> tasks, String task) {
+    return tasks.containsKey(task) ? tasks.get(task).getDistFeature() : null;
+  }
+
+  /**
+   * Parses an output format name.
+   *
+   * @param name the name of the format, "textgrid" or "jsonl"
+   * @return the format
+   * @throws AuToBIException if the name is not a known format
+   */
+  public static Format parseFormat(String name) throws AuToBIException {
+    if (name.equalsIgnoreCase("textgrid")) {
+      return Format.TEXTGRID;
+    } else if (name.equalsIgnoreCase("jsonl")) {
+      return Format.JSONL;
+    }
+    throw new AuToBIException("Unknown output format, " + name + ".  Valid formats are: textgrid, jsonl");
+  }
+
+  /**
+   * Retrieves the conventional file extension of an output format.
+   *
+   * @param format the format
+   * @return the extension, including the leading period
+   */
+  public static String getExtension(Format format) {
+    return format == Format.JSONL ? ".jsonl" : ".TextGrid";
+  }
+
+  /**
+   * Sets whether interval textgrids contain the hypothesized distributions of each task rather than the merged
+   * hypotheses.
+   *
+   * @param distributions if true, write distributions
+   */
+  public void setDistributions(boolean distributions) {
+    this.distributions = distributions;
+  }
+
+  /**
+   * Constructs merged hypotheses for phrase ending tones and pitch accents by merging hypotheses from the six
+   * detection and classification tasks.
+   * <p/>
+   * The merged hypotheses are stored on each word as "hyp_pitch_accent" and "hyp_phrase_boundary".
+   *
+   * @param words the words
+   */
+  public void mergeHypotheses(List<Word> words) {
+    for (Word word : words) {
+      mergeHypotheses(word);
+    }
+  }
+
+  /**
+   * Constructs the merged pitch accent and phrase boundary hypotheses of a word.
+   *
+   * @param word the word
+   */
+  public void mergeHypotheses(Word word) {
+    // Assigns pitch accents to words.  If only accent detection is available, a binary True/False hypothesis
+    // will be assigned.  If location and type hypotheses are available, the hypothesized type will be assigned.
+    // Finally, if only type information is available, every word will be assigned its best guess for accent type.
+    if (accent_detection_hyp != null && word.hasAttribute(accent_detection_hyp)) {
+      if (word.hasAttribute(accent_detection_conf)) {
+        Double conf = (Double) word.getAttribute(accent_detection_conf);
+        if (!word.getAttribute(accent_detection_hyp).equals("ACCENTED")) {
+          conf = 1 - conf;
+        }
+        word.setAttribute("hyp_pitch_accent", "ACCENTED: " + conf);
+      } else {
+        word.setAttribute("hyp_pitch_accent", word.getAttribute(accent_detection_hyp));
+      }
+    }
+    if (accent_classification_hyp != null && word.hasAttribute(accent_classification_hyp)) {
+      if (!word.hasAttribute("hyp_pitch_accent") || word.getAttribute("hyp_pitch_accent").equals("ACCENTED")) {
+        word.setAttribute("hyp_pitch_accent", word.getAttribute(accent_classification_hyp));
+      }
+    }
+
+    // Assigns phrase ending tones.
+    if (intonational_boundary_hyp != null && word.hasAttribute(intonational_boundary_hyp)) {
+      if (word.hasAttribute(intonational_boundary_conf)) {
+        Double conf = (Double) word.getAttribute(intonational_boundary_conf);
+        if (!word.getAttribute(intonational_boundary_hyp).equals("INTONATIONAL_BOUNDARY")) {
+          conf = 1 - conf;
+        }
+        word.setAttribute("hyp_phrase_boundary", "BOUNDARY: " + conf);
+      } else {
+        word.setAttribute("hyp_phrase_boundary", word.getAttribute(intonational_boundary_hyp));
+      }
+    }
+    if (intermediate_boundary_hyp != null && word.hasAttribute(intermediate_boundary_hyp)) {
+      if (!word.hasAttribute("hyp_phrase_boundary") ||
+          word.getAttribute("hyp_phrase_boundary").equals("NONBOUNDARY")) {
+        word.setAttribute("hyp_phrase_boundary", word.getAttribute(intermediate_boundary_hyp));
+      }
+    }
+    if (boundary_tone_hyp != null && word.hasAttribute(boundary_tone_hyp)) {
+      if (!word.hasAttribute("hyp_phrase_boundary") ||
+          word.getAttribute("hyp_phrase_boundary").equals("INTONATIONAL_BOUNDARY")) {
+        word.setAttribute("hyp_phrase_boundary", word.getAttribute(boundary_tone_hyp.replace("x", "%")));
+      }
+    }
+    if (phrase_accent_hyp != null && word.hasAttribute(phrase_accent_hyp)) {
+      if (!word.hasAttribute("hyp_phrase_boundary") ||
+          word.getAttribute("hyp_phrase_boundary").equals("INTERMEDIATE_BOUNDARY")) {
+        word.setAttribute("hyp_phrase_boundary", word.getAttribute(phrase_accent_hyp));
+      }
+    }
+  }
+
+  /**
+   * Writes the hypotheses of a list of words to a file in the output format of this writer.
+   *
+   * @param words    the words, with merged hypotheses
+   * @param filename the destination file
+   * @throws IOException if the file cannot be written
+   */
+  public void write(List<Word> words, String filename) throws IOException {
+    AuToBIFileWriter writer = new AuToBIFileWriter(filename);
+    try {
+      write(words, writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the hypotheses of a list of words in the output format of this writer.
+   *
+   * @param words  the words, with merged hypotheses
+   * @param writer the destination
+   * @throws IOException if the hypotheses cannot be written
+   */
+  public void write(List<Word> words, Writer writer) throws IOException {
+    if (format == Format.JSONL) {
+      writeJsonLines(words, writer);
+    } else {
+      writeTextGrid(words, writer);
+    }
+  }
+
+  /**
+   * Writes a TextGrid representation of hypothesized ToBI labels that looks like a manual annotation.
+   * <p/>
+   * Specifically, Pitch accents appear as points in the middle of the accented region.  Phrase ending tones
+   * are points at the end of the region.  A breaks tier is included.  Currently the only predicted break indices
+   * are 1, 3, and 4.  3 and 4 are derived from intonational and intermediate phrase boundary detection.
+   *
+   * @param words  the words, with merged hypotheses
+   * @param writer the destination
+   * @throws IOException if the textgrid cannot be written
+   */
+  public void writeTextGrid(List<Word> words, Writer writer) throws IOException {
+    String xmax = String.valueOf(words.get(words.size() - 1).getEnd());
+
+    // The size of the tones tier precedes its points, so count them before writing anything.
+    int num_tones = 0;
+    for (Word w : words) {
+      if (isAccented(w)) {
+        ++num_tones;
+      }
+      if (isBoundary(w)) {
+        ++num_tones;
+      }
+    }
+
+    writeHeader(writer, xmax, 3);
+    writeTierHeader(writer, 1, "TextTier", "tones", xmax);
+    writer.write("points: size = " + num_tones + "\n");
+    writeTonePoints(words, writer, 1);
+
+    writeTierHeader(writer, 2, "IntervalTier", "words", xmax);
+    writer.write("intervals: size = " + words.size() + "\n");
+    writeWordIntervals(words, writer, 0);
+
+    writeTierHeader(writer, 3, "TextTier", "breaks", xmax);
+    writer.write("points: size = " + words.size() + "\n");
+    writeBreakPoints(words, writer, 0);
+  }
+
+  /**
+   * Writes the points of the tones tier for a list of words.
+   *
+   * @param words    the words, with merged hypotheses
+   * @param writer   the destination
+   * @param tone_num the index of the point preceding the first point to write
+   * @return the index of the last point written
+   * @throws IOException if the points cannot be written
+   */
+  private int writeTonePoints(List<Word> words, Writer writer, int tone_num) throws IOException {
+    for (Word w : words) {
+      if (isAccented(w)) {
+        writer.write("points [" + (++tone_num) + "]:\n");
+        writer.write("time = " + (w.getStart() + w.getDuration() / 2) + "\n");
+        writer.write("mark = \"" + w.getAttribute("hyp_pitch_accent").toString() + "\"\n");
+      }
+      if (isBoundary(w)) {
+        writer.write("points [" + (++tone_num) + "]:\n");
+        writer.write("time = " + w.getEnd() + "\n");
+        writer.write("mark = \"" + w.getAttribute("hyp_phrase_boundary").toString() + "\"\n");
+      }
+    }
+    return tone_num;
+  }
+
+  /**
+   * Writes the intervals of the words tier for a list of words.
+   *
+   * @param words  the words
+   * @param writer the destination
+   * @param offset the number of intervals preceding the words
+   * @throws IOException if the intervals cannot be written
+   */
+  private void writeWordIntervals(List<Word> words, Writer writer, int offset) throws IOException {
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+      writeInterval(writer, offset + i + 1, w, w.getLabel());
+    }
+  }
+
+  /**
+   * Writes the points of the breaks tier for a list of words.
+   *
+   * @param words  the words
+   * @param writer the destination
+   * @param offset the number of points preceding the words
+   * @throws IOException if the points cannot be written
+   */
+  private void writeBreakPoints(List<Word> words, Writer writer, int offset) throws IOException {
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+
+      String b_label = "1";
+      if (intonational_boundary_hyp != null && w.hasAttribute(intonational_boundary_hyp) &&
+          w.getAttribute(intonational_boundary_hyp).equals("INTONATIONAL_BOUNDARY")) {
+        b_label = "4";
+      } else if (intonational_boundary_hyp != null && intermediate_boundary_hyp != null &&
+          w.hasAttribute(intermediate_boundary_hyp) &&
+          w.getAttribute(intermediate_boundary_hyp).equals("INTERMEDIATE_BOUNDARY")) {
+        b_label = "3";
+      }
+      writer.write("points [" + (offset + i + 1) + "]:\n");
+      writer.write("time = " + w.getEnd() + "\n");
+      writer.write("mark = \"" + b_label + "\"\n");
+    }
+  }
+
+  /**
+   * Writes a TextGrid representation of the words and hypothesized ToBI labels.
+   * <p/>
+   * Predicted pitch accents and boundary tones each appear on a separate interval tier with the same number of
+   * regions.
+   *
+   * @param words  the words, with merged hypotheses
+   * @param writer the destination
+   * @throws IOException if the textgrid cannot be written
+   */
+  public void writeIntervalTextGrid(List<Word> words, Writer writer) throws IOException {
+    String xmax = String.valueOf(words.get(words.size() - 1).getEnd());
+
+    writeHeader(writer, xmax, 3);
+    writeTierHeader(writer, 1, "IntervalTier", "words", xmax);
+    writer.write("intervals: size = " + words.size() + "\n");
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+      writeInterval(writer, i + 1, w, w.getLabel());
+    }
+
+    writeTierHeader(writer, 2, "IntervalTier", "pitch_accent_hypothesis", xmax);
+    writer.write("intervals: size = " + words.size() + "\n");
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+      String text = "";
+      if (distributions) {
+        text = appendValue(text, w, accent_detection_dist);
+        text = appendValue(text, w, accent_classification_dist);
+      } else if (w.hasAttribute("hyp_pitch_accent")) {
+        text = w.getAttribute("hyp_pitch_accent").toString();
+      }
+      writeInterval(writer, i + 1, w, text);
+    }
+
+    writeTierHeader(writer, 3, "IntervalTier", "phrase_hypothesis", xmax);
+    writer.write("intervals: size = " + words.size() + "\n");
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+      String text = "";
+      if (distributions) {
+        if (intonational_boundary_dist != null && w.hasAttribute(intonational_boundary_dist)) {
+          text = w.getAttribute(intonational_boundary_dist).toString();
+        }
+        if (intermediate_boundary_dist != null && w.hasAttribute(intermediate_boundary_dist)) {
+          text = w.getAttribute(intermediate_boundary_dist).toString();
+        }
+        text = appendValue(text, w, boundary_tone_dist);
+        text = appendValue(text, w, phrase_accent_dist);
+      } else if (w.hasAttribute("hyp_phrase_boundary")) {
+        text = w.getAttribute("hyp_phrase_boundary").toString();
+      }
+      writeInterval(writer, i + 1, w, text);
+    }
+  }
+
+  /**
+   * Writes the hypotheses of each word as a JSON object on its own line.
+   * <p/>
+   * Each object contains the file, start and end times and label of the word, the merged "pitch_accent" and
+   * "phrase_boundary" hypotheses, if any, and objects holding the "hypotheses" and "confidences" of each task that
+   * has assigned one to the word.
+   *
+   * @param words  the words
+   * @param writer the destination
+   * @throws IOException if the hypotheses cannot be written
+   */
+  public void writeJsonLines(List<Word> words, Writer writer) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (Word w : words) {
+      sb.setLength(0);
+      sb.append("{");
+      if (w.getFile() != null) {
+        sb.append("\"file\": ").append(AuToBIUtils.quoteJson(w.getFile())).append(", ");
+      }
+      sb.append("\"start\": ").append(w.getStart());
+      sb.append(", \"end\": ").append(w.getEnd());
+      sb.append(", \"label\": ").append(w.getLabel() == null ? "null" : AuToBIUtils.quoteJson(w.getLabel()));
+      if (w.hasAttribute("hyp_pitch_accent")) {
+        sb.append(", \"pitch_accent\": ").append(jsonValue(w.getAttribute("hyp_pitch_accent")));
+      }
+      if (w.hasAttribute("hyp_phrase_boundary")) {
+        sb.append(", \"phrase_boundary\": ").append(jsonValue(w.getAttribute("hyp_phrase_boundary")));
+      }
+      appendTaskValues(sb, w, "hypotheses", hyp_features);
+      appendTaskValues(sb, w, "confidences", conf_features);
+      sb.append("}\n");
+      writer.write(sb.toString());
+    }
+  }
+
+  /**
+   * Opens a stream that writes hypotheses to a file one list of words at a time.
+   *
+   * @param filename the destination file
+   * @return the stream
+   */
+  public HypothesisStream open(String filename) {
+    return new HypothesisStream(filename);
+  }
+
+  /**
+   * Writes the hypotheses of successive lists of words, e.g., the chunks of a long file, to a single file.
+   * <p/>
+   * Only the words of the current list are held.  JSON lines are appended to the file, and flushed, as each list is
+   * written.  The sizes of the TextGrid tiers are only known once every list has been written, so the body of each
+   * tier is spilled to a temporary file and the TextGrid is assembled when the stream is closed.  No file is written
+   * if the stream receives no words.
+   */
+  public class HypothesisStream implements Closeable {
+    private final String filename;
+    private Writer jsonl;                                // the JSON lines output, opened with the first words
+    private final File[] tier_files = new File[3];       // the spilled body of each TextGrid tier
+    private final Writer[] tiers = new Writer[3];
+    private int num_words;                               // the number of words written so far
+    private int tone_num = 1;                            // the index of the last tone point written
+    private double xmax;                                 // the end of the last word written
+
+    private HypothesisStream(String filename) {
+      this.filename = filename;
+    }
+
+    /**
+     * Writes the hypotheses of a list of words, following those of any previous lists.
+     *
+     * @param words the words, with merged hypotheses, in time order
+     * @throws IOException if the hypotheses cannot be written
+     */
+    public void write(List<Word> words) throws IOException {
+      if (words.isEmpty()) {
+        return;
+      }
+      if (format == Format.JSONL) {
+        if (jsonl == null) {
+          jsonl = new AuToBIFileWriter(filename);
+        }
+        writeJsonLines(words, jsonl);
+        jsonl.flush();
+      } else {
+        if (tiers[0] == null) {
+          for (int i = 0; i < tiers.length; ++i) {
+            tier_files[i] = File.createTempFile("autobi_tier", ".tmp");
+            tier_files[i].deleteOnExit();
+            tiers[i] = new AuToBIFileWriter(tier_files[i].getPath());
+          }
+        }
+        tone_num = writeTonePoints(words, tiers[0], tone_num);
+        writeWordIntervals(words, tiers[1], num_words);
+        writeBreakPoints(words, tiers[2], num_words);
+      }
+      num_words += words.size();
+      xmax = words.get(words.size() - 1).getEnd();
+    }
+
+    /**
+     * Retrieves the number of words written to the stream.
+     *
+     * @return the number of words
+     */
+    public int size() {
+      return num_words;
+    }
+
+    /**
+     * Completes the output file and releases the temporary files of the stream.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    public void close() throws IOException {
+      try {
+        if (jsonl != null) {
+          jsonl.close();
+        }
+        if (tiers[0] != null) {
+          for (Writer tier : tiers) {
+            tier.close();
+          }
+          String xmax_str = String.valueOf(xmax);
+          AuToBIFileWriter writer = new AuToBIFileWriter(filename);
+          try {
+            writeHeader(writer, xmax_str, 3);
+            writeTierHeader(writer, 1, "TextTier", "tones", xmax_str);
+            writer.write("points: size = " + (tone_num - 1) + "\n");
+            copy(tier_files[0], writer);
+            writeTierHeader(writer, 2, "IntervalTier", "words", xmax_str);
+            writer.write("intervals: size = " + num_words + "\n");
+            copy(tier_files[1], writer);
+            writeTierHeader(writer, 3, "TextTier", "breaks", xmax_str);
+            writer.write("points: size = " + num_words + "\n");
+            copy(tier_files[2], writer);
+          } finally {
+            writer.close();
+          }
+        }
+      } finally {
+        releaseTiers();
+      }
+    }
+
+    /**
+     * Abandons the stream.  Temporary files are released and no TextGrid is assembled.  JSON lines that have already
+     * been written remain in the output file.
+     */
+    public void abort() {
+      try {
+        if (jsonl != null) {
+          jsonl.close();
+        }
+      } catch (IOException e) {
+        AuToBIUtils.warn("Unable to close " + filename + ": " + e.getMessage());
+      }
+      releaseTiers();
+    }
+
+    private void releaseTiers() {
+      for (int i = 0; i < tiers.length; ++i) {
+        if (tiers[i] != null) {
+          try {
+            tiers[i].close();
+          } catch (IOException e) {
+            AuToBIUtils.debug("Unable to close temporary tier file: " + e.getMessage());
+          }
+          tiers[i] = null;
+        }
+        if (tier_files[i] != null) {
+          if (!tier_files[i].delete()) {
+            AuToBIUtils.debug("Unable to delete temporary tier file, " + tier_files[i]);
+          }
+          tier_files[i] = null;
+        }
+      }
+    }
+  }
+
+  private static void copy(File file, Writer writer) throws IOException {
+    Reader reader = new BufferedReader(new FileReader(file));
+    try {
+      char[] buffer = new char[8192];
+      int n;
+      while ((n = reader.read(buffer)) > 0) {
+        writer.write(buffer, 0, n);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Generates a string containing the hypotheses of a list of words in the output format of this writer.
+   *
+   * @param words the words, with merged hypotheses
+   * @return the serialized hypotheses
+   */
+  public String toString(List<Word> words) {
+    StringWriter writer = new StringWriter();
+    try {
+      write(words, writer);
+    } catch (IOException e) {
+      // StringWriters do not throw IOExceptions.
+      throw new RuntimeException(e);
+    }
+    return writer.toString();
+  }
+
+  private boolean isAccented(Word w) {
+    return w.hasAttribute("hyp_pitch_accent") && !w.getAttribute("hyp_pitch_accent").equals("DEACCENTED");
+  }
+
+  private boolean isBoundary(Word w) {
+    return w.hasAttribute("hyp_phrase_boundary") && !w.getAttribute("hyp_phrase_boundary").equals("NONBOUNDARY");
+  }
+
+  private static String appendValue(String text, Word w, String feature) {
+    if (feature != null && w.hasAttribute(feature)) {
+      return text + w.getAttribute(feature).toString();
+    }
+    return text;
+  }
+
+  private static void writeHeader(Writer writer, String xmax, int size) throws IOException {
+    writer.write("File type = \"ooTextFile\"\n");
+    writer.write("Object class = \"TextGrid\"\n");
+    writer.write("xmin = 0\n");
+    writer.write("xmax = " + xmax + "\n");
+    writer.write("tiers? <exists>\n");
+    writer.write("size = " + size + "\n");
+    writer.write("item []:\n");
+  }
+
+  private static void writeTierHeader(Writer writer, int item, String tier_class, String name, String xmax)
+      throws IOException {
+    writer.write("item [" + item + "]:\n");
+    writer.write("class = \"" + tier_class + "\"\n");
+    writer.write("name = \"" + name + "\"\n");
+    writer.write("xmin = 0\n");
+    writer.write("xmax = " + xmax + "\n");
+  }
+
+  private static void writeInterval(Writer writer, int index, Word w, String text) throws IOException {
+    writer.write("intervals [" + index + "]:\n");
+    writer.write("xmin = " + w.getStart() + "\n");
+    writer.write("xmax = " + w.getEnd() + "\n");
+    writer.write("text = \"" + text + "\"\n");
+  }
+
+  private void appendTaskValues(StringBuilder sb, Word w, String key, String[] features) {
+    boolean first = true;
+    for (int i = 0; i < task_names.length; ++i) {
+      if (features[i] == null || !w.hasAttribute(features[i])) {
+        continue;
+      }
+      sb.append(first ? ", " + AuToBIUtils.quoteJson(key) + ": {" : ", ");
+      first = false;
+      sb.append(AuToBIUtils.quoteJson(task_names[i])).append(": ").append(jsonValue(w.getAttribute(features[i])));
+    }
+    if (!first) {
+      sb.append("}");
+    }
+  }
+
+  private static String jsonValue(Object value) {
+    if (value instanceof Boolean || (value instanceof Number && !Double.isNaN(((Number) value).doubleValue()) &&
+        !Double.isInfinite(((Number) value).doubleValue()))) {
+      return value.toString();
+    }
+    return AuToBIUtils.quoteJson(String.valueOf(value));
+  }
+}
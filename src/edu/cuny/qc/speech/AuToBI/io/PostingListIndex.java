@@ -0,0 +1,370 @@
+/*  PostingListIndex.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * PostingListIndex holds the hits of an IBM formatted keyword search posting list, grouped by source file.
+ * <p/>
+ * A posting list is typically read against many audio files, one PostingListReader per file.  The index parses the
+ * posting list once and is shared by every reader of the same file, so that each reader retrieves the hits of its
+ * file without scanning the posting list again.  Indices are reloaded if the posting list changes on disk.
+ * <p/>
+ * Optionally, the parsed hits are written to a binary cache file alongside the posting list.  Later runs memory-map
+ * the cache rather than parsing the XML.  The cache records the length and modification time of the posting list and
+ * is ignored if either has changed.
+ */
+public class PostingListIndex {
+  public static final String CACHE_EXTENSION = ".hits";  // appended to the posting list filename
+
+  private static final int CACHE_MAGIC = 0x4155504c;
+  private static final int CACHE_VERSION = 1;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final Map<String, PostingListIndex> indices = new HashMap<String, PostingListIndex>();
+
+  private final long source_length;         // the length of the posting list when it was indexed
+  private final long source_modified;       // the modification time of the posting list when it was indexed
+  private final Map<String, Hits> hits;     // the hits of each source file stem
+
+  /**
+   * The hits in one source file, sorted by start time.
+   */
+  private static class Hits {
+    private final String[] labels;
+    private final double[] starts;
+    private final double[] ends;
+
+    private Hits(int size) {
+      labels = new String[size];
+      starts = new double[size];
+      ends = new double[size];
+    }
+  }
+
+  private PostingListIndex(long source_length, long source_modified, Map<String, Hits> hits) {
+    this.source_length = source_length;
+    this.source_modified = source_modified;
+    this.hits = hits;
+  }
+
+  /**
+   * Retrieves the shared index of a posting list, loading it if necessary.
+   *
+   * @param filename  the posting list filename
+   * @param use_cache if true, read the hits from the binary cache file if it is current, and write the cache file if
+   *                  it is not
+   * @return the index
+   * @throws IOException     if the posting list cannot be read
+   * @throws AuToBIException if the posting list is malformed
+   */
+  public static PostingListIndex getIndex(String filename, boolean use_cache) throws IOException, AuToBIException {
+    File file = new File(filename);
+    if (!file.exists()) {
+      throw new FileNotFoundException(filename);
+    }
+    String key = file.getCanonicalPath();
+    synchronized (indices) {
+      PostingListIndex index = indices.get(key);
+      if (index == null || index.source_length != file.length() || index.source_modified != file.lastModified()) {
+        index = load(file, use_cache);
+        indices.put(key, index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Releases all shared indices.
+   */
+  public static void clear() {
+    synchronized (indices) {
+      indices.clear();
+    }
+  }
+
+  /**
+   * Loads an index from the cache file, if it is current, or by parsing the posting list.
+   *
+   * @param file      the posting list
+   * @param use_cache if true, use or write the cache file
+   * @return the index
+   * @throws IOException     if the posting list cannot be read
+   * @throws AuToBIException if the posting list is malformed
+   */
+  private static PostingListIndex load(File file, boolean use_cache) throws IOException, AuToBIException {
+    File cache = new File(file.getPath() + CACHE_EXTENSION);
+    if (use_cache && cache.exists()) {
+      PostingListIndex index = readCache(cache, file.length(), file.lastModified());
+      if (index != null) {
+        return index;
+      }
+    }
+    PostingListIndex index = parse(file);
+    if (use_cache) {
+      try {
+        index.writeCache(cache);
+      } catch (IOException e) {
+        AuToBIUtils.warn("Unable to write posting list cache " + cache + ": " + e.getMessage());
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Parses a posting list.
+   * <p/>
+   * Each &lt;detected_kwlist&gt; line starts a keyword; each &lt;kw&gt; line within it is a hit, labeled by the
+   * keyword id and the position of the hit in the keyword's list.
+   *
+   * @param file the posting list
+   * @return the index
+   * @throws IOException     if the posting list cannot be read
+   * @throws AuToBIException if a hit has no start time or duration
+   */
+  static PostingListIndex parse(File file) throws IOException, AuToBIException {
+    long length = file.length();
+    long modified = file.lastModified();
+
+    Map<String, List<Integer>> order = new LinkedHashMap<String, List<Integer>>();
+    List<String> labels = new ArrayList<String>();
+    List<double[]> times = new ArrayList<double[]>();
+
+    AuToBIFileReader reader = new AuToBIFileReader(file.getPath());
+    try {
+      String line;
+      String kwid = "";
+      int idx = 0;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("<detected_kwlist")) {
+          String value = getAttributeValue(line, "kwid");
+          kwid = value == null ? line : value;
+          idx = 0;
+        }
+        if (line.startsWith("<kw ")) {
+          String stem = getAttributeValue(line, "file");
+          if (stem != null) {
+            String dur = getAttributeValue(line, "dur");
+            String start = getAttributeValue(line, "tbeg");
+            if (dur == null || start == null) {
+              throw new AuToBIException("Malformed posting list hit on line " + reader.getLineNumber() + " of " +
+                  file.getPath());
+            }
+            double s = Double.parseDouble(start);
+            List<Integer> hits = order.get(stem);
+            if (hits == null) {
+              hits = new ArrayList<Integer>();
+              order.put(stem, hits);
+            }
+            hits.add(labels.size());
+            labels.add(kwid + "_" + idx);
+            times.add(new double[]{s, s + Double.parseDouble(dur)});
+          }
+          idx++;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    Map<String, Hits> hits = new HashMap<String, Hits>();
+    for (Map.Entry<String, List<Integer>> e : order.entrySet()) {
+      List<Integer> h = e.getValue();
+      final List<double[]> t = times;
+      // Sort identified hits by time.  The sort is stable, so hits with the same start keep their order.
+      Collections.sort(h, new Comparator<Integer>() {
+        public int compare(Integer o1, Integer o2) {
+          return Double.compare(t.get(o1)[0], t.get(o2)[0]);
+        }
+      });
+      Hits stem_hits = new Hits(h.size());
+      for (int i = 0; i < h.size(); ++i) {
+        stem_hits.labels[i] = labels.get(h.get(i));
+        stem_hits.starts[i] = times.get(h.get(i))[0];
+        stem_hits.ends[i] = times.get(h.get(i))[1];
+      }
+      hits.put(e.getKey(), stem_hits);
+    }
+    return new PostingListIndex(length, modified, hits);
+  }
+
+  /**
+   * Retrieves the value of the first occurrence of an attribute on a line.
+   *
+   * @param line the line
+   * @param name the attribute name
+   * @return the value between the quotes following name=, or null if the attribute is absent
+   */
+  static String getAttributeValue(String line, String name) {
+    String key = name + "=\"";
+    int start = line.indexOf(key);
+    if (start < 0) {
+      return null;
+    }
+    start += key.length();
+    int end = line.indexOf('"', start);
+    if (end <= start) {
+      return null;
+    }
+    return line.substring(start, end);
+  }
+
+  /**
+   * Reads an index from a cache file.
+   *
+   * @param cache           the cache file
+   * @param source_length   the current length of the posting list
+   * @param source_modified the current modification time of the posting list
+   * @return the index, or null if the cache is not current or is unreadable
+   */
+  static PostingListIndex readCache(File cache, long source_length, long source_modified) {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(cache, "r");
+      FileChannel channel = raf.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION) {
+        return null;
+      }
+      if (buffer.getLong() != source_length || buffer.getLong() != source_modified) {
+        return null;
+      }
+      int num_stems = buffer.getInt();
+      Map<String, Hits> hits = new HashMap<String, Hits>();
+      for (int i = 0; i < num_stems; ++i) {
+        String stem = readString(buffer);
+        Hits stem_hits = new Hits(buffer.getInt());
+        for (int j = 0; j < stem_hits.labels.length; ++j) {
+          stem_hits.labels[j] = readString(buffer);
+          stem_hits.starts[j] = buffer.getDouble();
+          stem_hits.ends[j] = buffer.getDouble();
+        }
+        hits.put(stem, stem_hits);
+      }
+      return new PostingListIndex(source_length, source_modified, hits);
+    } catch (IOException e) {
+      AuToBIUtils.warn("Unable to read posting list cache " + cache + ": " + e.getMessage());
+      return null;
+    } catch (RuntimeException e) {
+      AuToBIUtils.warn("Corrupt posting list cache " + cache + ": " + e);
+      return null;
+    } finally {
+      if (raf != null) {
+        try {
+          raf.close();
+        } catch (IOException e) {
+          AuToBIUtils.warn("Unable to close posting list cache " + cache + ": " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private static String readString(MappedByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  /**
+   * Writes the index to a cache file.
+   * <p/>
+   * The cache is written to a temporary file which then replaces the cache file, so that concurrent runs never read a
+   * partial cache.
+   *
+   * @param cache the cache file
+   * @throws IOException if the cache cannot be written
+   */
+  void writeCache(File cache) throws IOException {
+    File parent = cache.getAbsoluteFile().getParentFile();
+    File tmp = File.createTempFile(cache.getName(), ".tmp", parent);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(CACHE_MAGIC);
+      out.writeInt(CACHE_VERSION);
+      out.writeLong(source_length);
+      out.writeLong(source_modified);
+      out.writeInt(hits.size());
+      for (Map.Entry<String, Hits> e : hits.entrySet()) {
+        writeString(out, e.getKey());
+        Hits stem_hits = e.getValue();
+        out.writeInt(stem_hits.labels.length);
+        for (int j = 0; j < stem_hits.labels.length; ++j) {
+          writeString(out, stem_hits.labels[j]);
+          out.writeDouble(stem_hits.starts[j]);
+          out.writeDouble(stem_hits.ends[j]);
+        }
+      }
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(cache)) {
+      cache.delete();
+      if (!tmp.renameTo(cache)) {
+        tmp.delete();
+        throw new IOException("Unable to move " + tmp + " to " + cache);
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Retrieves the hits in a source file as words, sorted by start time.
+   * <p/>
+   * New Word objects are constructed on each call, so callers may modify them freely.
+   *
+   * @param stem the source file stem
+   * @return the hits, with the stem as their filename
+   */
+  public List<Word> getWords(String stem) {
+    Hits stem_hits = hits.get(stem);
+    if (stem_hits == null) {
+      return new ArrayList<Word>();
+    }
+    List<Word> words = new ArrayList<Word>(stem_hits.labels.length);
+    for (int i = 0; i < stem_hits.labels.length; ++i) {
+      words.add(new Word(stem_hits.starts[i], stem_hits.ends[i], stem_hits.labels[i], null, stem));
+    }
+    return words;
+  }
+
+  /**
+   * @return the source file stems with at least one hit
+   */
+  public Set<String> getStems() {
+    return Collections.unmodifiableSet(hits.keySet());
+  }
+}
@@ -28,64 +28,41 @@ import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
  * An AuToBIWordReader that is used to read IBM Formatted Keyword Search Posting Lists.
  * <p/>
- * These are formatted as XML files.
+ * These are formatted as XML files.  The posting list is parsed once into a PostingListIndex shared by every reader of
+ * the same file, so reading a posting list against many audio files does not rescan it for each one.
+ *
+ * @see PostingListIndex
  */
 public class PostingListReader extends AuToBIWordReader {
   private final String filename;  // The filename to read posting list results from
   private final String target_stem;
   // The source file containing the desired hits.  This indicates which audio file is being processed.
+  private final boolean use_cache;  // if true, the parsed hits are cached on disk
 
   public PostingListReader(String filename, String target_stem) {
+    this(filename, target_stem, false);
+  }
+
+  /**
+   * Constructs a PostingListReader.
+   *
+   * @param filename    the posting list filename
+   * @param target_stem the source file whose hits are read
+   * @param use_cache   if true, the parsed hits are cached in a binary file alongside the posting list
+   */
+  public PostingListReader(String filename, String target_stem, boolean use_cache) {
     this.filename = filename;
     this.target_stem = target_stem;
+    this.use_cache = use_cache;
   }
 
   @Override
   public List<Word> readWords() throws IOException, AuToBIException {
-    AuToBIFileReader reader = new AuToBIFileReader(filename);
-    List<Word> words = new ArrayList<Word>();
-
-    String line;
-    String kwid = "";
-    String stem_pattern = "(.*?file=\")(.+?)(\".*$)";
-    String start_pattern = "(.*?tbeg=\")(.+?)(\".*$)";
-    String dur_pattern = "(.*?dur=\")(.+?)(\".*$)";
-
-    String kwid_pattern = "(.*?kwid=\")(.+?)(\".*$)";
-    int idx = 0;
-    while ((line = reader.readLine()) != null) {
-      if (line.startsWith("<detected_kwlist")) {
-        kwid = line.replaceAll(kwid_pattern, "$2");
-        idx = 0;
-      }
-      if (line.startsWith("<kw ")) {
-        String stem = line.replaceAll(stem_pattern, "$2");
-        // Make sure that the words contain their origin stem as their filename.
-        if (stem.equals(target_stem)) {
-          double dur = Double.parseDouble(line.replaceAll(dur_pattern, "$2"));
-          double start = Double.parseDouble(line.replaceAll(start_pattern, "$2"));
-          words.add(new Word(start, start + dur, kwid + "_" + idx, null, stem));
-        }
-        idx++;
-      }
-    }
-
-    // Sort identified hits by time.
-    Collections.sort(words, new Comparator<Word>() {
-      public int compare(Word o1, Word o2) {
-        return Double.compare(o1.getStart(), o2.getStart());
-      }
-    });
-
-    reader.close();
-    return words;
+    return PostingListIndex.getIndex(filename, use_cache).getWords(target_stem);
   }
 }
@@ -0,0 +1,305 @@
+/*  PseudosyllableChunkReader.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.WavData;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.core.syllabifier.Syllabifier;
+import edu.cuny.qc.speech.AuToBI.core.syllabifier.VillingSyllabifier;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PseudosyllableChunkReader generates pseudosyllable "words" from successive fixed length chunks of a wav file.
+ * <p/>
+ * Only the audio of the current chunk, plus the surrounding overlap, is held in memory.  Each chunk is syllabified
+ * over a window that extends the chunk by the overlap on either side, so syllables that cross a chunk boundary are
+ * detected with their full acoustic context.  A syllable belongs to the chunk containing its midpoint, and a syllable
+ * that would overlap the last syllable of the previous chunk is trimmed to start at its end.  A final chunk shorter
+ * than half the chunk duration is merged into the preceding chunk.
+ * <p/>
+ * As in PseudosyllableWordReader, regions whose maximum intensity falls more than the silence threshold below the
+ * loudest region are discarded.  Here the loudest region is found within each window rather than the whole file.
+ * <p/>
+ * The words and audio of each chunk are in window time, i.e., the window starts at time zero.  Chunk.getOffset()
+ * converts them to file time.
+ *
+ * @see PseudosyllableWordReader
+ */
+public class PseudosyllableChunkReader {
+  private AudioInputStream stream;        // the audio stream
+  private WavReader wav_reader;           // reads blocks of audio from the stream
+  private String filename;                // the wav filename
+  private float sample_rate;              // the sample rate of the stream
+  private int chunk_frames;               // the number of frames in each chunk
+  private int overlap_frames;             // the number of frames of context on either side of a chunk
+  private double threshold;               // the silence threshold in mean dB in the region
+  private Syllabifier syllabifier;        // the pseudosyllabification algorithm
+
+  private double[][] buffer;              // the buffered samples of each channel
+  private int buffer_length;              // the number of buffered frames
+  private long buffer_start;              // the file frame of the first buffered frame
+  private boolean exhausted;              // true if the stream has been read completely
+  private WavData format;                 // the format of the stream
+  private long chunk_start;               // the file frame of the start of the next chunk
+  private int chunk_index;                // the index of the next chunk
+  private double last_end;                // the end, in file time, of the last word generated
+
+  /**
+   * A chunk of audio and the pseudosyllables it contains.
+   */
+  public static class Chunk {
+    private final int index;
+    private final double offset;
+    private final WavData wav;
+    private final List<Word> words;
+
+    /**
+     * Constructs a new Chunk.
+     *
+     * @param index  the index of the chunk in the file
+     * @param offset the file time of the start of the window
+     * @param wav    the audio of the window
+     * @param words  the pseudosyllables of the chunk, in window time
+     */
+    public Chunk(int index, double offset, WavData wav, List<Word> words) {
+      this.index = index;
+      this.offset = offset;
+      this.wav = wav;
+      this.words = words;
+    }
+
+    /**
+     * Retrieves the index of the chunk in the file.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * Retrieves the file time of the start of the window.
+     *
+     * @return the offset in seconds
+     */
+    public double getOffset() {
+      return offset;
+    }
+
+    /**
+     * Retrieves the audio of the window.
+     *
+     * @return the wav data
+     */
+    public WavData getWav() {
+      return wav;
+    }
+
+    /**
+     * Retrieves the pseudosyllables of the chunk, in window time.
+     *
+     * @return the words
+     */
+    public List<Word> getWords() {
+      return words;
+    }
+  }
+
+  /**
+   * Constructs a new PseudosyllableChunkReader.
+   *
+   * @param filename       the wav file
+   * @param chunk_duration the duration of each chunk in seconds
+   * @param overlap        the duration of context on either side of a chunk in seconds
+   * @param threshold      the silence threshold in mean dB
+   * @throws IOException                   if the file cannot be read
+   * @throws UnsupportedAudioFileException if there is a problem with the audio file format
+   * @throws AuToBIException               if the file does not exist or the chunk duration is not positive
+   */
+  public PseudosyllableChunkReader(String filename, double chunk_duration, double overlap, double threshold)
+      throws IOException, UnsupportedAudioFileException, AuToBIException {
+    File file = new File(filename);
+    if (!file.exists()) {
+      throw new AuToBIException("Wav file does not exist: " + filename);
+    }
+    this.stream = AudioSystem.getAudioInputStream(new BufferedInputStream(new FileInputStream(file)));
+    this.wav_reader = new WavReader();
+    this.filename = filename;
+    this.sample_rate = stream.getFormat().getFrameRate();
+    this.chunk_frames = (int) Math.round(chunk_duration * sample_rate);
+    this.overlap_frames = (int) Math.max(0, Math.round(overlap * sample_rate));
+    if (chunk_frames <= 0) {
+      throw new AuToBIException("Chunk duration must be positive: " + chunk_duration);
+    }
+    this.threshold = threshold;
+    this.syllabifier = new VillingSyllabifier();
+
+    this.buffer = new double[stream.getFormat().getChannels()][0];
+    this.buffer_length = 0;
+    this.buffer_start = 0;
+    this.exhausted = false;
+    this.chunk_start = 0;
+    this.chunk_index = 0;
+    this.last_end = 0.0;
+  }
+
+  /**
+   * Sets the syllabifier used to generate pseudosyllable regions.  VillingSyllabifier is used by default.
+   *
+   * @param syllabifier the syllabifier
+   */
+  public void setSyllabifier(Syllabifier syllabifier) {
+    this.syllabifier = syllabifier;
+  }
+
+  /**
+   * Reads and syllabifies the next chunk.
+   *
+   * @return the next chunk, or null if the file has been read completely
+   * @throws IOException     if the file cannot be read
+   * @throws AuToBIException if the chunk cannot be syllabified
+   */
+  public Chunk next() throws IOException, AuToBIException {
+    long chunk_end = chunk_start + chunk_frames;
+    // Read far enough ahead to know whether the remainder of the file should be merged into this chunk.
+    fill(chunk_end + Math.max(overlap_frames, chunk_frames / 2));
+    long file_end = buffer_start + buffer_length;
+    if (chunk_start >= file_end) {
+      return null;
+    }
+    boolean last = exhausted && file_end - chunk_end < chunk_frames / 2;
+    if (last) {
+      chunk_end = file_end;
+    }
+
+    long window_start = Math.max(0, chunk_start - overlap_frames);
+    long window_end = Math.min(file_end, chunk_end + overlap_frames);
+    WavData wav = new WavData();
+    wav.numberOfChannels = format.numberOfChannels;
+    wav.sampleSize = format.sampleSize;
+    wav.sampleRate = format.sampleRate;
+    wav.samples = new double[buffer.length][];
+    for (int c = 0; c < buffer.length; ++c) {
+      wav.samples[c] = new double[(int) (window_end - window_start)];
+      System.arraycopy(buffer[c], (int) (window_start - buffer_start), wav.samples[c], 0, wav.samples[c].length);
+    }
+    wav.setFilename(filename);
+
+    double offset = window_start / sample_rate;
+    double owned_start = chunk_start / sample_rate;
+    double owned_end = chunk_end / sample_rate;
+    List<Word> words = new ArrayList<Word>();
+    if (wav.getDuration() >= 0.01) {
+      PseudosyllableWordReader reader = new PseudosyllableWordReader(wav, threshold);
+      reader.setSyllabifier(syllabifier);
+      for (Word w : reader.readWords()) {
+        double start = w.getStart() + offset;
+        double end = w.getEnd() + offset;
+        double mid = (start + end) / 2;
+        if (mid < owned_start || (!last && mid >= owned_end)) {
+          continue;
+        }
+        start = Math.max(start, last_end);
+        if (end <= start) {
+          continue;
+        }
+        words.add(new Word(start - offset, end - offset, "", "", filename));
+        last_end = end;
+      }
+    }
+
+    Chunk chunk = new Chunk(chunk_index, offset, wav, words);
+    ++chunk_index;
+    chunk_start = last ? file_end : chunk_end;
+    discard(chunk_start - overlap_frames);
+    return chunk;
+  }
+
+  /**
+   * Closes the underlying audio stream.
+   *
+   * @throws IOException if the stream cannot be closed
+   */
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  /**
+   * Reads from the stream until the buffer extends to the given file frame or the stream is exhausted.
+   *
+   * @param frame the file frame
+   * @throws AuToBIException if the stream cannot be read
+   */
+  private void fill(long frame) throws AuToBIException {
+    while (!exhausted && buffer_start + buffer_length < frame) {
+      int n = (int) Math.min(Integer.MAX_VALUE, frame - buffer_start - buffer_length);
+      WavData block = wav_reader.readFrames(stream, n);
+      if (format == null) {
+        format = block;
+      }
+      int read = block.samples[0].length;
+      if (read < n) {
+        exhausted = true;
+      }
+      if (buffer[0].length < buffer_length + read) {
+        for (int c = 0; c < buffer.length; ++c) {
+          double[] grown = new double[buffer_length + read];
+          System.arraycopy(buffer[c], 0, grown, 0, buffer_length);
+          buffer[c] = grown;
+        }
+      }
+      for (int c = 0; c < buffer.length; ++c) {
+        System.arraycopy(block.samples[c], 0, buffer[c], buffer_length, read);
+      }
+      buffer_length += read;
+    }
+  }
+
+  /**
+   * Discards buffered frames before the given file frame.
+   *
+   * @param frame the file frame
+   */
+  private void discard(long frame) {
+    int n = (int) Math.max(0, Math.min(buffer_length, frame - buffer_start));
+    if (n == 0) {
+      return;
+    }
+    for (int c = 0; c < buffer.length; ++c) {
+      System.arraycopy(buffer[c], n, buffer[c], 0, buffer_length - n);
+    }
+    buffer_length -= n;
+    buffer_start += n;
+  }
+}
@@ -51,6 +51,7 @@ public class PseudosyllableWordReader extends AuToBIWordReader {
   private WavData wav_data;   // the audio material to base the segmentation on
   private double threshold;   // the silence threshold in mean dB in the region
   private FormattedFile annotation_file;  // A file containing ToBI annotations.
+  private Syllabifier syllabifier = new VillingSyllabifier();  // the pseudosyllabification algorithm
 
   /**
    * Constructs a new PseudosyllableWordReader based on audio data, wav_data, and a silence threshold, threshold.
@@ -104,10 +105,17 @@ public class PseudosyllableWordReader extends AuToBIWordReader {
     this.threshold = threshold;
   }
 
+  /**
+   * Sets the syllabifier used to generate pseudosyllable regions.  VillingSyllabifier is used by default.
+   *
+   * @param syllabifier the syllabifier
+   */
+  public void setSyllabifier(Syllabifier syllabifier) {
+    this.syllabifier = syllabifier;
+  }
 
   @Override
   public List<Word> readWords() throws IOException, AuToBIException {
-    Syllabifier syllabifier = new VillingSyllabifier();
     List<Region> regions = syllabifier.generatePseudosyllableRegions(wav_data);
     for (Region r : regions) {
       r.setAttribute("wav", wav_data);
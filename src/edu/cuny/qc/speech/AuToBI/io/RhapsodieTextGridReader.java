@@ -28,6 +28,7 @@ import edu.cuny.qc.speech.AuToBI.core.Region;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -62,22 +63,14 @@ public class RhapsodieTextGridReader extends TextGridReader {
    * @throws edu.cuny.qc.speech.AuToBI.core.AuToBIException if there is an alignment problem
    */
   public List<Word> readWords() throws IOException, AuToBIException {
-    AuToBIFileReader file_reader;
-    if (charsetName == null) {
-      file_reader = new AuToBIFileReader(filename);
-    } else {
-      file_reader = new AuToBIFileReader(filename, charsetName);
-    }
-
-    readTiersWithReader(file_reader);
+    readTiersWithCharset(charsetName);
 
     if (words_tier == null) {  // Didn't find a words tier try a different file encoding
       if (charsetName == null) {  // tried ASCII last time, try UTF16 now
-        file_reader = new AuToBIFileReader(filename, "UTF16");
+        readTiersWithCharset("UTF16");
       } else {  // a non-ascii charset was specified, but maybe the file is ascii
-        file_reader = new AuToBIFileReader(filename);
+        readTiersWithCharset(null);
       }
-      readTiersWithReader(file_reader);
     }
 
     if (words_tier == null) {
@@ -190,17 +183,21 @@ public class RhapsodieTextGridReader extends TextGridReader {
   }
 
   /**
-   * Reads words_tier and tones_tier from an initialized AuToBIFileReader
+   * Reads words_tier and tones_tier from the TextGrid file
    *
-   * @param file_reader the reader
-   * @throws IOException                  if there's a problem with the specified file
-   * @throws TextGridSyntaxErrorException if there is a textgrid syntax problem
+   * @param charset the name of the character set of the file, or null for the platform default
+   * @throws IOException if there's a problem with the specified file
    */
-  private void readTiersWithReader(AuToBIFileReader file_reader) throws IOException, TextGridSyntaxErrorException {
-    Tier tier;
-    readTextGridTier(file_reader);  // Remove TextGrid header
-    tier = readTextGridTier(file_reader);
-    while (tier != null && tier.getName() != null) {
+  private void readTiersWithCharset(String charset) throws IOException {
+    List<Tier> tiers;
+    try {
+      tiers = readTiers(charset, Arrays.asList(words_tier_name == null ? "syllabe" : words_tier_name, "word",
+          tone_tier_name == null ? "pseudo-ToBI" : tone_tier_name));
+    } catch (TextGridSyntaxErrorException e) {
+      // A file read with the wrong character set does not parse.
+      return;
+    }
+    for (Tier tier : tiers) {
       if (words_tier_name != null) {
         if (tier.getName().equals(words_tier_name)) {
           words_tier = tier;
@@ -217,10 +214,9 @@ public class RhapsodieTextGridReader extends TextGridReader {
         if (tier.getName().equals(tone_tier_name)) {
           tone_tier = tier;
         }
-      } else if (tier.getName() != null && tier.getName().equals("pseudo-ToBI")) {
+      } else if (tier.getName().equals("pseudo-ToBI")) {
         tone_tier = tier;
       }
-      tier = readTextGridTier(file_reader);
     }
   }
 
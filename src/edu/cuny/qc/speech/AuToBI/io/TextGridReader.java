@@ -31,15 +31,21 @@ import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 import edu.cuny.qc.speech.AuToBI.util.ToBIUtils;
 import edu.cuny.qc.speech.AuToBI.util.WordReaderUtils;
 
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.io.*;
 
 /**
  * Read a TextGrid and generate a list of Words.
  * <p/>
  * The names of orthogonal, tones and breaks tiers in the TextGrid can be specified or standard "words", "tones",
- * "breaks" can be used.
+ * "breaks" can be used.  Both the long and the short ("chronological" text) TextGrid formats are read, by a single
+ * pass TextGridTokenizer that constructs only the requested tiers.
+ *
+ * @see TextGridTokenizer
  */
 public class TextGridReader extends AuToBIWordReader {
 
@@ -124,43 +130,31 @@ public class TextGridReader extends AuToBIWordReader {
    * @throws edu.cuny.qc.speech.AuToBI.core.AuToBIException if there is an alignment problem
    */
   public List<Word> readWords() throws IOException, AuToBIException {
-    AuToBIFileReader file_reader;
-    if (charsetName != null) {
-      file_reader = new AuToBIFileReader(filename, charsetName);
-    } else {
-      file_reader = new AuToBIFileReader(filename);
-    }
-
-    Tier tier;
-    readTextGridTier(file_reader);  // Remove TextGrid header
-    do {
-      tier = readTextGridTier(file_reader);
-
-      if (tier.name != null && words_tier_name != null) {
+    for (Tier tier : readTiers(charsetName, getRequestedTierNames())) {
+      if (words_tier_name != null) {
         if (tier.name.equals(words_tier_name)) {
           words_tier = tier;
         }
-      } else if (tier.name != null && (tier.name.equals("words") || tier.name.equals("orthographic"))) {
+      } else if (tier.name.equals("words") || tier.name.equals("orthographic")) {
         words_tier = tier;
       }
 
-      if (tier.name != null && tones_tier_name != null) {
+      if (tones_tier_name != null) {
         if (tier.name.equals(tones_tier_name)) {
           tones_tier = tier;
         }
-      } else if (tier.name != null && tier.name.equals("tones")) {
+      } else if (tier.name.equals("tones")) {
         tones_tier = tier;
       }
 
-      if (tier.name != null && breaks_tier_name != null) {
+      if (breaks_tier_name != null) {
         if (tier.name.equals(breaks_tier_name)) {
           breaks_tier = tier;
         }
-      } else if (tier.name != null && tier.name.equals("breaks")) {
+      } else if (tier.name.equals("breaks")) {
         breaks_tier = tier;
       }
-
-    } while (tier.name != null);
+    }
 
     if (words_tier == null) {
       String tier_name = words_tier_name == null ? "'words' or 'orthographic'" : words_tier_name;
@@ -224,6 +218,40 @@ public class TextGridReader extends AuToBIWordReader {
   }
 
 
+  /**
+   * Retrieves the names of the tiers used by this reader.
+   *
+   * @return the names of the words, tones and breaks tiers
+   */
+  protected Collection<String> getRequestedTierNames() {
+    Set<String> names = new HashSet<String>();
+    if (words_tier_name != null) {
+      names.add(words_tier_name);
+    } else {
+      names.add("words");
+      names.add("orthographic");
+    }
+    names.add(tones_tier_name != null ? tones_tier_name : "tones");
+    names.add(breaks_tier_name != null ? breaks_tier_name : "breaks");
+    return names;
+  }
+
+  /**
+   * Reads the requested tiers of the TextGrid file in a single pass.
+   * <p/>
+   * Both the long and short TextGrid formats are supported.  Tiers that are not requested are skipped.
+   *
+   * @param charset    the name of the character set of the file, or null for the platform default
+   * @param tier_names the names of the tiers to read
+   * @return the requested tiers, in file order
+   * @throws IOException                  if the file cannot be read
+   * @throws TextGridSyntaxErrorException if the file is malformed
+   */
+  protected List<Tier> readTiers(String charset, Collection<String> tier_names)
+      throws IOException, TextGridSyntaxErrorException {
+    return TextGridTokenizer.open(filename, charset).readTiers(tier_names);
+  }
+
   /**
    * Generates a TextGridTier from the supplied AuToBIFileReader.
    *
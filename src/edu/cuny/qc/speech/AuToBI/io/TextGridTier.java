@@ -36,6 +36,25 @@ import java.io.IOException;
  */
 public class TextGridTier extends Tier {
 
+  /**
+   * Constructs an empty TextGridTier, to be filled by readTier.
+   */
+  public TextGridTier() {
+    super();
+  }
+
+  /**
+   * Constructs an empty named TextGridTier.
+   *
+   * @param name          the name of the tier
+   * @param is_point_tier true if the tier holds points, false if it holds intervals
+   */
+  public TextGridTier(String name, boolean is_point_tier) {
+    super();
+    this.name = name;
+    this.is_point_tier = is_point_tier;
+  }
+
   /**
    * Reads the information from the reader into the Tier regions, and sets the name of the tier.
    * <p/>
@@ -0,0 +1,409 @@
+/*  TextGridTokenizer.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.Region;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A single pass tokenizer and parser for Praat TextGrid files.
+ * <p/>
+ * Praat writes TextGrids in a long format, where each value is labeled (xmin = 0), and a short format that holds only
+ * the values.  Both consist of the same sequence of numbers, double quoted strings and &lt;flags&gt;.  The tokenizer
+ * extracts that sequence and ignores everything else: labels, bracketed indices, punctuation and ! comments.  This
+ * allows both formats to be read by the same parser.
+ * <p/>
+ * The file is decoded once into a CharBuffer.  Tokens are located by position in the buffer.  Strings are only
+ * materialized for tier classes and names and for the labels of requested tiers; tiers that are not requested are
+ * skipped without constructing any regions.
+ */
+public class TextGridTokenizer {
+  private static final int MAP_THRESHOLD = 1 << 16;  // files at least this large are memory mapped
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * The types of TextGrid tokens.
+   */
+  public enum TokenType {
+    NUMBER, STRING, FLAG, END
+  }
+
+  private final CharSequence text;  // the TextGrid contents
+  private final String filename;    // the filename assigned to regions
+  private int pos;                  // the position of the next character to examine
+  private int token_start;          // the start of the current token
+  private int token_end;            // the end of the current token, exclusive
+  private TokenType token;          // the type of the current token
+
+  /**
+   * Constructs a TextGridTokenizer over TextGrid contents.
+   *
+   * @param text     the contents of a TextGrid
+   * @param filename the filename to assign to regions
+   */
+  public TextGridTokenizer(CharSequence text, String filename) {
+    this.text = text;
+    this.filename = filename;
+    this.pos = 0;
+  }
+
+  /**
+   * Constructs a TextGridTokenizer over a TextGrid file.
+   * <p/>
+   * Large files are memory mapped.  The file is decoded with the named charset, or with the platform default charset
+   * if none is given, as AuToBIFileReader does.
+   *
+   * @param filename    the file
+   * @param charsetName the name of the character set of the file, or null
+   * @return a tokenizer
+   * @throws IOException if the file cannot be read
+   */
+  public static TextGridTokenizer open(String filename, String charsetName) throws IOException {
+    Charset charset = charsetName == null ? Charset.defaultCharset() : Charset.forName(charsetName);
+    RandomAccessFile file;
+    try {
+      file = new RandomAccessFile(filename, "r");
+    } catch (FileNotFoundException e) {
+      throw new FileNotFoundException(filename + " (No such file or directory)");
+    }
+    try {
+      FileChannel channel = file.getChannel();
+      long size = channel.size();
+      ByteBuffer bytes;
+      if (size >= MAP_THRESHOLD) {
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+          // read the whole file
+        }
+        bytes.flip();
+      }
+      CharBuffer chars = charset.decode(bytes);
+      return new TextGridTokenizer(chars, filename);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Advances to the next token.
+   *
+   * @return the type of the token
+   * @throws TextGridSyntaxErrorException if a string or flag is not terminated
+   */
+  public TokenType next() throws TextGridSyntaxErrorException {
+    int n = text.length();
+    while (pos < n) {
+      char c = text.charAt(pos);
+      if (c == '"') {
+        token_start = pos + 1;
+        int i = token_start;
+        while (true) {
+          if (i >= n) {
+            throw new TextGridSyntaxErrorException("Unterminated string at line " + getLineNumber(token_start));
+          }
+          if (text.charAt(i) == '"') {
+            if (i + 1 < n && text.charAt(i + 1) == '"') {  // an escaped quote
+              i += 2;
+              continue;
+            }
+            break;
+          }
+          i++;
+        }
+        token_end = i;
+        pos = i + 1;
+        return token = TokenType.STRING;
+      } else if (c == '<') {
+        token_start = pos + 1;
+        int i = token_start;
+        while (i < n && text.charAt(i) != '>') {
+          i++;
+        }
+        if (i >= n) {
+          throw new TextGridSyntaxErrorException("Unterminated flag at line " + getLineNumber(token_start));
+        }
+        token_end = i;
+        pos = i + 1;
+        return token = TokenType.FLAG;
+      } else if (isNumberStart(c)) {
+        token_start = pos;
+        int i = pos + 1;
+        while (i < n && isNumberPart(text.charAt(i))) {
+          i++;
+        }
+        token_end = i;
+        pos = i;
+        return token = TokenType.NUMBER;
+      } else if (c == '[') {
+        // Bracketed indices, as in "item [1]:", are not values.
+        while (pos < n && text.charAt(pos) != ']') {
+          pos++;
+        }
+        pos++;
+      } else if (c == '!') {
+        // Comments run to the end of the line.
+        while (pos < n && text.charAt(pos) != '\n') {
+          pos++;
+        }
+      } else if (Character.isLetter(c) || c == '_') {
+        // Labels, as in "xmin =", are not values.
+        while (pos < n && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_' ||
+            text.charAt(pos) == '?')) {
+          pos++;
+        }
+      } else {
+        pos++;
+      }
+    }
+    token_start = token_end = n;
+    return token = TokenType.END;
+  }
+
+  private static boolean isNumberStart(char c) {
+    return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+  }
+
+  private static boolean isNumberPart(char c) {
+    return (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '-' || c == '+';
+  }
+
+  /**
+   * @return the type of the current token
+   */
+  public TokenType getType() {
+    return token;
+  }
+
+  /**
+   * Retrieves the value of the current string token, with doubled quotes unescaped.
+   *
+   * @return the string
+   */
+  public String getString() {
+    String s = text.subSequence(token_start, token_end).toString();
+    if (s.indexOf('"') >= 0) {
+      s = s.replace("\"\"", "\"");
+    }
+    return s;
+  }
+
+  /**
+   * Retrieves the value of the current number token.
+   * <p/>
+   * Numbers of up to 15 significant digits with small exponents, which covers the times written by Praat, are
+   * converted directly from the buffer.  The result is correctly rounded, and so identical to Double.parseDouble.
+   * Other numbers are converted by Double.parseDouble.
+   *
+   * @return the number
+   * @throws TextGridSyntaxErrorException if the token is not a valid number
+   */
+  public double getNumber() throws TextGridSyntaxErrorException {
+    int i = token_start;
+    boolean negative = false;
+    if (text.charAt(i) == '-' || text.charAt(i) == '+') {
+      negative = text.charAt(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean seen_digit = false;
+    boolean seen_point = false;
+    for (; i < token_end; ++i) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        seen_digit = true;
+        if (mantissa == 0 && c == '0') {
+          if (seen_point) {
+            scale++;
+          }
+          continue;
+        }
+        if (++digits > 15) {
+          return parseNumber();
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (seen_point) {
+          scale++;
+        }
+      } else if (c == '.' && !seen_point) {
+        seen_point = true;
+      } else {
+        return parseNumber();
+      }
+    }
+    if (!seen_digit) {
+      return parseNumber();
+    }
+    if (scale > 22) {
+      return parseNumber();
+    }
+    double value = scale == 0 ? mantissa : mantissa / POW10[scale];
+    return negative ? -value : value;
+  }
+
+  private double parseNumber() throws TextGridSyntaxErrorException {
+    String s = text.subSequence(token_start, token_end).toString();
+    try {
+      return Double.parseDouble(s);
+    } catch (NumberFormatException e) {
+      throw new TextGridSyntaxErrorException("Invalid number, " + s + ", at line " + getLineNumber(token_start));
+    }
+  }
+
+  /**
+   * Calculates the line number of a position, for error messages.
+   *
+   * @param position the position in the text
+   * @return the line number, starting at 1
+   */
+  private int getLineNumber(int position) {
+    int line = 1;
+    for (int i = 0; i < position && i < text.length(); ++i) {
+      if (text.charAt(i) == '\n') {
+        line++;
+      }
+    }
+    return line;
+  }
+
+  /**
+   * Advances to the next token, which must be of the given type.
+   *
+   * @param type        the expected type
+   * @param description a description of the expected value, for error messages
+   * @throws TextGridSyntaxErrorException if the next token is of a different type
+   */
+  private void expect(TokenType type, String description) throws TextGridSyntaxErrorException {
+    if (next() != type) {
+      throw new TextGridSyntaxErrorException("Expected " + description + " in " + filename + " at line " +
+          getLineNumber(token_start));
+    }
+  }
+
+  /**
+   * Reads the tiers of a TextGrid.
+   * <p/>
+   * Only the tiers whose names are included are constructed; the contents of other tiers are skipped.  Tiers are
+   * returned in the order that they appear in the file.
+   *
+   * @param tier_names the names of the tiers to read, or null to read all tiers
+   * @return the requested tiers
+   * @throws TextGridSyntaxErrorException if the TextGrid is malformed
+   */
+  public List<Tier> readTiers(Collection<String> tier_names) throws TextGridSyntaxErrorException {
+    List<Tier> tiers = new ArrayList<Tier>();
+
+    // Header: file type, object class, xmin, xmax, and whether tiers exist.
+    expect(TokenType.STRING, "file type");
+    expect(TokenType.STRING, "object class");
+    expect(TokenType.NUMBER, "xmin");
+    expect(TokenType.NUMBER, "xmax");
+    if (next() == TokenType.FLAG && !text.subSequence(token_start, token_end).toString().equals("exists")) {
+      return tiers;
+    }
+    if (token == TokenType.FLAG) {
+      expect(TokenType.NUMBER, "number of tiers");
+    } else if (token != TokenType.NUMBER) {
+      throw new TextGridSyntaxErrorException("Expected number of tiers in " + filename);
+    }
+    int num_tiers = (int) getNumber();
+
+    for (int t = 0; t < num_tiers; ++t) {
+      expect(TokenType.STRING, "tier class");
+      String tier_class = getString();
+      expect(TokenType.STRING, "tier name");
+      String name = getString();
+      expect(TokenType.NUMBER, "tier xmin");
+      expect(TokenType.NUMBER, "tier xmax");
+      expect(TokenType.NUMBER, "tier size");
+      int size = (int) getNumber();
+
+      boolean point_tier;
+      if (tier_class.equals("IntervalTier")) {
+        point_tier = false;
+      } else if (tier_class.equals("TextTier")) {
+        point_tier = true;
+      } else {
+        throw new TextGridSyntaxErrorException("Unknown tier class, " + tier_class + ", in " + filename);
+      }
+
+      if (tier_names != null && !tier_names.contains(name)) {
+        skipTier(size, point_tier);
+        continue;
+      }
+
+      TextGridTier tier = new TextGridTier(name, point_tier);
+      for (int i = 0; i < size; ++i) {
+        Region region;
+        if (point_tier) {
+          expect(TokenType.NUMBER, "point time");
+          region = new Region(getNumber());
+        } else {
+          expect(TokenType.NUMBER, "interval xmin");
+          double xmin = getNumber();
+          expect(TokenType.NUMBER, "interval xmax");
+          region = new Region(xmin, getNumber());
+        }
+        expect(TokenType.STRING, "label");
+        region.setLabel(getString().trim());
+        region.setFile(filename);
+        tier.getRegions().add(region);
+      }
+      tiers.add(tier);
+    }
+    return tiers;
+  }
+
+  /**
+   * Skips the contents of a tier.
+   *
+   * @param size       the number of points or intervals
+   * @param point_tier true if the tier is a point tier
+   * @throws TextGridSyntaxErrorException if the tier is malformed
+   */
+  private void skipTier(int size, boolean point_tier) throws TextGridSyntaxErrorException {
+    for (int i = 0; i < size; ++i) {
+      expect(TokenType.NUMBER, point_tier ? "point time" : "interval xmin");
+      if (!point_tier) {
+        expect(TokenType.NUMBER, "interval xmax");
+      }
+      expect(TokenType.STRING, "label");
+    }
+  }
+}
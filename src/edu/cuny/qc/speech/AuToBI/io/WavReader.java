@@ -26,6 +26,7 @@ package edu.cuny.qc.speech.AuToBI.io;
 
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.WavData;
+import edu.cuny.qc.speech.AuToBI.util.TraceProfiler;
 
 import javax.sound.sampled.*;
 
@@ -60,6 +61,26 @@ public class WavReader {
     return read(soundIn);
   }
 
+  /**
+   * Reads the audio format of a wav file from its header without reading its samples.
+   * <p/>
+   * This is used to estimate the duration and decoded size of a file before it is processed.
+   *
+   * @param filename the filename to read
+   * @return the audio file format
+   * @throws IOException                   if there is a file reading problem
+   * @throws UnsupportedAudioFileException if there is a problem with the audio file format
+   * @throws AuToBIException               if the file does not exist
+   */
+  public AudioFileFormat readFormat(String filename)
+      throws UnsupportedAudioFileException, IOException, AuToBIException {
+    File file = new File(filename);
+    if (!file.exists()) {
+      throw new AuToBIException("Wav file does not exist: " + filename);
+    }
+    return AudioSystem.getAudioFileFormat(file);
+  }
+
   /**
    * Constructs a WavData object from the wav file pointed to by filename with specified start and end times.  The
    * original time information is *not* preserved.
@@ -102,8 +123,17 @@ public class WavReader {
    * @return the wave data
    * @throws edu.cuny.qc.speech.AuToBI.core.AuToBIException if there is an IO problem.
    */
-  @SuppressWarnings("ResultOfMethodCallIgnored")
   public WavData read(AudioInputStream stream, Double start, Double end) throws AuToBIException {
+    TraceProfiler.Span span = TraceProfiler.begin("io", "read_wav");
+    try {
+      return readData(stream, start, end);
+    } finally {
+      span.end();
+    }
+  }
+
+  @SuppressWarnings("ResultOfMethodCallIgnored")
+  private WavData readData(AudioInputStream stream, Double start, Double end) throws AuToBIException {
     WavData data = new WavData();
 
     data.numberOfChannels = stream.getFormat().getChannels();
@@ -138,14 +168,63 @@ public class WavReader {
     }
 
 
+    decodeSamples(data, bytes, bytes.length);
+    return data;
+  }
+
+  /**
+   * Reads up to num_frames frames from the current position of an AudioInputStream.
+   * <p/>
+   * Successive calls read successive blocks of audio, so a long file can be processed without holding all of its
+   * samples in memory.  Fewer frames are returned at the end of the stream, and an empty WavData once the stream is
+   * exhausted.  The returned WavData starts at time zero.
+   *
+   * @param stream     the AudioInputStream containing the audio.
+   * @param num_frames the maximum number of frames to read
+   * @return the wave data
+   * @throws AuToBIException if there is an IO problem.
+   */
+  public WavData readFrames(AudioInputStream stream, int num_frames) throws AuToBIException {
+    WavData data = new WavData();
+    data.numberOfChannels = stream.getFormat().getChannels();
+    data.sampleSize = stream.getFormat().getSampleSizeInBits();
+    data.sampleRate = stream.getFormat().getSampleRate();
+
+    int frame_size = stream.getFormat().getFrameSize();
+    byte[] bytes = new byte[num_frames * frame_size];
+    int length = 0;
+    try {
+      while (length < bytes.length) {
+        int n = stream.read(bytes, length, bytes.length - length);
+        if (n < 0) {
+          break;
+        }
+        length += n;
+      }
+    } catch (IOException e) {
+      throw new AuToBIException(e.getMessage());
+    }
+
+    decodeSamples(data, bytes, length - length % frame_size);
+    return data;
+  }
+
+  /**
+   * Converts raw 16-bit little endian audio into the normalized samples of a WavData object.
+   *
+   * @param data   the wav data, with the number of channels and sample size set
+   * @param bytes  the raw audio
+   * @param length the number of bytes to convert
+   */
+  private void decodeSamples(WavData data, byte[] bytes, int length) {
     // Wave files are by default little endian.  Currently does not support big endian formatted wave files.
     // Convert endian-ness of raw data to sample data
     // Currently only supports 16-bit raw_samples
-    data.samples = new double[data.numberOfChannels][bytes.length / (2 * data.numberOfChannels)];
+    data.samples = new double[data.numberOfChannels][length / (2 * data.numberOfChannels)];
 
     int i = 0;
     int index = 0;
-    while (i < bytes.length) {
+    while (i < length) {
       for (int channel = 0; channel < data.numberOfChannels; ++channel) {
         // Convert 16-bit little endian wav data to a double.
         int low = (int) bytes[i];
@@ -158,7 +237,5 @@ public class WavReader {
       }
       ++index;
     }
-
-    return data;
   }
 }
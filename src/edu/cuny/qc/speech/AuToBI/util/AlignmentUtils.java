@@ -25,6 +25,7 @@ package edu.cuny.qc.speech.AuToBI.util;
 
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.Region;
+import edu.cuny.qc.speech.AuToBI.core.RegionIndex;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 
 import java.util.ArrayList;
@@ -40,25 +41,27 @@ public class AlignmentUtils {
 
   /**
    * Copies the ToBI tones to the words.
+   * <p/>
+   * Each tone is assigned to the first word, at or after the word of the previous tone, that it intersects.  Tones that
+   * fall between words are ignored.
    *
    * @param words tones
    * @param tones words
    */
   public static void copyToBITonesByTime(List<Word> words, List<Region> tones) {
+    RegionIndex<Word> index = new RegionIndex<Word>(words);
     int word_idx = 0;
-    int tone_idx = 0;
     String partial_accent = null;
 
-    while (tone_idx < tones.size() && word_idx < words.size()) {
-
-      Region tone = tones.get(tone_idx);
-      Word word = words.get(word_idx);
+    for (Region tone : tones) {
+      word_idx = index.firstEndingAtOrAfter(tone.getStart(), word_idx);
+      if (word_idx < 0) {
+        AuToBIUtils.warn("Tones were present after the end of the words. These have not been aligned to any data.");
+        break;
+      }
+      Word word = index.get(word_idx);
 
-      if (tone.getEnd() < word.getStart()) {
-        tone_idx++;
-      } else if (word.getEnd() < tone.getStart()) {
-        word_idx++;
-      } else {
+      if (tone.getEnd() >= word.getStart()) {
         // Assign tones to word
         String[] tone_data = ToBIUtils.parseToneString(tone.getLabel());
         if ((tone_data[0] == null) && (tone_data[1] == null) && (tone_data[2] == null)) {
@@ -130,13 +133,8 @@ public class AlignmentUtils {
             word.setBoundaryTone(tone_data[2]);
           }
         }
-        tone_idx++;
       }
     }
-
-    if (tone_idx != tones.size()) {
-      AuToBIUtils.warn("Tones were present after the end of the words. These have not been aligned to any data.");
-    }
   }
 
   /**
@@ -168,7 +166,8 @@ public class AlignmentUtils {
    * Copies a list of breaks to associated words.
    * <p/>
    * Requires that the breaks and words sorted by time. If a word does not have a break within its boundaries, it is
-   * assumed to be a break index of '1'.
+   * assumed to be a break index of '1'.  Each break is assigned to at most one word.  Words following the last break
+   * are assigned a break index of 'na'.
    * <p/>
    * Note: This should only be used where there is a strong trust that the annotation is correctly aligned with
    * segmetnal annotations.
@@ -177,28 +176,30 @@ public class AlignmentUtils {
    * @param breaks The list of breaks
    */
   public static void copyToBIBreaksByTime(List<Word> words, List<Region> breaks) {
+    RegionIndex<Region> index = new RegionIndex<Region>(breaks);
     int break_idx = 0;
-    int word_idx = 0;
     String previous_break = "na";
 
-    while (break_idx < breaks.size() && word_idx < words.size()) {
-
-      Region b = breaks.get(break_idx);
-      Word word = words.get(word_idx);
+    for (Word word : words) {
+      if (break_idx >= 0) {
+        break_idx = index.firstEndingAfter(word.getStart(), break_idx);
+      }
 
-      if (b.getEnd() <= word.getStart()) {
-        break_idx++;
-      } else if (word.getEnd() < b.getStart()) {
+      if (break_idx < 0) {
+        String current_break = "na";
+        word.setBreakBefore(previous_break);
+        word.setBreakAfter(current_break);
+        previous_break = current_break;
+      } else if (word.getEnd() < index.get(break_idx).getStart()) {
         if (word.getBreakAfter() == null) {
           word.setBreakBefore(previous_break);
           word.setBreakAfter("1");
           previous_break = "1";
         }
-        word_idx++;
       } else {
         // Assign break to word
         word.setBreakBefore(previous_break);
-        String current_break = breaks.get(break_idx).getLabel();
+        String current_break = index.get(break_idx).getLabel();
         word.setBreakAfter(current_break);
         if ((current_break.startsWith("3") || current_break.startsWith("4")) && !word.hasPhraseAccent()) {
           word.setPhraseAccent("X-");
@@ -209,16 +210,8 @@ public class AlignmentUtils {
         previous_break = current_break;
 
         break_idx++;
-        word_idx++;
       }
     }
-    while (word_idx < words.size()) {
-      String current_break = "na";
-      words.get(word_idx).setBreakBefore(previous_break);
-      words.get(word_idx).setBreakAfter(current_break);
-      previous_break = current_break;
-      word_idx++;
-    }
   }
 
   /**
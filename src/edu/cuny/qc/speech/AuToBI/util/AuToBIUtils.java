@@ -26,6 +26,10 @@ package edu.cuny.qc.speech.AuToBI.util;
 import java.util.*;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import de.bwaldvogel.liblinear.SolverType;
 import edu.cuny.qc.speech.AuToBI.AuToBI;
@@ -33,12 +37,16 @@ import edu.cuny.qc.speech.AuToBI.classifier.LibLinearClassifier;
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.AuToBIParameters;
 import edu.cuny.qc.speech.AuToBI.core.AuToBITask;
+import edu.cuny.qc.speech.AuToBI.core.Pair;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 import edu.cuny.qc.speech.AuToBI.featureset.*;
+import edu.cuny.qc.speech.AuToBI.io.HypothesisWriter;
 import org.apache.oro.io.GlobFilenameFilter;
 
 import org.apache.log4j.Logger;
 
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
 /**
  * Stores general utility functions for AuToBI.
  * <p/>
@@ -72,6 +80,15 @@ public class AuToBIUtils {
     logger.debug(s);
   }
 
+  /**
+   * Determines if debug messages will be logged.  This allows callers to avoid constructing unused debug messages.
+   *
+   * @return true if debug logging is enabled
+   */
+  public static boolean isDebugEnabled() {
+    return logger.isDebugEnabled();
+  }
+
   /**
    * Sends a warning message to the logger.
    *
@@ -81,6 +98,16 @@ public class AuToBIUtils {
     logger.warn(s);
   }
 
+  /**
+   * Sends a warning message to the logger, along with the exception that caused it.
+   *
+   * @param s the message
+   * @param t the exception
+   */
+  public static void warn(String s, Throwable t) {
+    logger.warn(s, t);
+  }
+
   /**
    * Sends an error message to the logger.
    *
@@ -99,6 +126,28 @@ public class AuToBIUtils {
     logger.info(s);
   }
 
+  /**
+   * Quotes a string for inclusion in a JSON document.
+   *
+   * @param s the string
+   * @return the quoted string
+   */
+  public static String quoteJson(String s) {
+    StringBuilder sb = new StringBuilder(s.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
   /**
    * Globs a file pattern into a list of full path names that match the pattern.
    *
@@ -231,6 +280,45 @@ public class AuToBIUtils {
     return next_file_pattern;
   }
 
+  /**
+   * Parses an attribute omission description.
+   * <p/>
+   * The format is attribute1:value1,...,attributeN:valueN.  Data points whose attribute has the given value are
+   * omitted from training and evaluation.  Entries without a ':' are ignored.
+   *
+   * @param omission the omission description
+   * @return a list of attribute value pairs
+   */
+  public static List<Pair<String, String>> parseAttributeOmission(String omission) {
+    List<Pair<String, String>> pairs = new ArrayList<Pair<String, String>>();
+    if (omission == null || !omission.contains(":")) {
+      return pairs;
+    }
+    for (String pair : omission.split(",")) {
+      String[] av_pair = pair.split(":");
+      if (av_pair.length >= 2) {
+        pairs.add(new Pair<String, String>(av_pair[0], av_pair[1]));
+      }
+    }
+    return pairs;
+  }
+
+  /**
+   * Determines if a data point has any of a list of omitted attribute values.
+   *
+   * @param w        the data point
+   * @param omission the omitted attribute value pairs
+   * @return true if the data point should be omitted
+   */
+  public static boolean hasOmittedAttribute(Word w, List<Pair<String, String>> omission) {
+    for (Pair<String, String> e : omission) {
+      if (w.hasAttribute(e.first) && w.getAttribute(e.first).equals(e.second)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Parses a feature name into its moniker and paramers.
    * <p/>
@@ -290,86 +378,15 @@ public class AuToBIUtils {
   /**
    * Constructs merged hypotheses for phrase ending tones and pitch accents by merging hypotheses from the six detection
    * and classification tasks.
+   * <p/>
+   * The hypothesis features of each task are resolved once for the whole list of words.
    *
    * @param autobi an AuToBI object to manage the task variables
    * @param words  the words to analyse
+   * @see HypothesisWriter#mergeHypotheses(List)
    */
   public static void mergeAuToBIHypotheses(AuToBI autobi, List<Word> words) throws AuToBIException {
-    // TODO: deprecate this function and move the behavior into smaller utility functions
-    // Convert each word to the desired string, one at a time.  Call these utilities from writeTextGridString
-    // instead of using this as a pre-processing step.
-    for (Word word : words) {
-      // Assigns pitch accents to words.  If only accent detection is available, a binary True/False hypothesis
-      // will be assigned.  If location and type hypotheses are available, the hypothesized type will be assigned.
-      // Finally, if only type information is available, every word will be assigned its best guess for accent type.
-
-      //TODO: make sure this works even if getHypothesizeFeature doesn't have a feature for this.
-      if (autobi.getTasks().containsKey("pitch_accent_detection") &&
-          word.hasAttribute(autobi.getHypothesizedFeature("pitch_accent_detection"))) {
-        if (word.hasAttribute(autobi.getConfidenceFeature("pitch_accent_detection"))) {
-          Double conf = (Double) word.getAttribute(autobi.getConfidenceFeature("pitch_accent_detection"));
-          if (!word.getAttribute(autobi.getHypothesizedFeature("pitch_accent_detection")).equals("ACCENTED")) {
-            conf = 1 - conf;
-          }
-          word.setAttribute("hyp_pitch_accent", "ACCENTED: " + conf);
-        } else {
-          word.setAttribute("hyp_pitch_accent", word.getAttribute(autobi.getHypothesizedFeature(
-              "pitch_accent_detection")));
-        }
-      }
-      if (autobi.getTasks().containsKey("pitch_accent_classification") &&
-          word.hasAttribute(autobi.getHypothesizedFeature("pitch_accent_classification"))) {
-        if (!word.hasAttribute("hyp_pitch_accent") || word.getAttribute("hyp_pitch_accent").equals("ACCENTED")) {
-          word.setAttribute("hyp_pitch_accent", word.getAttribute(autobi.getHypothesizedFeature(
-              "pitch_accent_classification")));
-        }
-      }
-
-      // Assigns phrase ending tones.
-      if (autobi.getTasks().containsKey("intonational_phrase_boundary_detection") &&
-          word.hasAttribute(autobi.getHypothesizedFeature("intonational_phrase_boundary_detection"))) {
-        if (word.hasAttribute(autobi.getConfidenceFeature("intonational_phrase_boundary_detection"))) {
-          Double conf =
-              (Double) word.getAttribute(autobi.getConfidenceFeature("intonational_phrase_boundary_detection"));
-          if (!word.getAttribute(autobi.getHypothesizedFeature("intonational_phrase_boundary_detection"))
-              .equals("INTONATIONAL_BOUNDARY")) {
-            conf = 1 - conf;
-          }
-          word.setAttribute("hyp_phrase_boundary", "BOUNDARY: " + conf);
-        } else {
-          word.setAttribute("hyp_phrase_boundary",
-              word.getAttribute(autobi.getHypothesizedFeature("intonational_phrase_boundary_detection")));
-        }
-      }
-
-      if (autobi.getTasks().containsKey("intermediate_phrase_boundary_detection") &&
-          word.hasAttribute(autobi.getHypothesizedFeature("intermediate_phrase_boundary_detection"))) {
-        if (!word.hasAttribute("hyp_phrase_boundary") ||
-            word.getAttribute("hyp_phrase_boundary").equals("NONBOUNDARY")) {
-          word.setAttribute("hyp_phrase_boundary",
-              word.getAttribute(autobi.getHypothesizedFeature("intermediate_phrase_boundary_detection")));
-        }
-      }
-
-      if (autobi.getTasks().containsKey("phrase_accent_boundary_tone_classification") &&
-          word.hasAttribute(autobi.getHypothesizedFeature("phrase_accent_boundary_tone_classification"))) {
-        if (!word.hasAttribute("hyp_phrase_boundary") ||
-            word.getAttribute("hyp_phrase_boundary").equals("INTONATIONAL_BOUNDARY")) {
-          word.setAttribute("hyp_phrase_boundary",
-              word.getAttribute(
-                  autobi.getHypothesizedFeature("phrase_accent_boundary_tone_classification").replace("x", "%")));
-        }
-      }
-
-      if (autobi.getTasks().containsKey("phrase_accent_classification") &&
-          word.hasAttribute(autobi.getHypothesizedFeature("phrase_accent_classification"))) {
-        if (!word.hasAttribute("hyp_phrase_boundary") ||
-            word.getAttribute("hyp_phrase_boundary").equals("INTERMEDIATE_BOUNDARY")) {
-          word.setAttribute("hyp_phrase_boundary",
-              word.getAttribute(autobi.getHypothesizedFeature("phrase_accent_classification")));
-        }
-      }
-    }
+    new HypothesisWriter(autobi.getTasks(), HypothesisWriter.Format.TEXTGRID).mergeHypotheses(words);
   }
 
   /**
@@ -404,18 +421,21 @@ public class AuToBIUtils {
             getPitchAccentDetectionTask(serialized ? params.getParameter("pitch_accent_detector") : null));
         params.setParameter("pitch_accent_detection",
             params.getParameter("pitch_accent_detector"));
+        map.get("pitch_accent_detection").setModelFile(params.getParameter("pitch_accent_detector"));
       }
       if (params.hasParameter("pitch_accent_classifier")) {
         map.put("pitch_accent_classification",
             getPitchAccentClassificationTask(serialized ? params.getParameter("pitch_accent_classifier") : null));
         params.setParameter("pitch_accent_classification",
             params.getParameter("pitch_accent_classifier"));
+        map.get("pitch_accent_classification").setModelFile(params.getParameter("pitch_accent_classifier"));
       }
       if (params.hasParameter("intonational_phrase_boundary_detector")) {
         map.put("intonational_phrase_boundary_detection", getIntonationalPhraseDetectionTask(
             serialized ? params.getParameter("intonational_phrase_boundary_detector") : null));
         params.setParameter("intonational_phrase_boundary_detection",
             params.getParameter("intonational_phrase_boundary_detector"));
+        map.get("intonational_phrase_boundary_detection").setModelFile(params.getParameter("intonational_phrase_boundary_detector"));
 
         // Use rhapsodie specific feature set.
         if (params.booleanParameter("rhapsodie", false)) {
@@ -428,18 +448,21 @@ public class AuToBIUtils {
             serialized ? params.getParameter("intermediate_phrase_boundary_detector") : null));
         params.setParameter("intermediate_phrase_boundary_detection",
             params.getParameter("intermediate_phrase_boundary_detector"));
+        map.get("intermediate_phrase_boundary_detection").setModelFile(params.getParameter("intermediate_phrase_boundary_detector"));
       }
       if (params.hasParameter("phrase_accent_classifier")) {
         map.put("phrase_accent_classification",
             getPhraseAccentClassificationTask(serialized ? params.getParameter("phrase_accent_classifier") : null));
         params.setParameter("phrase_accent_classification",
             params.getParameter("phrase_accent_classifier"));
+        map.get("phrase_accent_classification").setModelFile(params.getParameter("phrase_accent_classifier"));
       }
       if (params.hasParameter("phrase_accent_boundary_tone_classifier")) {
         map.put("phrase_accent_boundary_tone_classification", getPABTClassificationTask(
             serialized ? params.getParameter("phrase_accent_boundary_tone_classifier") : null));
         params.setParameter("phrase_accent_boundary_tone_classification",
             params.getParameter("phrase_accent_boundary_tone_classifier"));
+        map.get("phrase_accent_boundary_tone_classification").setModelFile(params.getParameter("phrase_accent_boundary_tone_classifier"));
       }
 
     } catch (AuToBIException e) {
@@ -627,4 +650,73 @@ public class AuToBIUtils {
     sb.append("]");
     return sb.toString();
   }
-}
\ No newline at end of file
+
+  /**
+   * Runs a list of tasks on an executor and waits for all of them to complete.
+   * <p/>
+   * If any task fails, the remaining tasks are cancelled and an AuToBIException is thrown with the message of the
+   * failure.
+   *
+   * @param tasks    the tasks
+   * @param executor the executor
+   * @param <T>      the result type
+   * @return the results of the tasks, in the order of the tasks
+   * @throws AuToBIException if any task fails or the wait is interrupted
+   */
+  public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, ExecutorService executor)
+      throws AuToBIException {
+    List<Future<T>> futures = new ArrayList<Future<T>>();
+    for (Callable<T> task : tasks) {
+      futures.add(executor.submit(task));
+    }
+    List<T> results = new ArrayList<T>();
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuToBIException("Interrupted while waiting for tasks to complete.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      throw new AuToBIException(cause.getMessage());
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Runs a list of tasks on a temporary pool of threads and waits for all of them to complete.
+   * <p/>
+   * With a single thread, the tasks are run in order on the calling thread.
+   *
+   * @param tasks       the tasks
+   * @param num_threads the maximum number of threads to use
+   * @param <T>         the result type
+   * @return the results of the tasks, in the order of the tasks
+   * @throws AuToBIException if any task fails or the wait is interrupted
+   */
+  public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int num_threads) throws AuToBIException {
+    if (num_threads <= 1 || tasks.size() <= 1) {
+      List<T> results = new ArrayList<T>();
+      for (Callable<T> task : tasks) {
+        try {
+          results.add(task.call());
+        } catch (Exception e) {
+          throw new AuToBIException(e.getMessage());
+        }
+      }
+      return results;
+    }
+
+    ExecutorService executor = newFixedThreadPool(Math.min(num_threads, tasks.size()));
+    try {
+      return invokeAll(tasks, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
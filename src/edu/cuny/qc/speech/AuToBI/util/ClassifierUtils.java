@@ -33,6 +33,7 @@ import edu.cuny.qc.speech.AuToBI.core.Feature;
 import weka.core.*;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.io.*;
 
 
@@ -78,12 +79,17 @@ public class ClassifierUtils {
    */
   public static void writeAuToBIClassifier(String filename, AuToBIClassifier c) throws IOException {
     AuToBIUtils.log("writing model to: " + filename);
+    TraceProfiler.Span span = TraceProfiler.begin("io", "write_model").arg("file", filename);
     FileOutputStream fos;
     ObjectOutputStream out;
-    fos = new FileOutputStream(filename);
-    out = new ObjectOutputStream(fos);
-    out.writeObject(c);
-    out.close();
+    try {
+      fos = new FileOutputStream(filename);
+      out = new ObjectOutputStream(fos);
+      out.writeObject(c);
+      out.close();
+    } finally {
+      span.end();
+    }
 
   }
 
@@ -145,44 +151,108 @@ public class ClassifierUtils {
   /**
    * Converts a feature set object to a weka Instances object
    * <p/>
-   * The class is set to the last attribute.
+   * The class is set to the last attribute.  The data points are converted on the calling thread, so that callers
+   * that are themselves run in parallel, e.g., the members of an EnsembleSampledClassifier, do not oversubscribe the
+   * processors.
    *
    * @param feature_set the feature set to convert
    * @return a weka instances object
    * @throws Exception If the arff file can't be written or read.
    */
   public static Instances convertFeatureSetToWekaInstances(FeatureSet feature_set) throws Exception {
+    return convertFeatureSetToWekaInstances(feature_set, 1);
+  }
+
+  /**
+   * Converts a feature set object to a weka Instances object, converting chunks of data points in parallel.
+   * <p/>
+   * The class is set to the last attribute.
+   *
+   * @param feature_set the feature set to convert
+   * @param num_threads the number of threads to use
+   * @return a weka instances object
+   * @throws AuToBIException if the conversion fails
+   * @see WekaColumnConverter
+   */
+  public static Instances convertFeatureSetToWekaInstances(FeatureSet feature_set, int num_threads)
+      throws AuToBIException {
+    TraceProfiler.Span span = TraceProfiler.begin("convert", "weka_instances")
+        .arg("data_points", feature_set.getDataPoints().size());
     ArrayList<Attribute> attributes = generateWekaAttributes(feature_set.getFeatures());
     Instances instances = new Instances("AuToBI_feature_set", attributes, feature_set.getDataPoints().size());
-    for (Word w : feature_set.getDataPoints()) {
-      Instance inst = ClassifierUtils.assignWekaAttributes(instances, w);
-      instances.add(inst);
-    }
+    new WekaColumnConverter(instances, feature_set).addAll(feature_set.getDataPoints(), null, num_threads);
 
     ClassifierUtils.setWekaClassAttribute(instances, feature_set.getClassAttribute());
+    span.end();
     return instances;
   }
 
   /**
    * Converts a feature set object to a weka Instances object.
    * <p/>
+   * Use wekas instance weighting capability to assign weights for each data point.  The data points are converted on
+   * the calling thread.
+   *
+   * @param feature_set the feature set to convert
+   * @param fn          a weight function
+   * @return a weka instances object
+   * @throws AuToBIException if the conversion fails
+   */
+  public static Instances convertFeatureSetToWeightedWekaInstances(FeatureSet feature_set,
+                                                                   WeightFunction fn) throws AuToBIException {
+    return convertFeatureSetToWeightedWekaInstances(feature_set, fn, 1);
+  }
+
+  /**
+   * Converts a feature set object to a weka Instances object, converting chunks of data points in parallel.
+   * <p/>
    * Use wekas instance weighting capability to assign weights for each data point.
    *
    * @param feature_set the feature set to convert
    * @param fn          a weight function
+   * @param num_threads the number of threads to use
    * @return a weka instances object
+   * @throws AuToBIException if the conversion fails
+   * @see WekaColumnConverter
    */
   public static Instances convertFeatureSetToWeightedWekaInstances(FeatureSet feature_set,
-                                                                   WeightFunction fn) {
+                                                                   WeightFunction fn, int num_threads)
+      throws AuToBIException {
+    TraceProfiler.Span span = TraceProfiler.begin("convert", "weighted_weka_instances")
+        .arg("data_points", feature_set.getDataPoints().size());
     ArrayList<Attribute> attributes = generateWekaAttributes(feature_set.getFeatures());
     Instances instances = new Instances("AuToBI_feature_set", attributes, feature_set.getDataPoints().size());
-    for (Word w : feature_set.getDataPoints()) {
-      Instance inst = ClassifierUtils.assignWekaAttributes(instances, w);
-      inst.setWeight(fn.weight(w));
-      instances.add(inst);
-    }
+    new WekaColumnConverter(instances, feature_set).addAll(feature_set.getDataPoints(), fn, num_threads);
 
     ClassifierUtils.setWekaClassAttribute(instances, feature_set.getClassAttribute());
+    span.end();
+    return instances;
+  }
+
+  /**
+   * Converts the rows of a CompactRowStore to a weka Instances object, without constructing Word objects.
+   * <p/>
+   * The class is set to the last attribute.  The instances are identical to those generated by
+   * convertFeatureSetToWekaInstances for the FeatureSet that the store would materialize, or, given class weights, by
+   * convertFeatureSetToWeightedWekaInstances with a ClassBasedWeightFunction.
+   *
+   * @param store         the row store
+   * @param class_weights the weight of each class value, or null for unit weights
+   * @return a weka instances object
+   * @throws AuToBIException if the store cannot be read
+   * @see WekaColumnConverter
+   */
+  public static Instances convertCompactRowStoreToWekaInstances(CompactRowStore store,
+                                                                Map<String, Double> class_weights)
+      throws AuToBIException {
+    TraceProfiler.Span span = TraceProfiler.begin("convert", "weka_instances").arg("data_points", store.size());
+    FeatureSet fs = store.getFeatureSet();
+    ArrayList<Attribute> attributes = generateWekaAttributes(fs.getFeatures());
+    Instances instances = new Instances("AuToBI_feature_set", attributes, store.size());
+    new WekaColumnConverter(instances, null).addAll(store, class_weights);
+
+    ClassifierUtils.setWekaClassAttribute(instances, fs.getClassAttribute());
+    span.end();
     return instances;
   }
 
@@ -303,31 +373,148 @@ public class ClassifierUtils {
    */
   public static EvaluationResults generateEvaluationResults(String hyp_feature, String true_feature, FeatureSet fs)
       throws AuToBIException {
-    Feature class_attribute = new Feature(true_feature);
-    class_attribute.generateNominalValues(fs.getDataPoints());
-
-    Feature hyp_attribute = new Feature(hyp_feature);
-    hyp_attribute.generateNominalValues(fs.getDataPoints());
+    return generateEvaluationResults(hyp_feature, true_feature, fs, 1);
+  }
 
-    Set<String> sorted_values = new LinkedHashSet<String>();
-    sorted_values.addAll(class_attribute.getNominalValues());
-    sorted_values.addAll(hyp_attribute.getNominalValues());
+  /**
+   * Generates an EvaluationResults object by comparing the values of the hypothesized and true features.
+   * <p/>
+   * The data points are divided into contiguous chunks which are counted in parallel and merged in order, so the
+   * results are identical to those of a serial evaluation.
+   *
+   * @param hyp_feature  The hypothesized feature name
+   * @param true_feature The true feature name
+   * @param fs           The feature set to be evaluated
+   * @param num_threads  The number of threads to count with
+   * @return a string representation of the evaluation
+   * @throws edu.cuny.qc.speech.AuToBI.core.AuToBIException IF there is an inconsistency in the evalution
+   */
+  public static EvaluationResults generateEvaluationResults(final String hyp_feature, final String true_feature,
+                                                            FeatureSet fs, int num_threads)
+      throws AuToBIException {
+    final List<Word> words = fs.getDataPoints();
+    int num_chunks = Math.max(1, Math.min(num_threads, words.size()));
+    int chunk_size = (words.size() + num_chunks - 1) / Math.max(1, num_chunks);
+
+    List<Callable<EvaluationAccumulator.Partial>> tasks = new ArrayList<Callable<EvaluationAccumulator.Partial>>();
+    for (int start = 0; start < words.size() || tasks.isEmpty(); start += chunk_size) {
+      final List<Word> chunk = words.subList(start, Math.min(words.size(), start + chunk_size));
+      tasks.add(new Callable<EvaluationAccumulator.Partial>() {
+        public EvaluationAccumulator.Partial call() {
+          EvaluationAccumulator.Partial partial = new EvaluationAccumulator.Partial();
+          accumulateEvaluation(partial, hyp_feature, true_feature, chunk);
+          return partial;
+        }
+      });
+    }
 
-    EvaluationResults eval = new EvaluationResults(sorted_values);
+    EvaluationAccumulator accumulator = new EvaluationAccumulator();
+    List<EvaluationAccumulator.Partial> partials = AuToBIUtils.invokeAll(tasks, num_threads);
+    for (int i = 0; i < partials.size(); ++i) {
+      accumulator.commit(i, partials.get(i));
+    }
+    return accumulator.getResults();
+  }
 
-    for (Word w : fs.getDataPoints()) {
+  /**
+   * Counts the classification results of a list of words in an EvaluationAccumulator.Partial.
+   * <p/>
+   * Words marked with the __ignore__ attribute are not counted, but their values are included in the set of classes.
+   *
+   * @param partial      the partial results to update
+   * @param hyp_feature  The hypothesized feature name
+   * @param true_feature The true feature name
+   * @param words        the words to count
+   */
+  public static void accumulateEvaluation(EvaluationAccumulator.Partial partial, String hyp_feature,
+                                          String true_feature, List<Word> words) {
+    for (Word w : words) {
       if (w.hasAttribute("__ignore__") && ((Boolean) w.getAttribute("__ignore__"))) {
+        partial.addLabels(getNominalLabel(w, hyp_feature), getNominalLabel(w, true_feature));
         continue;
       }
       if (!w.hasAttribute(hyp_feature)) {
         AuToBIUtils.warn("Word, " + w + ", has no hypothesized attribute: " + hyp_feature);
+        partial.addLabels(null, getNominalLabel(w, true_feature));
       } else if (!w.hasAttribute(true_feature)) {
         AuToBIUtils.warn("Word, " + w + ", has no true attribute: " + hyp_feature);
+        partial.addLabels(getNominalLabel(w, hyp_feature), null);
       } else {
-        eval.addInstance(w.getAttribute(hyp_feature).toString(), w.getAttribute(true_feature).toString());
+        partial.addInstance(w.getAttribute(hyp_feature).toString(), w.getAttribute(true_feature).toString());
       }
     }
-    return eval;
+  }
+
+  /**
+   * Counts the classification results of a list of words, given their hypotheses, in an EvaluationAccumulator.Partial.
+   * <p/>
+   * Unlike accumulateEvaluation(Partial, String, String, List), the hypotheses are not read from the words, so words
+   * can be evaluated without being modified.  Words marked with the __ignore__ attribute are not counted, but their
+   * values are included in the set of classes.
+   *
+   * @param partial      the partial results to update
+   * @param hypotheses   the hypothesis of each word, or null if a word has none
+   * @param true_feature The true feature name
+   * @param words        the words to count
+   */
+  public static void accumulateEvaluation(EvaluationAccumulator.Partial partial, List<String> hypotheses,
+                                          String true_feature, List<Word> words) {
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
+      String hyp = hypotheses.get(i);
+      if (w.hasAttribute("__ignore__") && ((Boolean) w.getAttribute("__ignore__"))) {
+        partial.addLabels(hyp, getNominalLabel(w, true_feature));
+        continue;
+      }
+      if (hyp == null) {
+        AuToBIUtils.warn("Word, " + w + ", has no hypothesis");
+        partial.addLabels(null, getNominalLabel(w, true_feature));
+      } else if (!w.hasAttribute(true_feature)) {
+        AuToBIUtils.warn("Word, " + w + ", has no true attribute: " + true_feature);
+        partial.addLabels(hyp, null);
+      } else {
+        partial.addInstance(hyp, w.getAttribute(true_feature).toString());
+      }
+    }
+  }
+
+  /**
+   * Retrieves the value of an attribute as Feature.generateNominalValues would record it.
+   *
+   * @param w    the word
+   * @param name the attribute name
+   * @return the string value of a String or Number attribute, or null
+   */
+  private static String getNominalLabel(Word w, String name) {
+    Object value = w.getAttribute(name);
+    if (value instanceof String || value instanceof Number) {
+      return value.toString();
+    }
+    return null;
+  }
+
+  /**
+   * Evaluates a classifier on a list of words with a single call to posteriorsForInstances.
+   * <p/>
+   * If the classifier throws an exception, a warning is logged with the exception and null is returned.  Callers
+   * should then evaluate each word individually so that a failure on one word does not prevent the others from being
+   * classified.
+   *
+   * @param classifier the classifier
+   * @param words      the words to evaluate
+   * @return a posterior for each word, or null if the classifier failed.
+   */
+  public static List<Posterior> generatePosteriors(AuToBIClassifier classifier, List<Word> words) {
+    TraceProfiler.Span span = TraceProfiler.begin("classify", classifier.getClass().getSimpleName())
+        .arg("words", words.size());
+    try {
+      return classifier.posteriorsForInstances(words);
+    } catch (Exception e) {
+      AuToBIUtils.warn("Classifier threw an exception on a list of words. Evaluating each word.", e);
+      return null;
+    } finally {
+      span.end();
+    }
   }
 
   /**
@@ -343,17 +530,57 @@ public class ClassifierUtils {
    */
   public static void generatePredictions(AuToBIClassifier classifier, String hyp_attribute, String default_value,
                                          FeatureSet fs) {
-    for (Word w : fs.getDataPoints()) {
+    generatePredictions(classifier, hyp_attribute, default_value, fs.getDataPoints());
+  }
+
+  /**
+   * Generates predictions for a list of words using the supplied classifier.
+   * <p/>
+   * Results are stored in hyp_attribute. If the classifier throws an error, the default_value is assigned as the
+   * hypothesis
+   *
+   * @param classifier    the classifier to generate predictions
+   * @param hyp_attribute the destination attribute for the hypotheses
+   * @param default_value the default classification value
+   * @param words         the words to generate predictions for.
+   */
+  public static void generatePredictions(AuToBIClassifier classifier, String hyp_attribute, String default_value,
+                                         List<Word> words) {
+    List<String> hypotheses = classify(classifier, default_value, words);
+    for (int i = 0; i < words.size(); ++i) {
+      words.get(i).setAttribute(hyp_attribute, hypotheses.get(i));
+    }
+  }
+
+  /**
+   * Classifies a list of words using the supplied classifier, without modifying the words.
+   * <p/>
+   * If the classifier throws an error on a word, the default_value is its hypothesis.
+   *
+   * @param classifier    the classifier to generate predictions
+   * @param default_value the default classification value
+   * @param words         the words to classify
+   * @return the hypothesis of each word, in the order of the words
+   */
+  public static List<String> classify(AuToBIClassifier classifier, String default_value, List<Word> words) {
+    List<Posterior> posteriors = generatePosteriors(classifier, words);
+    List<String> hypotheses = new ArrayList<String>(words.size());
+    for (int i = 0; i < words.size(); ++i) {
+      Word w = words.get(i);
       try {
-        String result = classifier.classify(w);
-        w.setAttribute(hyp_attribute, result);
+        if (posteriors != null) {
+          hypotheses.add(posteriors.get(i) == null ? null : posteriors.get(i).getKeyWithMaximumValue());
+        } else {
+          hypotheses.add(classifier.classify(w));
+        }
       } catch (Exception e) {
-        w.setAttribute(hyp_attribute, default_value);
+        hypotheses.add(default_value);
         AuToBIUtils.warn(
             "Classifier threw an exception. Assigning default value, " + default_value + ", to word, " + w.toString() +
                 "\n" + e.getMessage());
       }
     }
+    return hypotheses;
   }
 
   /**
@@ -373,11 +600,13 @@ public class ClassifierUtils {
   public static void generatePredictionsWithConfidenceScores(AuToBIClassifier classifier, String hyp_attribute,
                                                              String conf_attribute, String default_value,
                                                              FeatureSet fs) {
-    for (Word w : fs.getDataPoints()) {
+    List<Posterior> posteriors = generatePosteriors(classifier, fs.getDataPoints());
+    for (int i = 0; i < fs.getDataPoints().size(); ++i) {
+      Word w = fs.getDataPoints().get(i);
       try {
-        Distribution dist = classifier.distributionForInstance(w);
-        String result = dist.getKeyWithMaximumValue();
-        Double conf = dist.get(result);
+        Posterior posterior = (posteriors != null) ? posteriors.get(i) : classifier.posteriorForInstance(w);
+        String result = posterior.getKeyWithMaximumValue();
+        Double conf = (result == null) ? null : posterior.get(result);
         w.setAttribute(hyp_attribute, result);
         w.setAttribute(conf_attribute, conf);
       } catch (Exception e) {
@@ -406,10 +635,12 @@ public class ClassifierUtils {
    */
   public static void generatePredictionDistribution(AuToBIClassifier classifier, String dist_attribute,
                                                     String default_value, FeatureSet fs) {
-    for (Word w : fs.getDataPoints()) {
+    List<Posterior> posteriors = generatePosteriors(classifier, fs.getDataPoints());
+    for (int i = 0; i < fs.getDataPoints().size(); ++i) {
+      Word w = fs.getDataPoints().get(i);
       try {
-        Distribution dist = classifier.distributionForInstance(w);
-        w.setAttribute(dist_attribute, dist);
+        Posterior posterior = (posteriors != null) ? posteriors.get(i) : classifier.posteriorForInstance(w);
+        w.setAttribute(dist_attribute, posterior.toDistribution());
       } catch (Exception e) {
         w.setAttribute(dist_attribute, default_value);
         AuToBIUtils.warn(
@@ -429,16 +660,101 @@ public class ClassifierUtils {
   public static double[] convertFeatureSetToLibLinearLabels(FeatureSet feature_set,
                                                             String[] class_values) {
     String class_attribute = feature_set.getClassAttribute();
+    NominalDictionary values = new NominalDictionary(class_values);
     double[] labels = new double[feature_set.getDataPoints().size()];
     int i = 0;
     for (Word w : feature_set.getDataPoints()) {
       String s = w.getAttribute(class_attribute).toString();
-      labels[i] = java.util.Arrays.asList(class_values).indexOf(s) + 1;
+      labels[i] = values.encode(s) + 1;
       i++;
     }
     return labels;
   }
 
+  /**
+   * Converts the class values of a CompactRowStore to a list of LibLinear labels.
+   *
+   * @param store        The row store
+   * @param class_values An array of class values to describe the indexing of the labels.
+   * @return a list of doubles corresponding to labels.
+   * @throws AuToBIException if the store has no class attribute or cannot be read
+   */
+  public static double[] convertCompactRowStoreToLibLinearLabels(final CompactRowStore store,
+                                                                 String[] class_values) throws AuToBIException {
+    final int class_column = store.getClassColumn();
+    if (class_column < 0) {
+      throw new AuToBIException("CompactRowStore has no class attribute.");
+    }
+    final NominalDictionary values = new NominalDictionary(class_values);
+    final double[] labels = new double[store.size()];
+    store.forEachRow(new CompactRowStore.RowVisitor() {
+      int i = 0;
+
+      public void visit(double[] row) {
+        labels[i] = values.encode(store.getNominalValue(class_column, row[class_column])) + 1;
+        i++;
+      }
+    });
+    return labels;
+  }
+
+  /**
+   * Converts the rows of a CompactRowStore to a list of LibLinear Feature[] descriptions.
+   * <p/>
+   * The descriptions are identical to those produced by convertFeatureSetToLibLinearFeatures for the stored words.
+   *
+   * @param store       the row store
+   * @param feature_map a map of features to indices
+   * @return a list of Feature[] descriptions.
+   * @throws AuToBIException if a feature is a string feature or the store cannot be read
+   */
+  public static de.bwaldvogel.liblinear.Feature[][] convertCompactRowStoreToLibLinearFeatures(
+      final CompactRowStore store, HashBiMap<Feature, Integer> feature_map) throws AuToBIException {
+    int n = store.size();
+    TraceProfiler.Span span = TraceProfiler.begin("convert", "liblinear_features").arg("data_points", n);
+    try {
+      BiMap<Integer, Feature> map_feature = feature_map.inverse();
+      final int num_features = Math.max(0, feature_map.size() - 1);
+      final int[] columns = new int[num_features];
+      final boolean[] nominal = new boolean[num_features];
+      for (int i = 1; i < feature_map.size(); i++) {
+        Feature feature = map_feature.get(i);
+        if (feature.isString()) {
+          throw new AuToBIException("Feature, " + feature.getName() +
+              " is a 'string' feature.  LibLinear does not support this feature type.");
+        }
+        columns[i - 1] = store.getColumnIndex(feature.getName());
+        nominal[i - 1] = feature.isNominal();
+      }
+
+      final de.bwaldvogel.liblinear.Feature[][] features = new de.bwaldvogel.liblinear.Feature[n][];
+      store.forEachRow(new CompactRowStore.RowVisitor() {
+        int r = 0;
+        ArrayList<FeatureNode> nodes = new ArrayList<FeatureNode>();
+
+        public void visit(double[] row) throws AuToBIException {
+          nodes.clear();
+          for (int i = 0; i < num_features; i++) {
+            int c = columns[i];
+            if (c < 0 || Double.isNaN(row[c])) {
+              continue;
+            }
+            if (nominal[i]) {
+              nodes.add(new FeatureNode(i + 1, store.getNominalIndex(c, row[c])));
+            } else {
+              nodes.add(new FeatureNode(i + 1, row[c]));
+            }
+          }
+          features[r] = nodes.toArray(new de.bwaldvogel.liblinear.Feature[nodes.size()]);
+          r++;
+        }
+      });
+      return features;
+    } finally {
+      span.end();
+    }
+  }
+
   /**
    * Converts a FeatureSet to a list of LibLinear Feature[] descriptions.
    *
@@ -452,11 +768,16 @@ public class ClassifierUtils {
       throws
       AuToBIException {
     int n = feature_set.getDataPoints().size();
+    TraceProfiler.Span span = TraceProfiler.begin("convert", "liblinear_features").arg("data_points", n);
     de.bwaldvogel.liblinear.Feature[][] features = new de.bwaldvogel.liblinear.Feature[n][];
     int i = 0;
-    for (Word w : feature_set.getDataPoints()) {
-      features[i] = convertWordToLibLinearFeatures(w, feature_map);
-      i++;
+    try {
+      for (Word w : feature_set.getDataPoints()) {
+        features[i] = convertWordToLibLinearFeatures(w, feature_map);
+        i++;
+      }
+    } finally {
+      span.end();
     }
 
     return features;
@@ -598,6 +919,35 @@ public class ClassifierUtils {
     return norm_params;
   }
 
+  /**
+   * Generates normalization parameters based on the numeric columns of a CompactRowStore.
+   * <p/>
+   * Nominal columns receive empty aggregations, as they do in generateNormParams(FeatureSet).
+   *
+   * @param store the row store to analyze
+   * @return a hash containing aggregations to be used for normalization
+   * @throws AuToBIException if the store cannot be read
+   */
+  public static HashMap<String, Aggregation> generateNormParams(final CompactRowStore store)
+      throws AuToBIException {
+    HashMap<String, Aggregation> norm_params = new HashMap<String, Aggregation>();
+    final Aggregation[] aggs = new Aggregation[store.numColumns()];
+    for (int i = 0; i < aggs.length; ++i) {
+      aggs[i] = new Aggregation();
+      norm_params.put(store.getColumnName(i), aggs[i]);
+    }
+    store.forEachRow(new CompactRowStore.RowVisitor() {
+      public void visit(double[] row) {
+        for (int i = 0; i < aggs.length; ++i) {
+          if (!store.isNominal(i) && !Double.isNaN(row[i])) {
+            aggs[i].insert(row[i]);
+          }
+        }
+      }
+    });
+    return norm_params;
+  }
+
   /**
    * Creates an invertible mapping from Feature names to liblinear compatible feature indices.
    *
@@ -65,6 +65,27 @@ public class PartitionUtils {
     }
   }
 
+  /**
+   * Randomly assigns a fold number to each of n points for cross validation.
+   * <p/>
+   * Fold numbers are drawn as assignFoldNum draws them, for points that are not Regions.
+   *
+   * @param n         The number of points
+   * @param num_folds The total number of folds to assign
+   * @return the fold number of each point
+   * @throws AuToBIException if the number of folds is invalid
+   */
+  public static int[] generateFoldAssignment(int n, int num_folds) throws AuToBIException {
+    if (num_folds < 1) {
+      throw new AuToBIException("The number of folds must be positive.");
+    }
+    int[] folds = new int[n];
+    for (int i = 0; i < n; ++i) {
+      folds[i] = rng.nextInt(num_folds);
+    }
+    return folds;
+  }
+
   /**
    * Randomly assigns a fold number to each label in strings for cross validation.
    * <p/>
@@ -48,7 +48,7 @@ public class SubregionUtils {
    * This is used for pitch accent type classification.
    * <p/>
    * NOTE: if pseudosyllables are very long relative to the length of words, the same pseudosyllable can be assigned to
-   * the same word.
+   * the same word.  If no subregion overlaps a word, the first subregion that ends after the word starts is assigned.
    *
    * @param words        the words
    * @param subregions   the pseudosyllables
@@ -56,44 +56,28 @@ public class SubregionUtils {
    */
   public static void alignLongestSubregionsToWords(List<Word> words, List<Region> subregions,
                                                    String feature_name) {
-    int i = 0;
+    RegionIndex<Region> index = new RegionIndex<Region>(subregions);
     for (Word w : words) {
-
-      // Always try the last subregionregion.
-      while (i >= subregions.size() && i > 0) {
-        --i;
-      }
-      Region current_subregion = subregions.get(i);
-      while (current_subregion.getStart() > w.getStart() && i > 0) {
-        current_subregion = subregions.get(--i);
+      Region best_subregion = null;
+      double max_overlap = -Double.MAX_VALUE;
+      for (Region subregion : index.overlapping(w.getStart(), w.getEnd())) {
+        // Calculate the amount of overlapping material
+        double overlap = Math.min(w.getEnd(), subregion.getEnd()) - Math.max(w.getStart(), subregion.getStart());
+        if (overlap > max_overlap) {
+          max_overlap = overlap;
+          best_subregion = subregion;
+        }
       }
 
-      while (current_subregion != null && current_subregion.getEnd() <= w.getStart()) {
-        ++i;
-        if (i == subregions.size()) {
-          // There are no subregions that are within the current word.
-          current_subregion = null;
-        } else {
-          current_subregion = subregions.get(i);
+      if (best_subregion == null) {
+        // No subregion overlaps the word.  Use the following subregion, if there is one.
+        int following = index.firstEndingAfter(w.getStart(), 0);
+        if (following >= 0) {
+          best_subregion = index.get(following);
         }
       }
 
-      if (current_subregion != null) {
-        Region best_subregion = current_subregion;
-        double max_overlap = -Double.MAX_VALUE;
-        while (current_subregion.getStart() < w.getEnd() && i < subregions.size()) {
-          // Calculate the amount of overlapping material
-          double overlap = Math.min(w.getEnd(), current_subregion.getEnd()) -
-              Math.max(w.getStart(), current_subregion.getStart());
-          if (overlap > max_overlap) {
-            max_overlap = overlap;
-            best_subregion = current_subregion;
-          }
-          ++i;
-          if (i < subregions.size()) {
-            current_subregion = subregions.get(i);
-          }
-        }
+      if (best_subregion != null) {
         w.setAttribute(feature_name, best_subregion);
       }
     }
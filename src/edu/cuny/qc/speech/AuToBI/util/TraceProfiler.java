@@ -0,0 +1,237 @@
+/*  TraceProfiler.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.util;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TraceProfiler records the phases of an AuToBI run as Chrome trace events.
+ * <p/>
+ * Each phase is recorded as a Span on the thread that executes it, so work distributed over a thread pool appears as
+ * one lane per thread.  The resulting file can be loaded by chrome://tracing or https://ui.perfetto.dev.
+ * <p/>
+ * The profiler is disabled by default.  When disabled, begin() returns a shared Span that records nothing.
+ * <p/>
+ * Usage:
+ * <pre>
+ *   TraceProfiler.Span span = TraceProfiler.begin("io", "read_wav");
+ *   try {
+ *     ...
+ *   } finally {
+ *     span.end();
+ *   }
+ * </pre>
+ */
+public class TraceProfiler {
+  // Utility classes cannot be constructed.
+  private TraceProfiler() {
+    throw new AssertionError();
+  }
+
+  private static volatile boolean enabled = false;
+  private static final long origin = System.nanoTime();
+  private static final Queue<Span> spans = new ConcurrentLinkedQueue<Span>();
+  private static final Map<Long, String> thread_names = new ConcurrentHashMap<Long, String>();
+
+  // The span returned while the profiler is disabled.
+  private static final Span NO_OP = new Span(null, null);
+
+  /**
+   * A timed phase of execution.
+   */
+  public static class Span {
+    private final String category;
+    private final String name;
+    private final long tid;
+    private final long start;
+    private long end;
+    private Map<String, Object> args;
+
+    private Span(String category, String name) {
+      this.category = category;
+      this.name = name;
+      this.tid = Thread.currentThread().getId();
+      this.start = System.nanoTime();
+    }
+
+    /**
+     * Attaches an argument to the span.  Arguments are displayed with the event in the trace viewer.
+     *
+     * @param key   the argument name
+     * @param value the argument value
+     * @return this span
+     */
+    public Span arg(String key, Object value) {
+      if (this != NO_OP) {
+        if (args == null) {
+          args = new LinkedHashMap<String, Object>();
+        }
+        args.put(key, value);
+      }
+      return this;
+    }
+
+    /**
+     * Ends the span and records it.
+     */
+    public void end() {
+      if (this != NO_OP) {
+        end = System.nanoTime();
+        spans.add(this);
+      }
+    }
+  }
+
+  /**
+   * Enables recording of spans.
+   */
+  public static void enable() {
+    enabled = true;
+  }
+
+  /**
+   * Disables recording of spans.  Previously recorded spans are retained.
+   */
+  public static void disable() {
+    enabled = false;
+  }
+
+  /**
+   * @return true if spans are being recorded
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Discards all recorded spans.
+   */
+  public static void reset() {
+    spans.clear();
+    thread_names.clear();
+  }
+
+  /**
+   * Begins a span on the current thread.
+   *
+   * @param category the category of the span, e.g. "io" or "extraction"
+   * @param name     the name of the span
+   * @return the span, which must be ended by the caller
+   */
+  public static Span begin(String category, String name) {
+    if (!enabled) {
+      return NO_OP;
+    }
+    Thread t = Thread.currentThread();
+    if (!thread_names.containsKey(t.getId())) {
+      thread_names.put(t.getId(), t.getName());
+    }
+    return new Span(category, name);
+  }
+
+  /**
+   * @return the number of recorded spans
+   */
+  public static int size() {
+    return spans.size();
+  }
+
+  /**
+   * Writes the recorded spans in the Chrome trace event format.
+   *
+   * @param writer the destination
+   * @throws IOException if there is a problem writing
+   */
+  public static void write(Writer writer) throws IOException {
+    List<Span> recorded = new ArrayList<Span>(spans);
+    Collections.sort(recorded, new Comparator<Span>() {
+      public int compare(Span a, Span b) {
+        return a.start < b.start ? -1 : (a.start == b.start ? 0 : 1);
+      }
+    });
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [");
+    boolean first = true;
+    for (Map.Entry<Long, String> thread : new TreeMap<Long, String>(thread_names).entrySet()) {
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": ").append(thread.getKey());
+      sb.append(", \"args\": {\"name\": ").append(AuToBIUtils.quoteJson(thread.getValue())).append("}}");
+    }
+    for (Span span : recorded) {
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("{\"name\": ").append(AuToBIUtils.quoteJson(span.name));
+      sb.append(", \"cat\": ").append(AuToBIUtils.quoteJson(span.category));
+      sb.append(", \"ph\": \"X\", \"pid\": 1, \"tid\": ").append(span.tid);
+      sb.append(", \"ts\": ").append((span.start - origin) / 1000);
+      sb.append(", \"dur\": ").append((span.end - span.start) / 1000);
+      if (span.args != null) {
+        sb.append(", \"args\": {");
+        boolean first_arg = true;
+        for (Map.Entry<String, Object> arg : span.args.entrySet()) {
+          if (!first_arg) {
+            sb.append(", ");
+          }
+          first_arg = false;
+          sb.append(AuToBIUtils.quoteJson(arg.getKey())).append(": ");
+          Object value = arg.getValue();
+          if (value instanceof Boolean || (value instanceof Number && !Double.isNaN(((Number) value).doubleValue()) &&
+              !Double.isInfinite(((Number) value).doubleValue()))) {
+            sb.append(value);
+          } else {
+            sb.append(AuToBIUtils.quoteJson(String.valueOf(value)));
+          }
+        }
+        sb.append("}");
+      }
+      sb.append("}");
+    }
+    sb.append("\n]}\n");
+    writer.write(sb.toString());
+    writer.flush();
+  }
+
+  /**
+   * Writes the recorded spans in the Chrome trace event format to a file.
+   *
+   * @param filename the destination file
+   * @throws IOException if there is a problem writing
+   */
+  public static void write(String filename) throws IOException {
+    Writer writer = new BufferedWriter(new FileWriter(filename));
+    try {
+      write(writer);
+    } finally {
+      writer.close();
+    }
+  }
+}
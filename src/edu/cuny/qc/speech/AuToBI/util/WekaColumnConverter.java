@@ -0,0 +1,245 @@
+/*  WekaColumnConverter.java
+
+    Copyright 2014 Andrew Rosenberg
+
+  This file is part of the AuToBI prosodic analysis package.
+
+  AuToBI is free software: you can redistribute it and/or modify
+  it under the terms of the Apache License (see boilerplate below)
+
+ ***********************************************************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You should have received a copy of the Apache 2.0 License along with AuToBI.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ ***********************************************************************************************************************
+ */
+package edu.cuny.qc.speech.AuToBI.util;
+
+import edu.cuny.qc.speech.AuToBI.classifier.WeightFunction;
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.CompactRowStore;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.NominalDictionary;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * WekaColumnConverter fills weka Instances from data points with a column accessor resolved once per attribute.
+ * <p/>
+ * Each attribute is resolved to its type, its index in the FeatureSet's attribute storage and, for nominal
+ * attributes, a NominalDictionary of its values.  Numeric values are read directly from Number attributes rather than
+ * through their string representation.  Rows are filled in parallel chunks and added to the Instances in data point
+ * order.  String attributes grow their value list as they are assigned, so they are filled serially afterwards.
+ * <p/>
+ * The resulting instances are identical to those generated by ClassifierUtils.assignWekaAttributes.
+ * <p/>
+ * The rows of a CompactRowStore are converted to the same rows without constructing Word objects.
+ */
+public class WekaColumnConverter {
+  public static final int CHUNK_SIZE = 4096;  // the number of data points converted by a single task
+
+  private Instances instances;       // the instances to fill
+  private FeatureSet fs;             // the feature set whose attribute storage indices are used
+  private String[] names;            // the name of each attribute
+  private int[] types;               // the weka type of each attribute
+  private int[] fs_indices;          // the index of each attribute in the FeatureSet, -1 if it is not required
+  private List<NominalDictionary> nominal_codes;  // the value indices of each nominal attribute
+  private boolean has_strings;       // true if any attribute is a string attribute
+
+  /**
+   * Constructs a new WekaColumnConverter.
+   *
+   * @param instances the (possibly empty) instances containing the attributes to fill
+   * @param fs        the feature set storing the data points, or null
+   */
+  public WekaColumnConverter(Instances instances, FeatureSet fs) {
+    this.instances = instances;
+    this.fs = fs;
+    int n = instances.numAttributes();
+    names = new String[n];
+    types = new int[n];
+    fs_indices = new int[n];
+    nominal_codes = new ArrayList<NominalDictionary>();
+    for (int i = 0; i < n; ++i) {
+      Attribute attribute = instances.attribute(i);
+      names[i] = attribute.name();
+      types[i] = attribute.type();
+      fs_indices[i] = (fs != null && fs.getRequiredFeatures().contains(names[i])) ? fs.getFeatureIndex(names[i]) : -1;
+
+      NominalDictionary codes = null;
+      if (types[i] == Attribute.NOMINAL) {
+        codes = new NominalDictionary();
+        for (int j = 0; j < attribute.numValues(); ++j) {
+          codes.add(attribute.value(j));
+        }
+      } else if (types[i] == Attribute.STRING) {
+        has_strings = true;
+      }
+      nominal_codes.add(codes);
+    }
+  }
+
+  /**
+   * Converts a single data point to a row of attribute values.
+   * <p/>
+   * String attributes are left as placeholders, to be assigned by assignStringValues.
+   *
+   * @param data_point the data point
+   * @return the attribute values
+   */
+  public double[] convertRow(Word data_point) {
+    double[] row = new double[names.length];
+    for (int i = 0; i < names.length; ++i) {
+      Object value = data_point.getAttribute(fs, fs_indices[i], names[i]);
+      if (value == null) {
+        row[i] = Utils.missingValue();
+      } else if (types[i] == Attribute.NUMERIC && (value instanceof Double || value instanceof Integer)) {
+        row[i] = ((Number) value).doubleValue();
+      } else {
+        String s = value.toString();
+        if (s.equals("?")) {
+          row[i] = Utils.missingValue();
+        } else {
+          switch (types[i]) {
+            case Attribute.NOMINAL:
+              row[i] = nominal_codes.get(i).encode(s);
+              break;
+            case Attribute.NUMERIC:
+              // Check if value is really a number.
+              try {
+                row[i] = Double.valueOf(s);
+              } catch (NumberFormatException e) {
+                AuToBIUtils.error("Number expected for feature: " + names[i]);
+              }
+              break;
+            case Attribute.STRING:
+              break;
+            default:
+              AuToBIUtils.error("Unknown attribute type");
+          }
+        }
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Assigns the values of string attributes to a row generated by convertRow.
+   *
+   * @param data_point the data point
+   * @param row        the row of attribute values
+   */
+  private void assignStringValues(Word data_point, double[] row) {
+    for (int i = 0; i < names.length; ++i) {
+      if (types[i] == Attribute.STRING && !Utils.isMissingValue(row[i])) {
+        row[i] = instances.attribute(i).addStringValue(data_point.getAttribute(fs, fs_indices[i], names[i]).toString());
+      }
+    }
+  }
+
+  /**
+   * Converts data points and adds them to the instances.
+   *
+   * @param data_points the data points to convert
+   * @param fn          a weight function for the data points, or null for unit weights
+   * @param num_threads the number of threads to convert chunks of data points on
+   * @throws AuToBIException if the conversion fails
+   */
+  public void addAll(final List<Word> data_points, final WeightFunction fn, int num_threads)
+      throws AuToBIException {
+    final double[][] rows = new double[data_points.size()][];
+    final double[] weights = new double[data_points.size()];
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int start = 0; start < data_points.size(); start += CHUNK_SIZE) {
+      final int chunk_start = start;
+      final int chunk_end = Math.min(data_points.size(), start + CHUNK_SIZE);
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          for (int i = chunk_start; i < chunk_end; ++i) {
+            Word w = data_points.get(i);
+            rows[i] = convertRow(w);
+            weights[i] = (fn == null) ? 1 : fn.weight(w);
+          }
+          return null;
+        }
+      });
+    }
+    AuToBIUtils.invokeAll(tasks, num_threads);
+
+    for (int i = 0; i < rows.length; ++i) {
+      if (has_strings) {
+        assignStringValues(data_points.get(i), rows[i]);
+      }
+      Instance inst = new DenseInstance(weights[i], rows[i]);
+      inst.setDataset(instances);
+      instances.add(inst);
+      rows[i] = null;
+    }
+  }
+
+  /**
+   * Converts the rows of a CompactRowStore and adds them to the instances, without constructing Word objects.
+   * <p/>
+   * The attributes must have been generated from the features of store.getFeatureSet(), so that the value indices of
+   * nominal attributes are the nominal indices of the store.
+   *
+   * @param store         the row store
+   * @param class_weights the weight of each class value, or null for unit weights.  As with a
+   *                      ClassBasedWeightFunction, rows with a missing or unweighted class value have a weight of 0.
+   * @throws AuToBIException if an attribute is not a stored feature or a spilled segment cannot be read
+   */
+  public void addAll(final CompactRowStore store, final Map<String, Double> class_weights)
+      throws AuToBIException {
+    final int[] columns = new int[names.length];
+    for (int i = 0; i < names.length; ++i) {
+      columns[i] = store.getColumnIndex(names[i]);
+      boolean nominal = types[i] == Attribute.NOMINAL;
+      if (columns[i] < 0 || types[i] == Attribute.STRING || nominal != store.isNominal(columns[i])) {
+        throw new AuToBIException("Attribute " + names[i] + " is not a stored feature of the row store.");
+      }
+    }
+
+    final int class_column = store.getClassColumn();
+    store.forEachRow(new CompactRowStore.RowVisitor() {
+      public void visit(double[] stored) {
+        double[] row = new double[names.length];
+        for (int i = 0; i < names.length; ++i) {
+          double value = stored[columns[i]];
+          if (Double.isNaN(value)) {
+            row[i] = Utils.missingValue();
+          } else if (types[i] == Attribute.NOMINAL) {
+            row[i] = store.getNominalIndex(columns[i], value);
+          } else {
+            row[i] = value;
+          }
+        }
+        double weight = 1;
+        if (class_weights != null) {
+          String c = class_column < 0 ? null : store.getNominalValue(class_column, stored[class_column]);
+          weight = (c != null && class_weights.containsKey(c)) ? class_weights.get(c) : 0;
+        }
+        Instance inst = new DenseInstance(weight, row);
+        inst.setDataset(instances);
+        instances.add(inst);
+      }
+    });
+  }
+}
@@ -120,7 +120,8 @@ public class WordReaderUtils {
         break;
       case POSTING_LIST:
         try {
-          reader = new PostingListReader(filename, params.getParameter("target_stem"));
+          reader = new PostingListReader(filename, params.getParameter("target_stem"),
+              params.booleanParameter("posting_list_cache", false));
         } catch (AuToBIException e) {
           AuToBIUtils.error(e.getMessage());
           return null;
@@ -22,19 +22,30 @@ package edu.cuny.qc.speech.AuToBI;
 import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
 import edu.cuny.qc.speech.AuToBI.classifier.MockClassifier;
 import edu.cuny.qc.speech.AuToBI.core.*;
+import edu.cuny.qc.speech.AuToBI.featureextractor.ContextNormalizedFeatureExtractor;
 import edu.cuny.qc.speech.AuToBI.featureextractor.FeatureExtractorException;
+import edu.cuny.qc.speech.AuToBI.featureextractor.HypothesizedEventFeatureExtractor;
+import edu.cuny.qc.speech.AuToBI.featureextractor.MultiContextNormalizedFeatureExtractor;
+import edu.cuny.qc.speech.AuToBI.featureextractor.MultiSpectrumBandFeatureExtractor;
+import edu.cuny.qc.speech.AuToBI.featureextractor.SpectrumBandFeatureExtractor;
 import edu.cuny.qc.speech.AuToBI.featureset.*;
 import edu.cuny.qc.speech.AuToBI.io.FormattedFile;
+import edu.cuny.qc.speech.AuToBI.io.HypothesisCheckpoint;
+import edu.cuny.qc.speech.AuToBI.io.HypothesisWriter;
+import edu.cuny.qc.speech.AuToBI.util.AuToBIUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -251,6 +262,42 @@ public class AuToBITest {
   }
 
 
+  @Test
+  public void testInitializeFeatureRegistryConsolidatesContextNormalizedFeatureExtractors() {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("zMaxWordContext[f0,f1b1]");
+    fs.insertRequiredFeature("zMeanWordContext[f0,f2b0]");
+    fs.constructFeatures();
+
+    autobi.getMonikerMap().put("f0", MockF0NoParamFeatureExtractor.class);
+    autobi.getMonikerMap().put("zMaxWordContext", ContextNormalizedFeatureExtractor.class);
+    autobi.getMonikerMap().put("zMeanWordContext", ContextNormalizedFeatureExtractor.class);
+
+    try {
+      autobi.initializeFeatureRegistry(fs);
+    } catch (Exception e) {
+      fail(e.getMessage());
+    }
+
+    FeatureExtractor fe = autobi.getFeatureRegistry().get("zMaxWordContext[f0,f1b1]");
+    assertTrue(fe instanceof MultiContextNormalizedFeatureExtractor);
+    assertSame(fe, autobi.getFeatureRegistry().get("zMeanWordContext[f0,f2b0]"));
+  }
+
+  @Test
+  public void testConsolidateSpectrumBandFeatureExtractors() {
+    autobi.registerFeatureExtractor(new SpectrumBandFeatureExtractor(0, 1));
+    autobi.registerFeatureExtractor(new SpectrumBandFeatureExtractor(0, 2));
+    autobi.registerFeatureExtractor(new SpectrumBandFeatureExtractor(1, 2));
+
+    autobi.consolidateSpectrumBandFeatureExtractors();
+
+    FeatureExtractor fe = autobi.getFeatureRegistry().get("spectrumBand[0,1]");
+    assertTrue(fe instanceof MultiSpectrumBandFeatureExtractor);
+    assertEquals(3, ((MultiSpectrumBandFeatureExtractor) fe).getBands().size());
+    assertSame(fe, autobi.getFeatureRegistry().get("spectrumBand[1,2]"));
+  }
+
   @Test
   public void testInitializeReferenceCounting() {
     // Set up Test Feature Extraction Configuration
@@ -456,6 +503,47 @@ public class AuToBITest {
     }
   }
 
+  @Test
+  public void testFeatureExtractionRecordsFeatureExtractorMetrics() {
+    FeatureSet fs = new FeatureSet();
+    fs.insertDataPoint(new Word(0.0, 0.1, "a"));
+    fs.insertDataPoint(new Word(0.1, 0.2, "b"));
+
+    fs.setClassAttribute("feature1");
+    fs.insertRequiredFeature("feature2");
+    fs.constructFeatures();
+
+    FeatureExtractor fe = new MockRequiresF3FeatureExtractor();
+    FeatureExtractor fe2 = new MockProvidesF3FeatureExtractor();
+    autobi.registerFeatureExtractor(fe);
+    autobi.registerFeatureExtractor(fe2);
+    autobi.setMetricsFile("test.wav");
+
+    try {
+      autobi.extractFeatures(fs);
+    } catch (AuToBIException e) {
+      fail(e.getMessage());
+    } catch (FeatureExtractorException e) {
+      fail();
+    }
+
+    FeatureExtractorMetrics metrics = autobi.getFeatureExtractorMetrics();
+    FeatureExtractorStats stats = metrics.getExtractorStats(fe);
+    assertEquals(1, stats.getInvocations());
+    assertEquals(2, stats.getRegions());
+    assertEquals(2, stats.getFeatures());
+    assertEquals("mock", stats.getMoniker());
+
+    // feature3 is removed once feature1 and feature2 have been extracted.
+    FeatureExtractorStats stats2 = metrics.getExtractorStats(fe2);
+    assertEquals(1, stats2.getInvocations());
+    assertEquals(1, stats2.getCollectedFeatures());
+    assertTrue(metrics.getCollectionEvents() > 0);
+
+    assertTrue(metrics.getFiles().contains("test.wav"));
+    assertEquals(2, metrics.getFileStats("test.wav").size());
+  }
+
   @Test
   public void testUnregisterFeatureExtractorsClearsTheFeatureRegistry() {
     FeatureSet fs = new FeatureSet();
@@ -712,6 +800,45 @@ public class AuToBITest {
     }
   }
 
+  @Test
+  public void testPropagateFeatureSetPreservesInputOrderWithSeveralThreads() {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("feature3");
+
+    FeatureExtractor fe = new MockProvidesF3FeatureExtractor();
+    autobi.getMonikerMap().put("feature3", fe.getClass());
+
+    try {
+      FormattedFile text_grid = new FormattedFile(TEST_DIR + "/test.TextGrid");
+      FormattedFile simple = new FormattedFile(TEST_DIR + "/test.txt", FormattedFile.Format.SIMPLE_WORD);
+
+      FeatureSet sequential_fs = fs.newInstance();
+      autobi.initializeFeatureRegistry(sequential_fs);
+      autobi.propagateFeatureSet(Arrays.asList(text_grid), sequential_fs);
+      int num_text_grid_words = sequential_fs.getDataPoints().size();
+
+      autobi.getParameters().setParameter("num_threads", "2");
+      autobi.getParameters().setParameter("memory_budget_mb", "1");
+      autobi.propagateFeatureSet(Arrays.asList(text_grid, simple), fs);
+
+      assertTrue(fs.getDataPoints().size() > num_text_grid_words);
+      for (int i = 0; i < num_text_grid_words; ++i) {
+        assertEquals(sequential_fs.getDataPoints().get(i).getLabel(), fs.getDataPoints().get(i).getLabel());
+        assertEquals(sequential_fs.getDataPoints().get(i).getStart(), fs.getDataPoints().get(i).getStart(), 0.0);
+      }
+    } catch (AuToBIException e) {
+      fail(e.getMessage());
+    } catch (UnsupportedAudioFileException e) {
+      fail(e.getMessage());
+    } catch (InvocationTargetException e) {
+      fail(e.getMessage());
+    } catch (InstantiationException e) {
+      fail(e.getMessage());
+    } catch (IllegalAccessException e) {
+      fail(e.getMessage());
+    }
+  }
+
   @Test
   public void testPropagateFeatureSetPreserveFeaturesPropagatesFeatures() {
     // Set up Test Feature Extraction Configuration
@@ -991,4 +1118,227 @@ public class AuToBITest {
     out.writeObject(classifier);
     out.close();
   }
+
+  /**
+   * Constructs two tasks, "upstream" and "downstream", where the downstream task requires the hypothesis of the
+   * upstream task.  Each classifier counts the words it classifies.
+   */
+  private List<FeatureSet> initializeDependentTasks(final int[] counts, File upstream_model, File downstream_model)
+      throws IOException {
+    writeBytes(upstream_model, new byte[]{1});
+    writeBytes(downstream_model, new byte[]{2});
+
+    FeatureSet upstream_fs = new FeatureSet();
+    upstream_fs.insertRequiredFeature("f1");
+    FeatureSet downstream_fs = new FeatureSet();
+    downstream_fs.insertRequiredFeature("up_hyp");
+    downstream_fs.insertRequiredFeature("f2");
+
+    autobi.tasks = new HashMap<String, AuToBITask>();
+    String[] names = {"upstream", "downstream"};
+    String[] hyps = {"up_hyp", "down_hyp"};
+    File[] models = {upstream_model, downstream_model};
+    FeatureSet[] feature_sets = {upstream_fs, downstream_fs};
+    for (int i = 0; i < 2; ++i) {
+      final int idx = i;
+      AuToBIClassifier classifier = new MockClassifier() {
+        @Override
+        public Distribution distributionForInstance(Word testing_point) {
+          counts[idx]++;
+          Distribution d = new Distribution();
+          d.add("X" + counts[idx], 1.0);
+          return d;
+        }
+      };
+      AuToBITask task = new AuToBITask();
+      task.setClassifier(classifier);
+      task.setHypFeature(hyps[i]);
+      task.setFeatureSet(feature_sets[i]);
+      task.setModelFile(models[i].getPath());
+      autobi.tasks.put(names[i], task);
+      autobi.registerFeatureExtractor(new HypothesizedEventFeatureExtractor(hyps[i], classifier, feature_sets[i]));
+    }
+    autobi.registerNullFeatureExtractor("f1");
+    autobi.registerNullFeatureExtractor("f2");
+
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("up_hyp");
+    fs.insertRequiredFeature("down_hyp");
+    fs.insertRequiredFeature("f1");
+    fs.insertRequiredFeature("f2");
+    List<FeatureSet> result = new ArrayList<FeatureSet>();
+    result.add(fs);
+    return result;
+  }
+
+  private void writeBytes(File file, byte[] bytes) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(bytes);
+    out.close();
+  }
+
+  private List<Word> makeCheckpointWords() {
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 3; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("f1", i * 1.0);
+      w.setAttribute("f2", i * 2.0);
+      words.add(w);
+    }
+    return words;
+  }
+
+  @Test
+  public void testGetStaleTasksIncludesDownstreamTasks() throws Exception {
+    File up = File.createTempFile("upstream", ".classifier");
+    File down = File.createTempFile("downstream", ".classifier");
+    up.deleteOnExit();
+    down.deleteOnExit();
+    initializeDependentTasks(new int[2], up, down);
+
+    List<Word> words = makeCheckpointWords();
+    for (Word w : words) {
+      w.setAttribute("up_hyp", "A");
+      w.setAttribute("down_hyp", "B");
+    }
+    HypothesisCheckpoint checkpoint = new HypothesisCheckpoint("test", words,
+        Arrays.asList("f1", "f2", "up_hyp", "down_hyp"), autobi.getModelFingerprints());
+
+    assertTrue(autobi.getStaleTasks(checkpoint).isEmpty());
+
+    writeBytes(down, new byte[]{3});
+    assertEquals(new HashSet<String>(Arrays.asList("downstream")), autobi.getStaleTasks(checkpoint));
+
+    writeBytes(up, new byte[]{4});
+    assertEquals(new HashSet<String>(Arrays.asList("upstream", "downstream")), autobi.getStaleTasks(checkpoint));
+  }
+
+  @Test
+  public void testRestoreFromCheckpointOnlyReclassifiesChangedTasks() throws Throwable {
+    File up = File.createTempFile("upstream", ".classifier");
+    File down = File.createTempFile("downstream", ".classifier");
+    up.deleteOnExit();
+    down.deleteOnExit();
+    int[] counts = new int[2];
+    FeatureSet fs = initializeDependentTasks(counts, up, down).get(0);
+
+    fs.setDataPoints(makeCheckpointWords());
+    autobi.extractFeatures(fs);
+    assertEquals(3, counts[0]);
+    assertEquals(3, counts[1]);
+    HypothesisCheckpoint checkpoint = new HypothesisCheckpoint("test", fs.getDataPoints(),
+        fs.getRequiredFeatures(), autobi.getModelFingerprints());
+
+    // Only the downstream model changes.
+    writeBytes(down, new byte[]{3});
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 3; ++i) {
+      words.add(new Word(i, i + 1, "w" + i));
+    }
+    fs.setDataPoints(words);
+    autobi.resetExecutedFeatureExtractors();
+    assertEquals(new HashSet<String>(Arrays.asList("downstream")), autobi.restoreFromCheckpoint(checkpoint, fs));
+    autobi.extractFeatures(fs);
+
+    assertEquals(3, counts[0]);
+    assertEquals(6, counts[1]);
+    assertEquals("X1", words.get(0).getAttribute("up_hyp"));
+    assertEquals("X4", words.get(0).getAttribute("down_hyp"));
+    assertEquals(2.0, (Double) words.get(1).getAttribute("f2"), 0.0001);
+  }
+
+  @Test
+  public void testRestoreFromCheckpointRecomputesFeaturesDerivedFromStaleHypotheses() throws Throwable {
+    File up = File.createTempFile("upstream", ".classifier");
+    File down = File.createTempFile("downstream", ".classifier");
+    up.deleteOnExit();
+    down.deleteOnExit();
+    int[] counts = new int[2];
+    FeatureSet fs = initializeDependentTasks(counts, up, down).get(0);
+    FeatureExtractor derived_fe = new FeatureExtractor() {
+      @Override
+      public void extractFeatures(List regions) throws FeatureExtractorException {
+        for (Region r : (List<Region>) regions) {
+          r.setAttribute("up_derived", r.getAttribute("up_hyp") + "!");
+        }
+      }
+    };
+    derived_fe.getExtractedFeatures().add("up_derived");
+    derived_fe.getRequiredFeatures().add("up_hyp");
+    autobi.registerFeatureExtractor(derived_fe);
+    fs.insertRequiredFeature("up_derived");
+
+    fs.setDataPoints(makeCheckpointWords());
+    autobi.extractFeatures(fs);
+    HypothesisCheckpoint checkpoint = new HypothesisCheckpoint("test", fs.getDataPoints(),
+        fs.getRequiredFeatures(), autobi.getModelFingerprints());
+
+    writeBytes(up, new byte[]{4});
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 3; ++i) {
+      words.add(new Word(i, i + 1, "w" + i));
+    }
+    fs.setDataPoints(words);
+    autobi.resetExecutedFeatureExtractors();
+    autobi.restoreFromCheckpoint(checkpoint, fs);
+    autobi.extractFeatures(fs);
+
+    assertEquals("X4", words.get(0).getAttribute("up_hyp"));
+    assertEquals("X4!", words.get(0).getAttribute("up_derived"));
+  }
+
+  @Test
+  public void testGetModelFingerprintsUsesModelParameters() throws Exception {
+    File detector = File.createTempFile("pitch_accent_detector", ".classifier");
+    File classifier = File.createTempFile("phrase_accent_classifier", ".classifier");
+    detector.deleteOnExit();
+    classifier.deleteOnExit();
+    writeBytes(detector, new byte[]{1});
+    writeBytes(classifier, new byte[]{2});
+    autobi.getParameters().setParameter("pitch_accent_detector", detector.getPath());
+    autobi.getParameters().setParameter("phrase_accent_classifier", classifier.getPath());
+    autobi.tasks = AuToBIUtils.createTaskListFromParameters(autobi.getParameters(), false);
+
+    HashMap<String, String> fingerprints = autobi.getModelFingerprints();
+
+    assertEquals(2, fingerprints.size());
+    assertEquals(HypothesisCheckpoint.fingerprint(detector.getPath()), fingerprints.get("pitch_accent_detection"));
+    assertEquals(HypothesisCheckpoint.fingerprint(classifier.getPath()),
+        fingerprints.get("phrase_accent_classification"));
+  }
+
+  @Test
+  public void testNewHypothesisWriterUsesOutFormat() throws AuToBIException {
+    AuToBITask task = new AuToBITask();
+    task.setHypFeature("hyp_pitch_accent_location");
+    autobi.getTasks().put("pitch_accent_detection", task);
+    autobi.getParameters().setParameter("out_format", "jsonl");
+    List<Word> words = new ArrayList<Word>();
+    words.add(new Word(0.0, 0.5, "one"));
+    words.get(0).setAttribute("hyp_pitch_accent_location", "ACCENTED");
+
+    HypothesisWriter writer = autobi.newHypothesisWriter();
+    writer.mergeHypotheses(words);
+
+    assertEquals("{\"start\": 0.0, \"end\": 0.5, \"label\": \"one\", \"pitch_accent\": \"ACCENTED\", " +
+        "\"hypotheses\": {\"pitch_accent_detection\": \"ACCENTED\"}}\n", writer.toString(words));
+  }
+
+  @Test(expected = AuToBIException.class)
+  public void testNewHypothesisWriterRejectsUnknownFormat() throws AuToBIException {
+    autobi.getParameters().setParameter("out_format", "xml");
+    autobi.newHypothesisWriter();
+  }
+
+  @Test
+  public void testGenerateManualLookingTextGridString() {
+    List<Word> words = new ArrayList<Word>();
+    words.add(new Word(0.0, 0.5, "one"));
+    words.get(0).setAttribute("hyp_pitch_accent", "H*");
+
+    String text_grid = autobi.generateManualLookingTextGridString(words);
+
+    assertTrue(text_grid.contains("points: size = 1\npoints [2]:\ntime = 0.25\nmark = \"H*\"\n"));
+    assertTrue(text_grid.endsWith("points: size = 1\npoints [1]:\ntime = 0.5\nmark = \"1\"\n"));
+  }
 }
@@ -0,0 +1,86 @@
+package edu.cuny.qc.speech.AuToBI;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBITask;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for AuToBITrainTest.
+ *
+ * @see AuToBITrainTest
+ */
+public class AuToBITrainTestTest {
+
+  private FeatureSet makeSharedTesting() {
+    FeatureSet shared = new FeatureSet();
+    Word w1 = new Word(0.0, 0.5, "one");
+    w1.setAttribute("f0", 1.0);
+    w1.setAttribute("nominal_PitchAccentType", "H*");
+    Word w2 = new Word(0.5, 1.0, "two");
+    w2.setAttribute("f0", 2.0);
+    w2.setAttribute("nominal_PitchAccentType", "NOACCENT");
+    Word w3 = new Word(1.0, 1.5, "three");
+    w3.setAttribute("f0", 3.0);
+    w3.setAttribute("nominal_PitchAccentType", "L*");
+    shared.getDataPoints().add(w1);
+    shared.getDataPoints().add(w2);
+    shared.getDataPoints().add(w3);
+    return shared;
+  }
+
+  private AuToBITask makeTask() {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("f0");
+    fs.setClassAttribute("nominal_PitchAccentType");
+    AuToBITask task = new AuToBITask();
+    task.setFeatureSet(fs);
+    return task;
+  }
+
+  @Test
+  public void testGetSharedTestingFeatureSetConstructsFeatures() {
+    FeatureSet testing_fs = AuToBITrainTest.getSharedTestingFeatureSet(makeTask(), makeSharedTesting(),
+        new boolean[3], "");
+
+    assertEquals(3, testing_fs.getDataPoints().size());
+    assertEquals(2, testing_fs.getFeatures().size());
+    assertTrue(testing_fs.getFeature("nominal_PitchAccentType").isNominal());
+  }
+
+  @Test
+  public void testGetSharedTestingFeatureSetMarksOmittedPoints() {
+    FeatureSet shared = makeSharedTesting();
+    FeatureSet testing_fs = AuToBITrainTest.getSharedTestingFeatureSet(makeTask(), shared,
+        new boolean[]{false, false, true}, "nominal_PitchAccentType:NOACCENT");
+
+    assertFalse(testing_fs.getDataPoints().get(0).hasAttribute("__ignore__"));
+    assertEquals(true, testing_fs.getDataPoints().get(1).getAttribute("__ignore__"));
+    assertEquals(true, testing_fs.getDataPoints().get(2).getAttribute("__ignore__"));
+  }
+
+  @Test
+  public void testSharedTestingArffFileHasFeatureHeader() throws Exception {
+    FeatureSet testing_fs = AuToBITrainTest.getSharedTestingFeatureSet(makeTask(), makeSharedTesting(),
+        new boolean[3], "");
+    File file = File.createTempFile("testing", ".arff");
+    file.deleteOnExit();
+
+    testing_fs.writeArff(file.getPath(), "AuToBIGenerated");
+
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    StringBuilder contents = new StringBuilder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      contents.append(line).append("\n");
+    }
+    reader.close();
+    assertTrue(contents.toString().contains("@attribute f0"));
+  }
+}
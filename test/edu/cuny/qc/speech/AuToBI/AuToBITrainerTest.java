@@ -0,0 +1,133 @@
+package edu.cuny.qc.speech.AuToBI;
+
+import edu.cuny.qc.speech.AuToBI.classifier.MockClassifier;
+import edu.cuny.qc.speech.AuToBI.core.AuToBITask;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.io.FormattedFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for AuToBITrainer.
+ *
+ * @see AuToBITrainer
+ */
+public class AuToBITrainerTest {
+
+  /**
+   * A classifier that records the feature set it was trained on.
+   */
+  private static class RecordingClassifier extends MockClassifier {
+    FeatureSet trained;
+
+    @Override
+    public void train(FeatureSet feature_set) throws Exception {
+      trained = feature_set;
+    }
+  }
+
+  private AuToBITask task(String class_attribute, String... features) {
+    FeatureSet fs = new FeatureSet();
+    fs.setClassAttribute(class_attribute);
+    for (String f : features) {
+      fs.insertRequiredFeature(f);
+    }
+    AuToBITask task = new AuToBITask();
+    task.setFeatureSet(fs);
+    task.setClassifier(new RecordingClassifier());
+    return task;
+  }
+
+  @Test
+  public void testGetSharedFeatureSetTakesUnionOfTasks() {
+    AuToBITask detection = task("nominal_PitchAccent", "f0", "duration");
+    AuToBITask classification = task("nominal_PitchAccentType", "f0", "intensity");
+
+    FeatureSet shared = AuToBITrainer.getSharedFeatureSet(Arrays.asList(detection, classification),
+        Arrays.asList("", "nominal_PitchAccentType:NOACCENT", "nominal_Other:X"));
+
+    assertEquals("nominal_PitchAccent", shared.getClassAttribute());
+    assertTrue(shared.getRequiredFeatures().contains("f0"));
+    assertTrue(shared.getRequiredFeatures().contains("duration"));
+    assertTrue(shared.getRequiredFeatures().contains("intensity"));
+    assertTrue(shared.getRequiredFeatures().contains("nominal_PitchAccentType"));
+    assertTrue(shared.getRequiredFeatures().contains("nominal_Other"));
+    assertFalse(shared.getRequiredFeatures().contains("nominal_PitchAccent"));
+  }
+
+  @Test
+  public void testTrainClassifierFromSharedFeatureSetAppliesOmission() throws Exception {
+    AuToBITask classification = task("nominal_PitchAccentType", "f0");
+    FeatureSet shared = AuToBITrainer.getSharedFeatureSet(Arrays.asList(classification), Arrays.asList(""));
+
+    String[] types = {"H*", "NOACCENT", "L*", "NOACCENT"};
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < types.length; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("f0", (double) i);
+      w.setAttribute("nominal_PitchAccentType", types[i]);
+      words.add(w);
+    }
+    words.get(2).setAttribute("__ignore__", true);
+    shared.getDataPoints().addAll(words);
+
+    AuToBI autobi = new AuToBI();
+    AuToBITrainer trainer = new AuToBITrainer(autobi);
+    trainer.trainClassifier(shared, classification, "nominal_PitchAccentType:NOACCENT");
+
+    FeatureSet trained = ((RecordingClassifier) classification.getClassifier()).trained;
+    assertSame(classification.getFeatureSet(), trained);
+    assertEquals(1, trained.getDataPoints().size());
+    assertSame(words.get(0), trained.getDataPoints().get(0));
+
+    // Features are constructed before omission, as they are when a task is extracted on its own.
+    assertEquals(3, trained.getFeature("nominal_PitchAccentType").getNominalValues().size());
+
+    // The shared data points are unchanged.
+    assertEquals(4, shared.getDataPoints().size());
+    assertFalse(words.get(1).hasAttribute("__ignore__"));
+  }
+
+  @Test
+  public void testTrainClassifierFromFeatureStoreAppliesOmission() throws Exception {
+    FeatureSet stored = new FeatureSet();
+    stored.insertRequiredFeature("f0");
+    stored.insertRequiredFeature("duration");
+    stored.setClassAttribute("nominal_PitchAccentType");
+    String[] types = {"H*", "NOACCENT", "L*", "!H*"};
+    for (int i = 0; i < types.length; ++i) {
+      Word w = new Word(i, i + 1, "w" + i, null, "a.wav");
+      w.setAttribute("f0", (double) i);
+      w.setAttribute("duration", 0.5);
+      w.setAttribute("nominal_PitchAccentType", types[i]);
+      stored.getDataPoints().add(w);
+    }
+    stored.getDataPoints().get(2).setAttribute("__ignore__", true);
+    stored.constructFeatures();
+    File file = File.createTempFile("training", ".abfs");
+    file.deleteOnExit();
+    stored.writeFeatureStore(file.getPath());
+
+    AuToBITask classification = task("nominal_PitchAccentType", "f0");
+    AuToBI autobi = new AuToBI();
+    autobi.getParameters().setParameter("training_feature_store", file.getPath());
+    autobi.getParameters().setParameter("attribute_omit", "nominal_PitchAccentType:NOACCENT");
+    AuToBITrainer trainer = new AuToBITrainer(autobi);
+    trainer.trainClassifier(new ArrayList<FormattedFile>(), classification.getFeatureSet(),
+        classification.getClassifier());
+
+    FeatureSet trained = ((RecordingClassifier) classification.getClassifier()).trained;
+    assertEquals(2, trained.getDataPoints().size());
+    assertEquals(0.0, (Double) trained.getDataPoints().get(0).getAttribute("f0"), 0.0);
+    assertEquals("!H*", trained.getDataPoints().get(1).getAttribute("nominal_PitchAccentType"));
+    assertFalse(trained.getDataPoints().get(0).hasAttribute("duration"));
+  }
+}
+
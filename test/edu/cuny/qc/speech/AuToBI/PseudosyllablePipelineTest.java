@@ -0,0 +1,132 @@
+package edu.cuny.qc.speech.AuToBI;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.io.HypothesisWriter;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PseudosyllablePipeline.
+ *
+ * @see PseudosyllablePipeline
+ */
+public class PseudosyllablePipelineTest {
+  private static final String TEST_DIR = System.getenv().get("AUTOBI_TEST_DIR");
+
+  @Test
+  public void testRunReturnsOrderedPseudosyllablesInFileTime() throws Throwable {
+    AuToBI autobi = new AuToBI();
+    autobi.getParameters().setParameter("chunk_duration", "2.0");
+    autobi.getParameters().setParameter("chunk_overlap", "0.5");
+    autobi.getParameters().setParameter("pipeline_queue_size", "1");
+
+    List<Word> words = new PseudosyllablePipeline(autobi).run(TEST_DIR + "/bdc-test.wav");
+
+    assertTrue(words.size() > 0);
+    double last_end = 0.0;
+    for (Word w : words) {
+      assertTrue(w.getStart() >= last_end - 0.0001);
+      assertTrue(w.getEnd() > w.getStart());
+      assertFalse(w.hasAttribute("wav"));
+      last_end = w.getEnd();
+    }
+    assertTrue(words.get(words.size() - 1).getStart() > 2.0);
+    assertTrue(last_end <= 8.3773125 + 0.0001);
+  }
+
+  @Test
+  public void testRunWithSingleChunkMatchesChunkReader() throws Throwable {
+    AuToBI autobi = new AuToBI();
+    autobi.getParameters().setParameter("chunk_duration", "60");
+
+    List<Word> words = new PseudosyllablePipeline(autobi).run(TEST_DIR + "/bdc-test.wav");
+
+    assertEquals(12, words.size());
+  }
+
+  @Test
+  public void testRunFailsOnMissingFile() throws Throwable {
+    AuToBI autobi = new AuToBI();
+    autobi.getParameters().setParameter("chunk_duration", "2.0");
+
+    try {
+      new PseudosyllablePipeline(autobi).run(TEST_DIR + "/no_such_file.wav");
+      fail();
+    } catch (AuToBIException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRunWaitsForReaderWhenClassificationFails() throws Throwable {
+    AuToBI autobi = new AuToBI() {
+      @Override
+      public void extractFeatures(FeatureSet fs) throws AuToBIException {
+        throw new AuToBIException("extraction failed");
+      }
+    };
+    autobi.getParameters().setParameter("chunk_duration", "1.0");
+    autobi.getParameters().setParameter("pipeline_queue_size", "1");
+
+    try {
+      new PseudosyllablePipeline(autobi).run(TEST_DIR + "/bdc-test.wav");
+      fail();
+    } catch (AuToBIException e) {
+      assertEquals("extraction failed", e.getMessage());
+    }
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      assertFalse(t.getName().equals("pseudosyllable-reader"));
+    }
+  }
+
+  private static String read(File file) throws IOException {
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    StringBuilder contents = new StringBuilder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      contents.append(line).append("\n");
+    }
+    reader.close();
+    return contents.toString();
+  }
+
+  @Test
+  public void testRunStreamsTextGridOfEveryChunk() throws Throwable {
+    AuToBI autobi = new AuToBI();
+    autobi.getParameters().setParameter("chunk_duration", "2.0");
+    List<Word> words = new PseudosyllablePipeline(autobi).run(TEST_DIR + "/bdc-test.wav");
+    File file = File.createTempFile("pipeline", ".TextGrid");
+    file.deleteOnExit();
+
+    autobi = new AuToBI();
+    autobi.getParameters().setParameter("chunk_duration", "2.0");
+    int num_words = new PseudosyllablePipeline(autobi).run(TEST_DIR + "/bdc-test.wav", file.getPath());
+
+    assertEquals(words.size(), num_words);
+    assertEquals(new HypothesisWriter(autobi.getTasks(), HypothesisWriter.Format.TEXTGRID).toString(words),
+        read(file));
+  }
+
+  @Test
+  public void testRunStreamsJsonLines() throws Throwable {
+    AuToBI autobi = new AuToBI();
+    autobi.getParameters().setParameter("chunk_duration", "2.0");
+    autobi.getParameters().setParameter("out_format", "jsonl");
+    File file = File.createTempFile("pipeline", ".jsonl");
+    file.deleteOnExit();
+
+    int num_words = new PseudosyllablePipeline(autobi).run(TEST_DIR + "/bdc-test.wav", file.getPath());
+
+    assertTrue(num_words > 0);
+    assertEquals(num_words, read(file).split("\n").length);
+  }
+}
@@ -0,0 +1,109 @@
+package edu.cuny.qc.speech.AuToBI;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.SpeakerNormalizationParameter;
+import edu.cuny.qc.speech.AuToBI.core.WavData;
+import edu.cuny.qc.speech.AuToBI.io.WavReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for SpeakerNormalizationParameterGenerator.
+ *
+ * @see SpeakerNormalizationParameterGenerator
+ */
+public class SpeakerNormalizationParameterGeneratorTest {
+  private static final String TEST_DIR = System.getenv().get("AUTOBI_TEST_DIR");
+
+  @Test
+  public void testGenerateFromFilenamesMatchesGenerateFromWavData() throws Exception {
+    WavData wav = new WavReader().read(TEST_DIR + "/test.wav");
+    SpeakerNormalizationParameterGenerator generator = new SpeakerNormalizationParameterGenerator();
+    SpeakerNormalizationParameter expected = generator.generateNormalizationParameter(wav, "s1");
+
+    Map<String, SpeakerNormalizationParameter> snps = generator.generateNormalizationParameters(
+        Arrays.asList(TEST_DIR + "/test.wav"), Arrays.asList("s1"));
+
+    assertEquals(1, snps.size());
+    assertEquals("s1", snps.get("s1").getSpeakerId());
+    assertSameParameters(expected, snps.get("s1"));
+  }
+
+  @Test
+  public void testGenerateMultipleSpeakersInParallel() throws Exception {
+    List<String> filenames = new ArrayList<String>();
+    List<String> speaker_ids = new ArrayList<String>();
+    for (int i = 0; i < 4; ++i) {
+      filenames.add(TEST_DIR + "/test.wav");
+      speaker_ids.add(i % 2 == 0 ? "a" : "b");
+    }
+    SpeakerNormalizationParameterGenerator generator = new SpeakerNormalizationParameterGenerator();
+    Map<String, SpeakerNormalizationParameter> serial = generator.generateNormalizationParameters(filenames,
+        speaker_ids);
+    generator.setNumThreads(3);
+    Map<String, SpeakerNormalizationParameter> parallel = generator.generateNormalizationParameters(filenames,
+        speaker_ids);
+
+    assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(parallel.keySet()));
+    for (String speaker_id : serial.keySet()) {
+      assertSameParameters(serial.get(speaker_id), parallel.get(speaker_id));
+    }
+    assertSameParameters(serial.get("a"), serial.get("b"));
+  }
+
+  /**
+   * Compares two sets of parameters generated from the same audio.
+   * <p/>
+   * RAPT adds random dither to the signal, so pitch statistics are only compared approximately.
+   *
+   * @param expected the expected parameters
+   * @param actual   the actual parameters
+   */
+  private void assertSameParameters(SpeakerNormalizationParameter expected, SpeakerNormalizationParameter actual) {
+    assertEquals(expected.normalize("I", 0.0), actual.normalize("I", 0.0), 1e-9);
+    assertEquals(expected.normalize("log[I]", 0.0), actual.normalize("log[I]", 0.0), 1e-9);
+    assertEquals(expected.rangeNormalize("I", 50.0), actual.rangeNormalize("I", 50.0), 1e-9);
+    assertEquals(1.0, actual.normalize("f0", 0.0) / expected.normalize("f0", 0.0), 0.15);
+  }
+
+  @Test
+  public void testGenerateWithMismatchedSpeakerIdsFails() {
+    SpeakerNormalizationParameterGenerator generator = new SpeakerNormalizationParameterGenerator();
+    try {
+      generator.generateNormalizationParameters(Arrays.asList(TEST_DIR + "/test.wav"), new ArrayList<String>());
+      fail();
+    } catch (AuToBIException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testGetSpeakerIdFromFilename() {
+    assertEquals("h1", SpeakerNormalizationParameterGenerator.getSpeakerIdFromFilename(
+        "corpus" + File.separator + "h1s1.wav"));
+    assertEquals("a", SpeakerNormalizationParameterGenerator.getSpeakerIdFromFilename("a"));
+  }
+
+  @Test
+  public void testWriteAndReadSerializedParameters() throws Exception {
+    SpeakerNormalizationParameter snp = new SpeakerNormalizationParameter("s1");
+    snp.insertPitch(100.0);
+    snp.insertPitch(200.0);
+    File tmp = File.createTempFile("autobi", ".spkrnorm");
+    tmp.deleteOnExit();
+
+    SpeakerNormalizationParameterGenerator.writeSerializedParameters(snp, tmp.getPath());
+    SpeakerNormalizationParameter read = SpeakerNormalizationParameterGenerator.readSerializedParameters(
+        tmp.getPath());
+
+    assertEquals("s1", read.getSpeakerId());
+    assertEquals(snp.toString(), read.toString());
+  }
+}
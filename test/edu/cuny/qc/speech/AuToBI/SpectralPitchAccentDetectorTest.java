@@ -0,0 +1,115 @@
+package edu.cuny.qc.speech.AuToBI;
+
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.Pair;
+import edu.cuny.qc.speech.AuToBI.core.SpectralPADMatrix;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for SpectralPitchAccentDetector.
+ *
+ * @see SpectralPitchAccentDetector
+ */
+public class SpectralPitchAccentDetectorTest {
+
+  private Word generateWord(int high_bark) {
+    Word w = new Word(0, 1, "word");
+    for (int low = 0; low < high_bark; ++low) {
+      for (int high = low + 1; high <= high_bark; ++high) {
+        w.setAttribute("nominal_bark_" + low + "_" + high + "__prediction", (low % 2 == 0) ? "ACCENTED" : "DEACCENTED");
+        w.setAttribute("bark_" + low + "_" + high + "__prediction_confidence", 0.5 + 0.02 * high);
+        w.setAttribute("nominal_bark_" + low + "_" + high + "__correction_prediction",
+            (high % 2 == 0) ? "CORRECT" : "INCORRECT");
+        w.setAttribute("bark_" + low + "_" + high + "__correction_prediction_confidence", 0.9 - 0.01 * low);
+      }
+    }
+    return w;
+  }
+
+  @Test
+  public void testDistributionForInstance() throws Exception {
+    Word w = new Word(0, 1, "word");
+    w.setAttribute("nominal_bark_0_1__prediction", "ACCENTED");
+    w.setAttribute("bark_0_1__prediction_confidence", 0.8);
+    w.setAttribute("nominal_bark_0_1__correction_prediction", "INCORRECT");
+    w.setAttribute("bark_0_1__correction_prediction_confidence", 0.75);
+
+    Distribution d = new SpectralPitchAccentDetector(1).distributionForInstance(w);
+
+    // 0.8 * 0.25 + 0.2 * 0.75
+    assertEquals(0.35, d.get("ACCENTED"), 1e-10);
+    assertEquals(0.65, d.get("DEACCENTED"), 1e-10);
+  }
+
+  @Test
+  public void testDistributionForInstanceUsesMatrixRow() throws Exception {
+    int high_bark = 4;
+    Word w = generateWord(high_bark);
+    Distribution expected = new SpectralPitchAccentDetector(high_bark).distributionForInstance(w);
+
+    List<Pair<Integer, Integer>> bands = new ArrayList<Pair<Integer, Integer>>();
+    for (int low = 0; low < high_bark; ++low) {
+      for (int high = low + 1; high <= high_bark; ++high) {
+        bands.add(new Pair<Integer, Integer>(low, high));
+      }
+    }
+    SpectralPADMatrix matrix = new SpectralPADMatrix(bands, 1);
+    for (int b = 0; b < bands.size(); ++b) {
+      String prefix = "bark_" + bands.get(b).first + "_" + bands.get(b).second + "__";
+      double conf = (Double) w.getAttribute(prefix + "prediction_confidence");
+      double correct = (Double) w.getAttribute(prefix + "correction_prediction_confidence");
+      matrix.setAccentedConfidence(0, b,
+          w.getAttribute("nominal_" + prefix + "prediction").equals("ACCENTED") ? conf : 1 - conf);
+      matrix.setCorrectConfidence(0, b,
+          w.getAttribute("nominal_" + prefix + "correction_prediction").equals("CORRECT") ? correct : 1 - correct);
+    }
+
+    // The matrix takes precedence over the attributes.
+    Word matrix_word = new Word(0, 1, "word");
+    matrix_word.setAttribute(SpectralPADMatrix.ROW_FEATURE, matrix.getRow(0));
+    Distribution d = new SpectralPitchAccentDetector(high_bark).distributionForInstance(matrix_word);
+
+    assertEquals(expected.get("ACCENTED"), d.get("ACCENTED"), 0.0);
+    assertEquals(expected.get("DEACCENTED"), d.get("DEACCENTED"), 0.0);
+  }
+
+  @Test
+  public void testDistributionForInstanceIgnoresMismatchedMatrix() throws Exception {
+    Word w = generateWord(2);
+    Distribution expected = new SpectralPitchAccentDetector(2).distributionForInstance(w);
+
+    List<Pair<Integer, Integer>> bands = new ArrayList<Pair<Integer, Integer>>();
+    bands.add(new Pair<Integer, Integer>(0, 1));
+    w.setAttribute(SpectralPADMatrix.ROW_FEATURE, new SpectralPADMatrix(bands, 1).getRow(0));
+    Distribution d = new SpectralPitchAccentDetector(2).distributionForInstance(w);
+
+    assertEquals(expected.get("ACCENTED"), d.get("ACCENTED"), 0.0);
+  }
+
+  @Test
+  public void testDistributionForInstanceAfterDeserialization() throws Exception {
+    Word w = generateWord(3);
+    SpectralPitchAccentDetector detector = new SpectralPitchAccentDetector(3);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(detector);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    SpectralPitchAccentDetector restored = (SpectralPitchAccentDetector) in.readObject();
+
+    Distribution expected = detector.distributionForInstance(w);
+    Distribution result = restored.distributionForInstance(w);
+    assertEquals(expected.get("ACCENTED"), result.get("ACCENTED"), 0.0001);
+    assertEquals(expected.get("DEACCENTED"), result.get("DEACCENTED"), 0.0001);
+  }
+}
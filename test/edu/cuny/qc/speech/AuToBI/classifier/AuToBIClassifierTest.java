@@ -0,0 +1,68 @@
+package edu.cuny.qc.speech.AuToBI.classifier;
+
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for AuToBIClassifier.
+ *
+ * @see AuToBIClassifier
+ */
+public class AuToBIClassifierTest {
+
+  @Test
+  public void testDistributionsForInstancesEvaluatesEachPointInOrder() throws Exception {
+    AuToBIClassifier c = new AuToBIClassifier() {
+      @Override
+      public Distribution distributionForInstance(Word testing_point) throws Exception {
+        Distribution d = new Distribution();
+        d.put(testing_point.getLabel(), 1.0);
+        return d;
+      }
+
+      @Override
+      public void train(FeatureSet feature_set) throws Exception {
+      }
+
+      @Override
+      public AuToBIClassifier newInstance() {
+        return null;
+      }
+    };
+
+    List<Word> words = new ArrayList<Word>();
+    words.add(new Word(0, 1, "one"));
+    words.add(new Word(1, 2, "two"));
+
+    List<Distribution> dists = c.distributionsForInstances(words);
+    assertEquals(2, dists.size());
+    assertEquals("one", dists.get(0).getKeyWithMaximumValue());
+    assertEquals("two", dists.get(1).getKeyWithMaximumValue());
+  }
+
+  @Test
+  public void testPosteriorForInstanceConvertsDistribution() throws Exception {
+    AuToBIClassifier c = new MockClassifier() {
+      @Override
+      public Distribution distributionForInstance(Word testing_point) throws Exception {
+        Distribution d = new Distribution();
+        d.put("A", 0.25);
+        d.put("B", 0.75);
+        return d;
+      }
+    };
+
+    Posterior p = c.posteriorForInstance(new Word(0, 1, "word"));
+    assertEquals(0.25, p.get("A"), 0.0);
+    assertEquals(0.75, p.get("B"), 0.0);
+    assertEquals("B", c.classify(new Word(0, 1, "word")));
+  }
+}
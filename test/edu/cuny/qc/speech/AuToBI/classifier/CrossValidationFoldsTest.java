@@ -0,0 +1,183 @@
+package edu.cuny.qc.speech.AuToBI.classifier;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for CrossValidationFolds.
+ *
+ * @see CrossValidationFolds
+ */
+public class CrossValidationFoldsTest {
+
+  private FeatureSet fs;
+  private List<Word> words;
+
+  @Before
+  public void setUp() {
+    fs = new FeatureSet();
+    fs.insertRequiredFeature("feature");
+    fs.setClassAttribute("class");
+    words = new ArrayList<Word>();
+    for (int i = 0; i < 23; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("feature", (double) i);
+      w.setAttribute("class", (i % 3 == 0) ? "A" : "B");
+      words.add(w);
+    }
+    fs.setDataPoints(words);
+  }
+
+  @Test
+  public void testFoldsPartitionDataPoints() throws AuToBIException {
+    CrossValidationFolds folds = CrossValidationFolds.stratified(words, "fold", 4, "class");
+
+    assertEquals(4, folds.getNumFolds());
+    Set<Word> seen = new HashSet<Word>();
+    for (int i = 0; i < 4; ++i) {
+      List<Word> testing = folds.getTestingPoints(i);
+      List<Word> training = folds.getTrainingPoints(i);
+      assertEquals(words.size(), testing.size() + training.size());
+      for (Word w : testing) {
+        assertEquals(i, w.getAttribute("fold"));
+        assertTrue(seen.add(w));
+      }
+      for (Word w : training) {
+        assertFalse(w.getAttribute("fold").equals(i));
+      }
+    }
+    assertEquals(words.size(), seen.size());
+  }
+
+  @Test
+  public void testFoldsPreserveOriginalOrderWithinFold() throws AuToBIException {
+    CrossValidationFolds folds = CrossValidationFolds.stratified(words, "fold", 3, "class");
+
+    for (int i = 0; i < 3; ++i) {
+      List<Word> testing = folds.getTestingPoints(i);
+      for (int j = 1; j < testing.size(); ++j) {
+        assertTrue(testing.get(j - 1).getStart() < testing.get(j).getStart());
+      }
+    }
+  }
+
+  @Test
+  public void testUnassignedPointsAreAlwaysTraining() throws AuToBIException {
+    for (int i = 0; i < 10; ++i) {
+      words.get(i).setAttribute("fold", i % 2);
+    }
+    CrossValidationFolds folds = new CrossValidationFolds(words, "fold", 2);
+
+    assertEquals(5, folds.getTestingPoints(0).size());
+    assertEquals(18, folds.getTrainingPoints(0).size());
+    assertEquals(18, folds.getSamplePoints(1).size());
+    assertTrue(folds.getSamplePoints(1).contains(words.get(1)));
+    assertFalse(folds.getSamplePoints(1).contains(words.get(0)));
+    assertTrue(folds.getSamplePoints(1).contains(words.get(22)));
+  }
+
+  @Test(expected = AuToBIException.class)
+  public void testInvalidFoldAssignmentThrowsException() throws AuToBIException {
+    words.get(0).setAttribute("fold", 5);
+    new CrossValidationFolds(words, "fold", 2);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testViewsAreReadOnly() throws AuToBIException {
+    CrossValidationFolds folds = CrossValidationFolds.stratified(words, "fold", 2, "class");
+    folds.getTrainingPoints(0).add(new Word(0, 1, "extra"));
+  }
+
+  @Test
+  public void testTrainingFeatureSetDoesNotReassignWords() throws AuToBIException {
+    CrossValidationFolds folds = CrossValidationFolds.stratified(words, "fold", 2, "class");
+    FeatureSet training_fs = folds.getTrainingFeatureSet(fs, 0);
+
+    assertEquals(folds.getTrainingPoints(0).size(), training_fs.getDataPoints().size());
+    assertNotNull(training_fs.getFeature("class"));
+    for (Word w : words) {
+      assertSame(fs, w.getFeatureSet());
+    }
+  }
+
+  @Test
+  public void testTrainFoldsTrainsOnTrainingPoints() throws AuToBIException {
+    CrossValidationFolds folds = CrossValidationFolds.stratified(words, "fold", 4, "class");
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<AuToBIClassifier> classifiers = folds.trainFolds(new CountingClassifier(), fs, executor);
+
+      assertEquals(4, classifiers.size());
+      for (int i = 0; i < 4; ++i) {
+        assertEquals(folds.getTrainingPoints(i).size(), ((CountingClassifier) classifiers.get(i)).count);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testGenerateCrossValidatedDistributions() throws AuToBIException {
+    CrossValidationFolds folds = CrossValidationFolds.stratified(words, "fold", 4, "class");
+    Distribution[] dists = folds.generateCrossValidatedDistributions(new CountingClassifier(), fs, 3);
+
+    assertEquals(words.size(), dists.length);
+    for (int i = 0; i < words.size(); ++i) {
+      int fold = (Integer) words.get(i).getAttribute("fold");
+      assertEquals(folds.getTrainingPoints(fold).size(), dists[i].get("count"), 0.0);
+    }
+  }
+
+  @Test(expected = AuToBIException.class)
+  public void testTrainingFailureThrowsException() throws AuToBIException {
+    CrossValidationFolds folds = CrossValidationFolds.stratified(words, "fold", 2, "class");
+    folds.trainFolds(new CountingClassifier() {
+      @Override
+      public void train(FeatureSet feature_set) throws Exception {
+        throw new Exception("failure");
+      }
+
+      @Override
+      public AuToBIClassifier newInstance() {
+        return this;
+      }
+    }, fs, 2);
+  }
+
+  /**
+   * A classifier that records the number of training points it has seen.
+   */
+  private static class CountingClassifier extends AuToBIClassifier {
+    int count;
+
+    @Override
+    public Distribution distributionForInstance(Word testing_point) throws Exception {
+      Distribution d = new Distribution();
+      d.put("count", (double) count);
+      return d;
+    }
+
+    @Override
+    public void train(FeatureSet feature_set) throws Exception {
+      count = feature_set.getDataPoints().size();
+    }
+
+    @Override
+    public AuToBIClassifier newInstance() {
+      return new CountingClassifier();
+    }
+  }
+}
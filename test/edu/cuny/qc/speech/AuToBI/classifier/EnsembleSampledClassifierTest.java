@@ -0,0 +1,203 @@
+package edu.cuny.qc.speech.AuToBI.classifier;
+
+import edu.cuny.qc.speech.AuToBI.core.CompactRowStore;
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.Feature;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.NominalDictionary;
+import edu.cuny.qc.speech.AuToBI.core.Posterior;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Before;
+import org.junit.Test;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for EnsembleSampledClassifier.
+ *
+ * @see EnsembleSampledClassifier
+ */
+public class EnsembleSampledClassifierTest {
+
+  private FeatureSet fs;
+
+  /**
+   * A classifier whose distribution depends on both its training sample and the evaluated point.
+   */
+  private static class PriorClassifier extends AuToBIClassifier {
+    private Distribution prior;
+
+    @Override
+    public Distribution distributionForInstance(Word testing_point) throws Exception {
+      Distribution d = new Distribution();
+      Double x = (Double) testing_point.getAttribute("x");
+      for (String key : prior.keySet()) {
+        d.put(key, prior.get(key) * (key.equals("A") ? x : 1.0 - x));
+      }
+      d.normalize();
+      return d;
+    }
+
+    @Override
+    public void train(FeatureSet feature_set) throws Exception {
+      prior = new Distribution();
+      for (Word w : feature_set.getDataPoints()) {
+        prior.add((String) w.getAttribute(feature_set.getClassAttribute()));
+      }
+      prior.normalize();
+    }
+
+    @Override
+    public AuToBIClassifier newInstance() {
+      return new PriorClassifier();
+    }
+  }
+
+  /**
+   * A weka classifier that records the class values of the instances each member is trained on.
+   */
+  private static class RecordingWekaClassifier extends WekaClassifier {
+    private final List<String> samples;
+
+    private RecordingWekaClassifier(List<String> samples) {
+      super(new J48());
+      this.samples = samples;
+    }
+
+    @Override
+    protected void train(Instances instances, Set<Feature> features, String class_attribute) throws Exception {
+      StringBuilder sample = new StringBuilder();
+      for (int i = 0; i < instances.numInstances(); ++i) {
+        sample.append(instances.classAttribute().value((int) instances.instance(i).classValue()));
+      }
+      samples.add(sample.toString());
+      super.train(instances, features, class_attribute);
+    }
+
+    @Override
+    public AuToBIClassifier newInstance() {
+      return new RecordingWekaClassifier(samples);
+    }
+  }
+
+  @Before
+  public void setUp() {
+    fs = new FeatureSet();
+    fs.setClassAttribute("class");
+    fs.insertRequiredFeature("x");
+    for (int i = 0; i < 40; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("class", (i % 5 == 0) ? "B" : "A");
+      w.setAttribute("x", 0.1 + (i % 7) / 10.0);
+      fs.getDataPoints().add(w);
+    }
+  }
+
+  @Test
+  public void testGetNumThreadsDefaultsToOne() {
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new PriorClassifier());
+    assertEquals(1, c.getNumThreads());
+  }
+
+  @Test
+  public void testNewInstanceKeepsNumThreads() {
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new PriorClassifier());
+    c.setNumThreads(3);
+    assertEquals(3, ((EnsembleSampledClassifier) c.newInstance()).getNumThreads());
+  }
+
+  @Test
+  public void testParallelTrainingTrainsEveryMember() throws Exception {
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new PriorClassifier());
+    c.setNumThreads(4);
+    c.train(fs);
+
+    // 32 majority class points and 8 minority class points yield four ensemble members.
+    assertEquals(4, c.classifiers.size());
+    for (AuToBIClassifier member : c.classifiers) {
+      assertNotNull(((PriorClassifier) member).prior);
+    }
+  }
+
+  @Test
+  public void testTrainOnRowStoreSamplesWekaInstances() throws Exception {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, fs.getDataPoints());
+    List<String> samples = Collections.synchronizedList(new ArrayList<String>());
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new RecordingWekaClassifier(samples));
+    c.setNumThreads(2);
+    c.train(store);
+
+    // Each majority class point is in one sample, after the sample's majority points come all 8 minority points.
+    assertEquals(4, c.classifiers.size());
+    assertEquals(4, samples.size());
+    int majority = 0;
+    for (String sample : samples) {
+      assertTrue(sample.endsWith("BBBBBBBB"));
+      assertEquals(sample.length() - 8, sample.replace("B", "").length());
+      majority += sample.length() - 8;
+    }
+    assertEquals(32, majority);
+    for (AuToBIClassifier member : c.classifiers) {
+      assertNotNull(member.distributionForInstance(fs.getDataPoints().get(0)));
+    }
+  }
+
+  @Test
+  public void testDistributionsForInstancesMatchesDistributionForInstance() throws Exception {
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new PriorClassifier());
+    c.setNumThreads(4);
+    c.train(fs);
+
+    List<Distribution> dists = c.distributionsForInstances(fs.getDataPoints());
+    assertEquals(fs.getDataPoints().size(), dists.size());
+    for (int i = 0; i < dists.size(); ++i) {
+      Distribution expected = c.distributionForInstance(fs.getDataPoints().get(i));
+      assertEquals(expected.get("A"), dists.get(i).get("A"), 0.0);
+      assertEquals(expected.get("B"), dists.get(i).get("B"), 0.0);
+    }
+  }
+
+  @Test
+  public void testDistributionsForInstancesOnEmptyList() throws Exception {
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new PriorClassifier());
+    c.train(fs);
+
+    assertEquals(0, c.distributionsForInstances(new ArrayList<Word>()).size());
+  }
+
+  @Test
+  public void testCombineMultipliesSharedLabels() throws Exception {
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new PriorClassifier());
+    NominalDictionary labels = new NominalDictionary("A", "B");
+    List<Posterior> posteriors = new ArrayList<Posterior>();
+    posteriors.add(new Posterior(labels, new double[]{0.5, 0.5}));
+    posteriors.add(new Posterior(new NominalDictionary("A", "B"), new double[]{0.2, 0.8}));
+
+    Posterior p = c.combine(posteriors);
+    assertEquals(0.2, p.get("A"), 1e-12);
+    assertEquals(0.8, p.get("B"), 1e-12);
+  }
+
+  @Test
+  public void testCombineMergesDifferingLabels() throws Exception {
+    EnsembleSampledClassifier c = new EnsembleSampledClassifier(new PriorClassifier());
+    List<Posterior> posteriors = new ArrayList<Posterior>();
+    posteriors.add(new Posterior(new NominalDictionary("A", "B"), new double[]{0.5, 0.5}));
+    posteriors.add(new Posterior(new NominalDictionary("C", "A"), new double[]{0.5, 0.5}));
+
+    // A = 0.5 * 0.5, B = 0.5, C = 0.5
+    Posterior p = c.combine(posteriors);
+    assertEquals(3, p.size());
+    assertEquals(0.2, p.get("A"), 1e-12);
+    assertEquals(0.4, p.get("B"), 1e-12);
+    assertEquals(0.4, p.get("C"), 1e-12);
+  }
+}
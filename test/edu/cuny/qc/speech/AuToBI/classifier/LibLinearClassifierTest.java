@@ -0,0 +1,109 @@
+package edu.cuny.qc.speech.AuToBI.classifier;
+
+import edu.cuny.qc.speech.AuToBI.core.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for LibLinearClassifier.
+ *
+ * @see LibLinearClassifier
+ */
+public class LibLinearClassifierTest {
+
+  private FeatureSet template() {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("feature");
+    fs.insertRequiredFeature("nominal_feature");
+    fs.setClassAttribute("class");
+    return fs;
+  }
+
+  private List<Word> words() {
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 20; ++i) {
+      Word w = new Word(i, i + 1, "test");
+      w.setAttribute("feature", (double) (i % 7));
+      w.setAttribute("nominal_feature", i % 3 == 0 ? "a" : "b");
+      w.setAttribute("class", i % 7 < 3 ? "ONE" : "TWO");
+      words.add(w);
+    }
+    return words;
+  }
+
+  private void assertSamePosteriors(AuToBIClassifier expected, AuToBIClassifier actual) throws Exception {
+    for (Word w : words()) {
+      Posterior p = expected.posteriorForInstance(w);
+      Posterior q = actual.posteriorForInstance(w);
+      assertEquals(p.size(), q.size());
+      for (int i = 0; i < p.size(); ++i) {
+        assertEquals(p.getLabels().decode(i), q.getLabels().decode(i));
+        assertEquals(p.get(i), q.get(i), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testTrainFromCompactRowStoreMatchesFeatureSet() throws Exception {
+    FeatureSet fs = template();
+    List<Word> words = words();
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, words.subList(0, 10));
+    store.add(1, words.subList(10, 20));
+
+    FeatureSet train_fs = fs;
+    train_fs.setDataPoints(words);
+    train_fs.constructFeatures();
+
+    LibLinearClassifier expected = new LibLinearClassifier();
+    expected.train(train_fs);
+    LibLinearClassifier actual = new LibLinearClassifier();
+    actual.train(store);
+
+    assertSamePosteriors(expected, actual);
+  }
+
+  @Test
+  public void testWeightedTrainFromCompactRowStoreMatchesFeatureSet() throws Exception {
+    FeatureSet fs = template();
+    List<Word> words = words();
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, words);
+
+    FeatureSet train_fs = fs;
+    train_fs.setDataPoints(words);
+    train_fs.constructFeatures();
+
+    LibLinearClassifier expected = new LibLinearClassifier(true);
+    expected.train(train_fs);
+    LibLinearClassifier actual = new LibLinearClassifier(true);
+    actual.train(store);
+
+    assertSamePosteriors(expected, actual);
+  }
+
+  @Test
+  public void testPosteriorsForInstancesMatchesPosteriorForInstance() throws Exception {
+    FeatureSet fs = template();
+    fs.setDataPoints(words());
+    fs.constructFeatures();
+    LibLinearClassifier classifier = new LibLinearClassifier();
+    classifier.train(fs);
+
+    List<Word> words = words();
+    List<Posterior> posteriors = classifier.posteriorsForInstances(words);
+    assertEquals(words.size(), posteriors.size());
+    for (int i = 0; i < words.size(); ++i) {
+      Posterior p = classifier.posteriorForInstance(words.get(i));
+      assertEquals(p.size(), posteriors.get(i).size());
+      for (int j = 0; j < p.size(); ++j) {
+        assertEquals(p.getLabels().decode(j), posteriors.get(i).getLabels().decode(j));
+        assertEquals(p.get(j), posteriors.get(i).get(j), 1e-12);
+      }
+    }
+  }
+}
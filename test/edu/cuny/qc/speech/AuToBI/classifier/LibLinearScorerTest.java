@@ -0,0 +1,184 @@
+package edu.cuny.qc.speech.AuToBI.classifier;
+
+import com.google.common.collect.HashBiMap;
+import edu.cuny.qc.speech.AuToBI.core.Aggregation;
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Feature;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import edu.cuny.qc.speech.AuToBI.util.ClassifierUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for LibLinearScorer.
+ *
+ * @see LibLinearScorer
+ */
+public class LibLinearScorerTest {
+  private HashBiMap<Feature, Integer> feature_map;
+  private HashMap<String, Aggregation> norm_map;
+
+  @Before
+  public void setUp() {
+    feature_map = HashBiMap.create();
+    norm_map = new HashMap<String, Aggregation>();
+
+    Feature nominal = new Feature("nominal_c");
+    nominal.setNominal();
+    nominal.addNominalValue("x");
+    nominal.addNominalValue("y");
+    Feature class_feature = new Feature("class");
+    class_feature.setNominal();
+
+    feature_map.put(new Feature("a"), 1);
+    feature_map.put(new Feature("b"), 2);
+    feature_map.put(nominal, 3);
+    feature_map.put(new Feature("d"), 4);
+    feature_map.put(class_feature, 5);
+
+    norm_map.put("a", new Aggregation());
+    norm_map.put("b", new Aggregation());
+    norm_map.put("nominal_c", new Aggregation());
+    norm_map.put("d", new Aggregation());
+    norm_map.put("class", new Aggregation());
+    for (double v : new double[]{1.0, 2.5, 4.0, -3.0}) {
+      norm_map.get("a").insert(v);
+      norm_map.get("b").insert(v * v + 100);
+    }
+    norm_map.get("d").insert(2.0);
+    norm_map.get("d").insert(2.0);
+  }
+
+  /**
+   * Evaluates a model on the normalized liblinear features of a word, as Linear.predictProbability does.
+   */
+  private double[] referenceScore(Word w, double[] model_weights, int nr_feature, int nr_class, int num_outputs)
+      throws AuToBIException {
+    de.bwaldvogel.liblinear.Feature[] x = ClassifierUtils.normalizeLibLinearFeatures(
+        ClassifierUtils.convertWordToLibLinearFeatures(w, feature_map), feature_map.inverse(), norm_map);
+    int nr_w = model_weights.length / nr_feature;
+    double[] dec_values = new double[num_outputs];
+    for (de.bwaldvogel.liblinear.Feature node : x) {
+      if (node.getIndex() <= nr_feature) {
+        for (int k = 0; k < nr_w; ++k) {
+          dec_values[k] += model_weights[(node.getIndex() - 1) * nr_w + k] * node.getValue();
+        }
+      }
+    }
+    for (int k = 0; k < nr_w; ++k) {
+      dec_values[k] = 1 / (1 + Math.exp(-dec_values[k]));
+    }
+    if (nr_class == 2) {
+      dec_values[1] = 1. - dec_values[0];
+    } else {
+      double sum = 0;
+      for (int i = 0; i < nr_class; ++i) {
+        sum += dec_values[i];
+      }
+      for (int i = 0; i < nr_class; ++i) {
+        dec_values[i] = dec_values[i] / sum;
+      }
+    }
+    return dec_values;
+  }
+
+  private List<Word> generateWords(int n) {
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < n; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      if (i % 5 != 1) {
+        w.setAttribute("a", (i % 13) * 0.7 - 2.0);
+      }
+      w.setAttribute("b", (i % 4 == 2) ? Double.NaN : 90.0 + i % 17);
+      w.setAttribute("nominal_c", (i % 2 == 0) ? "x" : "y");
+      if (i % 3 == 0) {
+        w.setAttribute("d", 2.0);
+      }
+      w.setAttribute("class", "A");
+      words.add(w);
+    }
+    return words;
+  }
+
+  @Test
+  public void testBinaryScoreMatchesNormalizedModel() throws AuToBIException {
+    double[] model_weights = new double[]{0.8, -0.05, 3.0, 1.5, 0.0};
+    LibLinearScorer scorer = new LibLinearScorer(model_weights, 5, false, 2, feature_map, norm_map, 2);
+
+    for (Word w : generateWords(40)) {
+      assertArrayEquals(referenceScore(w, model_weights, 5, 2, 2), scorer.score(w), 1e-12);
+    }
+  }
+
+  @Test
+  public void testMultiClassScoreMatchesNormalizedModel() throws AuToBIException {
+    double[] model_weights = new double[]{
+        0.8, -0.2, 0.1,
+        -0.05, 0.03, 0.01,
+        3.0, 2.0, 1.0,
+        1.5, 1.0, -1.0,
+        0.0, 0.0, 0.0};
+    LibLinearScorer scorer = new LibLinearScorer(model_weights, 5, false, 3, feature_map, norm_map, 3);
+
+    for (Word w : generateWords(40)) {
+      assertArrayEquals(referenceScore(w, model_weights, 5, 3, 3), scorer.score(w), 1e-12);
+    }
+  }
+
+  @Test
+  public void testBiasWeightsAreIgnored() throws AuToBIException {
+    double[] model_weights = new double[]{0.8, -0.05, 3.0, 1.5, 0.0, 10.0};
+    LibLinearScorer scorer = new LibLinearScorer(model_weights, 5, true, 2, feature_map, norm_map, 2);
+
+    Word w = generateWords(1).get(0);
+    assertArrayEquals(referenceScore(w, new double[]{0.8, -0.05, 3.0, 1.5, 0.0}, 5, 2, 2), scorer.score(w), 1e-12);
+  }
+
+  @Test
+  public void testScoreAllMatchesScore() throws AuToBIException {
+    double[] model_weights = new double[]{0.8, -0.05, 3.0, 1.5, 0.0};
+    LibLinearScorer scorer = new LibLinearScorer(model_weights, 5, false, 2, feature_map, norm_map, 2);
+
+    List<Word> words = generateWords(2 * LibLinearScorer.BLOCK_SIZE + 3);
+    List<double[]> scores = scorer.scoreAll(words);
+
+    assertEquals(words.size(), scores.size());
+    for (int i = 0; i < words.size(); ++i) {
+      assertArrayEquals(scorer.score(words.get(i)), scores.get(i), 1e-12);
+    }
+  }
+
+  @Test
+  public void testWordWithoutFeaturesScoresBias() throws AuToBIException {
+    LibLinearScorer scorer =
+        new LibLinearScorer(new double[]{0.8, -0.05, 3.0, 1.5, 0.0}, 5, false, 2, feature_map, norm_map, 2);
+
+    double[] scores = scorer.score(new Word(0, 1, "empty"));
+    assertEquals(0.5, scores[0], 1e-12);
+    assertEquals(0.5, scores[1], 1e-12);
+  }
+
+  @Test
+  public void testStringFeatureThrowsException() {
+    Feature text = new Feature("text");
+    text.setString(true);
+    feature_map.forcePut(text, 4);
+    LibLinearScorer scorer =
+        new LibLinearScorer(new double[]{0.8, -0.05, 3.0, 1.5, 0.0}, 5, false, 2, feature_map, norm_map, 2);
+
+    Word w = new Word(0, 1, "text");
+    w.setAttribute("text", "some text");
+    try {
+      scorer.score(w);
+      fail();
+    } catch (AuToBIException e) {
+      // Expected
+    }
+  }
+}
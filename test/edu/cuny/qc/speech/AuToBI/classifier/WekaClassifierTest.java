@@ -6,6 +6,7 @@ import edu.cuny.qc.speech.AuToBI.featureextractor.FeatureExtractorException;
 import org.junit.Test;
 import weka.classifiers.trees.J48;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -42,4 +43,80 @@ public class WekaClassifierTest {
       fail(e.getMessage());
     }
   }
+
+  @Test
+  public void testTrainOnSeveralThreadsMatchesSerialTraining() throws Exception {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("feature");
+    fs.setClassAttribute("class");
+    for (int i = 0; i < 50; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("feature", (i * 7) % 13 * 1.0);
+      w.setAttribute("class", (i * 7) % 13 < 6 ? "ONE" : "TWO");
+      fs.insertDataPoint(w);
+    }
+
+    WekaClassifier serial = new WekaClassifier(new J48());
+    serial.train(fs);
+    WekaClassifier parallel = new WekaClassifier(new J48());
+    parallel.setNumThreads(3);
+    parallel.train(fs);
+
+    assertEquals(3, parallel.getNumThreads());
+    for (Word w : fs.getDataPoints()) {
+      assertEquals(serial.distributionForInstance(w).getKeyWithMaximumValue(),
+          parallel.distributionForInstance(w).getKeyWithMaximumValue());
+    }
+  }
+
+  private CompactRowStore rowStore() throws AuToBIException {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("feature");
+    fs.insertRequiredFeature("nominal_feature");
+    fs.setClassAttribute("class");
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 30; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("feature", i * 1.0);
+      w.setAttribute("nominal_feature", i % 3 == 0 ? "x" : "y");
+      w.setAttribute("class", i % 4 == 0 ? "ONE" : "TWO");
+      words.add(w);
+    }
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, words);
+    return store;
+  }
+
+  @Test
+  public void testTrainOnRowStoreMatchesFeatureSetTraining() throws Exception {
+    CompactRowStore store = rowStore();
+    FeatureSet fs = store.toFeatureSet();
+
+    WekaClassifier from_fs = new WekaClassifier(new J48());
+    from_fs.train(fs);
+    WekaClassifier from_store = new WekaClassifier(new J48());
+    from_store.train(store);
+
+    for (Word w : fs.getDataPoints()) {
+      assertEquals(from_fs.distributionForInstance(w), from_store.distributionForInstance(w));
+    }
+  }
+
+  @Test
+  public void testClassWeightedTrainOnRowStoreMatchesFeatureSetTraining() throws Exception {
+    CompactRowStore store = rowStore();
+    FeatureSet fs = store.toFeatureSet();
+
+    WekaClassifier from_fs = new ClassWeightedWekaClassifier(new J48());
+    from_fs.train(fs);
+    WekaClassifier from_store = new ClassWeightedWekaClassifier(new J48());
+    from_store.train(store);
+
+    for (Word w : fs.getDataPoints()) {
+      Distribution expected = from_fs.distributionForInstance(w);
+      Distribution actual = from_store.distributionForInstance(w);
+      assertEquals(expected.get("ONE"), actual.get("ONE"), 1e-12);
+      assertEquals(0.5, actual.get("ONE"), 1e-12);
+    }
+  }
 }
@@ -182,6 +182,52 @@ public class AggregationTest {
 
     assertEquals(3.6055512, agg.getRMS(), 0.0001);
   }
-}
 
+  @Test
+  public void testInsertArrayMatchesRepeatedInsert() {
+    double[] values = new double[]{5.0, 1.0, 3.5, -2.0, 0.0};
+    Aggregation agg = new Aggregation();
+    for (int i = 0; i < 4; ++i) {
+      agg.insert(values[i]);
+    }
+    Aggregation bulk = new Aggregation();
+    bulk.insert(values, 4);
+
+    assertEquals(agg.getSize(), bulk.getSize());
+    assertEquals(agg.getMean(), bulk.getMean(), 0.0);
+    assertEquals(agg.getVariance(), bulk.getVariance(), 0.0);
+    assertEquals(agg.getMin(), bulk.getMin(), 0.0);
+    assertEquals(agg.getMax(), bulk.getMax(), 0.0);
+  }
+
+  @Test
+  public void testMerge() {
+    Aggregation agg = new Aggregation();
+    agg.insert(5.0);
+    agg.insert(1.0);
+    Aggregation other = new Aggregation();
+    other.insert(3.0);
+    other.insert(-1.0);
+
+    agg.merge(other);
 
+    assertEquals(4, agg.getSize());
+    assertEquals(2.0, agg.getMean(), 0.0001);
+    assertEquals(-1.0, agg.getMin(), 0.0001);
+    assertEquals(5.0, agg.getMax(), 0.0001);
+    assertEquals(6.6666666, agg.getVariance(), 0.0001);
+  }
+
+  @Test
+  public void testMergeEmptyAggregation() {
+    Aggregation agg = new Aggregation();
+    agg.insert(5.0);
+
+    agg.merge(new Aggregation());
+    new Aggregation().merge(agg);
+
+    assertEquals(1, agg.getSize());
+    assertEquals(5.0, agg.getMin(), 0.0001);
+    assertEquals(5.0, agg.getMax(), 0.0001);
+  }
+}
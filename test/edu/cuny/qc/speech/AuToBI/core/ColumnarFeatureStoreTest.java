@@ -0,0 +1,228 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for ColumnarFeatureStore.
+ *
+ * @see ColumnarFeatureStore
+ */
+public class ColumnarFeatureStoreTest {
+
+  private FeatureSet fs;
+
+  @Before
+  public void setUp() {
+    fs = new FeatureSet();
+    fs.insertRequiredFeature("f0");
+    fs.insertRequiredFeature("nominal_pos");
+    fs.insertRequiredFeature("text");
+    fs.setClassAttribute("class");
+  }
+
+  private Word word(double start, String file, Object f0, String pos, String text, String c) {
+    Word w = new Word(start, start + 1, "w", null, file);
+    if (f0 != null) {
+      w.setAttribute("f0", f0);
+    }
+    if (pos != null) {
+      w.setAttribute("nominal_pos", pos);
+    }
+    if (text != null) {
+      w.setAttribute("text", text);
+    }
+    if (c != null) {
+      w.setAttribute("class", c);
+    }
+    return w;
+  }
+
+  private File writeStore(List<Word> words) throws IOException {
+    fs.setDataPoints(words);
+    fs.constructFeatures();
+    File file = File.createTempFile("features", ".abfs");
+    file.deleteOnExit();
+    fs.writeFeatureStore(file.getPath());
+    return file;
+  }
+
+  private List<Word> corpus() {
+    List<Word> words = new ArrayList<Word>();
+    words.add(word(0.0, "a.wav", 100.0, "NN", "x", "A"));
+    words.add(word(1.0, "a.wav", null, "VB", "y", "B"));
+    words.add(word(0.5, "b.wav", 300.0, null, "z", "A"));
+    return words;
+  }
+
+  @Test
+  public void testColumnsAndTypesAreStored() throws Exception {
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(corpus()).getPath());
+    try {
+      assertEquals(3, store.size());
+      assertEquals(4, store.numColumns());
+      assertEquals("class", store.getColumnName(store.getClassColumn()));
+      assertEquals(ColumnarFeatureStore.NUMERIC, store.getColumnType(store.getColumnIndex("f0")));
+      assertEquals(ColumnarFeatureStore.NOMINAL, store.getColumnType(store.getColumnIndex("nominal_pos")));
+      assertEquals(ColumnarFeatureStore.STRING, store.getColumnType(store.getColumnIndex("text")));
+      assertEquals(ColumnarFeatureStore.NOMINAL, store.getColumnType(store.getClassColumn()));
+      assertEquals(-1, store.getColumnIndex("missing"));
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testValuesAndTimesAreReadBack() throws Exception {
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(corpus()).getPath());
+    try {
+      int f0 = store.getColumnIndex("f0");
+      int pos = store.getColumnIndex("nominal_pos");
+      assertEquals(100.0, store.getNumeric(f0, 0), 0.0);
+      assertTrue(Double.isNaN(store.getNumeric(f0, 1)));
+      assertNull(store.getValue(f0, 1));
+      assertEquals("VB", store.getValue(pos, 1));
+      assertEquals(-1, store.getCode(pos, 2));
+      assertEquals("z", store.getValue(store.getColumnIndex("text"), 2));
+      assertEquals(0.5, store.getStart(2), 0.0);
+      assertEquals(1.5, store.getEnd(2), 0.0);
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testFileRowRanges() throws Exception {
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(corpus()).getPath());
+    try {
+      assertEquals(2, store.numFiles());
+      assertEquals("a.wav", store.getFileName(0));
+      assertEquals(0, store.getFileStart(0));
+      assertEquals(2, store.getFileEnd(0));
+      assertEquals("b.wav", store.getFileName(1));
+      assertEquals(2, store.getFileStart(1));
+      assertEquals(3, store.getFileEnd(1));
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testIgnoredDataPointsAreNotWritten() throws Exception {
+    List<Word> words = corpus();
+    words.get(1).setAttribute("__ignore__", true);
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(words).getPath());
+    try {
+      assertEquals(2, store.size());
+      assertEquals(300.0, store.getNumeric(store.getColumnIndex("f0"), 1), 0.0);
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testToFeatureSetMatchesConstructedFeatures() throws Exception {
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(corpus()).getPath());
+    FeatureSet read;
+    try {
+      read = store.toFeatureSet();
+    } finally {
+      store.close();
+    }
+
+    assertEquals("class", read.getClassAttribute());
+    assertEquals(fs.getRequiredFeatures(), read.getRequiredFeatures());
+    assertEquals(fs.getFeature("nominal_pos").getNominalValues(), read.getFeature("nominal_pos").getNominalValues());
+    assertEquals(fs.getFeature("class").getNominalValues(), read.getFeature("class").getNominalValues());
+    assertEquals(3, read.getDataPoints().size());
+    Word w = read.getDataPoints().get(2);
+    assertEquals("b.wav", w.getFile());
+    assertEquals(300.0, (Double) w.getAttribute("f0"), 0.0);
+    assertFalse(w.hasAttribute("nominal_pos"));
+    assertEquals("A", w.getAttribute("class"));
+  }
+
+  @Test
+  public void testToCompactRowStoreMatchesWords() throws Exception {
+    List<Word> words = corpus();
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(words).getPath());
+    FeatureSet task_fs = new FeatureSet();
+    task_fs.insertRequiredFeature("f0");
+    task_fs.insertRequiredFeature("nominal_pos");
+    task_fs.setClassAttribute("class");
+
+    CompactRowStore from_store;
+    try {
+      from_store = store.toCompactRowStore(task_fs, new ArrayList<Pair<String, String>>(), 0, null);
+    } finally {
+      store.close();
+    }
+    CompactRowStore from_words = new CompactRowStore(task_fs);
+    from_words.add(0, words.subList(0, 2));
+    from_words.add(1, words.subList(2, 3));
+
+    assertEquals(from_words.size(), from_store.size());
+    assertEquals(from_words.getFeatureSet().getFeature("nominal_pos").getNominalValues(),
+        from_store.getFeatureSet().getFeature("nominal_pos").getNominalValues());
+    assertEquals(from_words.getClassDistribution(), from_store.getClassDistribution());
+    int pos = from_store.getColumnIndex("nominal_pos");
+    FeatureSet materialized = from_store.toFeatureSet();
+    assertEquals("VB", materialized.getDataPoints().get(1).getAttribute("nominal_pos"));
+    assertEquals(1.0, materialized.getDataPoints().get(1).getStart(), 0.0);
+    assertEquals(-1, from_store.getNominalIndex(pos, Double.NaN));
+  }
+
+  @Test
+  public void testToCompactRowStoreSkipsOmittedRows() throws Exception {
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(corpus()).getPath());
+    try {
+      CompactRowStore rows = store.toCompactRowStore(fs,
+          Arrays.asList(new Pair<String, String>("class", "B")), 0, null);
+      assertEquals(2, rows.size());
+      assertEquals(2.0, rows.getClassDistribution().get("A"), 0.0);
+      assertEquals(fs.getFeature("class").getNominalValues(),
+          rows.getFeatureSet().getFeature("class").getNominalValues());
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testToCompactRowStoreFailsOnMissingFeature() throws Exception {
+    ColumnarFeatureStore store = new ColumnarFeatureStore(writeStore(corpus()).getPath());
+    FeatureSet task_fs = new FeatureSet();
+    task_fs.insertRequiredFeature("unstored");
+    try {
+      store.toCompactRowStore(task_fs, new ArrayList<Pair<String, String>>(), 0, null);
+      fail();
+    } catch (AuToBIException e) {
+      // Expected
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void testOpeningOtherFileFails() throws Exception {
+    File file = File.createTempFile("features", ".arff");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    out.write("@relation AuToBIGenerated\n".getBytes());
+    out.close();
+    try {
+      new ColumnarFeatureStore(file.getPath());
+      fail();
+    } catch (AuToBIException e) {
+      // Expected
+    }
+  }
+}
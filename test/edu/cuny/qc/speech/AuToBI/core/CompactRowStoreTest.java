@@ -0,0 +1,234 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for CompactRowStore.
+ *
+ * @see CompactRowStore
+ */
+public class CompactRowStoreTest {
+
+  private FeatureSet fs;
+
+  @Before
+  public void setUp() {
+    fs = new FeatureSet();
+    fs.insertRequiredFeature("f0");
+    fs.insertRequiredFeature("nominal_pos");
+    fs.setClassAttribute("class");
+  }
+
+  private Word word(double start, Object f0, String pos, String c) {
+    Word w = new Word(start, start + 1, "w");
+    if (f0 != null) {
+      w.setAttribute("f0", f0);
+    }
+    if (pos != null) {
+      w.setAttribute("nominal_pos", pos);
+    }
+    if (c != null) {
+      w.setAttribute("class", c);
+    }
+    return w;
+  }
+
+  private List<double[]> rows(CompactRowStore store) throws AuToBIException {
+    final List<double[]> rows = new ArrayList<double[]>();
+    store.forEachRow(new CompactRowStore.RowVisitor() {
+      public void visit(double[] row) {
+        rows.add(row.clone());
+      }
+    });
+    return rows;
+  }
+
+  @Test
+  public void testColumnsAreRequiredFeaturesThenClass() {
+    CompactRowStore store = new CompactRowStore(fs);
+
+    assertEquals(3, store.numColumns());
+    assertEquals(2, store.getClassColumn());
+    assertEquals("class", store.getColumnName(2));
+    assertFalse(store.isNominal(store.getColumnIndex("f0")));
+    assertTrue(store.isNominal(store.getColumnIndex("nominal_pos")));
+    assertTrue(store.isNominal(2));
+    assertEquals(-1, store.getColumnIndex("missing"));
+  }
+
+  @Test
+  public void testAddStoresValuesAndTimes() throws AuToBIException {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, Arrays.asList(word(2.0, 100.0, "NN", "A")));
+
+    List<double[]> rows = rows(store);
+    assertEquals(1, store.size());
+    assertEquals(100.0, rows.get(0)[store.getColumnIndex("f0")], 0.0);
+    assertEquals("NN", store.getNominalValue(store.getColumnIndex("nominal_pos"),
+        rows.get(0)[store.getColumnIndex("nominal_pos")]));
+    assertEquals(2.0, rows.get(0)[store.getStartColumn()], 0.0);
+    assertEquals(3.0, rows.get(0)[store.getEndColumn()], 0.0);
+  }
+
+  @Test
+  public void testMissingAndNonNumericValuesAreNaN() throws AuToBIException {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, Arrays.asList(word(0, null, null, "A"), word(1, "high", "NN", "A")));
+
+    List<double[]> rows = rows(store);
+    assertTrue(Double.isNaN(rows.get(0)[0]));
+    assertTrue(Double.isNaN(rows.get(0)[1]));
+    assertNull(store.getNominalValue(1, rows.get(0)[1]));
+    assertTrue(Double.isNaN(rows.get(1)[0]));
+  }
+
+  @Test
+  public void testSegmentsAreVisitedInIndexOrder() throws AuToBIException {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(1, Arrays.asList(word(1, 1.0, "NN", "A")));
+    store.add(0, Arrays.asList(word(0, 0.0, "VB", "B")));
+
+    List<double[]> rows = rows(store);
+    assertEquals(0.0, rows.get(0)[0], 0.0);
+    assertEquals(1.0, rows.get(1)[0], 0.0);
+  }
+
+  @Test(expected = AuToBIException.class)
+  public void testDuplicateSegmentThrowsException() throws AuToBIException {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, Arrays.asList(word(0, 0.0, "VB", "B")));
+    store.add(0, Arrays.asList(word(0, 0.0, "VB", "B")));
+  }
+
+  @Test
+  public void testNominalIndexFollowsSegmentOrder() throws AuToBIException {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(1, Arrays.asList(word(1, 1.0, "NN", "A")));
+    store.add(0, Arrays.asList(word(0, 0.0, "VB", "B")));
+
+    List<double[]> rows = rows(store);
+    assertEquals(0, store.getNominalIndex(1, rows.get(0)[1]));
+    assertEquals(1, store.getNominalIndex(1, rows.get(1)[1]));
+
+    Feature pos = store.getFeatureSet().getFeature("nominal_pos");
+    assertEquals(Arrays.asList("VB", "NN"), new ArrayList<String>(pos.getNominalValues()));
+  }
+
+  @Test
+  public void testGetFeatureSetMatchesConstructFeatures() throws AuToBIException {
+    List<Word> words = Arrays.asList(word(0, 1.0, "VB", "B"), word(1, 2.0, "NN", "A"), word(2, 3.0, "VB", "A"));
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, words);
+
+    fs.setDataPoints(words);
+    fs.constructFeatures();
+    FeatureSet expected = fs;
+    FeatureSet actual = store.getFeatureSet();
+
+    assertEquals(expected.getFeatureNames(), actual.getFeatureNames());
+    assertEquals(0, actual.getDataPoints().size());
+    for (Feature f : expected.getFeatures()) {
+      Feature g = actual.getFeature(f.getName());
+      assertEquals(f.isNominal(), g.isNominal());
+      if (f.isNominal()) {
+        assertEquals(new ArrayList<String>(f.getNominalValues()), new ArrayList<String>(g.getNominalValues()));
+      }
+    }
+  }
+
+  @Test
+  public void testIgnoredWordsAreNotStored() throws AuToBIException {
+    Word ignored = word(0, 1.0, "VB", "B");
+    ignored.setAttribute("__ignore__", true);
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, Arrays.asList(ignored, word(1, 2.0, "NN", "A")));
+
+    List<double[]> rows = rows(store);
+    assertEquals(1, store.size());
+    assertEquals(1, rows.size());
+    assertEquals(2.0, rows.get(0)[0], 0.0);
+    assertEquals("NN", store.getNominalValue(1, rows.get(0)[1]));
+  }
+
+  @Test
+  public void testGetFeatureSetIncludesValuesOfIgnoredWords() throws AuToBIException {
+    Word ignored = word(1, 2.0, "JJ", "C");
+    ignored.setAttribute("__ignore__", true);
+    List<Word> first = Arrays.asList(word(0, 1.0, "NN", "A"));
+    List<Word> second = Arrays.asList(ignored, word(2, 3.0, "VB", "B"), word(3, 4.0, "NN", "A"));
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(1, second);
+    store.add(0, first);
+
+    List<Word> words = new ArrayList<Word>(first);
+    words.addAll(second);
+    fs.setDataPoints(words);
+    fs.constructFeatures();
+
+    FeatureSet actual = store.getFeatureSet();
+    for (String name : Arrays.asList("nominal_pos", "class")) {
+      assertEquals(new ArrayList<String>(fs.getFeature(name).getNominalValues()),
+          new ArrayList<String>(actual.getFeature(name).getNominalValues()));
+    }
+    List<double[]> rows = rows(store);
+    assertEquals(3, rows.size());
+    assertEquals(2, store.getNominalIndex(1, rows.get(1)[1]));
+    assertEquals(2, store.getNominalIndex(2, rows.get(1)[2]));
+  }
+
+  @Test
+  public void testGetClassDistribution() throws AuToBIException {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, Arrays.asList(word(0, 1.0, "VB", "B"), word(1, 2.0, "NN", "A"), word(2, 3.0, "VB", "A")));
+
+    Distribution d = store.getClassDistribution();
+    assertEquals(2.0, d.get("A"), 0.0);
+    assertEquals(1.0, d.get("B"), 0.0);
+  }
+
+  @Test
+  public void testToFeatureSetRestoresAttributes() throws AuToBIException {
+    CompactRowStore store = new CompactRowStore(fs);
+    store.add(0, Arrays.asList(word(0, 1.5, "VB", "B"), word(1, null, "NN", "A")));
+
+    FeatureSet restored = store.toFeatureSet();
+    assertEquals(2, restored.getDataPoints().size());
+    Word w = restored.getDataPoints().get(0);
+    assertEquals(1.5, (Double) w.getAttribute("f0"), 0.0);
+    assertEquals("VB", w.getAttribute("nominal_pos"));
+    assertEquals("B", w.getAttribute("class"));
+    assertEquals(0.0, w.getStart(), 0.0);
+    assertFalse(restored.getDataPoints().get(1).hasAttribute("f0"));
+    assertEquals(3, restored.getFeatures().size());
+  }
+
+  @Test
+  public void testSpilledRowsAreReadBack() throws AuToBIException {
+    File dir = new File(System.getProperty("java.io.tmpdir"));
+    CompactRowStore store = new CompactRowStore(fs, 1, dir);
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 100; ++i) {
+      words.add(word(i, (double) i, i % 2 == 0 ? "VB" : "NN", "A"));
+    }
+    store.add(0, words);
+    store.add(1, Arrays.asList(word(100, 100.0, "JJ", "B")));
+
+    List<double[]> rows = rows(store);
+    assertEquals(101, rows.size());
+    for (int i = 0; i < 101; ++i) {
+      assertEquals(i, rows.get(i)[0], 0.0);
+      assertEquals(i, rows.get(i)[store.getStartColumn()], 0.0);
+    }
+    assertEquals("JJ", store.getNominalValue(1, rows.get(100)[1]));
+    store.close();
+    assertEquals(0, store.size());
+  }
+}
@@ -0,0 +1,115 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for EvaluationAccumulator.
+ *
+ * @see EvaluationAccumulator
+ */
+public class EvaluationAccumulatorTest {
+
+  @Test
+  public void testPartialCountsInstances() throws AuToBIException {
+    EvaluationAccumulator.Partial p = new EvaluationAccumulator.Partial();
+    p.addInstance("A", "A");
+    p.addInstance("B", "A");
+    p.addInstance("B", "B");
+    p.addInstance("B", "B");
+
+    EvaluationResults results = p.toEvaluationResults();
+
+    assertEquals(4, results.getNumInstances());
+    assertEquals(1.0, results.getInstances("A", "A"), 0.0001);
+    assertEquals(1.0, results.getInstances("B", "A"), 0.0001);
+    assertEquals(2.0, results.getInstances("B", "B"), 0.0001);
+    assertEquals(0.0, results.getInstances("A", "B"), 0.0001);
+  }
+
+  @Test
+  public void testPartialGrowsPastInitialCapacity() throws AuToBIException {
+    EvaluationAccumulator.Partial p = new EvaluationAccumulator.Partial();
+    for (int i = 0; i < 20; ++i) {
+      p.addInstance("c" + i, "c" + (19 - i));
+    }
+
+    EvaluationResults results = p.toEvaluationResults();
+
+    assertEquals(20, results.getNumClasses());
+    assertEquals(20, results.getNumInstances());
+    assertEquals(1.0, results.getInstances("c0", "c19"), 0.0001);
+  }
+
+  @Test
+  public void testGetResultsMergesPartials() throws AuToBIException {
+    EvaluationAccumulator.Partial p1 = new EvaluationAccumulator.Partial();
+    p1.addInstance("A", "A");
+    p1.addInstance("B", "A");
+    EvaluationAccumulator.Partial p2 = new EvaluationAccumulator.Partial();
+    p2.addInstance("A", "A");
+    p2.addInstance("C", "B");
+
+    EvaluationAccumulator accumulator = new EvaluationAccumulator();
+    accumulator.commit(1, p2);
+    accumulator.commit(0, p1);
+
+    EvaluationResults results = accumulator.getResults();
+
+    assertEquals(2, accumulator.size());
+    assertEquals(4, results.getNumInstances());
+    assertEquals(2.0, results.getInstances("A", "A"), 0.0001);
+    assertEquals(1.0, results.getInstances("C", "B"), 0.0001);
+  }
+
+  @Test
+  public void testClassOrderPlacesTrueLabelsFirst() throws AuToBIException {
+    EvaluationAccumulator.Partial p1 = new EvaluationAccumulator.Partial();
+    p1.addInstance("X", "B");
+    EvaluationAccumulator.Partial p2 = new EvaluationAccumulator.Partial();
+    p2.addInstance("B", "A");
+
+    EvaluationAccumulator accumulator = new EvaluationAccumulator();
+    accumulator.commit(0, p1);
+    accumulator.commit(1, p2);
+
+    assertArrayEquals(new String[]{"B", "A", "X"}, accumulator.getResults().getClassNames());
+  }
+
+  @Test
+  public void testAddLabelsRegistersClassesWithoutCounting() throws AuToBIException {
+    EvaluationAccumulator.Partial p = new EvaluationAccumulator.Partial();
+    p.addInstance("A", "A");
+    p.addLabels("C", "B");
+
+    EvaluationAccumulator accumulator = new EvaluationAccumulator();
+    accumulator.commit(0, p);
+    EvaluationResults results = accumulator.getResults();
+
+    assertArrayEquals(new String[]{"A", "B", "C"}, results.getClassNames());
+    assertEquals(1, results.getNumInstances());
+  }
+
+  @Test
+  public void testCommitRejectsDuplicateIndex() throws AuToBIException {
+    EvaluationAccumulator accumulator = new EvaluationAccumulator();
+    accumulator.commit(0, new EvaluationAccumulator.Partial());
+    try {
+      accumulator.commit(0, new EvaluationAccumulator.Partial());
+      fail();
+    } catch (AuToBIException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEmptyAccumulator() throws AuToBIException {
+    EvaluationAccumulator accumulator = new EvaluationAccumulator();
+
+    EvaluationResults results = accumulator.getResults();
+
+    assertEquals(0, results.getNumClasses());
+    assertEquals(0, results.getNumInstances());
+  }
+}
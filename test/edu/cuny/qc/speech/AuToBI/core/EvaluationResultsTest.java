@@ -422,5 +422,31 @@ public class EvaluationResultsTest {
       fail();
     }
   }
-}
 
+  @Test
+  public void testAddInstanceWithRepeatedClassNames() {
+    EvaluationResults eval = new EvaluationResults(new String[]{"one", "one", "two"});
+
+    try {
+      eval.addInstance("two", "one");
+      eval.addInstance("two", "two");
+      Assert.assertEquals(1.0, eval.getInstances("two", "one"), 0.0);
+      Assert.assertEquals(1, eval.getNumCorrect());
+      Assert.assertEquals(2, eval.getNumInstances());
+    } catch (AuToBIException e) {
+      fail();
+    }
+  }
+
+  @Test
+  public void testAddInstanceWithUnknownClassName() {
+    EvaluationResults eval = new EvaluationResults(new String[]{"one", "two"});
+
+    try {
+      eval.addInstance("three", "one");
+      fail();
+    } catch (AuToBIException e) {
+      // Expected
+    }
+  }
+}
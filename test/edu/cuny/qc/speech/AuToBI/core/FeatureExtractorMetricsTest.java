@@ -0,0 +1,163 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.featureextractor.FeatureExtractorException;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for FeatureExtractorMetrics.
+ *
+ * @see FeatureExtractorMetrics
+ */
+public class FeatureExtractorMetricsTest {
+
+  public static class MockMetricsFeatureExtractor extends FeatureExtractor {
+    public static final String moniker = "mock_metrics";
+
+    public MockMetricsFeatureExtractor(String feature) {
+      this.getExtractedFeatures().add(feature);
+    }
+
+    @Override
+    public void extractFeatures(List regions) throws FeatureExtractorException {
+    }
+  }
+
+  private List<Region> makeRegions(int n, String feature) {
+    List<Region> regions = new ArrayList<Region>();
+    for (int i = 0; i < n; ++i) {
+      Region r = new Region(i, i + 1);
+      r.setAttribute(feature, 1.0);
+      regions.add(r);
+    }
+    return regions;
+  }
+
+  @Test
+  public void testRecordAccumulatesByClassAndByFile() {
+    FeatureExtractorMetrics metrics = new FeatureExtractorMetrics();
+    FeatureExtractor fe1 = new MockMetricsFeatureExtractor("a");
+    FeatureExtractor fe2 = new MockMetricsFeatureExtractor("b");
+
+    metrics.record("file1", fe1, makeRegions(10, "a"), System.nanoTime(), -1, -1);
+    metrics.record("file1", fe2, makeRegions(10, "b"), System.nanoTime(), -1, -1);
+    metrics.record("file2", fe1, makeRegions(5, "a"), System.nanoTime(), -1, -1);
+
+    assertEquals(1, metrics.getExtractorStats().size());
+    FeatureExtractorStats stats = metrics.getExtractorStats(fe1);
+    assertEquals(3, stats.getInvocations());
+    assertEquals(25, stats.getRegions());
+    assertEquals(3, stats.getFeatures());
+    assertEquals("mock_metrics", stats.getMoniker());
+    assertEquals(-1, stats.getCpuTimeNanos());
+
+    assertEquals(2, metrics.getFiles().size());
+    assertEquals(2, metrics.getFileStats("file1").size());
+    assertEquals(1, metrics.getFileStats("file2").size());
+    assertEquals("a", metrics.getFileStats("file2").get(0).getName());
+    assertEquals(0, metrics.getFileStats("file3").size());
+  }
+
+  @Test
+  public void testRecordCountsOnlyFeaturesPresentOnTheRegions() {
+    FeatureExtractorMetrics metrics = new FeatureExtractorMetrics();
+    FeatureExtractor fe = new MockMetricsFeatureExtractor("a");
+    fe.getExtractedFeatures().add("b");
+    fe.getExtractedFeatures().add("c");
+    List<Region> regions = makeRegions(3, "a");
+    regions.get(2).setAttribute("c", 1.0);
+
+    metrics.record("file1", fe, regions, System.nanoTime(), -1, -1);
+    metrics.record("file1", fe, makeRegions(2, "d"), System.nanoTime(), -1, -1);
+
+    assertEquals(2, metrics.getExtractorStats(fe).getFeatures());
+    assertEquals(5, metrics.getExtractorStats(fe).getRegions());
+  }
+
+  @Test
+  public void testRecordMeasuresCpuTimeWhenSupported() {
+    FeatureExtractorMetrics metrics = new FeatureExtractorMetrics();
+    FeatureExtractor fe = new MockMetricsFeatureExtractor("a");
+
+    long cpu_start = FeatureExtractorMetrics.currentThreadCpuTime();
+    metrics.record("file1", fe, makeRegions(1, "a"), System.nanoTime(), cpu_start, -1);
+
+    if (cpu_start >= 0) {
+      assertTrue(metrics.getExtractorStats(fe).getCpuTimeNanos() >= 0);
+    } else {
+      assertEquals(-1, metrics.getExtractorStats(fe).getCpuTimeNanos());
+    }
+  }
+
+  @Test
+  public void testRecordCollection() {
+    FeatureExtractorMetrics metrics = new FeatureExtractorMetrics();
+    FeatureExtractor fe = new MockMetricsFeatureExtractor("a");
+
+    metrics.recordCollection("file1", fe);
+    metrics.recordCollectionEvent();
+
+    assertEquals(1, metrics.getExtractorStats(fe).getCollectedFeatures());
+    assertEquals(1, metrics.getFileStats("file1").get(0).getCollectedFeatures());
+    assertEquals(1, metrics.getCollectionEvents());
+  }
+
+  @Test
+  public void testGetMonikerWithoutMonikerField() {
+    assertEquals("", FeatureExtractorMetrics.getMoniker(String.class));
+    assertEquals("mock_metrics", FeatureExtractorMetrics.getMoniker(MockMetricsFeatureExtractor.class));
+  }
+
+  @Test
+  public void testWriteReport() throws Exception {
+    FeatureExtractorMetrics metrics = new FeatureExtractorMetrics();
+    metrics.record("file1", new MockMetricsFeatureExtractor("a"), makeRegions(10, "a"), System.nanoTime(), -1, -1);
+
+    StringWriter writer = new StringWriter();
+    metrics.writeReport(writer);
+    String report = writer.toString();
+
+    assertTrue(report.contains("\"collection_events\": 0"));
+    assertTrue(report.contains("\"file\": \"file1\""));
+    assertTrue(report.contains("\"moniker\": \"mock_metrics\""));
+    assertTrue(report.contains("\"regions\": 10"));
+  }
+
+  @Test
+  public void testRegisterMBeans() throws Exception {
+    FeatureExtractorMetrics metrics = new FeatureExtractorMetrics();
+    FeatureExtractor fe = new MockMetricsFeatureExtractor("a");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = FeatureExtractorMetrics.getObjectName(fe.getClass().getName());
+
+    metrics.registerMBeans();
+    try {
+      metrics.record("file1", fe, makeRegions(10, "a"), System.nanoTime(), -1, -1);
+      assertTrue(server.isRegistered(name));
+      assertEquals(10L, server.getAttribute(name, "Regions"));
+      assertEquals("mock_metrics", server.getAttribute(name, "Moniker"));
+    } finally {
+      metrics.unregisterMBeans();
+    }
+    assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void testResetClearsStatistics() {
+    FeatureExtractorMetrics metrics = new FeatureExtractorMetrics();
+    FeatureExtractor fe = new MockMetricsFeatureExtractor("a");
+    metrics.record("file1", fe, makeRegions(10, "a"), System.nanoTime(), -1, -1);
+    metrics.reset();
+
+    assertEquals(0, metrics.getExtractorStats(fe).getInvocations());
+    assertEquals(0, metrics.getFiles().size());
+  }
+}
@@ -0,0 +1,49 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for FeatureExtractorStats.
+ *
+ * @see FeatureExtractorStats
+ */
+public class FeatureExtractorStatsTest {
+
+  @Test
+  public void testRecordAccumulates() {
+    FeatureExtractorStats stats = new FeatureExtractorStats("f0", "MockExtractor", "mock");
+    stats.record(10, 5, 100, 3, 2);
+    stats.record(20, 7, 50, 4, 2);
+
+    assertEquals(2, stats.getInvocations());
+    assertEquals(30, stats.getWallTimeNanos());
+    assertEquals(12, stats.getCpuTimeNanos());
+    assertEquals(150, stats.getAllocatedBytes());
+    assertEquals(7, stats.getRegions());
+    assertEquals(4, stats.getFeatures());
+  }
+
+  @Test
+  public void testUnsupportedMeasurementsAreReportedAsNegative() {
+    FeatureExtractorStats stats = new FeatureExtractorStats("f0", "MockExtractor", "mock");
+    stats.record(10, -1, 100, 3, 2);
+    stats.record(10, 5, -1, 3, 2);
+
+    assertEquals(-1, stats.getCpuTimeNanos());
+    assertEquals(-1, stats.getAllocatedBytes());
+  }
+
+  @Test
+  public void testResetClearsStatistics() {
+    FeatureExtractorStats stats = new FeatureExtractorStats("f0", "MockExtractor", "mock");
+    stats.record(10, 5, 100, 3, 2);
+    stats.recordCollection();
+    stats.reset();
+
+    assertEquals(0, stats.getInvocations());
+    assertEquals(0, stats.getWallTimeNanos());
+    assertEquals(0, stats.getCollectedFeatures());
+  }
+}
@@ -26,6 +26,7 @@ import org.junit.Test;
 
 import java.util.List;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
@@ -85,6 +86,28 @@ public class FeatureSetPropagatorTest {
     assertTrue(new_fs.getDataPoints().size() > 0);
   }
 
+  @Test
+  public void testEstimatesAreReadFromTheWavHeader() {
+    AuToBI autobi = new AuToBI();
+    FormattedFile file = new FormattedFile(TEST_DIR + "/test.txt", FormattedFile.Format.SIMPLE_WORD);
+    FeatureSet fs = new FeatureSet();
+
+    FeatureSetPropagator fsp = new FeatureSetPropagator(autobi, file, fs);
+    assertTrue(fsp.getEstimatedDuration() > 0);
+    assertTrue(fsp.getEstimatedMemory() > 0);
+  }
+
+  @Test
+  public void testEstimatesAreZeroWithoutAWavFile() {
+    AuToBI autobi = new AuToBI();
+    FormattedFile file = new FormattedFile(TEST_DIR + "/no_file.txt");
+    FeatureSet fs = new FeatureSet();
+
+    FeatureSetPropagator fsp = new FeatureSetPropagator(autobi, file, fs);
+    assertEquals(0.0, fsp.getEstimatedDuration(), 0.0);
+    assertEquals(0, fsp.getEstimatedMemory());
+  }
+
   public static class MockClassAttributeFE extends FeatureExtractor {
     public final static String moniker = "test_class_attribute";
 
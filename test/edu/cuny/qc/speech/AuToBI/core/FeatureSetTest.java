@@ -29,6 +29,7 @@ import java.util.Set;
 import static junit.framework.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -63,6 +64,26 @@ public class FeatureSetTest {
     assertNull(newfs.getClassAttribute());
   }
 
+  @Test
+  public void testNewInstanceWithDataPointsDoesNotReassignThem() {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("feature");
+    fs.setClassAttribute("class");
+    Word w1 = new Word(0, 1, "one");
+    Word w2 = new Word(1, 2, "two");
+    fs.insertDataPoint(w1);
+    fs.insertDataPoint(w2);
+
+    List<Word> subset = new ArrayList<Word>();
+    subset.add(w2);
+    FeatureSet newfs = fs.newInstance(subset);
+
+    assertSame(subset, newfs.getDataPoints());
+    assertSame(fs, w2.getFeatureSet());
+    assertEquals("class", newfs.getClassAttribute());
+    assertEquals(fs.getFeatureIndex("feature"), newfs.getFeatureIndex("feature"));
+  }
+
   @Test
   public void testSetDataPoints() {
     FeatureSet fs = new FeatureSet();
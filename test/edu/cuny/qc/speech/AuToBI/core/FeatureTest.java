@@ -29,6 +29,9 @@ import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * Created by IntelliJ IDEA. User: andrew Date: Dec 11, 2010 Time: 6:37:35 PM To change this template use File |
@@ -200,5 +203,116 @@ public class FeatureTest {
     assertEquals("one,two", f1.getNominalValuesCSV());
   }
 
-}
+  @Test
+  public void testGetNominalIndex() {
+    Feature f1 = new Feature("test");
+
+    f1.setNominalValues(new String[]{"one", "two"});
+    f1.addNominalValue("three");
+    f1.addNominalValue("one");
+
+    assertEquals(0, f1.getNominalIndex("one"));
+    assertEquals(2, f1.getNominalIndex("three"));
+    assertEquals(-1, f1.getNominalIndex("four"));
+  }
+
+  @Test
+  public void testGetNominalIndexAfterModifyingNominalValues() {
+    Feature f1 = new Feature("test");
+
+    f1.setNominalValues(new String[]{"one", "two"});
+    assertEquals(1, f1.getNominalIndex("two"));
+    f1.getNominalValues().add("three");
+
+    assertEquals(2, f1.getNominalIndex("three"));
+    assertEquals(3, f1.getNominalDictionary().size());
+  }
+
+  @Test
+  public void testGetNominalIndexAfterReplacingNominalValueOfSameSize() {
+    Feature f1 = new Feature("test");
+
+    f1.setNominalValues(new String[]{"one", "two"});
+    assertEquals(1, f1.getNominalIndex("two"));
+    f1.getNominalValues().remove("two");
+    f1.getNominalValues().add("three");
+
+    assertEquals(-1, f1.getNominalIndex("two"));
+    assertEquals(1, f1.getNominalIndex("three"));
+  }
+
+  @Test
+  public void testGetNominalDictionaryIsReusedUntilValuesChange() {
+    Feature f1 = new Feature("test");
 
+    f1.setNominalValues(new String[]{"one", "two"});
+    NominalDictionary d = f1.getNominalDictionary();
+    assertSame(d, f1.getNominalDictionary());
+    f1.addNominalValue("one");
+    assertSame(d, f1.getNominalDictionary());
+    f1.addNominalValue("three");
+
+    assertNotSame(d, f1.getNominalDictionary());
+    assertEquals(2, d.size());
+    assertEquals(2, f1.getNominalIndex("three"));
+  }
+
+  @Test
+  public void testGetNominalDictionaryCannotBeModified() {
+    Feature f1 = new Feature("test");
+    f1.setNominalValues(new String[]{"one", "two"});
+    NominalDictionary d = f1.getNominalDictionary();
+
+    assertTrue(d.isFrozen());
+    assertEquals(1, d.add("two"));
+    try {
+      d.add("three");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+    assertEquals(2, d.size());
+    assertEquals(-1, f1.getNominalIndex("three"));
+  }
+
+  @Test
+  public void testSetNominalValuesFromOwnView() {
+    Feature f1 = new Feature("test");
+
+    f1.setNominalValues(new String[]{"one", "two"});
+    f1.setNominalValues(f1.getNominalValues());
+
+    assertEquals("one,two", f1.getNominalValuesCSV());
+  }
+
+  @Test
+  public void testNumericFeatureHasNoNominalDictionary() {
+    assertNull(new Feature("test").getNominalDictionary());
+  }
+
+  @Test
+  public void testAddEmptyNominalValuesMakesFeatureNominal() {
+    Feature f1 = new Feature("test");
+
+    f1.addNominalValues(new ArrayList<String>());
+
+    assertTrue(f1.isNominal());
+    assertEquals(0, f1.getNominalDictionary().size());
+  }
+
+  @Test
+  public void testGenerateNominalValuesWithRepeatedNumbers() {
+    Feature f1 = new Feature("test");
+    List<Word> words = new ArrayList<Word>();
+    for (int i = 0; i < 10; ++i) {
+      Word w = new Word(0, 1, "test");
+      w.setAttribute("test", i % 3);
+      words.add(w);
+    }
+
+    f1.generateNominalValues(words);
+
+    assertEquals("0,1,2", f1.getNominalValuesCSV());
+    assertEquals(1, f1.getNominalIndex("1"));
+  }
+}
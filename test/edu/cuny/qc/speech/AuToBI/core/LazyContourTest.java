@@ -0,0 +1,152 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import edu.cuny.qc.speech.AuToBI.util.ContourUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for LazyContour.
+ *
+ * @see LazyContour
+ */
+public class LazyContourTest {
+
+  private Contour source;
+
+  @Before
+  public void setUp() {
+    double[] values = new double[3 * LazyContour.CHUNK_SIZE + 17];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = 100 + (i * 7) % 50;
+    }
+    source = new Contour(0.5, 0.01, values);
+    source.setEmpty(0);
+    source.setEmpty(5);
+    source.setEmpty(LazyContour.CHUNK_SIZE);
+    source.setEmpty(values.length - 1);
+  }
+
+  private void assertContoursEqual(Contour expected, Contour actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.getStart(), actual.getStart(), 0.0);
+    assertEquals(expected.getStep(), actual.getStep(), 0.0);
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals("frame " + i, expected.isEmpty(i), actual.isEmpty(i));
+      if (!expected.isEmpty(i)) {
+        assertEquals("frame " + i, expected.get(i), actual.get(i), 1e-12);
+      }
+    }
+    assertEquals(expected.contentSize(), actual.contentSize());
+  }
+
+  private SpeakerNormalizationParameter normParams() {
+    SpeakerNormalizationParameter snp = new SpeakerNormalizationParameter();
+    snp.insertPitch(100);
+    snp.insertPitch(120);
+    snp.insertPitch(150);
+    return snp;
+  }
+
+  @Test
+  public void testLogMatchesEagerTransform() {
+    Contour expected = new Contour(source.getStart(), source.getStep(), source.size());
+    for (int i = 0; i < source.size(); ++i) {
+      if (!source.isEmpty(i)) {
+        expected.set(i, Math.log(source.get(i)));
+      }
+    }
+    assertContoursEqual(expected, LazyContour.log(source));
+  }
+
+  @Test
+  public void testZScoreNormalizeMatchesContourUtils() {
+    SpeakerNormalizationParameter snp = normParams();
+    assertContoursEqual(ContourUtils.zScoreNormalizeContour(source, snp, "f0"),
+        LazyContour.zScoreNormalize(source, snp, "f0"));
+  }
+
+  @Test
+  public void testRangeNormalizeMatchesContourUtils() {
+    SpeakerNormalizationParameter snp = normParams();
+    assertContoursEqual(ContourUtils.rangeNormalizeContour(source, snp, "f0"),
+        LazyContour.rangeNormalize(source, snp, "f0"));
+  }
+
+  @Test
+  public void testDeltaMatchesContourUtils() {
+    assertContoursEqual(ContourUtils.generateDeltaContour(source), LazyContour.delta(source));
+  }
+
+  @Test
+  public void testDeltaOfEmptyContour() {
+    LazyContour delta = LazyContour.delta(new Contour(0, 0.01, new double[0]));
+    assertEquals(0, delta.size());
+    assertEquals(0, delta.contentSize());
+  }
+
+  @Test
+  public void testComposedTransformsMatchEagerComposition() {
+    Contour eager_log = new Contour(source.getStart(), source.getStep(), source.size());
+    for (int i = 0; i < source.size(); ++i) {
+      if (!source.isEmpty(i)) {
+        eager_log.set(i, Math.log(source.get(i)));
+      }
+    }
+    assertContoursEqual(ContourUtils.generateDeltaContour(eager_log), LazyContour.delta(LazyContour.log(source)));
+  }
+
+  @Test
+  public void testOnlyReadChunksAreComputed() throws AuToBIException {
+    double[] values = new double[8 * LazyContour.CHUNK_SIZE];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = 100 + i;
+    }
+    LazyContour log = LazyContour.log(new Contour(0, 0.01, values));
+    LazyContour delta = LazyContour.delta(log);
+    assertEquals(0, delta.numComputedChunks());
+
+    int start = 4 * LazyContour.CHUNK_SIZE + 10;
+    Contour sub = ContourUtils.getSubContour(delta, delta.timeFromIndex(start), delta.timeFromIndex(start + 20));
+
+    assertEquals(21, sub.size());
+    assertEquals(1, delta.numComputedChunks());
+    // The first and last frames of a delta chunk read the neighbouring chunks of the source.
+    assertEquals(3, log.numComputedChunks());
+    assertEquals(log.get(start + 1) - log.get(start - 1), sub.get(0), 1e-12);
+  }
+
+  @Test
+  public void testSetAndSetEmptyOverrideComputedValues() {
+    LazyContour log = LazyContour.log(source);
+    log.set(5, 2.0);
+    log.setEmpty(6);
+
+    assertFalse(log.isEmpty(5));
+    assertEquals(2.0, log.get(5), 0.0);
+    assertTrue(log.isEmpty(6));
+    assertTrue(Double.isNaN(log.get(6)));
+    assertNull(log.getPair(6));
+  }
+
+  @Test
+  public void testOutOfBoundsFramesAreEmpty() {
+    LazyContour log = LazyContour.log(source);
+    assertTrue(log.isEmpty(-1));
+    assertTrue(log.isEmpty(log.size()));
+    assertTrue(Double.isNaN(log.get(log.size())));
+    assertEquals(0, log.numComputedChunks());
+  }
+
+  @Test
+  public void testIteratorSkipsEmptyFrames() {
+    LazyContour log = LazyContour.log(source);
+    int count = 0;
+    for (Pair<Double, Double> p : log) {
+      assertEquals(Math.log(source.get(p.first)), p.second, 1e-12);
+      ++count;
+    }
+    assertEquals(source.contentSize(), count);
+  }
+}
@@ -0,0 +1,103 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for NominalDictionary.
+ *
+ * @see NominalDictionary
+ */
+public class NominalDictionaryTest {
+
+  @Test
+  public void testCodesFollowInsertionOrder() {
+    NominalDictionary d = new NominalDictionary("B", "A", "C");
+
+    assertEquals(3, d.size());
+    assertEquals(0, d.encode("B"));
+    assertEquals(1, d.encode("A"));
+    assertEquals(2, d.encode("C"));
+    assertEquals("A", d.decode(1));
+  }
+
+  @Test
+  public void testEncodeMissingValue() {
+    NominalDictionary d = new NominalDictionary("A");
+
+    assertEquals(-1, d.encode("B"));
+    assertFalse(d.contains("B"));
+    assertTrue(d.contains("A"));
+  }
+
+  @Test
+  public void testAddIsIdempotent() {
+    NominalDictionary d = new NominalDictionary();
+
+    assertEquals(0, d.add("A"));
+    assertEquals(1, d.add("B"));
+    assertEquals(0, d.add("A"));
+    assertEquals(2, d.size());
+  }
+
+  @Test
+  public void testRepeatedValuesKeepFirstCode() {
+    NominalDictionary d = new NominalDictionary(Arrays.asList("A", "B", "A", "C"));
+
+    assertEquals(Arrays.asList("A", "B", "C"), d.getValues());
+    assertEquals(2, d.encode("C"));
+  }
+
+  @Test
+  public void testMerge() {
+    NominalDictionary d = new NominalDictionary("A", "B");
+    NominalDictionary other = new NominalDictionary("C", "B", "D");
+
+    int[] mapping = d.merge(other);
+
+    assertEquals(Arrays.asList("A", "B", "C", "D"), d.getValues());
+    assertArrayEquals(new int[]{2, 1, 3}, mapping);
+    for (int i = 0; i < other.size(); ++i) {
+      assertEquals(other.decode(i), d.decode(mapping[i]));
+    }
+  }
+
+  @Test
+  public void testGetValuesIsUnmodifiable() {
+    NominalDictionary d = new NominalDictionary("A");
+    try {
+      d.getValues().add("B");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testFrozenDictionaryRejectsNewValues() {
+    NominalDictionary d = new NominalDictionary("A", "B");
+
+    assertFalse(d.isFrozen());
+    assertSame(d, d.freeze());
+    assertTrue(d.isFrozen());
+    assertEquals(1, d.add("B"));
+    assertArrayEquals(new int[]{1, 0}, d.merge(new NominalDictionary("B", "A")));
+    try {
+      d.merge(new NominalDictionary("C"));
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+    assertEquals(Arrays.asList("A", "B"), d.getValues());
+  }
+
+  @Test
+  public void testEquals() {
+    assertEquals(new NominalDictionary("A", "B"), new NominalDictionary(Arrays.asList("A", "B")));
+    assertEquals(new NominalDictionary("A", "B").hashCode(), new NominalDictionary("A", "B").freeze().hashCode());
+    assertFalse(new NominalDictionary("A", "B").equals(new NominalDictionary("B", "A")));
+  }
+}
@@ -0,0 +1,92 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for Posterior.
+ *
+ * @see Posterior
+ */
+public class PosteriorTest {
+
+  @Test
+  public void testGetByLabel() {
+    Posterior p = new Posterior(new NominalDictionary("A", "B"), new double[]{0.25, 0.75});
+
+    assertEquals(0.25, p.get("A"), 0.0);
+    assertEquals(0.75, p.get("B"), 0.0);
+    assertEquals(0.0, p.get("C"), 0.0);
+  }
+
+  @Test
+  public void testConstructorChecksLength() {
+    try {
+      new Posterior(new NominalDictionary("A", "B"), new double[]{1.0});
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testGetKeyWithMaximumValue() {
+    Posterior p = new Posterior(new NominalDictionary("A", "B", "C"), new double[]{0.2, 0.5, 0.3});
+
+    assertEquals(1, p.getIndexWithMaximumValue());
+    assertEquals("B", p.getKeyWithMaximumValue());
+  }
+
+  @Test
+  public void testGetKeyWithMaximumValueOnEmptyPosterior() {
+    Posterior p = new Posterior(new NominalDictionary());
+
+    assertEquals(-1, p.getIndexWithMaximumValue());
+    assertNull(p.getKeyWithMaximumValue());
+  }
+
+  @Test
+  public void testNormalize() throws AuToBIException {
+    Posterior p = new Posterior(new NominalDictionary("A", "B"));
+    p.set(0, 1.0);
+    p.set(1, 3.0);
+    p.normalize();
+
+    assertEquals(0.25, p.get(0), 0.0);
+    assertEquals(0.75, p.get(1), 0.0);
+  }
+
+  @Test
+  public void testNormalizeThrowsExceptionOnZeroSum() {
+    Posterior p = new Posterior(new NominalDictionary("A", "B"));
+    try {
+      p.normalize();
+      fail();
+    } catch (AuToBIException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testToDistribution() {
+    Posterior p = new Posterior(new NominalDictionary("A", "B"), new double[]{0.25, 0.75});
+    Distribution d = p.toDistribution();
+
+    assertEquals(2, d.size());
+    assertEquals(0.25, d.get("A"), 0.0);
+    assertEquals(0.75, d.get("B"), 0.0);
+  }
+
+  @Test
+  public void testFromDistribution() {
+    Distribution d = new Distribution();
+    d.put("A", 0.4);
+    d.put("B", 0.6);
+    Posterior p = Posterior.fromDistribution(d);
+
+    assertEquals(2, p.size());
+    assertEquals(0.4, p.get("A"), 0.0);
+    assertEquals(0.6, p.get("B"), 0.0);
+  }
+}
@@ -0,0 +1,76 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for RangeAggregation.
+ *
+ * @see RangeAggregation
+ */
+public class RangeAggregationTest {
+
+  @Test
+  public void testRangeQueriesMatchAggregation() {
+    Random rand = new Random(20140301);
+    double[] values = new double[200];
+    boolean[] present = new boolean[200];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = 100 + 20 * rand.nextGaussian();
+      present[i] = rand.nextDouble() > 0.3;
+    }
+    RangeAggregation range_agg = new RangeAggregation(values, present);
+
+    for (int start = 0; start < values.length; start += 7) {
+      for (int end = start; end < values.length; end += 5) {
+        Aggregation agg = new Aggregation();
+        for (int i = start; i <= end; ++i) {
+          if (present[i]) {
+            agg.insert(values[i]);
+          }
+        }
+        assertEquals(agg.getSize(), range_agg.getSize(start, end));
+        assertEquals(agg.getMean(), range_agg.getMean(start, end), 0.000001);
+        assertEquals(agg.getStdev(), range_agg.getStdev(start, end), 0.000001);
+        assertEquals(agg.getMin(), range_agg.getMin(start, end), 0.0);
+        assertEquals(agg.getMax(), range_agg.getMax(start, end), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testRangeQueriesIgnoreOutOfBoundsIndices() {
+    RangeAggregation agg = new RangeAggregation(new double[]{1.0, 2.0, 3.0}, new boolean[]{true, true, true});
+
+    assertEquals(3, agg.getSize(-5, 10));
+    assertEquals(2.0, agg.getMean(-5, 10), 0.0001);
+    assertEquals(1.0, agg.getMin(-5, 10), 0.0001);
+    assertEquals(3.0, agg.getMax(-5, 10), 0.0001);
+  }
+
+  @Test
+  public void testEmptyRangeFollowsAggregationConventions() {
+    RangeAggregation agg = new RangeAggregation(new double[]{1.0, 2.0, 3.0}, new boolean[]{true, false, true});
+
+    assertEquals(0, agg.getSize(1, 1));
+    assertEquals(0.0, agg.getMean(1, 1), 0.0001);
+    assertEquals(0.0, agg.getStdev(1, 1), 0.0001);
+    assertEquals(Double.MAX_VALUE, agg.getMin(1, 1), 0.0001);
+    assertEquals(-Double.MAX_VALUE, agg.getMax(1, 1), 0.0001);
+  }
+
+  @Test
+  public void testContourConstructorSkipsEmptyValues() {
+    Contour c = new Contour(0, 1, new double[]{1.0, 5.0, 3.0});
+    c.setEmpty(1);
+    RangeAggregation agg = new RangeAggregation(c);
+
+    assertEquals(3, agg.size());
+    assertEquals(2, agg.getSize(0, 2));
+    assertEquals(2.0, agg.getMean(0, 2), 0.0001);
+    assertEquals(3.0, agg.getMax(0, 2), 0.0001);
+  }
+}
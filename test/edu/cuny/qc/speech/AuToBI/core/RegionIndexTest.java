@@ -0,0 +1,147 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for RegionIndex.
+ *
+ * @see RegionIndex
+ */
+public class RegionIndexTest {
+
+  private List<Region> randomRegions(Random rand, int n) {
+    List<Region> regions = new ArrayList<Region>();
+    for (int i = 0; i < n; ++i) {
+      double start = Math.round(rand.nextDouble() * 1000) / 10.0;
+      double length = rand.nextInt(4) == 0 ? 0.0 : Math.round(rand.nextDouble() * 100) / 10.0;
+      regions.add(new Region(start, start + length, "r" + i));
+    }
+    return regions;
+  }
+
+  @Test
+  public void testRegionsAreOrderedByStart() {
+    Region a = new Region(2, 3, "a");
+    Region b = new Region(0, 5, "b");
+    Region c = new Region(2, 2.5, "c");
+    RegionIndex<Region> index = new RegionIndex<Region>(Arrays.asList(a, b, c));
+
+    assertEquals(3, index.size());
+    assertSame(b, index.get(0));
+    assertSame(a, index.get(1));
+    assertSame(c, index.get(2));
+  }
+
+  @Test
+  public void testIntersectingIncludesTouchingRegions() {
+    Region a = new Region(0, 1, "a");
+    Region b = new Region(1, 2, "b");
+    Region point = new Region(2, 2, "point");
+    RegionIndex<Region> index = new RegionIndex<Region>(Arrays.asList(a, b, point));
+
+    assertEquals(Arrays.asList(a, b), index.intersecting(1, 1));
+    assertEquals(Arrays.asList(b, point), index.containing(2));
+    assertEquals(Arrays.asList(b, point), index.overlapping(1, 3));
+    assertTrue(index.overlapping(2, 3).isEmpty());
+  }
+
+  @Test
+  public void testQueriesMatchExhaustiveSearch() {
+    Random rand = new Random(7);
+    List<Region> regions = randomRegions(rand, 300);
+    RegionIndex<Region> index = new RegionIndex<Region>(regions);
+
+    for (int q = 0; q < 200; ++q) {
+      double start = rand.nextDouble() * 110 - 5;
+      double end = start + (q % 5 == 0 ? 0 : rand.nextDouble() * 10);
+
+      List<Region> intersecting = new ArrayList<Region>();
+      List<Region> overlapping = new ArrayList<Region>();
+      List<Region> contained = new ArrayList<Region>();
+      for (Region r : index.getRegions()) {
+        if (r.getStart() <= end && r.getEnd() >= start) {
+          intersecting.add(r);
+        }
+        if (r.getStart() < end && r.getEnd() > start) {
+          overlapping.add(r);
+        }
+        if (r.getStart() >= start && r.getEnd() <= end) {
+          contained.add(r);
+        }
+      }
+      assertEquals(intersecting, index.intersecting(start, end));
+      assertEquals(overlapping, index.overlapping(start, end));
+      assertEquals(contained, index.containedIn(start, end));
+    }
+  }
+
+  @Test
+  public void testFirstEndingAfterMatchesExhaustiveSearch() {
+    Random rand = new Random(11);
+    RegionIndex<Region> index = new RegionIndex<Region>(randomRegions(rand, 200));
+
+    for (int q = 0; q < 200; ++q) {
+      double time = rand.nextDouble() * 110 - 5;
+      int from = rand.nextInt(index.size() + 1);
+      int expected_after = -1;
+      int expected_at = -1;
+      for (int i = index.size() - 1; i >= from; --i) {
+        if (index.get(i).getEnd() > time) {
+          expected_after = i;
+        }
+        if (index.get(i).getEnd() >= time) {
+          expected_at = i;
+        }
+      }
+      assertEquals(expected_after, index.firstEndingAfter(time, from));
+      assertEquals(expected_at, index.firstEndingAtOrAfter(time, from));
+    }
+  }
+
+  @Test
+  public void testNearest() {
+    Region a = new Region(0, 1, "a");
+    Region b = new Region(3, 4, "b");
+    Region c = new Region(10, 12, "c");
+    RegionIndex<Region> index = new RegionIndex<Region>(Arrays.asList(c, a, b));
+
+    assertSame(a, index.nearest(-5));
+    assertSame(a, index.nearest(0.5));
+    assertSame(a, index.nearest(1.9));
+    assertSame(b, index.nearest(2.1));
+    assertSame(a, index.nearest(2.0));
+    assertSame(b, index.nearest(6.9));
+    assertSame(c, index.nearest(7.1));
+    assertSame(c, index.nearest(20));
+    assertNull(new RegionIndex<Region>(new ArrayList<Region>()).nearest(1));
+  }
+
+  @Test
+  public void testBatchOverlappingFollowsQueryOrder() {
+    Region a = new Region(0, 1, "a");
+    Region b = new Region(1, 2, "b");
+    RegionIndex<Region> index = new RegionIndex<Region>(Arrays.asList(a, b));
+
+    List<List<Region>> result = index.overlapping(Arrays.asList(new Region(1.5, 3), new Region(0, 2),
+        new Region(5, 6)));
+
+    assertEquals(Arrays.asList(b), result.get(0));
+    assertEquals(Arrays.asList(a, b), result.get(1));
+    assertTrue(result.get(2).isEmpty());
+  }
+
+  @Test
+  public void testEmptyIndex() {
+    RegionIndex<Word> index = new RegionIndex<Word>(new ArrayList<Word>());
+    assertEquals(0, index.size());
+    assertTrue(index.intersecting(0, 10).isEmpty());
+    assertEquals(-1, index.firstEndingAfter(0, 0));
+  }
+}
@@ -316,5 +316,21 @@ public class RegionTest {
 
     assertEquals("TESTING", w.getAttribute("test_attribute"));
   }
-}
 
+  @Test
+  public void testGetAttributeByFeatureSetIndex() {
+    Word w = new Word(5.0, 15.0, "test_label", "/test/file/name.txt");
+    w.setAttribute("other_attribute", "OTHER");
+
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("test_attribute");
+    fs.insertDataPoint(w);
+    w.setAttribute("test_attribute", "TESTING");
+
+    int idx = fs.getFeatureIndex("test_attribute");
+    assertEquals("TESTING", w.getAttribute(fs, idx, "test_attribute"));
+    assertEquals("OTHER", w.getAttribute(fs, -1, "other_attribute"));
+    assertEquals("TESTING", w.getAttribute(new FeatureSet(), idx, "test_attribute"));
+    assertNull(w.getAttribute(fs, -1, "missing_attribute"));
+  }
+}
@@ -0,0 +1,214 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for SizeAwareScheduler.
+ *
+ * @see SizeAwareScheduler
+ */
+public class SizeAwareSchedulerTest {
+
+  /**
+   * A task that records the memory of the tasks running alongside it.
+   */
+  private static class MemoryTask implements Callable<Integer> {
+    private final int id;
+    private final long memory;
+    private final AtomicLong in_flight;
+    private final AtomicLong peak;
+    private final List<Integer> started;
+
+    MemoryTask(int id, long memory, AtomicLong in_flight, AtomicLong peak, List<Integer> started) {
+      this.id = id;
+      this.memory = memory;
+      this.in_flight = in_flight;
+      this.peak = peak;
+      this.started = started;
+    }
+
+    public Integer call() throws Exception {
+      started.add(id);
+      long current = in_flight.addAndGet(memory);
+      synchronized (peak) {
+        peak.set(Math.max(peak.get(), current));
+      }
+      Thread.sleep(5);
+      in_flight.addAndGet(-memory);
+      return id;
+    }
+  }
+
+  @Test
+  public void testOrderIsLargestFirstAndStable() {
+    int[] order = SizeAwareScheduler.order(new double[]{1.0, 5.0, 1.0, 3.0, 5.0});
+
+    assertArrayEquals(new int[]{1, 4, 3, 0, 2}, order);
+  }
+
+  @Test
+  public void testSingleThreadRunsLargestFirst() throws AuToBIException {
+    AtomicLong in_flight = new AtomicLong();
+    AtomicLong peak = new AtomicLong();
+    List<Integer> started = Collections.synchronizedList(new ArrayList<Integer>());
+    List<MemoryTask> tasks = new ArrayList<MemoryTask>();
+    for (int i = 0; i < 4; ++i) {
+      tasks.add(new MemoryTask(i, 1, in_flight, peak, started));
+    }
+
+    final List<Integer> handled = new ArrayList<Integer>();
+    new SizeAwareScheduler<Integer>(1, 0).run(tasks, new double[]{1, 4, 2, 3}, new long[]{1, 1, 1, 1},
+        new SizeAwareScheduler.ResultHandler<Integer>() {
+          public void handle(int index, Integer result) {
+            assertEquals(index, (int) result);
+            handled.add(index);
+          }
+        });
+
+    assertEquals(4, handled.size());
+    assertEquals(started, handled);
+    assertEquals(1, (int) started.get(0));
+    assertEquals(3, (int) started.get(1));
+    assertEquals(2, (int) started.get(2));
+    assertEquals(0, (int) started.get(3));
+  }
+
+  @Test
+  public void testMemoryBudgetLimitsTasksInFlight() throws AuToBIException {
+    AtomicLong in_flight = new AtomicLong();
+    AtomicLong peak = new AtomicLong();
+    List<Integer> started = Collections.synchronizedList(new ArrayList<Integer>());
+    List<MemoryTask> tasks = new ArrayList<MemoryTask>();
+    long[] memory = new long[]{6, 6, 3, 3, 2, 2, 1, 1};
+    double[] sizes = new double[memory.length];
+    for (int i = 0; i < memory.length; ++i) {
+      tasks.add(new MemoryTask(i, memory[i], in_flight, peak, started));
+      sizes[i] = memory[i];
+    }
+
+    final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+    new SizeAwareScheduler<Integer>(4, 8).run(tasks, sizes, memory, new SizeAwareScheduler.ResultHandler<Integer>() {
+      public void handle(int index, Integer result) {
+        handled.add(index);
+      }
+    });
+
+    assertEquals(memory.length, handled.size());
+    assertTrue(peak.get() <= 8);
+  }
+
+  @Test
+  public void testTaskLargerThanBudgetRunsAlone() throws AuToBIException {
+    AtomicLong in_flight = new AtomicLong();
+    AtomicLong peak = new AtomicLong();
+    List<Integer> started = Collections.synchronizedList(new ArrayList<Integer>());
+    List<MemoryTask> tasks = new ArrayList<MemoryTask>();
+    tasks.add(new MemoryTask(0, 1, in_flight, peak, started));
+    tasks.add(new MemoryTask(1, 20, in_flight, peak, started));
+    tasks.add(new MemoryTask(2, 1, in_flight, peak, started));
+
+    final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+    new SizeAwareScheduler<Integer>(3, 10).run(tasks, new double[]{1, 20, 1}, new long[]{1, 20, 1},
+        new SizeAwareScheduler.ResultHandler<Integer>() {
+          public void handle(int index, Integer result) {
+            handled.add(index);
+          }
+        });
+
+    assertEquals(3, handled.size());
+    assertEquals(20, peak.get());
+  }
+
+  @Test
+  public void testTaskThatDoesNotFitIsNotOvertakenBySmallerTasks() throws AuToBIException {
+    AtomicLong in_flight = new AtomicLong();
+    AtomicLong peak = new AtomicLong();
+    List<Integer> started = Collections.synchronizedList(new ArrayList<Integer>());
+    List<MemoryTask> tasks = new ArrayList<MemoryTask>();
+    long[] memory = new long[]{5, 20, 1, 1, 1, 1};
+    double[] sizes = new double[]{30, 20, 6, 5, 4, 3};
+    for (int i = 0; i < memory.length; ++i) {
+      tasks.add(new MemoryTask(i, memory[i], in_flight, peak, started));
+    }
+
+    final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+    new SizeAwareScheduler<Integer>(2, 10).run(tasks, sizes, memory, new SizeAwareScheduler.ResultHandler<Integer>() {
+      public void handle(int index, Integer result) {
+        handled.add(index);
+      }
+    });
+
+    // Task 1 is larger than the budget and first in line once task 0 has started, so it runs next, alone.
+    assertEquals(memory.length, handled.size());
+    assertEquals(0, (int) started.get(0));
+    assertEquals(1, (int) started.get(1));
+    assertEquals(20, peak.get());
+  }
+
+  @Test
+  public void testHandlerExceptionIsPropagated() {
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    tasks.add(new Callable<Integer>() {
+      public Integer call() {
+        return 1;
+      }
+    });
+
+    try {
+      new SizeAwareScheduler<Integer>(2, 0).run(tasks, new double[]{1}, new long[]{1},
+          new SizeAwareScheduler.ResultHandler<Integer>() {
+            public void handle(int index, Integer result) throws AuToBIException {
+              throw new AuToBIException("rejected");
+            }
+          });
+      fail();
+    } catch (AuToBIException e) {
+      assertEquals("rejected", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testFailedTaskIsSkipped() throws AuToBIException {
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    tasks.add(new Callable<Integer>() {
+      public Integer call() {
+        throw new IllegalStateException("failure");
+      }
+    });
+    tasks.add(new Callable<Integer>() {
+      public Integer call() {
+        return 1;
+      }
+    });
+
+    final List<Integer> handled = new ArrayList<Integer>();
+    new SizeAwareScheduler<Integer>(2, 0).run(tasks, new double[]{1, 1}, new long[]{1, 1},
+        new SizeAwareScheduler.ResultHandler<Integer>() {
+          public void handle(int index, Integer result) {
+            handled.add(index);
+          }
+        });
+
+    assertEquals(1, handled.size());
+    assertEquals(1, (int) handled.get(0));
+  }
+
+  @Test
+  public void testMismatchedSizesThrowException() {
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    try {
+      new SizeAwareScheduler<Integer>(2, 0).run(tasks, new double[]{1}, new long[]{1}, null);
+      fail();
+    } catch (AuToBIException e) {
+      assertTrue(true);
+    }
+  }
+}
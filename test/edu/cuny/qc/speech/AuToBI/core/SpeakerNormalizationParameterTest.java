@@ -121,5 +121,32 @@ public class SpeakerNormalizationParameterTest {
     snp.insertIntensity(5.0);
     assertEquals(0.0, snp.normalize("I", 3.0), 0.0001);
   }
-}
 
+  @Test
+  public void testInsertContourSkipsEmptyValues() {
+    SpeakerNormalizationParameter snp = new SpeakerNormalizationParameter();
+
+    Contour i = new Contour(0.0, 1.0, new double[]{1.0, 2.0, 3.0, 10.0});
+    i.setEmpty(3);
+    snp.insertIntensity(i);
+    assertEquals("f0: mean 0.0 - stdev 0.0\n" +
+        "I: mean 2.0 - stdev 1.0", snp.toString());
+  }
+
+  @Test
+  public void testMerge() {
+    SpeakerNormalizationParameter snp = new SpeakerNormalizationParameter("a");
+    snp.insertPitch(1.0);
+    snp.insertIntensity(1.0);
+    SpeakerNormalizationParameter other = new SpeakerNormalizationParameter("b");
+    other.insertPitch(5.0);
+    other.insertIntensity(5.0);
+
+    snp.merge(other);
+
+    assertEquals("a", snp.getSpeakerId());
+    assertEquals(0.0, snp.normalize("f0", 3.0), 0.0001);
+    assertEquals(0.0, snp.normalize("I", 3.0), 0.0001);
+    assertEquals(1.92899409250466, snp.normalize("log[f0]", 3.0), 0.0001);
+  }
+}
@@ -0,0 +1,66 @@
+package edu.cuny.qc.speech.AuToBI.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for SpectralPADMatrix.
+ *
+ * @see SpectralPADMatrix
+ */
+public class SpectralPADMatrixTest {
+
+  private List<Pair<Integer, Integer>> generateBands(int high_bark) {
+    List<Pair<Integer, Integer>> bands = new ArrayList<Pair<Integer, Integer>>();
+    for (int low = 0; low < high_bark; ++low) {
+      for (int high = low + 1; high <= high_bark; ++high) {
+        bands.add(new Pair<Integer, Integer>(low, high));
+      }
+    }
+    return bands;
+  }
+
+  @Test
+  public void testSetAndGetConfidences() {
+    SpectralPADMatrix matrix = new SpectralPADMatrix(generateBands(3), 4);
+
+    assertEquals(6, matrix.getNumBands());
+    assertEquals(4, matrix.getNumWords());
+
+    matrix.setAccentedConfidence(2, 5, 0.25);
+    matrix.setCorrectConfidence(3, 0, 0.75);
+    assertEquals(0.25, matrix.getAccentedConfidence(2, 5), 0.0);
+    assertEquals(0.0, matrix.getAccentedConfidence(3, 0), 0.0);
+    assertEquals(0.75, matrix.getCorrectConfidence(3, 0), 0.0);
+  }
+
+  @Test
+  public void testCoversBarkBands() {
+    SpectralPADMatrix matrix = new SpectralPADMatrix(generateBands(3), 1);
+
+    assertTrue(matrix.coversBarkBands(3));
+    assertFalse(matrix.coversBarkBands(2));
+    assertFalse(matrix.coversBarkBands(4));
+  }
+
+  @Test
+  public void testCoversBarkBandsRequiresOrder() {
+    List<Pair<Integer, Integer>> bands = generateBands(2);
+    bands.add(bands.remove(0));
+
+    assertFalse(new SpectralPADMatrix(bands, 1).coversBarkBands(2));
+  }
+
+  @Test
+  public void testGetRow() {
+    SpectralPADMatrix matrix = new SpectralPADMatrix(generateBands(2), 3);
+    SpectralPADMatrix.Row row = matrix.getRow(2);
+
+    assertSame(matrix, row.getMatrix());
+    assertEquals(2, row.getIndex());
+  }
+}
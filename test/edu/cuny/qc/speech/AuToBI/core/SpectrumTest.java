@@ -393,6 +393,36 @@ public class SpectrumTest {
     }
   }
 
+  @Test
+  public void testGetPowerInBandsMatchesGetPowerInBand() {
+    double[][] data = new double[7][40];
+    for (int i = 0; i < 7; ++i) {
+      for (int j = 0; j < 40; ++j) {
+        data[i][j] = Math.sin(i * 40 + j) + 1.5;
+      }
+    }
+    Spectrum s = new Spectrum(data, 1.0, 0.01, 10);
+
+    double[] low = new double[]{0, 0, 15, -15, 15, 100, 35, 250};
+    double[] high = new double[]{400, 34, 34, 34, 200, 100, 500, 300};
+    try {
+      for (boolean log_values : new boolean[]{false, true}) {
+        double[][] power = s.getPowerInBands(low, high, log_values);
+        for (int b = 0; b < low.length; ++b) {
+          assertArrayEquals(s.getPowerInBand(low[b], high[b], log_values), power[b], 0.0);
+        }
+      }
+    } catch (AuToBIException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test(expected = AuToBIException.class)
+  public void testGetPowerInBandsThrowsExceptionOnInvertedBand() throws AuToBIException {
+    Spectrum s = new Spectrum(new double[5][10], 1.0, 0.01, 10);
+    s.getPowerInBands(new double[]{0, 50}, new double[]{10, 20}, false);
+  }
+
   @Test
   public void testGetPowerInBandValuesPartialUnderrunBand() {
     double[][] data = new double[5][10];
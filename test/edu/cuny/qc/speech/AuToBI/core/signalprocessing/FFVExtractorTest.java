@@ -1,7 +1,101 @@
 package edu.cuny.qc.speech.AuToBI.core.signalprocessing;
 
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.WavData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
 /**
  * Created by andrew on 1/31/15.
  */
 public class FFVExtractorTest {
+
+  private WavData wav;
+
+  @Before
+  public void setUp() {
+    wav = new WavData();
+    wav.sampleRate = 16000;
+    wav.sampleSize = 16;
+    wav.numberOfChannels = 1;
+    wav.samples = new double[1][1600];
+    for (int i = 0; i < wav.samples[0].length; ++i) {
+      wav.samples[0][i] = 0.3 * Math.sin(i * 0.07) + 0.1 * Math.sin(i * 0.31);
+    }
+  }
+
+  @Test
+  public void testCalculateFFVNumFrames() throws AuToBIException {
+    FFVExtractor extractor = new FFVExtractor(0.01, 0.01, 0.011, 0.015);
+
+    double[][] ffv = extractor.calculateFFV(wav, 0);
+
+    // (1600 - 2 * 320) / 160 + 1
+    assertEquals(7, ffv.length);
+    assertEquals(7, ffv[0].length);
+  }
+
+  @Test
+  public void testCalculateFFVIsIndependentOfNumThreads() throws AuToBIException {
+    FFVExtractor serial = new FFVExtractor(0.01, 0.01, 0.011, 0.015);
+    FFVExtractor parallel = new FFVExtractor(0.01, 0.01, 0.011, 0.015);
+    parallel.setNumThreads(3);
+
+    double[][] expected = serial.calculateFFV(wav, 0);
+    double[][] actual = parallel.calculateFFV(wav, 0);
+
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; ++i) {
+      assertArrayEquals(expected[i], actual[i], 0.0);
+    }
+  }
+
+  @Test
+  public void testCalculateFFVReportsProgress() throws AuToBIException {
+    final List<Integer> completed = new ArrayList<Integer>();
+    FFVExtractor extractor = new FFVExtractor(0.01, 0.01, 0.011, 0.015);
+    extractor.setProgressListener(new FFVExtractor.ProgressListener() {
+      public void progress(int frames_completed, int num_frames, long elapsed_nanos) {
+        assertEquals(7, num_frames);
+        assertTrue(elapsed_nanos >= 0);
+        completed.add(frames_completed);
+      }
+    });
+
+    extractor.calculateFFV(wav, 0);
+
+    assertFalse(completed.isEmpty());
+    // The final frame is not centered within the signal so it is not calculated.
+    assertEquals(6, (int) completed.get(completed.size() - 1));
+  }
+
+  @Test
+  public void testCalculateFFVOnShortSignal() throws AuToBIException {
+    wav.samples = new double[1][100];
+    FFVExtractor extractor = new FFVExtractor(0.01, 0.01, 0.011, 0.015);
+
+    assertEquals(0, extractor.calculateFFV(wav, 0).length);
+  }
+
+  @Test
+  public void testCalculateFFVSpectrumSkipsUnfilteredEntries() {
+    double[] pow = new double[512];
+    for (int i = 0; i < pow.length; ++i) {
+      pow[i] = 1.0 + i % 5;
+    }
+    FFVExtractor extractor = new FFVExtractor(0.01, 0.01, 0.011, 0.015);
+
+    double[] ffv = extractor.calculateFFVSpectrum(pow, pow);
+
+    assertEquals(512, ffv.length);
+    assertEquals(0.0, ffv[0], 0.0);
+    assertEquals(0.0, ffv[511], 0.0);
+    // Identical spectra are perfectly correlated without dilation.
+    assertEquals(1.0, ffv[256], 1e-12);
+  }
 }
@@ -0,0 +1,116 @@
+package edu.cuny.qc.speech.AuToBI.featureextractor;
+
+import edu.cuny.qc.speech.AuToBI.core.Aggregation;
+import edu.cuny.qc.speech.AuToBI.core.ContextDesc;
+import edu.cuny.qc.speech.AuToBI.core.Contour;
+import edu.cuny.qc.speech.AuToBI.core.Pair;
+import edu.cuny.qc.speech.AuToBI.core.Region;
+import edu.cuny.qc.speech.AuToBI.util.ContourUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for MultiContextNormalizedFeatureExtractor
+ *
+ * @see MultiContextNormalizedFeatureExtractor
+ */
+public class MultiContextNormalizedFeatureExtractorTest {
+
+  private List<ContextDesc> getContexts() {
+    List<ContextDesc> contexts = new ArrayList<ContextDesc>();
+    contexts.add(new ContextDesc("f0b0", 0, 0));
+    contexts.add(new ContextDesc("f1b1", 1, 1));
+    contexts.add(new ContextDesc("f2b0", 2, 0));
+    contexts.add(new ContextDesc("f0b2", 0, 2));
+    return contexts;
+  }
+
+  @Test
+  public void testExtractedFeaturesCoverEveryContext() {
+    MultiContextNormalizedFeatureExtractor fe = new MultiContextNormalizedFeatureExtractor("attr", getContexts());
+
+    assertEquals(20, fe.getExtractedFeatures().size());
+    assertTrue(fe.getExtractedFeatures().contains("zMaxWordContext[attr,f1b1]"));
+    assertTrue(fe.getExtractedFeatures().contains("rNormWordContext[attr,f0b2]"));
+  }
+
+  @Test
+  public void testContourFeaturesMatchDirectAggregationOfContext() throws Throwable {
+    Contour c = new Contour(0, 0.1, new double[]{1., 4., 2., 8., 5., 7., 3., 6., 9., 2., 4., 1., 3., 5., 8.});
+    c.setEmpty(6);
+
+    List<Region> regions = new ArrayList<Region>();
+    for (int i = 0; i < 5; ++i) {
+      Region r = new Region(i * 0.3, (i + 1) * 0.3);
+      r.setAttribute("attr", c);
+      r.setAttribute("min[attr]", (double) i);
+      r.setAttribute("max[attr]", i + 3.0);
+      r.setAttribute("mean[attr]", i + 1.5);
+      regions.add(r);
+    }
+
+    new MultiContextNormalizedFeatureExtractor("attr", getContexts()).extractFeatures(regions);
+
+    // The context of a region spans getBack() regions on either side; aggregate its contour values directly.
+    for (int i = 0; i < regions.size(); ++i) {
+      for (ContextDesc context : getContexts()) {
+        double start = regions.get(Math.max(0, i - context.getBack())).getStart();
+        double end = regions.get(Math.min(regions.size() - 1, i + context.getBack())).getEnd();
+        Aggregation agg = new Aggregation();
+        for (Pair<Double, Double> tvp : ContourUtils.getSubContour(c, start, end)) {
+          agg.insert(tvp.second);
+        }
+
+        for (String stat : new String[]{"min", "max", "mean"}) {
+          String f = "z" + stat.substring(0, 1).toUpperCase() + stat.substring(1) + "WordContext[attr," +
+              context.getLabel() + "]";
+          if (agg.getStdev() > 0.00001) {
+            double expected = ((Double) regions.get(i).getAttribute(stat + "[attr]") - agg.getMean()) / agg.getStdev();
+            assertEquals(expected, (Double) regions.get(i).getAttribute(f), 0.0001);
+          } else {
+            assertFalse(regions.get(i).hasAttribute(f));
+          }
+        }
+      }
+    }
+    // Spot check: the f0b0 context of the first region holds the values 1, 4 and 2; 0.3 / 0.1 rounds down to index 2.
+    assertEquals(-Math.sqrt(7.0 / 3), (Double) regions.get(0).getAttribute("zMinWordContext[attr,f0b0]"), 0.0001);
+  }
+
+  @Test
+  public void testExtractFeaturesCorrectlyExtractsDoubleBasedFeatures() throws FeatureExtractorException {
+    List<Region> regions = new ArrayList<Region>();
+    double[] values = new double[]{0.5, 1.0, 3.0, 2.0};
+    for (int i = 0; i < values.length; ++i) {
+      Region r = new Region(i, i + 1);
+      r.setAttribute("attr", values[i]);
+      regions.add(r);
+    }
+
+    new MultiContextNormalizedFeatureExtractor("attr", getContexts()).extractFeatures(regions);
+
+    // f1b1 context of the second region contains 0.5, 1.0 and 3.0
+    assertEquals((1.0 - 1.5) / Math.sqrt(1.75), (Double) regions.get(1).getAttribute("zNormWordContext[attr,f1b1]"),
+        0.0001);
+    assertEquals(0.2, (Double) regions.get(1).getAttribute("rNormWordContext[attr,f1b1]"), 0.0001);
+    // f0b2 context of the last region contains 1.0, 3.0 and 2.0
+    assertEquals(0.5, (Double) regions.get(3).getAttribute("rNormWordContext[attr,f0b2]"), 0.0001);
+    // single value contexts have no spread
+    assertFalse(regions.get(0).hasAttribute("zNormWordContext[attr,f0b0]"));
+  }
+
+  @Test
+  public void testExtractFeaturesFailsGracefullyWithNoRegions() {
+    MultiContextNormalizedFeatureExtractor fe = new MultiContextNormalizedFeatureExtractor("attr", getContexts());
+
+    try {
+      fe.extractFeatures(new ArrayList<Region>());
+    } catch (FeatureExtractorException e) {
+      fail();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package edu.cuny.qc.speech.AuToBI.featureextractor;
+
+import edu.cuny.qc.speech.AuToBI.core.Contour;
+import edu.cuny.qc.speech.AuToBI.core.Pair;
+import edu.cuny.qc.speech.AuToBI.core.Region;
+import edu.cuny.qc.speech.AuToBI.core.Spectrum;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for MultiSpectrumBandFeatureExtractor.
+ *
+ * @see MultiSpectrumBandFeatureExtractor
+ */
+public class MultiSpectrumBandFeatureExtractorTest {
+  private MultiSpectrumBandFeatureExtractor fe;
+  private List<Region> regions;
+
+  @Before
+  public void setUp() throws Exception {
+    List<Pair<Integer, Integer>> bands = new ArrayList<Pair<Integer, Integer>>();
+    for (int low = 0; low < 4; ++low) {
+      for (int high = low + 1; high <= 4; ++high) {
+        bands.add(new Pair<Integer, Integer>(low, high));
+      }
+    }
+    fe = new MultiSpectrumBandFeatureExtractor(bands);
+    regions = new ArrayList<Region>();
+  }
+
+  @Test
+  public void testConstructorSetsFeaturesCorrectly() {
+    assertEquals(10, fe.getExtractedFeatures().size());
+    assertTrue(fe.getExtractedFeatures().contains("spectrumBand[0,1]"));
+    assertTrue(fe.getExtractedFeatures().contains("spectrumBand[3,4]"));
+    assertEquals(1, fe.getRequiredFeatures().size());
+    assertTrue(fe.getRequiredFeatures().contains("spectrum"));
+  }
+
+  @Test
+  public void testExtractFeaturesMatchesSpectrumBandFeatureExtractor() throws FeatureExtractorException {
+    double[][] data = new double[6][60];
+    for (int i = 0; i < 6; ++i) {
+      for (int j = 0; j < 60; ++j) {
+        data[i][j] = (i + 1) * (j % 7 + 1);
+      }
+    }
+    Spectrum spectrum = new Spectrum(data, 0, 0.1, 10);
+    Word w1 = new Word(0, 1, "one");
+    Word w2 = new Word(1, 2, "two");
+    w1.setAttribute("spectrum", spectrum);
+    w2.setAttribute("spectrum", spectrum);
+    regions.add(w1);
+    regions.add(w2);
+
+    fe.extractFeatures(regions);
+
+    for (Pair<Integer, Integer> band : fe.getBands()) {
+      String name = "spectrumBand[" + band.first + "," + band.second + "]";
+      Word expected = new Word(0, 1, "expected");
+      expected.setAttribute("spectrum", spectrum);
+      List<Region> expected_regions = new ArrayList<Region>();
+      expected_regions.add(expected);
+      new SpectrumBandFeatureExtractor(band.first, band.second).extractFeatures(expected_regions);
+
+      Contour c = (Contour) w1.getAttribute(name);
+      Contour e = (Contour) expected.getAttribute(name);
+      assertSame(c, w2.getAttribute(name));
+      assertEquals(e.size(), c.size());
+      assertEquals(e.getStart(), c.getStart(), 0.0);
+      for (int i = 0; i < e.size(); ++i) {
+        assertEquals(e.get(i), c.get(i), 0.0);
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package edu.cuny.qc.speech.AuToBI.featureextractor;
+
+import edu.cuny.qc.speech.AuToBI.PitchAccentDetectionClassifierCollection;
+import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.SpectralPADMatrix;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for MultiSpectrumPADFeatureExtractor.
+ *
+ * @see MultiSpectrumPADFeatureExtractor
+ */
+public class MultiSpectrumPADFeatureExtractorTest {
+  private MultiSpectrumPADFeatureExtractor fe;
+  private List<Word> words;
+
+  @Before
+  public void setUp() {
+    PitchAccentDetectionClassifierCollection pacc = new PitchAccentDetectionClassifierCollection();
+    for (int low = 0; low < 2; ++low) {
+      for (int high = low + 1; high <= 2; ++high) {
+        pacc.setPitchAccentDetector(low, high, new FixedClassifier("ACCENTED", "DEACCENTED", 0.1 * (low + high)));
+        pacc.setCorrectionClassifier(low, high, new FixedClassifier("CORRECT", "INCORRECT", 0.8));
+      }
+    }
+    fe = new MultiSpectrumPADFeatureExtractor(pacc, 2, 2);
+
+    words = new ArrayList<Word>();
+    for (int i = 0; i < 5; ++i) {
+      words.add(new Word(i, i + 1, "w" + i));
+    }
+  }
+
+  @Test
+  public void testConstructorSetsFeaturesCorrectly() {
+    assertEquals(3, fe.getBands().size());
+    assertEquals(3 * 5 + 1, fe.getExtractedFeatures().size());
+    assertTrue(fe.getExtractedFeatures().contains("nominal_bark_0_2__prediction"));
+    assertTrue(fe.getExtractedFeatures().contains("bark_1_2__correction_prediction_confidence"));
+    assertTrue(fe.getExtractedFeatures().contains(SpectralPADMatrix.ROW_FEATURE));
+    assertTrue(fe.getRequiredFeatures().contains("bark_0_1__zMax"));
+    assertTrue(fe.getRequiredFeatures().contains("duration__duration"));
+    assertFalse(fe.getRequiredFeatures().contains("nominal_bark_0_1__prediction"));
+  }
+
+  @Test
+  public void testExtractFeaturesSetsPredictions() throws FeatureExtractorException {
+    fe.extractFeatures(words);
+
+    for (Word w : words) {
+      assertEquals("DEACCENTED", w.getAttribute("nominal_bark_0_1__prediction"));
+      assertEquals(0.9, (Double) w.getAttribute("bark_0_1__prediction_confidence"), 1e-10);
+      assertEquals(0.1, (Double) w.getAttribute("bark_0_1__prediction_confidence_accented"), 1e-10);
+      assertEquals("CORRECT", w.getAttribute("nominal_bark_1_2__correction_prediction"));
+      assertEquals(0.8, (Double) w.getAttribute("bark_1_2__correction_prediction_confidence"), 1e-10);
+    }
+  }
+
+  @Test
+  public void testExtractFeaturesFillsMatrix() throws FeatureExtractorException {
+    fe.extractFeatures(words);
+
+    for (int i = 0; i < words.size(); ++i) {
+      SpectralPADMatrix.Row row = (SpectralPADMatrix.Row) words.get(i).getAttribute(SpectralPADMatrix.ROW_FEATURE);
+      assertEquals(i, row.getIndex());
+      SpectralPADMatrix matrix = row.getMatrix();
+      assertTrue(matrix.coversBarkBands(2));
+      assertEquals(0.1, matrix.getAccentedConfidence(i, 0), 1e-10);
+      assertEquals(0.2, matrix.getAccentedConfidence(i, 1), 1e-10);
+      assertEquals(0.3, matrix.getAccentedConfidence(i, 2), 1e-10);
+      assertEquals(0.8, matrix.getCorrectConfidence(i, 2), 1e-10);
+    }
+  }
+
+  @Test
+  public void testExtractFeaturesThrowsClassificationFailures() {
+    PitchAccentDetectionClassifierCollection pacc = new PitchAccentDetectionClassifierCollection();
+    pacc.setPitchAccentDetector(0, 1, new FixedClassifier("ACCENTED", "DEACCENTED", 0.5) {
+      @Override
+      public Distribution distributionForInstance(Word testing_point) throws Exception {
+        throw new Exception("failure");
+      }
+    });
+    pacc.setCorrectionClassifier(0, 1, new FixedClassifier("CORRECT", "INCORRECT", 0.8));
+    fe = new MultiSpectrumPADFeatureExtractor(pacc, 1, 1);
+
+    try {
+      fe.extractFeatures(words);
+      fail();
+    } catch (FeatureExtractorException e) {
+      assertEquals("failure", e.getMessage());
+    }
+  }
+
+  /**
+   * A classifier that assigns the same distribution to every point.
+   */
+  private static class FixedClassifier extends AuToBIClassifier {
+    private String positive;
+    private String negative;
+    private double positive_prob;
+
+    FixedClassifier(String positive, String negative, double positive_prob) {
+      this.positive = positive;
+      this.negative = negative;
+      this.positive_prob = positive_prob;
+    }
+
+    @Override
+    public Distribution distributionForInstance(Word testing_point) throws Exception {
+      Distribution d = new Distribution();
+      d.put(positive, positive_prob);
+      d.put(negative, 1 - positive_prob);
+      return d;
+    }
+
+    @Override
+    public void train(FeatureSet feature_set) throws Exception {
+    }
+
+    @Override
+    public AuToBIClassifier newInstance() {
+      return new FixedClassifier(positive, negative, positive_prob);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Contour;
+import edu.cuny.qc.speech.AuToBI.core.Distribution;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for HypothesisCheckpoint.
+ *
+ * @see HypothesisCheckpoint
+ */
+public class HypothesisCheckpointTest {
+
+  private List<Word> makeWords() {
+    List<Word> words = new ArrayList<Word>();
+    Word w1 = new Word(0.0, 0.5, "one");
+    w1.setAttribute("f0", 1.5);
+    w1.setAttribute("hyp", "ACCENTED");
+    w1.setAttribute("contour", new Contour(0.0, 0.01, new double[]{1.0, 2.0}));
+    Distribution d = new Distribution();
+    d.add("ACCENTED", 0.75);
+    w1.setAttribute("dist", d);
+    Word w2 = new Word(0.5, 1.0, "two");
+    w2.setAttribute("hyp", "DEACCENTED");
+    words.add(w1);
+    words.add(w2);
+    return words;
+  }
+
+  @Test
+  public void testRoundTripRestoresFeatures() throws Exception {
+    HashMap<String, String> fingerprints = new HashMap<String, String>();
+    fingerprints.put("pitch_accent_detection", "10:abc");
+    HypothesisCheckpoint checkpoint =
+        new HypothesisCheckpoint("test.wav", makeWords(), Arrays.asList("f0", "hyp", "dist"), fingerprints);
+
+    File file = File.createTempFile("checkpoint", ".ckpt");
+    file.deleteOnExit();
+    checkpoint.write(file.getPath());
+    HypothesisCheckpoint read = HypothesisCheckpoint.read(file.getPath());
+
+    assertEquals("test.wav", read.getSource());
+    assertEquals(2, read.size());
+    assertEquals("10:abc", read.getModelFingerprint("pitch_accent_detection"));
+    assertNull(read.getModelFingerprint("pitch_accent_classification"));
+
+    List<Word> words = new ArrayList<Word>();
+    words.add(new Word(0.0, 0.5, "one"));
+    words.add(new Word(0.5, 1.0, "two"));
+    read.restore(words, Arrays.asList("f0", "hyp", "dist"));
+
+    assertEquals(1.5, (Double) words.get(0).getAttribute("f0"), 0.0001);
+    assertFalse(words.get(1).hasAttribute("f0"));
+    assertEquals("ACCENTED", words.get(0).getAttribute("hyp"));
+    assertEquals("DEACCENTED", words.get(1).getAttribute("hyp"));
+    assertEquals(0.75, ((Distribution) words.get(0).getAttribute("dist")).get("ACCENTED"), 0.0001);
+  }
+
+  @Test
+  public void testUnstorableFeaturesAreOmitted() {
+    HypothesisCheckpoint checkpoint = new HypothesisCheckpoint("test.wav", makeWords(),
+        Arrays.asList("f0", "contour"), new HashMap<String, String>());
+
+    assertTrue(checkpoint.hasFeature("f0"));
+    assertFalse(checkpoint.hasFeature("contour"));
+    assertEquals(1, checkpoint.getFeatureNames().size());
+  }
+
+  @Test
+  public void testMatchesComparesWordTimes() {
+    HypothesisCheckpoint checkpoint = new HypothesisCheckpoint("test.wav", makeWords(), Arrays.asList("hyp"),
+        new HashMap<String, String>());
+
+    List<Word> words = new ArrayList<Word>();
+    words.add(new Word(0.0, 0.5, "one"));
+    assertFalse(checkpoint.matches(words));
+    words.add(new Word(0.5, 1.1, "two"));
+    assertFalse(checkpoint.matches(words));
+    words.set(1, new Word(0.5, 1.0, "two"));
+    assertTrue(checkpoint.matches(words));
+  }
+
+  @Test
+  public void testRestoreFailsOnMissingFeature() {
+    HypothesisCheckpoint checkpoint = new HypothesisCheckpoint("test.wav", makeWords(), Arrays.asList("hyp"),
+        new HashMap<String, String>());
+
+    try {
+      checkpoint.restore(makeWords(), Arrays.asList("f0"));
+      fail();
+    } catch (AuToBIException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFingerprintChangesWithContents() throws Exception {
+    File file = File.createTempFile("model", ".classifier");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(new byte[]{1, 2, 3});
+    out.close();
+    String first = HypothesisCheckpoint.fingerprint(file.getPath());
+    assertEquals(first, HypothesisCheckpoint.fingerprint(file.getPath()));
+    assertTrue(first.startsWith("3:"));
+
+    out = new FileOutputStream(file);
+    out.write(new byte[]{1, 2, 4});
+    out.close();
+    assertFalse(first.equals(HypothesisCheckpoint.fingerprint(file.getPath())));
+  }
+}
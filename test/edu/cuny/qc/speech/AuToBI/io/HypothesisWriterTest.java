@@ -0,0 +1,290 @@
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.AuToBITask;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for HypothesisWriter.
+ *
+ * @see HypothesisWriter
+ */
+public class HypothesisWriterTest {
+  private HashMap<String, AuToBITask> tasks;
+
+  @Before
+  public void setUp() {
+    tasks = new HashMap<String, AuToBITask>();
+    addTask("pitch_accent_detection", "hyp_pitch_accent_location");
+    addTask("pitch_accent_classification", "hyp_pitch_accent_type");
+    addTask("intonational_phrase_boundary_detection", "hyp_IP_location");
+    addTask("intermediate_phrase_boundary_detection", "hyp_ip_location");
+    addTask("phrase_accent_boundary_tone_classification", "hyp_pabt");
+  }
+
+  private void addTask(String name, String hyp) {
+    AuToBITask task = new AuToBITask();
+    task.setHypFeature(hyp);
+    task.setConfFeature(hyp + "_conf");
+    task.setDistFeature(hyp + "_dist");
+    tasks.put(name, task);
+  }
+
+  private List<Word> makeWords() {
+    List<Word> words = new ArrayList<Word>();
+    Word w1 = new Word(0.0, 0.5, "one");
+    w1.setAttribute("hyp_pitch_accent_location", "ACCENTED");
+    w1.setAttribute("hyp_pitch_accent_type", "H*");
+    w1.setAttribute("hyp_IP_location", "NONBOUNDARY");
+    Word w2 = new Word(0.5, 1.0, "two");
+    w2.setAttribute("hyp_pitch_accent_location", "DEACCENTED");
+    w2.setAttribute("hyp_IP_location", "INTONATIONAL_BOUNDARY");
+    w2.setAttribute("hyp_IP_location_conf", 0.75);
+    w2.setAttribute("hyp_pabt", "L-L%");
+    words.add(w1);
+    words.add(w2);
+    return words;
+  }
+
+  @Test
+  public void testMergeHypotheses() {
+    List<Word> words = makeWords();
+    new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID).mergeHypotheses(words);
+
+    assertEquals("H*", words.get(0).getAttribute("hyp_pitch_accent"));
+    assertEquals("NONBOUNDARY", words.get(0).getAttribute("hyp_phrase_boundary"));
+    assertEquals("DEACCENTED", words.get(1).getAttribute("hyp_pitch_accent"));
+    assertEquals("BOUNDARY: 0.75", words.get(1).getAttribute("hyp_phrase_boundary"));
+  }
+
+  @Test
+  public void testMergeHypothesesIgnoresUnavailableTasks() {
+    tasks.remove("pitch_accent_detection");
+    List<Word> words = makeWords();
+    new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID).mergeHypotheses(words);
+
+    assertEquals("H*", words.get(0).getAttribute("hyp_pitch_accent"));
+    assertFalse(words.get(1).hasAttribute("hyp_pitch_accent"));
+  }
+
+  @Test
+  public void testWriteTextGrid() {
+    List<Word> words = makeWords();
+    words.get(1).removeAttribute("hyp_IP_location_conf");
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID);
+    writer.mergeHypotheses(words);
+
+    String expected = "File type = \"ooTextFile\"\n" +
+        "Object class = \"TextGrid\"\n" +
+        "xmin = 0\n" +
+        "xmax = 1.0\n" +
+        "tiers? <exists>\n" +
+        "size = 3\n" +
+        "item []:\n" +
+        "item [1]:\n" +
+        "class = \"TextTier\"\n" +
+        "name = \"tones\"\n" +
+        "xmin = 0\n" +
+        "xmax = 1.0\n" +
+        "points: size = 2\n" +
+        "points [2]:\n" +
+        "time = 0.25\n" +
+        "mark = \"H*\"\n" +
+        "points [3]:\n" +
+        "time = 1.0\n" +
+        "mark = \"L-L%\"\n" +
+        "item [2]:\n" +
+        "class = \"IntervalTier\"\n" +
+        "name = \"words\"\n" +
+        "xmin = 0\n" +
+        "xmax = 1.0\n" +
+        "intervals: size = 2\n" +
+        "intervals [1]:\n" +
+        "xmin = 0.0\n" +
+        "xmax = 0.5\n" +
+        "text = \"one\"\n" +
+        "intervals [2]:\n" +
+        "xmin = 0.5\n" +
+        "xmax = 1.0\n" +
+        "text = \"two\"\n" +
+        "item [3]:\n" +
+        "class = \"TextTier\"\n" +
+        "name = \"breaks\"\n" +
+        "xmin = 0\n" +
+        "xmax = 1.0\n" +
+        "points: size = 2\n" +
+        "points [1]:\n" +
+        "time = 0.5\n" +
+        "mark = \"1\"\n" +
+        "points [2]:\n" +
+        "time = 1.0\n" +
+        "mark = \"4\"\n";
+    assertEquals(expected, writer.toString(words));
+  }
+
+  @Test
+  public void testWriteTextGridWithoutIntermediatePhraseBoundaryTask() {
+    tasks.remove("intermediate_phrase_boundary_detection");
+    List<Word> words = makeWords();
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID);
+    writer.mergeHypotheses(words);
+
+    assertTrue(writer.toString(words).endsWith("points [1]:\ntime = 0.5\nmark = \"1\"\n" +
+        "points [2]:\ntime = 1.0\nmark = \"4\"\n"));
+  }
+
+  @Test
+  public void testWriteIntervalTextGrid() throws Exception {
+    List<Word> words = makeWords();
+    words.get(1).removeAttribute("hyp_IP_location_conf");
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID);
+    writer.mergeHypotheses(words);
+
+    StringWriter out = new StringWriter();
+    writer.writeIntervalTextGrid(words, out);
+    String text_grid = out.toString();
+
+    assertTrue(text_grid.contains("name = \"pitch_accent_hypothesis\"\nxmin = 0\nxmax = 1.0\nintervals: size = 2\n" +
+        "intervals [1]:\nxmin = 0.0\nxmax = 0.5\ntext = \"H*\"\n" +
+        "intervals [2]:\nxmin = 0.5\nxmax = 1.0\ntext = \"DEACCENTED\"\n"));
+    assertTrue(text_grid.endsWith("intervals [2]:\nxmin = 0.5\nxmax = 1.0\ntext = \"L-L%\"\n"));
+  }
+
+  @Test
+  public void testWriteIntervalTextGridDistributions() throws Exception {
+    List<Word> words = makeWords();
+    words.get(0).setAttribute("hyp_pitch_accent_location_dist", "{ACCENTED:0.9}");
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID);
+    writer.setDistributions(true);
+
+    StringWriter out = new StringWriter();
+    writer.writeIntervalTextGrid(words, out);
+
+    assertTrue(out.toString().contains("xmin = 0.0\nxmax = 0.5\ntext = \"{ACCENTED:0.9}\"\n"));
+  }
+
+  @Test
+  public void testWriteJsonLines() {
+    List<Word> words = makeWords();
+    words.get(0).setFile("a.TextGrid");
+    words.get(0).setLabel("\"one\"");
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.JSONL);
+    writer.mergeHypotheses(words);
+
+    String[] lines = writer.toString(words).split("\n");
+    assertEquals(2, lines.length);
+    assertEquals("{\"file\": \"a.TextGrid\", \"start\": 0.0, \"end\": 0.5, \"label\": \"\\\"one\\\"\", " +
+        "\"pitch_accent\": \"H*\", \"phrase_boundary\": \"NONBOUNDARY\", " +
+        "\"hypotheses\": {\"intonational_phrase_boundary_detection\": \"NONBOUNDARY\", " +
+        "\"pitch_accent_classification\": \"H*\", \"pitch_accent_detection\": \"ACCENTED\"}}", lines[0]);
+    assertEquals("{\"start\": 0.5, \"end\": 1.0, \"label\": \"two\", " +
+        "\"pitch_accent\": \"DEACCENTED\", \"phrase_boundary\": \"BOUNDARY: 0.75\", " +
+        "\"hypotheses\": {\"intonational_phrase_boundary_detection\": \"INTONATIONAL_BOUNDARY\", " +
+        "\"phrase_accent_boundary_tone_classification\": \"L-L%\", \"pitch_accent_detection\": \"DEACCENTED\"}, " +
+        "\"confidences\": {\"intonational_phrase_boundary_detection\": 0.75}}", lines[1]);
+  }
+
+  @Test
+  public void testWriteFile() throws Exception {
+    List<Word> words = makeWords();
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.JSONL);
+    writer.mergeHypotheses(words);
+    File file = File.createTempFile("hypotheses", ".jsonl");
+    file.deleteOnExit();
+
+    writer.write(words, file.getPath());
+
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      assertTrue(reader.readLine().startsWith("{\"start\": 0.0, \"end\": 0.5, \"label\": \"one\""));
+      assertTrue(reader.readLine().startsWith("{\"start\": 0.5, \"end\": 1.0, \"label\": \"two\""));
+      assertNull(reader.readLine());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testParseFormat() throws AuToBIException {
+    assertEquals(HypothesisWriter.Format.TEXTGRID, HypothesisWriter.parseFormat("textgrid"));
+    assertEquals(HypothesisWriter.Format.JSONL, HypothesisWriter.parseFormat("JSONL"));
+    assertEquals(".jsonl", HypothesisWriter.getExtension(HypothesisWriter.Format.JSONL));
+  }
+
+  @Test(expected = AuToBIException.class)
+  public void testParseUnknownFormat() throws AuToBIException {
+    HypothesisWriter.parseFormat("xml");
+  }
+
+  private static String read(File file) throws Exception {
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    StringBuilder contents = new StringBuilder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      contents.append(line).append("\n");
+    }
+    reader.close();
+    return contents.toString();
+  }
+
+  @Test
+  public void testStreamedTextGridMatchesWholeTextGrid() throws Exception {
+    List<Word> words = makeWords();
+    words.add(new Word(1.0, 1.5, "three"));
+    words.get(2).setAttribute("hyp_pitch_accent_type", "L*");
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID);
+    writer.mergeHypotheses(words);
+    File file = File.createTempFile("hypotheses", ".TextGrid");
+    file.deleteOnExit();
+
+    HypothesisWriter.HypothesisStream stream = writer.open(file.getPath());
+    stream.write(words.subList(0, 1));
+    stream.write(new ArrayList<Word>());
+    stream.write(words.subList(1, 3));
+    stream.close();
+
+    assertEquals(3, stream.size());
+    assertEquals(writer.toString(words), read(file));
+  }
+
+  @Test
+  public void testStreamedJsonLinesAreWrittenAsEachListArrives() throws Exception {
+    List<Word> words = makeWords();
+    HypothesisWriter writer = new HypothesisWriter(tasks, HypothesisWriter.Format.JSONL);
+    writer.mergeHypotheses(words);
+    File file = File.createTempFile("hypotheses", ".jsonl");
+    file.deleteOnExit();
+
+    HypothesisWriter.HypothesisStream stream = writer.open(file.getPath());
+    stream.write(words.subList(0, 1));
+    assertEquals(1, read(file).split("\n").length);
+    stream.write(words.subList(1, 2));
+    stream.close();
+
+    assertEquals(writer.toString(words), read(file));
+  }
+
+  @Test
+  public void testEmptyStreamWritesNoFile() throws Exception {
+    File file = new File(System.getProperty("java.io.tmpdir"), "autobi_empty_stream_" + System.nanoTime());
+
+    HypothesisWriter.HypothesisStream stream =
+        new HypothesisWriter(tasks, HypothesisWriter.Format.TEXTGRID).open(file.getPath());
+    stream.write(new ArrayList<Word>());
+    stream.close();
+
+    assertFalse(file.exists());
+  }
+}
@@ -0,0 +1,135 @@
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PostingListIndex.
+ *
+ * @see PostingListIndex
+ */
+public class PostingListIndexTest {
+
+  private File posting_list;
+
+  static File writePostingList(String... lines) throws IOException {
+    File file = File.createTempFile("posting_list", ".xml");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    for (String line : lines) {
+      writer.write(line);
+      writer.write("\n");
+    }
+    writer.close();
+    return file;
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    PostingListIndex.clear();
+    posting_list = writePostingList(
+        "<kwslist kwlist_filename=\"kw.xml\" language=\"english\" system_id=\"\">",
+        "<detected_kwlist kwid=\"KW-1\" search_time=\"1\" oov_count=\"0\">",
+        "<kw file=\"a\" channel=\"1\" tbeg=\"3.5\" dur=\"0.5\" score=\"0.9\" decision=\"YES\"/>",
+        "<kw file=\"b\" channel=\"1\" tbeg=\"1.0\" dur=\"0.25\" score=\"0.8\" decision=\"YES\"/>",
+        "<kw file=\"a\" channel=\"1\" tbeg=\"1.5\" dur=\"0.5\" score=\"0.7\" decision=\"NO\"/>",
+        "</detected_kwlist>",
+        "<detected_kwlist kwid=\"KW-2\" search_time=\"1\" oov_count=\"0\">",
+        "<kw file=\"a\" channel=\"1\" tbeg=\"2.0\" dur=\"1.0\" score=\"0.6\" decision=\"YES\"/>",
+        "</detected_kwlist>",
+        "</kwslist>");
+  }
+
+  @After
+  public void tearDown() {
+    new File(posting_list.getPath() + PostingListIndex.CACHE_EXTENSION).delete();
+    posting_list.delete();
+    PostingListIndex.clear();
+  }
+
+  @Test
+  public void testGetAttributeValue() {
+    String line = "<kw file=\"a\" tbeg=\"3.5\" dur=\"0.5\"/>";
+    assertEquals("a", PostingListIndex.getAttributeValue(line, "file"));
+    assertEquals("3.5", PostingListIndex.getAttributeValue(line, "tbeg"));
+    assertNull(PostingListIndex.getAttributeValue(line, "kwid"));
+  }
+
+  @Test
+  public void testWordsAreSortedByStartAndLabeledByKeyword() throws IOException, AuToBIException {
+    List<Word> words = PostingListIndex.getIndex(posting_list.getPath(), false).getWords("a");
+
+    assertEquals(3, words.size());
+    assertEquals("KW-1_2", words.get(0).getLabel());
+    assertEquals(1.5, words.get(0).getStart(), 0.0);
+    assertEquals(2.0, words.get(0).getEnd(), 0.0);
+    assertEquals("KW-2_0", words.get(1).getLabel());
+    assertEquals("KW-1_0", words.get(2).getLabel());
+    assertEquals("a", words.get(2).getFile());
+  }
+
+  @Test
+  public void testUnknownStemHasNoWords() throws IOException, AuToBIException {
+    assertEquals(0, PostingListIndex.getIndex(posting_list.getPath(), false).getWords("c").size());
+  }
+
+  @Test
+  public void testIndexIsShared() throws IOException, AuToBIException {
+    PostingListIndex index = PostingListIndex.getIndex(posting_list.getPath(), false);
+    assertSame(index, PostingListIndex.getIndex(posting_list.getPath(), false));
+  }
+
+  @Test
+  public void testWordsAreNewObjects() throws IOException, AuToBIException {
+    PostingListIndex index = PostingListIndex.getIndex(posting_list.getPath(), false);
+    index.getWords("b").get(0).setAttribute("x", 1);
+    assertFalse(index.getWords("b").get(0).hasAttribute("x"));
+  }
+
+  @Test
+  public void testCacheRoundTrip() throws IOException, AuToBIException {
+    PostingListIndex index = PostingListIndex.getIndex(posting_list.getPath(), true);
+    File cache = new File(posting_list.getPath() + PostingListIndex.CACHE_EXTENSION);
+    assertTrue(cache.exists());
+
+    PostingListIndex cached = PostingListIndex.readCache(cache, posting_list.length(), posting_list.lastModified());
+    assertNotNull(cached);
+    assertEquals(index.getStems(), cached.getStems());
+    List<Word> expected = index.getWords("a");
+    List<Word> actual = cached.getWords("a");
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+      assertEquals(expected.get(i).getStart(), actual.get(i).getStart(), 0.0);
+      assertEquals(expected.get(i).getEnd(), actual.get(i).getEnd(), 0.0);
+    }
+  }
+
+  @Test
+  public void testStaleCacheIsIgnored() throws IOException, AuToBIException {
+    PostingListIndex.getIndex(posting_list.getPath(), true);
+    File cache = new File(posting_list.getPath() + PostingListIndex.CACHE_EXTENSION);
+
+    assertNull(PostingListIndex.readCache(cache, posting_list.length() + 1, posting_list.lastModified()));
+  }
+
+  @Test(expected = AuToBIException.class)
+  public void testMalformedHitThrowsException() throws IOException, AuToBIException {
+    File bad = writePostingList("<detected_kwlist kwid=\"KW-1\">", "<kw file=\"a\" dur=\"0.5\"/>");
+    try {
+      PostingListIndex.getIndex(bad.getPath(), false);
+    } finally {
+      bad.delete();
+    }
+  }
+}
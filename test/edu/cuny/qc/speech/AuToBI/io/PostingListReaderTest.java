@@ -0,0 +1,45 @@
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PostingListReader.
+ *
+ * @see PostingListReader
+ */
+public class PostingListReaderTest {
+
+  @Test
+  public void testReadWordsReadsTargetStem() throws IOException, AuToBIException {
+    File file = PostingListIndexTest.writePostingList(
+        "<detected_kwlist kwid=\"KW-1\" search_time=\"1\">",
+        "<kw file=\"a\" channel=\"1\" tbeg=\"3.5\" dur=\"0.5\"/>",
+        "<kw file=\"b\" channel=\"1\" tbeg=\"1.0\" dur=\"0.25\"/>",
+        "</detected_kwlist>");
+    try {
+      List<Word> words = new PostingListReader(file.getPath(), "b").readWords();
+
+      assertEquals(1, words.size());
+      assertEquals("KW-1_1", words.get(0).getLabel());
+      assertEquals(1.0, words.get(0).getStart(), 0.0);
+      assertEquals(1.25, words.get(0).getEnd(), 0.0);
+    } finally {
+      file.delete();
+      PostingListIndex.clear();
+    }
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testReadWordsMissingFile() throws IOException, AuToBIException {
+    new PostingListReader("THIS/IS/NOT/A/FILE", "a").readWords();
+  }
+}
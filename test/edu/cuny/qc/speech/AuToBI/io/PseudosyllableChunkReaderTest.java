@@ -0,0 +1,93 @@
+package edu.cuny.qc.speech.AuToBI.io;
+
+import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
+import edu.cuny.qc.speech.AuToBI.core.WavData;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PseudosyllableChunkReader.
+ *
+ * @see PseudosyllableChunkReader
+ */
+public class PseudosyllableChunkReaderTest {
+  private static final String TEST_DIR = System.getenv().get("AUTOBI_TEST_DIR");
+
+  @Test
+  public void testConstructorFailsOnMissingFile() throws Exception {
+    try {
+      new PseudosyllableChunkReader(TEST_DIR + "/no_such_file.wav", 3.0, 1.0, 25.0);
+      fail();
+    } catch (AuToBIException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSingleChunkMatchesPseudosyllableWordReader() throws Exception {
+    WavData wav = new WavReader().read(TEST_DIR + "/bdc-test.wav");
+    List<Word> expected = new PseudosyllableWordReader(wav).readWords();
+
+    PseudosyllableChunkReader reader = new PseudosyllableChunkReader(TEST_DIR + "/bdc-test.wav", 60.0, 1.0, 25.0);
+    PseudosyllableChunkReader.Chunk chunk = reader.next();
+    assertNull(reader.next());
+    reader.close();
+
+    assertEquals(0, chunk.getIndex());
+    assertEquals(0.0, chunk.getOffset(), 0.0001);
+    assertEquals(wav.getNumSamples(), chunk.getWav().getNumSamples());
+    assertEquals(expected.size(), chunk.getWords().size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals(expected.get(i).getStart(), chunk.getWords().get(i).getStart(), 0.0001);
+      assertEquals(expected.get(i).getEnd(), chunk.getWords().get(i).getEnd(), 0.0001);
+    }
+  }
+
+  @Test
+  public void testChunksCoverTheFile() throws Exception {
+    PseudosyllableChunkReader reader = new PseudosyllableChunkReader(TEST_DIR + "/bdc-test.wav", 3.0, 1.0, 25.0);
+    List<PseudosyllableChunkReader.Chunk> chunks = new ArrayList<PseudosyllableChunkReader.Chunk>();
+    PseudosyllableChunkReader.Chunk chunk;
+    while ((chunk = reader.next()) != null) {
+      chunks.add(chunk);
+    }
+    reader.close();
+
+    // 8.38 seconds in chunks of 3 seconds.  The final chunk owns the remaining 2.38 seconds.
+    assertEquals(3, chunks.size());
+    assertEquals(0.0, chunks.get(0).getOffset(), 0.0001);
+    assertEquals(2.0, chunks.get(1).getOffset(), 0.0001);
+    assertEquals(5.0, chunks.get(2).getOffset(), 0.0001);
+    assertEquals(4.0, chunks.get(0).getWav().getDuration(), 0.0001);
+    assertEquals(5.0, chunks.get(1).getWav().getDuration(), 0.0001);
+    assertEquals(8.3773125 - 5.0, chunks.get(2).getWav().getDuration(), 0.0001);
+  }
+
+  @Test
+  public void testWordsDoNotOverlapAcrossChunks() throws Exception {
+    PseudosyllableChunkReader reader = new PseudosyllableChunkReader(TEST_DIR + "/bdc-test.wav", 2.0, 0.5, 25.0);
+    double last_end = 0.0;
+    int num_words = 0;
+    PseudosyllableChunkReader.Chunk chunk;
+    while ((chunk = reader.next()) != null) {
+      for (Word w : chunk.getWords()) {
+        double start = w.getStart() + chunk.getOffset();
+        double end = w.getEnd() + chunk.getOffset();
+        assertTrue(start >= last_end - 0.0001);
+        assertTrue(end > start);
+        assertTrue(w.getEnd() <= chunk.getWav().getDuration() + 0.0001);
+        last_end = end;
+        ++num_words;
+      }
+    }
+    reader.close();
+
+    assertTrue(num_words > 0);
+    assertTrue(last_end <= 8.3773125 + 0.0001);
+  }
+}
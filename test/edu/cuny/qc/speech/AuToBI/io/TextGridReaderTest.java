@@ -25,6 +25,8 @@ import edu.cuny.qc.speech.AuToBI.core.Word;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.File;
+import java.io.FileWriter;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
@@ -153,4 +155,26 @@ public class TextGridReaderTest {
     }
 
   }
+
+  @Test
+  public void testReadsWordsFromShortFormat() throws Exception {
+    File file = File.createTempFile("short", ".TextGrid");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write("File type = \"ooTextFile\"\nObject class = \"TextGrid\"\n\n0\n2\n<exists>\n3\n" +
+        "\"IntervalTier\"\n\"words\"\n0\n2\n2\n0\n1\n\"hello\"\n1\n2\n\"world\"\n" +
+        "\"TextTier\"\n\"tones\"\n0\n2\n2\n0.5\n\"H*\"\n1.9\n\"L-L%\"\n" +
+        "\"TextTier\"\n\"breaks\"\n0\n2\n2\n1\n\"1\"\n2\n\"4\"\n");
+    writer.close();
+
+    List<Word> words = new TextGridReader(file.getPath()).readWords();
+    file.delete();
+
+    assertEquals(2, words.size());
+    assertEquals("hello", words.get(0).getLabel());
+    assertEquals("H*", words.get(0).getAccent());
+    assertEquals("L-", words.get(1).getPhraseAccent());
+    assertEquals("L%", words.get(1).getBoundaryTone());
+    assertEquals("4", words.get(1).getBreakAfter());
+  }
 }
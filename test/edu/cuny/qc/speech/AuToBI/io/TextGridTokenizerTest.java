@@ -0,0 +1,135 @@
+package edu.cuny.qc.speech.AuToBI.io;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for TextGridTokenizer.
+ *
+ * @see TextGridTokenizer
+ */
+public class TextGridTokenizerTest {
+
+  private static final String TEST_DIR = System.getenv().get("AUTOBI_TEST_DIR");
+
+  private static final String SHORT_TEXTGRID =
+      "File type = \"ooTextFile\"\n" +
+          "Object class = \"TextGrid\"\n" +
+          "\n" +
+          "0\n" +
+          "2.5\n" +
+          "<exists>\n" +
+          "2\n" +
+          "\"IntervalTier\"\n" +
+          "\"words\"\n" +
+          "0\n" +
+          "2.5\n" +
+          "2\n" +
+          "0\n" +
+          "1.25\n" +
+          "\"say \"\"hi\"\"\"\n" +
+          "1.25\n" +
+          "2.5\n" +
+          "\"\"\n" +
+          "\"TextTier\"\n" +
+          "\"tones\"\n" +
+          "0\n" +
+          "2.5\n" +
+          "1\n" +
+          "0.5\n" +
+          "\"H*\"\n";
+
+  @Test
+  public void testTokens() throws TextGridSyntaxErrorException {
+    TextGridTokenizer t = new TextGridTokenizer("xmin = -1.5e-3 ! comment 7\nitem [3]: \"a\"\"b\" <exists>", "f");
+
+    assertEquals(TextGridTokenizer.TokenType.NUMBER, t.next());
+    assertEquals(-1.5e-3, t.getNumber(), 0.0);
+    assertEquals(TextGridTokenizer.TokenType.STRING, t.next());
+    assertEquals("a\"b", t.getString());
+    assertEquals(TextGridTokenizer.TokenType.FLAG, t.next());
+    assertEquals(TextGridTokenizer.TokenType.END, t.next());
+  }
+
+  @Test
+  public void testGetNumberMatchesParseDouble() throws TextGridSyntaxErrorException {
+    Random random = new Random(7);
+    String[] fixed = {"0", "-0", "4.36744", "8.3773", "2.700045351473923", "0.000001", "123456789012345678",
+        "1e5", "+3.5", "100.000", ".5"};
+    for (String s : fixed) {
+      TextGridTokenizer t = new TextGridTokenizer(s, "f");
+      t.next();
+      assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)), Double.doubleToLongBits(t.getNumber()));
+    }
+    for (int i = 0; i < 10000; ++i) {
+      String s = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(8)));
+      TextGridTokenizer t = new TextGridTokenizer(s, "f");
+      t.next();
+      assertEquals(s, Double.parseDouble(s), t.getNumber(), 0.0);
+    }
+  }
+
+  @Test(expected = TextGridSyntaxErrorException.class)
+  public void testUnterminatedString() throws TextGridSyntaxErrorException {
+    new TextGridTokenizer("\"abc", "f").next();
+  }
+
+  @Test
+  public void testReadTiersShortFormat() throws TextGridSyntaxErrorException {
+    List<Tier> tiers = new TextGridTokenizer(SHORT_TEXTGRID, "short.TextGrid").readTiers(null);
+
+    assertEquals(2, tiers.size());
+    assertEquals("words", tiers.get(0).getName());
+    assertFalse(tiers.get(0).isAPointTier());
+    assertEquals(2, tiers.get(0).getRegions().size());
+    assertEquals("say \"hi\"", tiers.get(0).getRegions().get(0).getLabel());
+    assertEquals(1.25, tiers.get(0).getRegions().get(1).getStart(), 0.0);
+    assertEquals(2.5, tiers.get(0).getRegions().get(1).getEnd(), 0.0);
+    assertEquals("short.TextGrid", tiers.get(0).getRegions().get(0).getFile());
+
+    assertEquals("tones", tiers.get(1).getName());
+    assertTrue(tiers.get(1).isAPointTier());
+    assertEquals(0.5, tiers.get(1).getRegions().get(0).getStart(), 0.0);
+    assertEquals("H*", tiers.get(1).getRegions().get(0).getLabel());
+  }
+
+  @Test
+  public void testReadTiersSkipsUnrequestedTiers() throws TextGridSyntaxErrorException {
+    List<Tier> tiers = new TextGridTokenizer(SHORT_TEXTGRID, "f").readTiers(Arrays.asList("tones"));
+
+    assertEquals(1, tiers.size());
+    assertEquals("tones", tiers.get(0).getName());
+  }
+
+  @Test
+  public void testReadTiersNoTiers() throws TextGridSyntaxErrorException {
+    List<Tier> tiers =
+        new TextGridTokenizer("\"ooTextFile\"\n\"TextGrid\"\n0\n1\n<absent>\n", "f").readTiers(null);
+
+    assertEquals(0, tiers.size());
+  }
+
+  @Test
+  public void testReadTiersLongFormat() throws IOException, TextGridSyntaxErrorException {
+    List<Tier> tiers = TextGridTokenizer.open(TEST_DIR + "/test.TextGrid", null).readTiers(null);
+
+    assertEquals(4, tiers.size());
+    assertEquals("tones", tiers.get(0).getName());
+    assertEquals(10, tiers.get(0).getRegions().size());
+    assertEquals(4.443236, tiers.get(0).getRegions().get(0).getStart(), 0.0);
+    assertEquals("H*", tiers.get(0).getRegions().get(0).getLabel());
+  }
+
+  @Test
+  public void testReadTiersUTF16() throws IOException, TextGridSyntaxErrorException {
+    List<Tier> tiers = TextGridTokenizer.open(TEST_DIR + "/test.utf16.TextGrid", "UTF16").readTiers(null);
+
+    assertEquals(4, tiers.size());
+  }
+}
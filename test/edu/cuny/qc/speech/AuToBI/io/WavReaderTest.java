@@ -24,10 +24,15 @@ import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.WavData;
 import org.junit.Test;
 
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
 import java.io.IOException;
 
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -57,6 +62,37 @@ public class WavReaderTest {
   }
 
 
+  @Test
+  public void testReadsFormat() {
+    WavReader reader = new WavReader();
+
+    try {
+      AudioFileFormat format = reader.readFormat(TEST_DIR + "/test.wav");
+      assertEquals(44100.0, format.getFormat().getSampleRate(), 0.0001);
+      assertEquals(44100, format.getFrameLength());
+    } catch (UnsupportedAudioFileException e) {
+      fail(e.getMessage());
+    } catch (IOException e) {
+      fail(e.getMessage());
+    } catch (AuToBIException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testReadFormatThrowsExceptionIfNoFileExists() {
+    WavReader reader = new WavReader();
+
+    try {
+      reader.readFormat(TEST_DIR + "/no_file.wav");
+      fail();
+    } catch (AuToBIException e) {
+      assertTrue(true);
+    } catch (Exception e) {
+      fail(e.getMessage());
+    }
+  }
+
   @Test
   public void testReadsSectionOfWavFile() {
     WavReader reader = new WavReader();
@@ -90,4 +126,24 @@ public class WavReaderTest {
       // expected.
     }
   }
+
+  @Test
+  public void testReadFramesReadsSuccessiveBlocks() throws Exception {
+    WavReader reader = new WavReader();
+    WavData wav = reader.read(TEST_DIR + "/test.wav");
+
+    AudioInputStream stream = AudioSystem.getAudioInputStream(new File(TEST_DIR + "/test.wav"));
+    WavData first = reader.readFrames(stream, 30000);
+    WavData second = reader.readFrames(stream, 30000);
+    WavData third = reader.readFrames(stream, 30000);
+    stream.close();
+
+    assertEquals(30000, first.getNumSamples());
+    assertEquals(14100, second.getNumSamples());
+    assertEquals(0, third.getNumSamples());
+    assertEquals(44100.0, second.sampleRate, 0.0001);
+    assertEquals(wav.getSample(0, 29999), first.getSample(0, 29999));
+    assertEquals(wav.getSample(0, 30000), second.getSample(0, 0));
+    assertEquals(wav.getSample(0, 44099), second.getSample(0, 14099));
+  }
 }
@@ -225,6 +225,47 @@ public class AlignmentUtilsTest {
     assertNotNull(w3.getBreakAfter());
   }
 
+  @Test
+  public void testCopyToBIBreaksByTimeAssignsNaAfterLastBreak() {
+    List<Word> words = new ArrayList<Word>();
+    Word w1 = new Word(0, 1, "test");
+    Word w2 = new Word(1, 2, "test");
+    Word w3 = new Word(2, 3, "test");
+    words.add(w1);
+    words.add(w2);
+    words.add(w3);
+
+    List<Region> breaks = new ArrayList<Region>();
+    breaks.add(new Region(1, 1, "4"));
+
+    AlignmentUtils.copyToBIBreaksByTime(words, breaks);
+    assertEquals("na", w1.getBreakBefore());
+    assertEquals("4", w1.getBreakAfter());
+    assertEquals("X%", w1.getBoundaryTone());
+    assertEquals("4", w2.getBreakBefore());
+    assertEquals("na", w2.getBreakAfter());
+    assertEquals("na", w3.getBreakAfter());
+  }
+
+  @Test
+  public void testCopyToBITonesByTimeSkipsTonesBetweenWords() {
+    List<Word> words = new ArrayList<Word>();
+    Word w1 = new Word(0, 1, "test");
+    Word w2 = new Word(2, 3, "test");
+    words.add(w1);
+    words.add(w2);
+
+    List<Region> tones = new ArrayList<Region>();
+    tones.add(new Region(1.5, 1.5, "L*"));
+    tones.add(new Region(2.5, 2.5, "H*"));
+    tones.add(new Region(5, 5, "L-"));
+
+    AlignmentUtils.copyToBITonesByTime(words, tones);
+    assertFalse(w1.isAccented());
+    assertEquals("H*", w2.getAccent());
+    assertFalse(w2.hasPhraseAccent());
+  }
+
   @Test
   public void testCopyToBITonesByIndexWhenAlignedByTime() {
 
@@ -23,6 +23,7 @@ package edu.cuny.qc.speech.AuToBI.util;
 import edu.cuny.qc.speech.AuToBI.AuToBI;
 import edu.cuny.qc.speech.AuToBI.core.AuToBIException;
 import edu.cuny.qc.speech.AuToBI.core.AuToBITask;
+import edu.cuny.qc.speech.AuToBI.core.Pair;
 import edu.cuny.qc.speech.AuToBI.core.Word;
 import edu.cuny.qc.speech.AuToBI.featureset.*;
 import org.junit.Before;
@@ -30,6 +31,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import static org.junit.Assert.*;
 
@@ -112,6 +114,11 @@ public class AuToBIUtilsTest {
     AuToBIUtils.info("test info");
   }
 
+  @Test
+  public void testQuoteJsonEscapesJsonCharacters() {
+    assertEquals("\"a\\\"b\\\\c\\u000a\"", AuToBIUtils.quoteJson("a\"b\\c\n"));
+  }
+
   @Test
   public void testGlobWithNullPattern() {
     List<String> files = AuToBIUtils.glob(null);
@@ -660,4 +667,90 @@ public class AuToBIUtilsTest {
       assertTrue(true);
     }
   }
+
+  @Test
+  public void testInvokeAllReturnsResultsInTaskOrder() throws AuToBIException {
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < 10; ++i) {
+      final int value = i;
+      tasks.add(new Callable<Integer>() {
+        public Integer call() throws Exception {
+          Thread.sleep(10 - value);
+          return value;
+        }
+      });
+    }
+
+    List<Integer> results = AuToBIUtils.invokeAll(tasks, 4);
+    assertEquals(10, results.size());
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(i, (int) results.get(i));
+    }
+  }
+
+  @Test
+  public void testInvokeAllSingleThreadRunsOnCallingThread() throws AuToBIException {
+    final Thread caller = Thread.currentThread();
+    List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+    for (int i = 0; i < 3; ++i) {
+      tasks.add(new Callable<Boolean>() {
+        public Boolean call() throws Exception {
+          return Thread.currentThread() == caller;
+        }
+      });
+    }
+
+    for (Boolean b : AuToBIUtils.invokeAll(tasks, 1)) {
+      assertTrue(b);
+    }
+  }
+
+  @Test
+  public void testInvokeAllWrapsTaskExceptions() {
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        return 1;
+      }
+    });
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        throw new Exception("task failure");
+      }
+    });
+
+    try {
+      AuToBIUtils.invokeAll(tasks, 2);
+      fail();
+    } catch (AuToBIException e) {
+      assertTrue(e.getMessage().contains("task failure"));
+    }
+  }
+
+  @Test
+  public void testParseAttributeOmission() {
+    List<Pair<String, String>> omission = AuToBIUtils.parseAttributeOmission("a:x,b:y,bad");
+
+    assertEquals(2, omission.size());
+    assertEquals("a", omission.get(0).first);
+    assertEquals("x", omission.get(0).second);
+    assertEquals("b", omission.get(1).first);
+    assertEquals("y", omission.get(1).second);
+  }
+
+  @Test
+  public void testParseAttributeOmissionEmpty() {
+    assertEquals(0, AuToBIUtils.parseAttributeOmission("").size());
+    assertEquals(0, AuToBIUtils.parseAttributeOmission(null).size());
+  }
+
+  @Test
+  public void testHasOmittedAttribute() {
+    Word w = new Word(0, 1, "w");
+    w.setAttribute("a", "x");
+
+    assertTrue(AuToBIUtils.hasOmittedAttribute(w, AuToBIUtils.parseAttributeOmission("b:y,a:x")));
+    assertFalse(AuToBIUtils.hasOmittedAttribute(w, AuToBIUtils.parseAttributeOmission("a:y")));
+    assertFalse(AuToBIUtils.hasOmittedAttribute(w, AuToBIUtils.parseAttributeOmission("")));
+  }
 }
@@ -20,6 +20,7 @@
 package edu.cuny.qc.speech.AuToBI.util;
 
 import edu.cuny.qc.speech.AuToBI.classifier.AuToBIClassifier;
+import edu.cuny.qc.speech.AuToBI.classifier.ClassBasedWeightFunctionTrainer;
 import edu.cuny.qc.speech.AuToBI.classifier.MockClassifier;
 import edu.cuny.qc.speech.AuToBI.core.*;
 import org.junit.Test;
@@ -29,7 +30,10 @@ import weka.core.Instances;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -278,6 +282,60 @@ public class ClassifierUtilsTest {
     assertEquals("default", w1.getAttribute("hyp"));
   }
 
+  @Test
+  public void testClassifyDoesNotModifyWords() {
+    AuToBIClassifier c = new MockClassifier() {
+      @Override
+      public Distribution distributionForInstance(Word testing_point) throws Exception {
+        if (testing_point.getLabel().equals("bad")) {
+          throw new AuToBIException("testing");
+        }
+        Distribution d = new Distribution();
+        d.add("one", 0.51);
+        d.add("two", 0.49);
+        return d;
+      }
+    };
+
+    List<Word> words = new ArrayList<Word>();
+    words.add(new Word(0, 1, "good"));
+    words.add(new Word(1, 2, "bad"));
+
+    List<String> hypotheses = ClassifierUtils.classify(c, "default", words);
+
+    assertEquals(2, hypotheses.size());
+    assertEquals("one", hypotheses.get(0));
+    assertEquals("default", hypotheses.get(1));
+    assertTrue(words.get(0).getAttributeNames().isEmpty());
+    assertTrue(words.get(1).getAttributeNames().isEmpty());
+  }
+
+  @Test
+  public void testAccumulateEvaluationFromHypothesesMatchesAttributes() throws AuToBIException {
+    List<Word> words = new ArrayList<Word>();
+    String[][] labels = {{"A", "A"}, {"B", "A"}, {"B", "B"}, {null, "B"}, {"C", "C"}};
+    List<String> hypotheses = new ArrayList<String>();
+    for (int i = 0; i < labels.length; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("hyp", labels[i][0]);
+      w.setAttribute("true", labels[i][1]);
+      words.add(w);
+      hypotheses.add(labels[i][0]);
+    }
+    words.get(4).setAttribute("__ignore__", true);
+
+    EvaluationAccumulator.Partial from_attributes = new EvaluationAccumulator.Partial();
+    ClassifierUtils.accumulateEvaluation(from_attributes, "hyp", "true", words);
+    EvaluationAccumulator.Partial from_hypotheses = new EvaluationAccumulator.Partial();
+    ClassifierUtils.accumulateEvaluation(from_hypotheses, hypotheses, "true", words);
+
+    EvaluationResults expected = from_attributes.toEvaluationResults();
+    EvaluationResults actual = from_hypotheses.toEvaluationResults();
+    assertArrayEquals(expected.getClassNames(), actual.getClassNames());
+    assertEquals(expected.getNumInstances(), actual.getNumInstances());
+    assertEquals(expected.getNumCorrect(), actual.getNumCorrect());
+    assertEquals(expected.getInstances("B", "A"), actual.getInstances("B", "A"));
+  }
 
   @Test
   public void testGeneratePredictionsWithConfidence() {
@@ -436,4 +494,257 @@ public class ClassifierUtilsTest {
       fail();
     }
   }
+
+  @Test
+  public void testGenerateEvaluationResultsInParallelMatchesSerial() throws AuToBIException {
+    FeatureSet fs = new FeatureSet();
+    String[] labels = {"H*", "L*", "NONE", "!H*"};
+    for (int i = 0; i < 101; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      w.setAttribute("true", labels[(i * 7) % 3]);
+      w.setAttribute("hyp", labels[(i * 5) % 4]);
+      if (i % 10 == 0) {
+        w.setAttribute("__ignore__", true);
+      }
+      fs.insertDataPoint(w);
+    }
+
+    EvaluationResults serial = ClassifierUtils.generateEvaluationResults("hyp", "true", fs);
+    EvaluationResults parallel = ClassifierUtils.generateEvaluationResults("hyp", "true", fs, 4);
+
+    assertArrayEquals(serial.getClassNames(), parallel.getClassNames());
+    assertEquals(90, parallel.getNumInstances());
+    for (String t : serial.getClassNames()) {
+      for (String h : serial.getClassNames()) {
+        assertEquals(serial.getInstances(h, t), parallel.getInstances(h, t));
+      }
+    }
+  }
+
+  @Test
+  public void testGenerateEvaluationResultsIncludesIgnoredClasses() throws AuToBIException {
+    FeatureSet fs = new FeatureSet();
+    Word w1 = new Word(0, 1, "one");
+    w1.setAttribute("true", "A");
+    w1.setAttribute("hyp", "A");
+    Word w2 = new Word(1, 2, "two");
+    w2.setAttribute("true", "B");
+    w2.setAttribute("hyp", "C");
+    w2.setAttribute("__ignore__", true);
+    fs.insertDataPoint(w1);
+    fs.insertDataPoint(w2);
+
+    EvaluationResults eval = ClassifierUtils.generateEvaluationResults("hyp", "true", fs);
+
+    assertArrayEquals(new String[]{"A", "B", "C"}, eval.getClassNames());
+    assertEquals(1, eval.getNumInstances());
+  }
+
+  @Test
+  public void testGeneratePosteriorsReturnsNullOnClassifierFailure() {
+    AuToBIClassifier c = new MockClassifier() {
+      @Override
+      public Distribution distributionForInstance(Word testing_point) throws Exception {
+        throw new Exception("failure");
+      }
+    };
+    List<Word> words = new ArrayList<Word>();
+    words.add(new Word(0, 1, "word"));
+
+    assertNull(ClassifierUtils.generatePosteriors(c, words));
+  }
+
+  @Test
+  public void testGeneratePredictionsUsesBatchPosteriors() {
+    AuToBIClassifier c = new MockClassifier() {
+      @Override
+      public List<Posterior> posteriorsForInstances(List<Word> testing_points) throws Exception {
+        List<Posterior> posteriors = new ArrayList<Posterior>();
+        for (Word w : testing_points) {
+          posteriors.add(new Posterior(new NominalDictionary(w.getLabel()), new double[]{1.0}));
+        }
+        return posteriors;
+      }
+    };
+    FeatureSet fs = new FeatureSet();
+    fs.getDataPoints().add(new Word(0, 1, "one"));
+    fs.getDataPoints().add(new Word(1, 2, "two"));
+
+    ClassifierUtils.generatePredictions(c, "hyp", "default", fs);
+
+    assertEquals("one", fs.getDataPoints().get(0).getAttribute("hyp"));
+    assertEquals("two", fs.getDataPoints().get(1).getAttribute("hyp"));
+  }
+
+  @Test
+  public void testGeneratePredictionsFallsBackToDefaultValue() {
+    AuToBIClassifier c = new MockClassifier() {
+      @Override
+      public Distribution distributionForInstance(Word testing_point) throws Exception {
+        throw new Exception("failure");
+      }
+    };
+    FeatureSet fs = new FeatureSet();
+    fs.getDataPoints().add(new Word(0, 1, "one"));
+
+    ClassifierUtils.generatePredictions(c, "hyp", "default", fs);
+
+    assertEquals("default", fs.getDataPoints().get(0).getAttribute("hyp"));
+  }
+
+  @Test
+  public void testGeneratePredictionsWithConfidenceScores() {
+    final NominalDictionary labels = new NominalDictionary("A", "B");
+    AuToBIClassifier c = new MockClassifier() {
+      @Override
+      public Posterior posteriorForInstance(Word testing_point) throws Exception {
+        return new Posterior(labels, new double[]{0.25, 0.75});
+      }
+    };
+    FeatureSet fs = new FeatureSet();
+    fs.getDataPoints().add(new Word(0, 1, "one"));
+
+    ClassifierUtils.generatePredictionsWithConfidenceScores(c, "hyp", "conf", "default", fs);
+
+    assertEquals("B", fs.getDataPoints().get(0).getAttribute("hyp"));
+    assertEquals(0.75, (Double) fs.getDataPoints().get(0).getAttribute("conf"), 0.0);
+  }
+
+  @Test
+  public void testGeneratePredictionDistributionStoresDistribution() {
+    final NominalDictionary labels = new NominalDictionary("A", "B");
+    AuToBIClassifier c = new MockClassifier() {
+      @Override
+      public Posterior posteriorForInstance(Word testing_point) throws Exception {
+        return new Posterior(labels, new double[]{0.25, 0.75});
+      }
+    };
+    FeatureSet fs = new FeatureSet();
+    fs.getDataPoints().add(new Word(0, 1, "one"));
+
+    ClassifierUtils.generatePredictionDistribution(c, "dist", "default", fs);
+
+    Distribution dist = (Distribution) fs.getDataPoints().get(0).getAttribute("dist");
+    assertEquals(0.25, dist.get("A"), 0.0);
+    assertEquals(0.75, dist.get("B"), 0.0);
+  }
+
+  private FeatureSet storeFeatureSet() {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("featureA");
+    fs.insertRequiredFeature("nominal_featureB");
+    fs.setClassAttribute("class_attribute");
+    return fs;
+  }
+
+  private List<Word> storeWords() {
+    List<Word> words = new ArrayList<Word>();
+    String[] b = {"x", "y", "x", "z"};
+    String[] c = {"POSITIVE", "NEGATIVE", "NEGATIVE", "POSITIVE"};
+    for (int i = 0; i < 4; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      if (i != 2) {
+        w.setAttribute("featureA", i * 1.5);
+      }
+      w.setAttribute("nominal_featureB", b[i]);
+      w.setAttribute("class_attribute", c[i]);
+      words.add(w);
+    }
+    return words;
+  }
+
+  @Test
+  public void testConvertCompactRowStoreToLibLinearFeaturesMatchesFeatureSet() throws AuToBIException {
+    FeatureSet template = storeFeatureSet();
+    List<Word> words = storeWords();
+    CompactRowStore store = new CompactRowStore(template);
+    store.add(0, words);
+
+    FeatureSet fs = template;
+    fs.setDataPoints(words);
+    fs.constructFeatures();
+
+    de.bwaldvogel.liblinear.Feature[][] expected =
+        ClassifierUtils.convertFeatureSetToLibLinearFeatures(fs, ClassifierUtils.generateFeatureMap(fs));
+    FeatureSet store_fs = store.getFeatureSet();
+    de.bwaldvogel.liblinear.Feature[][] actual =
+        ClassifierUtils.convertCompactRowStoreToLibLinearFeatures(store, ClassifierUtils.generateFeatureMap(store_fs));
+
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; ++i) {
+      assertEquals(expected[i].length, actual[i].length);
+      for (int j = 0; j < expected[i].length; ++j) {
+        assertEquals(expected[i][j].getIndex(), actual[i][j].getIndex());
+        assertEquals(expected[i][j].getValue(), actual[i][j].getValue(), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testConvertCompactRowStoreToWekaInstancesMatchesFeatureSet() throws AuToBIException {
+    FeatureSet template = storeFeatureSet();
+    List<Word> words = storeWords();
+    CompactRowStore store = new CompactRowStore(template);
+    store.add(0, words);
+
+    FeatureSet fs = template;
+    fs.setDataPoints(words);
+    fs.constructFeatures();
+    ClassBasedWeightFunctionTrainer trainer = new ClassBasedWeightFunctionTrainer("class_attribute",
+        ClassBasedWeightFunctionTrainer.WeightType.LINEAR);
+    Map<String, Double> weights = ClassBasedWeightFunctionTrainer.getClassWeightMapping(store.getClassDistribution(),
+        ClassBasedWeightFunctionTrainer.WeightType.LINEAR);
+
+    Instances expected =
+        ClassifierUtils.convertFeatureSetToWeightedWekaInstances(fs, trainer.trainWeightFunction(words));
+    Instances actual = ClassifierUtils.convertCompactRowStoreToWekaInstances(store, weights);
+
+    assertEquals(expected.numAttributes(), actual.numAttributes());
+    assertEquals(expected.classIndex(), actual.classIndex());
+    assertEquals(expected.numInstances(), actual.numInstances());
+    for (int i = 0; i < expected.numInstances(); ++i) {
+      assertArrayEquals(expected.instance(i).toDoubleArray(), actual.instance(i).toDoubleArray(), 0.0);
+      assertEquals(expected.instance(i).weight(), actual.instance(i).weight(), 0.0);
+    }
+    assertEquals(1.0, ClassifierUtils.convertCompactRowStoreToWekaInstances(store, null).instance(0).weight(), 0.0);
+  }
+
+  @Test
+  public void testConvertCompactRowStoreToLibLinearLabelsMatchesFeatureSet() throws AuToBIException {
+    FeatureSet template = storeFeatureSet();
+    List<Word> words = storeWords();
+    CompactRowStore store = new CompactRowStore(template);
+    store.add(0, words);
+    FeatureSet fs = template;
+    fs.setDataPoints(words);
+    String[] class_values = {"NEGATIVE", "POSITIVE"};
+
+    double[] expected = ClassifierUtils.convertFeatureSetToLibLinearLabels(fs, class_values);
+    double[] actual = ClassifierUtils.convertCompactRowStoreToLibLinearLabels(store, class_values);
+
+    assertArrayEquals(expected, actual, 0.0);
+  }
+
+  @Test
+  public void testGenerateNormParamsFromCompactRowStoreMatchesFeatureSet() throws AuToBIException {
+    FeatureSet template = storeFeatureSet();
+    List<Word> words = storeWords();
+    CompactRowStore store = new CompactRowStore(template);
+    store.add(0, words);
+    FeatureSet fs = template;
+    fs.setDataPoints(words);
+    fs.constructFeatures();
+
+    HashMap<String, Aggregation> expected = ClassifierUtils.generateNormParams(fs);
+    HashMap<String, Aggregation> actual = ClassifierUtils.generateNormParams(store);
+
+    assertEquals(expected.keySet(), actual.keySet());
+    for (String f : expected.keySet()) {
+      assertEquals(expected.get(f).getSize(), actual.get(f).getSize());
+      if (expected.get(f).getSize() > 0) {
+        assertEquals(expected.get(f).getMean(), actual.get(f).getMean(), 0.0);
+        assertEquals(expected.get(f).getStdev(), actual.get(f).getStdev(), 0.0);
+      }
+    }
+  }
 }
@@ -218,6 +218,17 @@ public class SubregionUtilsTest {
     assertEquals(subr4, word2.getAttribute("subregion"));
   }
 
+  @Test
+  public void testAlignLongestSubregionsToWordsWithoutSubregions() {
+    Word word = new Word(0, 1, "test");
+    List<Word> words = new ArrayList<Word>();
+    words.add(word);
+
+    SubregionUtils.alignLongestSubregionsToWords(words, new ArrayList<Region>(), "subregion");
+
+    assertFalse(word.hasAttribute("subregion"));
+  }
+
   @Test
   public void testParseSubregionNameMilliseconds() {
     String subregionName = "100ms";
@@ -0,0 +1,90 @@
+package edu.cuny.qc.speech.AuToBI.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for TraceProfiler.
+ *
+ * @see TraceProfiler
+ */
+public class TraceProfilerTest {
+
+  @Before
+  public void setUp() {
+    TraceProfiler.reset();
+  }
+
+  @After
+  public void tearDown() {
+    TraceProfiler.disable();
+    TraceProfiler.reset();
+  }
+
+  @Test
+  public void testDisabledProfilerRecordsNothing() {
+    TraceProfiler.disable();
+    TraceProfiler.begin("io", "read_wav").arg("file", "a.wav").end();
+
+    assertEquals(0, TraceProfiler.size());
+  }
+
+  @Test
+  public void testEnabledProfilerRecordsSpans() {
+    TraceProfiler.enable();
+    TraceProfiler.Span outer = TraceProfiler.begin("file", "a");
+    TraceProfiler.begin("io", "read_wav").end();
+    outer.end();
+
+    assertEquals(2, TraceProfiler.size());
+  }
+
+  @Test
+  public void testSpansFromSeveralThreadsAreRecorded() throws InterruptedException {
+    TraceProfiler.enable();
+    Thread t = new Thread(new Runnable() {
+      public void run() {
+        TraceProfiler.begin("file", "b").end();
+      }
+    }, "worker");
+    t.start();
+    t.join();
+    TraceProfiler.begin("file", "a").end();
+
+    assertEquals(2, TraceProfiler.size());
+  }
+
+  @Test
+  public void testWriteProducesChromeTraceEvents() throws Exception {
+    TraceProfiler.enable();
+    TraceProfiler.begin("io", "read_wav").arg("file", "a.wav").arg("frames", 10).end();
+
+    StringWriter writer = new StringWriter();
+    TraceProfiler.write(writer);
+    String trace = writer.toString();
+
+    assertTrue(trace.startsWith("{\"displayTimeUnit\": \"ms\", \"traceEvents\": ["));
+    assertTrue(trace.contains("\"name\": \"read_wav\""));
+    assertTrue(trace.contains("\"cat\": \"io\""));
+    assertTrue(trace.contains("\"ph\": \"X\""));
+    assertTrue(trace.contains("\"args\": {\"file\": \"a.wav\", \"frames\": 10}"));
+    assertTrue(trace.contains("\"name\": \"thread_name\", \"ph\": \"M\""));
+    assertTrue(trace.contains(AuToBIUtils.quoteJson(Thread.currentThread().getName())));
+  }
+
+  @Test
+  public void testWriteQuotesNonFiniteArguments() throws Exception {
+    TraceProfiler.enable();
+    TraceProfiler.begin("io", "a").arg("value", Double.NaN).end();
+
+    StringWriter writer = new StringWriter();
+    TraceProfiler.write(writer);
+
+    assertTrue(writer.toString().contains("\"value\": \"NaN\""));
+  }
+}
@@ -0,0 +1,141 @@
+package edu.cuny.qc.speech.AuToBI.util;
+
+import edu.cuny.qc.speech.AuToBI.classifier.WeightFunction;
+import edu.cuny.qc.speech.AuToBI.core.FeatureSet;
+import edu.cuny.qc.speech.AuToBI.core.Region;
+import edu.cuny.qc.speech.AuToBI.core.Word;
+import org.junit.Test;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for WekaColumnConverter.
+ *
+ * @see WekaColumnConverter
+ */
+public class WekaColumnConverterTest {
+
+  private FeatureSet generateFeatureSet(int size) {
+    FeatureSet fs = new FeatureSet();
+    fs.insertRequiredFeature("real");
+    fs.insertRequiredFeature("integer");
+    fs.insertRequiredFeature("numeric_string");
+    fs.insertRequiredFeature("nominal_value");
+    fs.insertRequiredFeature("text");
+    fs.setClassAttribute("class_attribute");
+
+    for (int i = 0; i < size; ++i) {
+      Word w = new Word(i, i + 1, "w" + i);
+      if (i % 7 != 3) {
+        w.setAttribute("real", i * 0.1);
+      }
+      w.setAttribute("integer", i % 5);
+      w.setAttribute("numeric_string", (i % 11 == 0) ? "?" : Double.toString(i / 3.0));
+      if (i % 13 != 0) {
+        w.setAttribute("nominal_value", (i % 17 == 0) ? "?" : "v" + (i % 4));
+      }
+      w.setAttribute("text", "t" + (i % 9));
+      w.setAttribute("class_attribute", (i % 3 == 0) ? "POSITIVE" : "NEGATIVE");
+      fs.insertDataPoint(w);
+    }
+    fs.constructFeatures();
+    fs.getFeature("text").setString(true);
+    return fs;
+  }
+
+  private Instances generateSerialInstances(FeatureSet fs, WeightFunction fn) {
+    Instances instances = new Instances("AuToBI_feature_set", ClassifierUtils.generateWekaAttributes(fs.getFeatures()),
+        fs.getDataPoints().size());
+    for (Word w : fs.getDataPoints()) {
+      instances.add(ClassifierUtils.assignWekaAttributes(instances, w));
+      if (fn != null) {
+        instances.get(instances.size() - 1).setWeight(fn.weight(w));
+      }
+    }
+    ClassifierUtils.setWekaClassAttribute(instances, fs.getClassAttribute());
+    return instances;
+  }
+
+  private void assertSameInstances(Instances expected, Instances actual) {
+    assertEquals(expected.numAttributes(), actual.numAttributes());
+    assertEquals(expected.classIndex(), actual.classIndex());
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertArrayEquals(expected.get(i).toDoubleArray(), actual.get(i).toDoubleArray(), 0.0);
+      assertEquals(expected.get(i).weight(), actual.get(i).weight(), 0.0);
+    }
+  }
+
+  @Test
+  public void testConversionMatchesAssignWekaAttributes() throws Exception {
+    FeatureSet fs = generateFeatureSet(50);
+
+    assertSameInstances(generateSerialInstances(fs, null), ClassifierUtils.convertFeatureSetToWekaInstances(fs, 1));
+  }
+
+  @Test
+  public void testParallelConversionMatchesSerialConversion() throws Exception {
+    FeatureSet fs = generateFeatureSet(3 * WekaColumnConverter.CHUNK_SIZE + 17);
+
+    assertSameInstances(generateSerialInstances(fs, null), ClassifierUtils.convertFeatureSetToWekaInstances(fs, 4));
+  }
+
+  @Test
+  public void testWeightedConversion() throws Exception {
+    FeatureSet fs = generateFeatureSet(2 * WekaColumnConverter.CHUNK_SIZE + 5);
+    WeightFunction fn = new WeightFunction() {
+      public double weight(Region r) {
+        return r.getStart() % 2 == 0 ? 2.0 : 0.5;
+      }
+    };
+
+    assertSameInstances(generateSerialInstances(fs, fn),
+        ClassifierUtils.convertFeatureSetToWeightedWekaInstances(fs, fn, 3));
+  }
+
+  @Test
+  public void testConvertRowReadsTypedValues() {
+    FeatureSet fs = generateFeatureSet(14);
+    Instances instances = new Instances("AuToBI_feature_set", ClassifierUtils.generateWekaAttributes(fs.getFeatures()),
+        0);
+    WekaColumnConverter converter = new WekaColumnConverter(instances, fs);
+
+    Word w = fs.getDataPoints().get(13);
+    double[] row = converter.convertRow(w);
+    for (int i = 0; i < instances.numAttributes(); ++i) {
+      String name = instances.attribute(i).name();
+      if (name.equals("real")) {
+        assertEquals(1.3, row[i], 0.0);
+      } else if (name.equals("integer")) {
+        assertEquals(3.0, row[i], 0.0);
+      } else if (name.equals("numeric_string")) {
+        assertEquals(13 / 3.0, row[i], 0.0);
+      } else if (name.equals("nominal_value")) {
+        assertTrue(Utils.isMissingValue(row[i]));
+      } else if (name.equals("class_attribute")) {
+        assertEquals(instances.attribute(i).indexOfValue("NEGATIVE"), row[i], 0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownNominalValueIsNegative() {
+    FeatureSet fs = generateFeatureSet(14);
+    Instances instances = new Instances("AuToBI_feature_set", ClassifierUtils.generateWekaAttributes(fs.getFeatures()),
+        0);
+    WekaColumnConverter converter = new WekaColumnConverter(instances, fs);
+
+    Word w = new Word(0, 1, "unseen");
+    w.setAttribute("nominal_value", "unseen_value");
+    double[] row = converter.convertRow(w);
+    for (int i = 0; i < instances.numAttributes(); ++i) {
+      if (instances.attribute(i).name().equals("nominal_value")) {
+        assertEquals(-1.0, row[i], 0.0);
+      } else if (!instances.attribute(i).isString()) {
+        assertTrue(Utils.isMissingValue(row[i]));
+      }
+    }
+  }
+}